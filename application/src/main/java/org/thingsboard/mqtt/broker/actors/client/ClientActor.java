@@ -15,6 +15,7 @@
  */
 package org.thingsboard.mqtt.broker.actors.client;
 
+import com.google.common.util.concurrent.ListenableFuture;
 import lombok.extern.slf4j.Slf4j;
 import org.thingsboard.mqtt.broker.actors.ActorSystemContext;
 import org.thingsboard.mqtt.broker.actors.TbActorCtx;
@@ -22,6 +23,7 @@ import org.thingsboard.mqtt.broker.actors.TbActorException;
 import org.thingsboard.mqtt.broker.actors.client.messages.ConnectionAcceptedMsg;
 import org.thingsboard.mqtt.broker.actors.client.messages.PubAckResponseMsg;
 import org.thingsboard.mqtt.broker.actors.client.messages.PubRecResponseMsg;
+import org.thingsboard.mqtt.broker.actors.client.messages.SessionAuthResultMsg;
 import org.thingsboard.mqtt.broker.actors.client.messages.SessionDependentMsg;
 import org.thingsboard.mqtt.broker.actors.client.messages.SessionInitMsg;
 import org.thingsboard.mqtt.broker.actors.client.messages.StopActorCommandMsg;
@@ -50,10 +52,14 @@ import org.thingsboard.mqtt.broker.actors.service.ContextAwareActor;
 import org.thingsboard.mqtt.broker.actors.shared.TimedMsg;
 import org.thingsboard.mqtt.broker.exception.FullMsgQueueException;
 import org.thingsboard.mqtt.broker.service.analysis.ClientLogger;
+import org.thingsboard.mqtt.broker.service.auth.providers.AuthResponse;
 import org.thingsboard.mqtt.broker.service.stats.ClientActorStats;
+import org.thingsboard.mqtt.broker.session.ClientSessionCtx;
 import org.thingsboard.mqtt.broker.session.DisconnectReason;
 import org.thingsboard.mqtt.broker.session.DisconnectReasonType;
 
+import java.util.ArrayDeque;
+import java.util.Queue;
 import java.util.UUID;
 import java.util.concurrent.TimeUnit;
 
@@ -72,6 +78,17 @@ public class ClientActor extends ContextAwareActor {
     private final ClientActorState state;
     private final ClientActorStats clientActorStats;
 
+    /**
+     * Messages received while the new session is authenticated asynchronously, processed in order once {@link SessionAuthResultMsg} comes.
+     * Stop and disconnect messages are not deferred, see {@link #isDeferredWhileAuthenticating}.
+     */
+    private final Queue<TbActorMsg> deferredMsgs = new ArrayDeque<>();
+    /**
+     * Pending authentication of {@link #authenticatingSessionInitMsg}, null when no session is being authenticated.
+     */
+    private ListenableFuture<AuthResponse> pendingAuth;
+    private SessionInitMsg authenticatingSessionInitMsg;
+
     public ClientActor(ActorSystemContext systemContext, String clientId, boolean isClientIdGenerated) {
         super(systemContext);
         this.sessionClusterManager = systemContext.getClientActorContext().getSessionClusterManager();
@@ -91,8 +108,28 @@ public class ClientActor extends ContextAwareActor {
         super.init(ctx);
     }
 
+    @Override
+    public void destroy() {
+        if (pendingAuth != null) {
+            cancelPendingAuth();
+        }
+        TbActorMsg msg;
+        while ((msg = deferredMsgs.poll()) != null) {
+            msg.onTbActorStopped(getActorRef().getActorId());
+        }
+    }
+
     @Override
     protected boolean doProcess(TbActorMsg msg) {
+        if (pendingAuth != null) {
+            if (isDeferredWhileAuthenticating(msg)) {
+                deferredMsgs.add(msg);
+                return true;
+            }
+            if (isDisconnectOfAuthenticatingSession(msg)) {
+                cancelPendingAuth();
+            }
+        }
         if (msg instanceof TimedMsg) {
             clientActorStats.logMsgQueueTime(msg, TimeUnit.NANOSECONDS);
         }
@@ -118,7 +155,11 @@ public class ClientActor extends ContextAwareActor {
             } else {
                 switch (msg.getMsgType()) {
                     case SESSION_INIT_MSG:
-                        actorProcessor.onInit(state, (SessionInitMsg) msg);
+                        SessionInitMsg sessionInitMsg = (SessionInitMsg) msg;
+                        setPendingAuth(sessionInitMsg, actorProcessor.onInit(state, sessionInitMsg, getActorRef()));
+                        break;
+                    case SESSION_AUTH_RESULT_MSG:
+                        processSessionAuthResultMsg((SessionAuthResultMsg) msg);
                         break;
                     case STOP_ACTOR_COMMAND_MSG:
                         processActorStop((StopActorCommandMsg) msg);
@@ -171,7 +212,7 @@ public class ClientActor extends ContextAwareActor {
                         success = false;
                 }
             }
-            if (msg.getMsgType() != MsgType.STOP_ACTOR_COMMAND_MSG) {
+            if (msg.getMsgType() != MsgType.STOP_ACTOR_COMMAND_MSG && pendingAuth == null) {
                 if (actorNeedsToBeStopped(success)) {
                     requestActorStop();
                 } else {
@@ -182,6 +223,72 @@ public class ClientActor extends ContextAwareActor {
         } finally {
             clientActorStats.logMsgProcessingTime(msg.getMsgType(), startTime, TimeUnit.NANOSECONDS);
             clientLogger.logEvent(state.getClientId(), this.getClass(), "Finished msg processing - " + msg.getMsgType());
+            // the deferred messages are neither of these types, so they never process the queue recursively
+            if (msg.getMsgType() == MsgType.SESSION_AUTH_RESULT_MSG || msg.getMsgType() == MsgType.DISCONNECT_MSG) {
+                processDeferredMsgs();
+            }
+        }
+    }
+
+    private boolean isDeferredWhileAuthenticating(TbActorMsg msg) {
+        return switch (msg.getMsgType()) {
+            case SESSION_AUTH_RESULT_MSG, STOP_ACTOR_COMMAND_MSG, DISCONNECT_MSG -> false;
+            default -> true;
+        };
+    }
+
+    private boolean isDisconnectOfAuthenticatingSession(TbActorMsg msg) {
+        return msg.getMsgType() == MsgType.DISCONNECT_MSG
+                && ((MqttDisconnectMsg) msg).getSessionId().equals(authenticatingSessionInitMsg.getClientSessionCtx().getSessionId());
+    }
+
+    private void processSessionAuthResultMsg(SessionAuthResultMsg msg) {
+        if (msg.getSessionInitMsg() != authenticatingSessionInitMsg) {
+            if (log.isDebugEnabled()) {
+                log.debug("[{}] Ignoring {} of the cancelled authentication, sessionId - {}.",
+                        state.getClientId(), msg.getMsgType(), msg.getSessionInitMsg().getClientSessionCtx().getSessionId());
+            }
+            return;
+        }
+        setPendingAuth(msg.getSessionInitMsg(), actorProcessor.onAuthResult(state, msg, getActorRef()));
+    }
+
+    private void setPendingAuth(SessionInitMsg sessionInitMsg, ListenableFuture<AuthResponse> pendingAuth) {
+        this.pendingAuth = pendingAuth;
+        this.authenticatingSessionInitMsg = pendingAuth != null ? sessionInitMsg : null;
+        if (pendingAuth != null) {
+            // the stop requested for the previous session must not interrupt the new one, it is requested again if the auth fails
+            state.clearStopActorCommandId();
+        }
+    }
+
+    /**
+     * Called when the session being authenticated is disconnected or the actor is stopped, the auth result is not waited for.
+     */
+    private void cancelPendingAuth() {
+        ClientSessionCtx sessionCtx = authenticatingSessionInitMsg.getClientSessionCtx();
+        if (log.isDebugEnabled()) {
+            log.debug("[{}][{}] Cancelling pending authentication.", state.getClientId(), sessionCtx.getSessionId());
+        }
+        pendingAuth.cancel(false);
+        sessionCtx.closeChannel();
+        setPendingAuth(null, null);
+    }
+
+    /**
+     * Processes the deferred messages right away, so they keep their order relative to the messages still in the mailbox.
+     * Stops if one of them starts another asynchronous authentication.
+     */
+    private void processDeferredMsgs() {
+        while (pendingAuth == null && !deferredMsgs.isEmpty()) {
+            TbActorMsg msg = deferredMsgs.poll();
+            try {
+                if (!doProcess(msg)) {
+                    log.warn("[{}] Unprocessed deferred message: {}!", state.getClientId(), msg);
+                }
+            } catch (Exception e) {
+                log.warn("[{}] Failed to process deferred message {}.", state.getClientId(), msg.getMsgType(), e);
+            }
         }
     }
 
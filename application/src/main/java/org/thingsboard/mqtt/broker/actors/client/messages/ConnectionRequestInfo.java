@@ -15,17 +15,27 @@
  */
 package org.thingsboard.mqtt.broker.actors.client.messages;
 
+import com.google.common.util.concurrent.SettableFuture;
+import lombok.AllArgsConstructor;
 import lombok.Getter;
-import lombok.RequiredArgsConstructor;
+import org.thingsboard.mqtt.broker.service.mqtt.client.event.ConnectionResponse;
 
 import java.util.UUID;
 
 @Getter
-@RequiredArgsConstructor
+@AllArgsConstructor
 public class ConnectionRequestInfo {
 
     private final UUID requestId;
     private final long requestTime;
     private final String responseTopic;
+    /**
+     * Set for the requests made on this node through the local fast path, the response is completed in-process instead of sent to the response topic.
+     */
+    private final SettableFuture<ConnectionResponse> localResponseFuture;
+
+    public ConnectionRequestInfo(UUID requestId, long requestTime, String responseTopic) {
+        this(requestId, requestTime, responseTopic, null);
+    }
 
 }
@@ -0,0 +1,56 @@
+/**
+ * Copyright © 2016-2024 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.mqtt.broker.actors.client.messages;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.thingsboard.mqtt.broker.actors.TbActorId;
+import org.thingsboard.mqtt.broker.actors.msg.MsgType;
+import org.thingsboard.mqtt.broker.actors.msg.TbActorMsg;
+import org.thingsboard.mqtt.broker.service.auth.providers.AuthResponse;
+
+/**
+ * Result of the asynchronous authentication started by the {@link SessionInitMsg}, sent back to the client actor
+ * so the session initialization is finished, or continued with the next auth provider, on the actor
+ * without blocking its dispatcher thread while the password is checked.
+ */
+@Slf4j
+@Getter
+@RequiredArgsConstructor
+public class SessionAuthResultMsg extends AbstractTimedMsg implements TbActorMsg {
+
+    public static final int NO_NEXT_PROVIDER = -1;
+
+    private final SessionInitMsg sessionInitMsg;
+    /**
+     * Index of the auth provider to try if the response is unsuccessful, {@link #NO_NEXT_PROVIDER} if the provider failed.
+     */
+    private final int nextProviderIdx;
+    private final AuthResponse authResponse;
+
+    @Override
+    public MsgType getMsgType() {
+        return MsgType.SESSION_AUTH_RESULT_MSG;
+    }
+
+    @Override
+    public void onTbActorStopped(TbActorId actorId) {
+        log.warn("[{}] Actor was stopped before processing {}, sessionId - {}.", actorId, getMsgType(),
+                sessionInitMsg.getClientSessionCtx().getSessionId());
+        sessionInitMsg.getClientSessionCtx().closeChannel();
+    }
+}
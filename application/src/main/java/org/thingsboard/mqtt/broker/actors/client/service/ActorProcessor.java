@@ -15,13 +15,28 @@
  */
 package org.thingsboard.mqtt.broker.actors.client.service;
 
+import com.google.common.util.concurrent.ListenableFuture;
+import org.thingsboard.mqtt.broker.actors.TbActorRef;
+import org.thingsboard.mqtt.broker.actors.client.messages.SessionAuthResultMsg;
 import org.thingsboard.mqtt.broker.actors.client.messages.SessionInitMsg;
 import org.thingsboard.mqtt.broker.actors.client.messages.mqtt.MqttDisconnectMsg;
 import org.thingsboard.mqtt.broker.actors.client.state.ClientActorState;
+import org.thingsboard.mqtt.broker.service.auth.providers.AuthResponse;
 
 public interface ActorProcessor {
 
-    void onInit(ClientActorState state, SessionInitMsg sessionInitMsg);
+    /**
+     * @return the pending authentication of the session, its result comes to the actor as {@link SessionAuthResultMsg}
+     * and the actor must not process other messages until then; null if the session initialization is finished.
+     */
+    ListenableFuture<AuthResponse> onInit(ClientActorState state, SessionInitMsg sessionInitMsg, TbActorRef actorRef);
+
+    /**
+     * Finishes the session initialization or tries the next auth provider if the response is unsuccessful.
+     *
+     * @return the pending authentication of the session, null if the session initialization is finished.
+     */
+    ListenableFuture<AuthResponse> onAuthResult(ClientActorState state, SessionAuthResultMsg sessionAuthResultMsg, TbActorRef actorRef);
 
     void onDisconnect(ClientActorState state, MqttDisconnectMsg disconnectMsg);
 }
@@ -15,18 +15,22 @@
  */
 package org.thingsboard.mqtt.broker.actors.client.service;
 
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
 import io.netty.handler.codec.mqtt.MqttConnAckMessage;
 import io.netty.handler.codec.mqtt.MqttConnectReturnCode;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 import org.springframework.util.CollectionUtils;
+import org.thingsboard.mqtt.broker.actors.TbActorRef;
+import org.thingsboard.mqtt.broker.actors.client.messages.SessionAuthResultMsg;
 import org.thingsboard.mqtt.broker.actors.client.messages.SessionInitMsg;
 import org.thingsboard.mqtt.broker.actors.client.messages.mqtt.MqttDisconnectMsg;
 import org.thingsboard.mqtt.broker.actors.client.service.disconnect.DisconnectService;
 import org.thingsboard.mqtt.broker.actors.client.state.ClientActorState;
 import org.thingsboard.mqtt.broker.actors.client.state.SessionState;
-import org.thingsboard.mqtt.broker.exception.AuthenticationException;
 import org.thingsboard.mqtt.broker.service.auth.AuthenticationService;
 import org.thingsboard.mqtt.broker.service.auth.providers.AuthContext;
 import org.thingsboard.mqtt.broker.service.auth.providers.AuthResponse;
@@ -40,6 +44,7 @@ import org.thingsboard.mqtt.broker.util.MqttReasonCodeResolver;
 import java.util.List;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ExecutionException;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
@@ -56,7 +61,7 @@ public class ActorProcessorImpl implements ActorProcessor {
     private final MqttMessageGenerator mqttMessageGenerator;
 
     @Override
-    public void onInit(ClientActorState state, SessionInitMsg sessionInitMsg) {
+    public ListenableFuture<AuthResponse> onInit(ClientActorState state, SessionInitMsg sessionInitMsg, TbActorRef actorRef) {
         if (log.isTraceEnabled()) {
             log.trace("[{}] Processing SESSION_INIT_MSG onInit {}", state.getClientId(), sessionInitMsg);
         }
@@ -64,12 +69,61 @@ public class ActorProcessorImpl implements ActorProcessor {
 
         if (sessionCtx.getSessionId().equals(state.getCurrentSessionId())) {
             tryDisconnectSameSession(state, sessionCtx);
-            return;
+            return null;
         }
 
+        return authenticate(state, sessionInitMsg, 0, actorRef);
+    }
+
+    @Override
+    public ListenableFuture<AuthResponse> onAuthResult(ClientActorState state, SessionAuthResultMsg sessionAuthResultMsg, TbActorRef actorRef) {
+        if (log.isTraceEnabled()) {
+            log.trace("[{}] Processing SESSION_AUTH_RESULT_MSG onAuthResult {}", state.getClientId(), sessionAuthResultMsg.getSessionInitMsg());
+        }
+        AuthResponse authResponse = sessionAuthResultMsg.getAuthResponse();
+        if (authResponse.isSuccess() || sessionAuthResultMsg.getNextProviderIdx() == SessionAuthResultMsg.NO_NEXT_PROVIDER) {
+            finishSessionInit(state, sessionAuthResultMsg.getSessionInitMsg(), authResponse);
+            return null;
+        }
+        return authenticate(state, sessionAuthResultMsg.getSessionInitMsg(), sessionAuthResultMsg.getNextProviderIdx(), actorRef);
+    }
+
+    /**
+     * Tries the auth provider at the given index of the chain. A result completed right away is handled in place,
+     * otherwise it is sent to the actor, so the next provider is never called from the thread of the previous one.
+     */
+    private ListenableFuture<AuthResponse> authenticate(ClientActorState state, SessionInitMsg sessionInitMsg, int providerIdx, TbActorRef actorRef) {
         AuthContext authContext = buildAuthContext(state, sessionInitMsg);
-        AuthResponse authResponse = authenticateClient(authContext);
+        ListenableFuture<AuthResponse> authResponseFuture = authenticateClient(authContext, providerIdx);
+        if (authResponseFuture == null) {
+            finishSessionInit(state, sessionInitMsg, AuthResponse.builder().success(false).build());
+            return null;
+        }
+        if (authResponseFuture.isDone()) {
+            return onAuthResult(state, toSessionAuthResultMsg(authContext, sessionInitMsg, providerIdx, authResponseFuture), actorRef);
+        }
+        authResponseFuture.addListener(() -> {
+            if (!authResponseFuture.isCancelled()) {
+                actorRef.tellWithHighPriority(toSessionAuthResultMsg(authContext, sessionInitMsg, providerIdx, authResponseFuture));
+            }
+        }, MoreExecutors.directExecutor());
+        return authResponseFuture;
+    }
 
+    private SessionAuthResultMsg toSessionAuthResultMsg(AuthContext authContext, SessionInitMsg sessionInitMsg, int providerIdx,
+                                                        ListenableFuture<AuthResponse> authResponseFuture) {
+        try {
+            return new SessionAuthResultMsg(sessionInitMsg, providerIdx + 1, Futures.getDone(authResponseFuture));
+        } catch (ExecutionException e) {
+            if (log.isDebugEnabled()) {
+                log.debug("[{}] Authentication failed.", authContext.getClientId(), e.getCause());
+            }
+            return new SessionAuthResultMsg(sessionInitMsg, SessionAuthResultMsg.NO_NEXT_PROVIDER, AuthResponse.builder().success(false).build());
+        }
+    }
+
+    private void finishSessionInit(ClientActorState state, SessionInitMsg sessionInitMsg, AuthResponse authResponse) {
+        ClientSessionCtx sessionCtx = sessionInitMsg.getClientSessionCtx();
         if (!authResponse.isSuccess()) {
             log.warn("[{}] Connection is not established due to: {}", state.getClientId(), CONNECTION_REFUSED_NOT_AUTHORIZED);
             sendConnectionRefusedMsgAndCloseChannel(sessionCtx);
@@ -172,15 +226,15 @@ public class ActorProcessorImpl implements ActorProcessor {
         disconnectService.disconnect(state, disconnectMsg);
     }
 
-    private AuthResponse authenticateClient(AuthContext authContext) {
+    /**
+     * @return null if the chain has no more providers.
+     */
+    private ListenableFuture<AuthResponse> authenticateClient(AuthContext authContext, int providerIdx) {
         try {
             // TODO: make it with Plugin architecture (to be able to use LDAP, OAuth etc.)
-            return authenticationService.authenticate(authContext);
-        } catch (AuthenticationException e) {
-            if (log.isDebugEnabled()) {
-                log.debug("[{}] Authentication failed.", authContext.getClientId(), e);
-            }
-            return AuthResponse.builder().success(false).build();
+            return authenticationService.authenticateAsync(authContext, providerIdx);
+        } catch (Exception e) {
+            return Futures.immediateFailedFuture(e);
         }
     }
 
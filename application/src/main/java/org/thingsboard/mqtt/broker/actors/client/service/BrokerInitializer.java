@@ -18,6 +18,7 @@ package org.thingsboard.mqtt.broker.actors.client.service;
 import com.google.common.collect.Maps;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.context.event.ApplicationReadyEvent;
 import org.springframework.context.event.EventListener;
 import org.springframework.core.annotation.Order;
@@ -35,6 +36,7 @@ import org.thingsboard.mqtt.broker.cluster.ServiceInfoProvider;
 import org.thingsboard.mqtt.broker.common.data.ClientSessionInfo;
 import org.thingsboard.mqtt.broker.common.data.id.ActorType;
 import org.thingsboard.mqtt.broker.common.data.subscription.TopicSubscription;
+import org.thingsboard.mqtt.broker.common.util.ThingsBoardExecutors;
 import org.thingsboard.mqtt.broker.exception.QueuePersistenceException;
 import org.thingsboard.mqtt.broker.service.limits.RateLimitCacheService;
 import org.thingsboard.mqtt.broker.service.mqtt.client.disconnect.DisconnectClientCommandConsumer;
@@ -48,11 +50,18 @@ import org.thingsboard.mqtt.broker.service.mqtt.retain.RetainedMsgListenerServic
 import org.thingsboard.mqtt.broker.service.processing.PublishMsgConsumerService;
 import org.thingsboard.mqtt.broker.service.processing.downlink.basic.BasicDownLinkConsumer;
 import org.thingsboard.mqtt.broker.service.processing.downlink.persistent.PersistentDownLinkConsumer;
+import org.thingsboard.mqtt.broker.service.snapshot.StateSnapshot;
+import org.thingsboard.mqtt.broker.service.snapshot.StateSnapshotService;
 import org.thingsboard.mqtt.broker.service.subscription.ClientSubscriptionConsumer;
 
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
 
 @Slf4j
 @Component
@@ -81,31 +90,84 @@ public class BrokerInitializer {
     private final BasicDownLinkConsumer basicDownLinkConsumer;
     private final PersistentDownLinkConsumer persistentDownLinkConsumer;
 
+    private final StateSnapshotService stateSnapshotService;
+
+    @Value("${queue.init-load.parallel:false}")
+    private boolean parallelInitLoad;
+
     @EventListener(ApplicationReadyEvent.class)
     @Order(value = 1)
     public void onApplicationEvent(ApplicationReadyEvent event) {
         log.info("Initializing Client Sessions and Subscriptions.");
         try {
-            Map<String, ClientSessionInfo> allClientSessions = initClientSessions();
-            initClientSubscriptions(allClientSessions);
+            stateSnapshotService.loadSnapshots();
 
-            clientSessionService.startListening(clientSessionConsumer);
-            startSubscriptionListening();
+            if (parallelInitLoad) {
+                initInParallel();
+            } else {
+                Map<String, ClientSessionInfo> allClientSessions = initClientSessions();
+                initClientSubscriptions(allClientSessions, loadClientSubscriptions());
 
-            initRetainedMessages();
-            retainedMsgListenerService.startListening(retainedMsgConsumer);
+                clientSessionService.startListening(clientSessionConsumer);
+                startSubscriptionListening();
+
+                initRetainedMessages(loadRetainedMessages());
+                retainedMsgListenerService.startListening(retainedMsgConsumer);
+            }
 
             log.info("Starting Queue consumers that depend on Client Sessions or Subscriptions.");
             startConsuming();
+
+            stateSnapshotService.startSnapshotting();
         } catch (Exception e) {
             log.error("Failed to initialize broker", e);
             throw new RuntimeException(e);
         }
     }
 
+    private void initInParallel() {
+        ExecutorService loadExecutor = ThingsBoardExecutors.initExecutorService(3, "broker-init-load");
+        try {
+            CompletableFuture<Map<String, ClientSessionInfo>> clientSessionsFuture = loadAsync(this::loadClientSessions, loadExecutor);
+            CompletableFuture<Map<String, Set<TopicSubscription>>> clientSubscriptionsFuture = loadAsync(this::loadClientSubscriptions, loadExecutor);
+            CompletableFuture<Map<String, RetainedMsg>> retainedMessagesFuture = loadAsync(this::loadRetainedMessages, loadExecutor);
+
+            Map<String, ClientSessionInfo> allClientSessions = initClientSessions(clientSessionsFuture.join());
+            initClientSubscriptions(allClientSessions, clientSubscriptionsFuture.join());
+
+            clientSessionService.startListening(clientSessionConsumer);
+            startSubscriptionListening();
+
+            initRetainedMessages(retainedMessagesFuture.join());
+            retainedMsgListenerService.startListening(retainedMsgConsumer);
+        } finally {
+            loadExecutor.shutdownNow();
+        }
+    }
+
+    private <V> CompletableFuture<V> loadAsync(Callable<V> loader, Executor executor) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return loader.call();
+            } catch (Exception e) {
+                throw new CompletionException(e);
+            }
+        }, executor);
+    }
+
     Map<String, ClientSessionInfo> initClientSessions() throws QueuePersistenceException {
-        Map<String, ClientSessionInfo> allClientSessions = clientSessionConsumer.initLoad();
+        return initClientSessions(loadClientSessions());
+    }
+
+    private Map<String, ClientSessionInfo> loadClientSessions() throws QueuePersistenceException {
+        StateSnapshot<ClientSessionInfo> snapshot = stateSnapshotService.getClientSessionsSnapshot();
+        Map<String, ClientSessionInfo> allClientSessions = snapshot != null ?
+                clientSessionConsumer.initLoad(snapshot) : clientSessionConsumer.initLoad();
         log.info("Loaded {} stored client sessions from Kafka.", allClientSessions.size());
+        return allClientSessions;
+    }
+
+    private Map<String, ClientSessionInfo> initClientSessions(Map<String, ClientSessionInfo> allClientSessions) {
         rateLimitCacheService.initSessionCount(allClientSessions.size());
 
         Map<String, ClientSessionInfo> currentNodeSessions = filterAndDisconnectCurrentNodeSessions(allClientSessions);
@@ -138,9 +200,15 @@ public class BrokerInitializer {
         return currentNodeSessions;
     }
 
-    private void initRetainedMessages() throws QueuePersistenceException {
-        Map<String, RetainedMsg> allRetainedMessages = retainedMsgConsumer.initLoad();
+    private Map<String, RetainedMsg> loadRetainedMessages() throws QueuePersistenceException {
+        StateSnapshot<RetainedMsg> snapshot = stateSnapshotService.getRetainedMsgSnapshot();
+        Map<String, RetainedMsg> allRetainedMessages = snapshot != null ?
+                retainedMsgConsumer.initLoad(snapshot) : retainedMsgConsumer.initLoad();
         log.info("Loaded {} stored retained messages from Kafka.", allRetainedMessages.size());
+        return allRetainedMessages;
+    }
+
+    private void initRetainedMessages(Map<String, RetainedMsg> allRetainedMessages) {
         retainedMsgListenerService.init(allRetainedMessages);
     }
 
@@ -153,10 +221,16 @@ public class BrokerInitializer {
         persistentDownLinkConsumer.startConsuming();
     }
 
-    private void initClientSubscriptions(Map<String, ClientSessionInfo> allClientSessions) throws QueuePersistenceException {
-        Map<String, Set<TopicSubscription>> allClientSubscriptions = clientSubscriptionConsumer.initLoad();
+    private Map<String, Set<TopicSubscription>> loadClientSubscriptions() throws QueuePersistenceException {
+        StateSnapshot<Set<TopicSubscription>> snapshot = stateSnapshotService.getClientSubscriptionsSnapshot();
+        Map<String, Set<TopicSubscription>> allClientSubscriptions = snapshot != null ?
+                clientSubscriptionConsumer.initLoad(snapshot) : clientSubscriptionConsumer.initLoad();
         log.info("Loaded {} stored client subscriptions from Kafka.", allClientSubscriptions.size());
+        return allClientSubscriptions;
+    }
 
+    private void initClientSubscriptions(Map<String, ClientSessionInfo> allClientSessions,
+                                         Map<String, Set<TopicSubscription>> allClientSubscriptions) {
         removeSubscriptionIfSessionIsAbsent(allClientSessions, allClientSubscriptions);
 
         log.info("Initializing SubscriptionManager with {} client subscriptions.", allClientSubscriptions.size());
@@ -26,7 +26,6 @@ import org.thingsboard.mqtt.broker.actors.client.messages.mqtt.MqttDisconnectMsg
 import org.thingsboard.mqtt.broker.actors.client.state.ClientActorStateInfo;
 import org.thingsboard.mqtt.broker.common.data.ClientInfo;
 import org.thingsboard.mqtt.broker.common.util.BrokerConstants;
-import org.thingsboard.mqtt.broker.service.auth.AuthorizationRuleService;
 import org.thingsboard.mqtt.broker.service.limits.RateLimitCacheService;
 import org.thingsboard.mqtt.broker.service.limits.RateLimitService;
 import org.thingsboard.mqtt.broker.service.mqtt.MqttMessageGenerator;
@@ -56,7 +55,6 @@ public class DisconnectServiceImpl implements DisconnectService {
     private final ClientSessionEventService clientSessionEventService;
     private final RateLimitService rateLimitService;
     private final MqttMessageGenerator mqttMessageGenerator;
-    private final AuthorizationRuleService authorizationRuleService;
     private final FlowControlService flowControlService;
     private final RateLimitCacheService rateLimitCacheService;
 
@@ -93,7 +91,6 @@ public class DisconnectServiceImpl implements DisconnectService {
 
         notifyClientDisconnected(actorState, sessionExpiryInterval);
         rateLimitService.remove(sessionCtx.getClientId());
-        authorizationRuleService.evict(sessionCtx.getClientId());
         flowControlService.removeFromMap(sessionCtx.getClientId());
         closeChannel(sessionCtx);
 
@@ -30,6 +30,7 @@ import org.thingsboard.mqtt.broker.queue.constants.QueueConstants;
 import org.thingsboard.mqtt.broker.service.mqtt.client.session.ClientSessionConsumer;
 import org.thingsboard.mqtt.broker.service.mqtt.client.session.ClientSessionPersistenceService;
 import org.thingsboard.mqtt.broker.service.stats.StatsManager;
+import org.thingsboard.mqtt.broker.service.subscription.shared.SharedSubscriptionGroupRegistry;
 import org.thingsboard.mqtt.broker.util.ClientSessionInfoFactory;
 
 import java.util.HashMap;
@@ -49,6 +50,7 @@ public class ClientSessionServiceImpl implements ClientSessionService {
     private final ClientSessionPersistenceService clientSessionPersistenceService;
     private final ServiceInfoProvider serviceInfoProvider;
     private final StatsManager statsManager;
+    private final SharedSubscriptionGroupRegistry sharedSubscriptionGroupRegistry;
 
     private ConcurrentMap<String, ClientSessionInfo> clientSessionMap;
 
@@ -76,6 +78,7 @@ public class ClientSessionServiceImpl implements ClientSessionService {
 
         ClientSessionInfo clientSessionInfo = ClientSessionInfoFactory.clientSessionToClientSessionInfo(clientSession);
         clientSessionMap.put(clientId, clientSessionInfo);
+        sharedSubscriptionGroupRegistry.onClientSessionChanged(clientId, clientSessionInfo);
 
         QueueProtos.ClientSessionInfoProto clientSessionInfoProto = ProtoConverter.convertToClientSessionInfoProto(clientSessionInfo);
         clientSessionPersistenceService.persistClientSessionInfoAsync(clientId, clientSessionInfoProto, callback);
@@ -94,6 +97,7 @@ public class ClientSessionServiceImpl implements ClientSessionService {
         if (removedClientSessionInfo == null) {
             log.warn("[{}] No client session found while clearing session.", clientId);
         }
+        sharedSubscriptionGroupRegistry.onClientSessionChanged(clientId, null);
         clientSessionPersistenceService.persistClientSessionInfoAsync(clientId, QueueConstants.EMPTY_CLIENT_SESSION_INFO_PROTO, callback);
     }
 
@@ -142,11 +146,13 @@ public class ClientSessionServiceImpl implements ClientSessionService {
                 log.trace("[{}][{}] Clearing remote ClientSession.", serviceId, clientId);
             }
             clientSessionMap.remove(clientId);
+            sharedSubscriptionGroupRegistry.onClientSessionChanged(clientId, null);
         } else {
             if (log.isTraceEnabled()) {
                 log.trace("[{}][{}] Saving remote ClientSession.", serviceId, clientId);
             }
             clientSessionMap.put(clientId, clientSessionInfo);
+            sharedSubscriptionGroupRegistry.onClientSessionChanged(clientId, clientSessionInfo);
         }
     }
 
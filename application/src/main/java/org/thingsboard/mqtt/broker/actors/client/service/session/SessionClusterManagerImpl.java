@@ -47,6 +47,7 @@ import org.thingsboard.mqtt.broker.queue.provider.ClientSessionEventQueueFactory
 import org.thingsboard.mqtt.broker.service.limits.RateLimitCacheService;
 import org.thingsboard.mqtt.broker.service.mqtt.client.disconnect.DisconnectClientCommandService;
 import org.thingsboard.mqtt.broker.service.mqtt.client.event.ClientSessionEventType;
+import org.thingsboard.mqtt.broker.service.mqtt.client.event.ConnectionResponse;
 import org.thingsboard.mqtt.broker.service.mqtt.persistence.MsgPersistenceManager;
 import org.thingsboard.mqtt.broker.service.mqtt.persistence.application.topic.ApplicationRemovedEventService;
 import org.thingsboard.mqtt.broker.service.mqtt.persistence.application.topic.ApplicationTopicService;
@@ -312,6 +313,10 @@ public class SessionClusterManagerImpl implements SessionClusterManager {
     }
 
     private void sendEventResponse(String clientId, ConnectionRequestInfo connectionRequestInfo, boolean success, boolean sessionPresent) {
+        if (connectionRequestInfo.getLocalResponseFuture() != null) {
+            connectionRequestInfo.getLocalResponseFuture().set(new ConnectionResponse(success, sessionPresent));
+            return;
+        }
         QueueProtos.ClientSessionEventResponseProto response = getEventResponseProto(success, sessionPresent);
         TbQueueMsgHeaders headers = createResponseHeaders(connectionRequestInfo.getRequestId());
         eventResponseSenderExecutor.execute(
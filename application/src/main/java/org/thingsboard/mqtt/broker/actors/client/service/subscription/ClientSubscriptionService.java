@@ -44,4 +44,6 @@ public interface ClientSubscriptionService extends ClientSubscriptionCache {
     void clearSubscriptionsInternally(String clientId);
 
     int getClientSubscriptionsCount();
+
+    Map<String, Set<TopicSubscription>> getAllClientSubscriptions();
 }
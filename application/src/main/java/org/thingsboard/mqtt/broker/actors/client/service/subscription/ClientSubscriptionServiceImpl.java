@@ -15,6 +15,7 @@
  */
 package org.thingsboard.mqtt.broker.actors.client.service.subscription;
 
+import com.google.common.collect.Maps;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
@@ -30,6 +31,7 @@ import org.thingsboard.mqtt.broker.service.subscription.shared.TopicSharedSubscr
 
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
@@ -52,6 +54,7 @@ public class ClientSubscriptionServiceImpl implements ClientSubscriptionService
     private final SharedSubscriptionCacheService sharedSubscriptionCacheService;
     private final StatsManager statsManager;
 
+    // the sets are never modified, every change puts the new set, so they can be read by other threads (e.g. for the state snapshot)
     private ConcurrentMap<String, Set<TopicSubscription>> clientSubscriptionsMap;
 
     // TODO: sync subscriptions (and probably ClientSession)
@@ -60,15 +63,17 @@ public class ClientSubscriptionServiceImpl implements ClientSubscriptionService
 
     @Override
     public void init(Map<String, Set<TopicSubscription>> clientTopicSubscriptions) {
-        this.clientSubscriptionsMap = new ConcurrentHashMap<>(clientTopicSubscriptions);
+        this.clientSubscriptionsMap = new ConcurrentHashMap<>();
+        clientTopicSubscriptions.forEach((clientId, topicSubscriptions) ->
+                clientSubscriptionsMap.put(clientId, Collections.unmodifiableSet(new HashSet<>(topicSubscriptions))));
         statsManager.registerClientSubscriptionsStats(clientSubscriptionsMap);
 
         log.info("Restoring persisted subscriptions for {} clients.", clientSubscriptionsMap.size());
+        subscriptionService.subscribeAll(clientSubscriptionsMap);
         clientSubscriptionsMap.forEach((clientId, topicSubscriptions) -> {
             if (log.isTraceEnabled()) {
                 log.trace("[{}] Restoring subscriptions - {}.", clientId, topicSubscriptions);
             }
-            subscriptionService.subscribe(clientId, topicSubscriptions);
             sharedSubscriptionCacheService.put(clientId, topicSubscriptions);
         });
     }
@@ -108,10 +113,10 @@ public class ClientSubscriptionServiceImpl implements ClientSubscriptionService
 
         sharedSubscriptionCacheService.put(clientId, topicSubscriptions);
 
-        Set<TopicSubscription> clientSubscriptions = clientSubscriptionsMap.computeIfAbsent(clientId, s -> new HashSet<>());
+        Set<TopicSubscription> clientSubscriptions = new HashSet<>(clientSubscriptionsMap.getOrDefault(clientId, Collections.emptySet()));
         clientSubscriptions.removeIf(topicSubscriptions::contains);
         clientSubscriptions.addAll(topicSubscriptions);
-        return clientSubscriptions;
+        return putClientSubscriptions(clientId, clientSubscriptions);
     }
 
     @Override
@@ -148,7 +153,7 @@ public class ClientSubscriptionServiceImpl implements ClientSubscriptionService
         List<String> topics = extractTopicFilterFromSharedTopic(topicFilters);
         subscriptionService.unsubscribe(clientId, topics);
 
-        Set<TopicSubscription> clientSubscriptions = clientSubscriptionsMap.computeIfAbsent(clientId, s -> new HashSet<>());
+        Set<TopicSubscription> clientSubscriptions = new HashSet<>(clientSubscriptionsMap.getOrDefault(clientId, Collections.emptySet()));
         clientSubscriptions.removeIf(topicSubscription -> {
             boolean unsubscribe = topics.contains(topicSubscription.getTopicFilter());
             if (unsubscribe) {
@@ -156,7 +161,13 @@ public class ClientSubscriptionServiceImpl implements ClientSubscriptionService
             }
             return unsubscribe;
         });
-        return clientSubscriptions;
+        return putClientSubscriptions(clientId, clientSubscriptions);
+    }
+
+    private Set<TopicSubscription> putClientSubscriptions(String clientId, Set<TopicSubscription> clientSubscriptions) {
+        Set<TopicSubscription> unmodifiableClientSubscriptions = Collections.unmodifiableSet(clientSubscriptions);
+        clientSubscriptionsMap.put(clientId, unmodifiableClientSubscriptions);
+        return unmodifiableClientSubscriptions;
     }
 
     private List<String> extractTopicFilterFromSharedTopic(Collection<String> topicFilters) {
@@ -187,6 +198,20 @@ public class ClientSubscriptionServiceImpl implements ClientSubscriptionService
         return clientSubscriptionsMap == null ? 0 : clientSubscriptionsMap.values().stream().mapToInt(Set::size).sum();
     }
 
+    @Override
+    public Map<String, Set<TopicSubscription>> getAllClientSubscriptions() {
+        if (clientSubscriptionsMap == null) {
+            return new HashMap<>();
+        }
+        Map<String, Set<TopicSubscription>> allClientSubscriptions = Maps.newHashMapWithExpectedSize(clientSubscriptionsMap.size());
+        clientSubscriptionsMap.forEach((clientId, topicSubscriptions) -> {
+            if (!topicSubscriptions.isEmpty()) {
+                allClientSubscriptions.put(clientId, topicSubscriptions);
+            }
+        });
+        return allClientSubscriptions;
+    }
+
     private void clearSubscriptions(String clientId) {
         Set<TopicSubscription> clientSubscriptions = clientSubscriptionsMap.remove(clientId);
         if (clientSubscriptions == null) {
@@ -22,6 +22,7 @@ import org.thingsboard.mqtt.broker.service.subscription.ValueWithTopicFilter;
 
 import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 /**
  * not thread-safe for operations with the same 'clientId'
@@ -30,6 +31,11 @@ public interface SubscriptionService {
 
     void subscribe(String clientId, Collection<TopicSubscription> topicSubscriptions);
 
+    /**
+     * Adds the subscriptions of many clients to the trie in one bulk insert, used to restore the persisted subscriptions.
+     */
+    void subscribeAll(Map<String, ? extends Collection<TopicSubscription>> clientTopicSubscriptions);
+
     void unsubscribe(String clientId, Collection<String> topicFilters);
 
     List<ValueWithTopicFilter<ClientSubscription>> getSubscriptions(String topic);
@@ -23,11 +23,15 @@ import org.thingsboard.mqtt.broker.exception.SubscriptionTrieClearException;
 import org.thingsboard.mqtt.broker.service.stats.StatsManager;
 import org.thingsboard.mqtt.broker.service.stats.timer.SubscriptionTimerStats;
 import org.thingsboard.mqtt.broker.service.subscription.ClientSubscription;
+import org.thingsboard.mqtt.broker.service.subscription.SubscriptionMatchCache;
 import org.thingsboard.mqtt.broker.service.subscription.SubscriptionTrie;
 import org.thingsboard.mqtt.broker.service.subscription.ValueWithTopicFilter;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.TimeUnit;
 
 @Slf4j
@@ -35,10 +39,14 @@ import java.util.concurrent.TimeUnit;
 public class SubscriptionServiceImpl implements SubscriptionService {
 
     private final SubscriptionTrie<ClientSubscription> subscriptionTrie;
+    private final SubscriptionMatchCache subscriptionMatchCache;
     private final SubscriptionTimerStats subscriptionTimerStats;
 
-    public SubscriptionServiceImpl(SubscriptionTrie<ClientSubscription> subscriptionTrie, StatsManager statsManager) {
+    public SubscriptionServiceImpl(SubscriptionTrie<ClientSubscription> subscriptionTrie,
+                                   SubscriptionMatchCache subscriptionMatchCache,
+                                   StatsManager statsManager) {
         this.subscriptionTrie = subscriptionTrie;
+        this.subscriptionMatchCache = subscriptionMatchCache;
         this.subscriptionTimerStats = statsManager.getSubscriptionTimerStats();
     }
 
@@ -56,9 +64,30 @@ public class SubscriptionServiceImpl implements SubscriptionService {
                             topicSubscription.getShareName(),
                             topicSubscription.getOptions())
             );
+            subscriptionMatchCache.onTopicFilterChanged(topicSubscription.getTopicFilter());
         }
     }
 
+    @Override
+    public void subscribeAll(Map<String, ? extends Collection<TopicSubscription>> clientTopicSubscriptions) {
+        if (log.isTraceEnabled()) {
+            log.trace("Executing subscribeAll for {} clients", clientTopicSubscriptions.size());
+        }
+        Map<String, List<ClientSubscription>> subscriptionsByTopicFilter = new HashMap<>();
+        clientTopicSubscriptions.forEach((clientId, topicSubscriptions) -> {
+            for (TopicSubscription topicSubscription : topicSubscriptions) {
+                subscriptionsByTopicFilter.computeIfAbsent(topicSubscription.getTopicFilter(), topicFilter -> new ArrayList<>())
+                        .add(new ClientSubscription(
+                                clientId,
+                                topicSubscription.getQos(),
+                                topicSubscription.getShareName(),
+                                topicSubscription.getOptions()));
+            }
+        });
+        subscriptionTrie.putAll(subscriptionsByTopicFilter);
+        subscriptionsByTopicFilter.keySet().forEach(subscriptionMatchCache::onTopicFilterChanged);
+    }
+
     @Override
     public void unsubscribe(String clientId, Collection<String> topicFilters) {
         if (log.isTraceEnabled()) {
@@ -66,7 +95,9 @@ public class SubscriptionServiceImpl implements SubscriptionService {
         }
         for (String topicFilter : topicFilters) {
             boolean successfullyDeleted = subscriptionTrie.delete(topicFilter, val -> clientId.equals(val.getClientId()));
-            if (!successfullyDeleted) {
+            if (successfullyDeleted) {
+                subscriptionMatchCache.onTopicFilterChanged(topicFilter);
+            } else {
                 if (log.isDebugEnabled()) {
                     log.debug("[{}] Client wasn't subscribed to the topic filter {}", clientId, topicFilter);
                 }
@@ -77,11 +108,26 @@ public class SubscriptionServiceImpl implements SubscriptionService {
     @Override
     public List<ValueWithTopicFilter<ClientSubscription>> getSubscriptions(String topic) {
         long startTime = System.nanoTime();
-        List<ValueWithTopicFilter<ClientSubscription>> subscriptions = subscriptionTrie.get(topic);
+        List<ValueWithTopicFilter<ClientSubscription>> subscriptions;
+        if (subscriptionMatchCache.isEnabled()) {
+            subscriptions = subscriptionMatchCache.get(topic);
+            if (subscriptions == null) {
+                long stamp = subscriptionMatchCache.getStamp(topic);
+                subscriptions = subscriptionMatchCache.put(topic, stamp, matchSubscriptions(topic));
+            }
+        } else {
+            subscriptions = matchSubscriptions(topic);
+        }
         subscriptionTimerStats.logSubscriptionsLookup(startTime, TimeUnit.NANOSECONDS);
         return subscriptions;
     }
 
+    private List<ValueWithTopicFilter<ClientSubscription>> matchSubscriptions(String topic) {
+        List<ValueWithTopicFilter<ClientSubscription>> subscriptions = new ArrayList<>();
+        subscriptionTrie.getEntries(topic, subscriptions::add);
+        return subscriptions;
+    }
+
     @Override
     public void clearEmptyTopicNodes() throws SubscriptionTrieClearException {
         if (log.isTraceEnabled()) {
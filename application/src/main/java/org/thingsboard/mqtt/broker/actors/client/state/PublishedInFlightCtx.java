@@ -23,5 +23,25 @@ public interface PublishedInFlightCtx {
 
     void ackInFlightMsg(int msgId);
 
+    /**
+     * Sends as many delayed messages as the free in-flight slots allow and flushes the channel once.
+     *
+     * @return true if at least one delayed message was sent
+     */
     boolean processMsg(long ttlMs);
+
+    /**
+     * @return number of messages that were sent but not acknowledged yet and messages waiting in the delayed queue
+     */
+    int getInFlightMsgCount();
+
+    /**
+     * @return number of messages waiting in the delayed queue
+     */
+    int getDelayedMsgCount();
+
+    /**
+     * @return "Receive Maximum" of the client, the max number of QoS 1/2 messages sent to the client and not acknowledged yet
+     */
+    int getClientReceiveMax();
 }
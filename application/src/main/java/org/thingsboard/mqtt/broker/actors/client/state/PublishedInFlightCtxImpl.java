@@ -15,6 +15,7 @@
  */
 package org.thingsboard.mqtt.broker.actors.client.state;
 
+import io.netty.channel.ChannelHandlerContext;
 import io.netty.handler.codec.mqtt.MqttPublishMessage;
 import io.netty.handler.codec.mqtt.MqttQoS;
 import lombok.Data;
@@ -34,14 +35,12 @@ import java.util.concurrent.locks.ReentrantLock;
 @Data
 public class PublishedInFlightCtxImpl implements PublishedInFlightCtx {
 
-    private final Queue<Integer> publishedInFlightMsgQueue = new ConcurrentLinkedQueue<>();
-    private final Queue<Integer> receivedAckMsgInWrongOrderQueue = new ConcurrentLinkedQueue<>();
     private final Queue<MqttPubMsgWithCreatedTime> delayedMsgQueue = new ConcurrentLinkedQueue<>();
 
-    private final AtomicInteger publishedInFlightMsgCounter = new AtomicInteger(0);
     private final AtomicInteger delayedMsgCounter = new AtomicInteger(0);
 
     private final Lock lock = new ReentrantLock();
+    private final PublishedInFlightMsgWindow publishedInFlightMsgWindow;
 
     private final FlowControlService flowControlService;
     private final ClientSessionCtx clientSessionCtx;
@@ -59,6 +58,7 @@ public class PublishedInFlightCtxImpl implements PublishedInFlightCtx {
         this.clientId = clientSessionCtx.getClientId();
         this.clientReceiveMax = clientReceiveMax;
         this.delayedMsgQueueMaxSize = delayedMsgQueueMaxSize;
+        this.publishedInFlightMsgWindow = new PublishedInFlightMsgWindow(clientReceiveMax);
     }
 
     @Override
@@ -89,6 +89,9 @@ public class PublishedInFlightCtxImpl implements PublishedInFlightCtx {
                     }
                     addDelayedMsg(mqttPubMsg);
                 }
+                if (allowedToSendMsg()) {
+                    flowControlService.scheduleDelayedMsgProcessing(clientId);
+                }
                 return false;
             }
         } finally {
@@ -98,48 +101,31 @@ public class PublishedInFlightCtxImpl implements PublishedInFlightCtx {
 
     @Override
     public void ackInFlightMsg(int msgId) {
+        boolean inFlightMsgReleased;
         lock.lock();
         try {
-            Integer publishedInFlightHead = publishedInFlightMsgQueue.peek();
-            if (publishedInFlightHead != null) {
-                if (publishedInFlightHead == msgId) {
-                    removePublishedInFlightMsg();
-                    Integer wrongOrderHead = receivedAckMsgInWrongOrderQueue.peek();
-                    if (wrongOrderHead == null) {
-                        return;
-                    }
-
-                    while (true) {
-                        Integer publishedInFlightNextHead = publishedInFlightMsgQueue.peek();
-                        if (publishedInFlightNextHead == null) {
-                            if (log.isDebugEnabled()) {
-                                log.debug("[{}] No more in-flight messages waiting for ack! Clearing received ack queue", clientId);
-                            }
-                            receivedAckMsgInWrongOrderQueue.clear();
-                            break;
-                        } else {
-                            if (receivedAckMsgInWrongOrderQueue.contains(publishedInFlightNextHead)) {
-                                receivedAckMsgInWrongOrderQueue.remove(publishedInFlightNextHead);
-                                removePublishedInFlightMsg();
-                            } else {
-                                break;
-                            }
-                        }
-                    }
-                } else {
-                    if (log.isDebugEnabled()) {
-                        log.debug("[{}] Received ack [{}] in the wrong order. Head - [{}]", clientId, msgId, publishedInFlightHead);
-                    }
-                    receivedAckMsgInWrongOrderQueue.add(msgId);
-                }
-            } else {
-                if (log.isDebugEnabled()) {
-                    log.debug("[{}] In-flight msg queue is empty. Received ack [{}] for published msg that was sent outside of the current network connection", clientId, msgId);
-                }
-            }
+            inFlightMsgReleased = releaseInFlightMsg(msgId);
         } finally {
             lock.unlock();
         }
+        if (inFlightMsgReleased && delayedMsgQueueSize() > 0) {
+            flowControlService.scheduleDelayedMsgProcessing(clientId);
+        }
+    }
+
+    private boolean releaseInFlightMsg(int msgId) {
+        if (publishedInFlightMsgWindow.isEmpty()) {
+            if (log.isDebugEnabled()) {
+                log.debug("[{}] In-flight msg queue is empty. Received ack [{}] for published msg that was sent outside of the current network connection", clientId, msgId);
+            }
+            return false;
+        }
+        boolean released = publishedInFlightMsgWindow.ack(msgId);
+        if (!released && log.isDebugEnabled()) {
+            log.debug("[{}] Received ack [{}] in the wrong order. Acks waiting for the head - [{}]",
+                    clientId, msgId, publishedInFlightMsgWindow.getOutOfOrderAckCount());
+        }
+        return released;
     }
 
     @Override
@@ -153,14 +139,11 @@ public class PublishedInFlightCtxImpl implements PublishedInFlightCtx {
                 return false;
             }
 
-            while (true) {
+            ChannelHandlerContext channel = null;
+            while (allowedToSendMsg()) {
                 MqttPubMsgWithCreatedTime head = delayedMsgQueue.poll();
                 if (head == null) {
-                    if (log.isDebugEnabled()) {
-                        log.debug("[{}] Delayed queue is empty!", clientId);
-                    }
-                    flowControlService.removeFromMap(clientId);
-                    return false;
+                    break;
                 }
                 delayedMsgCounter.decrementAndGet();
                 if (head.getCreatedTime() + ttlMs < System.currentTimeMillis()) {
@@ -171,23 +154,41 @@ public class PublishedInFlightCtxImpl implements PublishedInFlightCtx {
                 }
 
                 addPublishedInFlightMsg(head.getMqttPublishMessage());
-                sendDelayedMsg(head.getMqttPublishMessage());
-                break;
+                if (channel == null) {
+                    channel = clientSessionCtx.getChannel();
+                }
+                channel.write(head.getMqttPublishMessage());
             }
+            if (delayedMsgQueue.isEmpty()) {
+                if (log.isDebugEnabled()) {
+                    log.debug("[{}] Delayed queue is empty!", clientId);
+                }
+                flowControlService.removeFromMap(clientId);
+            }
+            if (channel == null) {
+                return false;
+            }
+            channel.flush();
             return true;
         } finally {
             lock.unlock();
         }
     }
 
-    public void sendDelayedMsg(MqttPublishMessage mqttPubMsg) {
-        clientSessionCtx.getChannel().writeAndFlush(mqttPubMsg);
-    }
-
     private MqttPubMsgWithCreatedTime getDelayedMsg(MqttPublishMessage mqttPubMsg) {
         return new MqttPubMsgWithCreatedTime(mqttPubMsg, System.currentTimeMillis());
     }
 
+    @Override
+    public int getInFlightMsgCount() {
+        return publishedInFlightMsgQueueSize() + delayedMsgQueueSize();
+    }
+
+    @Override
+    public int getDelayedMsgCount() {
+        return delayedMsgQueueSize();
+    }
+
     private int delayedMsgQueueSize() {
         return delayedMsgCounter.get();
     }
@@ -197,7 +198,7 @@ public class PublishedInFlightCtxImpl implements PublishedInFlightCtx {
     }
 
     private int publishedInFlightMsgQueueSize() {
-        return publishedInFlightMsgCounter.get();
+        return publishedInFlightMsgWindow.size();
     }
 
     private boolean atMostOnce(MqttPublishMessage mqttPubMsg) {
@@ -210,13 +211,8 @@ public class PublishedInFlightCtxImpl implements PublishedInFlightCtx {
     }
 
     private boolean addPublishedInFlightMsg(MqttPublishMessage mqttPubMsg) {
-        publishedInFlightMsgCounter.incrementAndGet();
-        return publishedInFlightMsgQueue.add(mqttPubMsg.variableHeader().packetId());
-    }
-
-    private void removePublishedInFlightMsg() {
-        publishedInFlightMsgQueue.poll();
-        publishedInFlightMsgCounter.decrementAndGet();
+        publishedInFlightMsgWindow.add(mqttPubMsg.variableHeader().packetId());
+        return true;
     }
 
 }
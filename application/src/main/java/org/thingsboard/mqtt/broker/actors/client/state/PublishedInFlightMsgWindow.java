@@ -0,0 +1,136 @@
+/**
+ * Copyright © 2016-2024 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.mqtt.broker.actors.client.state;
+
+import java.util.Arrays;
+
+/**
+ * Packet ids of the QoS 1/2 messages sent to the client and not acknowledged yet, in the send order.
+ * <p>
+ * The packet ids are kept in a ring of primitives that grows on demand up to the "Receive Maximum" of the client.
+ * Acknowledgements received in the wrong order are marked in a bitmap covering the whole packet id space
+ * (allocated on the first such acknowledgement), so both the acknowledgement and the advance of the head are O(1)
+ * and do not allocate. The head is advanced only when it is acknowledged, together with all the following
+ * packet ids that were acknowledged before.
+ * Not thread-safe, must be guarded by the lock of {@link PublishedInFlightCtxImpl}.
+ */
+public class PublishedInFlightMsgWindow {
+
+    private static final int PACKET_ID_SPACE = 1 << 16;
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final int maxSize;
+    private char[] packetIds;
+    private int head;
+    private volatile int size;
+
+    private long[] outOfOrderAcks;
+    private int outOfOrderAckCount;
+
+    public PublishedInFlightMsgWindow(int maxSize) {
+        this.maxSize = maxSize;
+        this.packetIds = new char[Math.max(1, Math.min(maxSize, INITIAL_CAPACITY))];
+    }
+
+    public void add(int packetId) {
+        if (size == packetIds.length) {
+            grow();
+        }
+        packetIds[(head + size) % packetIds.length] = (char) packetId;
+        size++;
+    }
+
+    /**
+     * @return true if the acknowledged packet id was the head of the window and at least one in-flight slot was released,
+     * false if the window is empty or the acknowledgement was received in the wrong order
+     */
+    public boolean ack(int packetId) {
+        if (size == 0) {
+            return false;
+        }
+        if (packetIds[head] != (char) packetId) {
+            markOutOfOrderAck(packetId);
+            return false;
+        }
+        removeHead();
+        while (outOfOrderAckCount > 0 && size > 0 && clearOutOfOrderAck(packetIds[head])) {
+            removeHead();
+        }
+        if (size == 0 && outOfOrderAckCount > 0) {
+            Arrays.fill(outOfOrderAcks, 0L);
+            outOfOrderAckCount = 0;
+        }
+        return true;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public boolean isFull() {
+        return size >= maxSize;
+    }
+
+    /**
+     * @return number of packet ids acknowledged in the wrong order that are waiting for the head to be acknowledged
+     */
+    public int getOutOfOrderAckCount() {
+        return outOfOrderAckCount;
+    }
+
+    private void removeHead() {
+        head = head + 1 == packetIds.length ? 0 : head + 1;
+        size--;
+    }
+
+    private void grow() {
+        int newLength = packetIds.length < maxSize ? Math.min(maxSize, packetIds.length * 2) : packetIds.length * 2;
+        char[] newPacketIds = new char[newLength];
+        int firstPart = Math.min(size, packetIds.length - head);
+        System.arraycopy(packetIds, head, newPacketIds, 0, firstPart);
+        System.arraycopy(packetIds, 0, newPacketIds, firstPart, size - firstPart);
+        packetIds = newPacketIds;
+        head = 0;
+    }
+
+    private void markOutOfOrderAck(int packetId) {
+        if (outOfOrderAcks == null) {
+            outOfOrderAcks = new long[PACKET_ID_SPACE / Long.SIZE];
+        }
+        int idx = (packetId & (PACKET_ID_SPACE - 1)) >>> 6;
+        long bit = 1L << packetId;
+        if ((outOfOrderAcks[idx] & bit) == 0) {
+            outOfOrderAcks[idx] |= bit;
+            outOfOrderAckCount++;
+        }
+    }
+
+    private boolean clearOutOfOrderAck(int packetId) {
+        int idx = packetId >>> 6;
+        long bit = 1L << packetId;
+        if ((outOfOrderAcks[idx] & bit) == 0) {
+            return false;
+        }
+        outOfOrderAcks[idx] &= ~bit;
+        outOfOrderAckCount--;
+        return true;
+    }
+
+}
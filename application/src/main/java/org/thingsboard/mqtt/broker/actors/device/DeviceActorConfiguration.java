@@ -29,4 +29,8 @@ public class DeviceActorConfiguration {
     private int dispatcherSize;
     @Value("${actors.system.persisted-device.wait-before-actor-stop-minutes:10}")
     private int timeToWaitBeforeActorStopMinutes;
+    @Value("${actors.system.persisted-device.replay.enabled:false}")
+    private boolean replayEnabled;
+    @Value("${actors.system.persisted-device.replay.page-size:100}")
+    private int replayPageSize;
 }
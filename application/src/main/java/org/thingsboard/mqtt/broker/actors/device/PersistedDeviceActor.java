@@ -23,6 +23,8 @@ import org.thingsboard.mqtt.broker.actors.device.messages.PacketAcknowledgedEven
 import org.thingsboard.mqtt.broker.actors.device.messages.PacketCompletedEventMsg;
 import org.thingsboard.mqtt.broker.actors.device.messages.PacketReceivedEventMsg;
 import org.thingsboard.mqtt.broker.actors.device.messages.PacketReceivedNoDeliveryEventMsg;
+import org.thingsboard.mqtt.broker.actors.device.messages.PersistedMsgsPageLoadedEventMsg;
+import org.thingsboard.mqtt.broker.actors.device.messages.ResumePersistedMsgsReplayCommandMsg;
 import org.thingsboard.mqtt.broker.actors.device.messages.SharedSubscriptionEventMsg;
 import org.thingsboard.mqtt.broker.actors.device.messages.StopDeviceActorCommandMsg;
 import org.thingsboard.mqtt.broker.actors.msg.TbActorMsg;
@@ -51,7 +53,7 @@ public class PersistedDeviceActor extends ContextAwareActor {
         clientLogger.logEvent(clientId, this.getClass(), "Received msg - " + msg.getMsgType());
         switch (msg.getMsgType()) {
             case DEVICE_CONNECTED_EVENT_MSG:
-                processor.processDeviceConnect((DeviceConnectedEventMsg) msg);
+                processor.processDeviceConnect(ctx, (DeviceConnectedEventMsg) msg);
                 break;
             case DEVICE_DISCONNECTED_EVENT_MSG:
                 processor.processDeviceDisconnect(ctx);
@@ -62,6 +64,12 @@ public class PersistedDeviceActor extends ContextAwareActor {
             case INCOMING_PUBLISH_MSG:
                 processor.process((IncomingPublishMsg) msg);
                 break;
+            case PERSISTED_MSGS_PAGE_LOADED_EVENT_MSG:
+                processor.processPersistedMsgsPage((PersistedMsgsPageLoadedEventMsg) msg);
+                break;
+            case RESUME_PERSISTED_MSGS_REPLAY_COMMAND_MSG:
+                processor.processResumePersistedMsgsReplay((ResumePersistedMsgsReplayCommandMsg) msg);
+                break;
             case PACKET_ACKNOWLEDGED_EVENT_MSG:
                 processor.processPacketAcknowledge((PacketAcknowledgedEventMsg) msg);
                 break;
@@ -25,6 +25,7 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.util.CollectionUtils;
 import org.thingsboard.mqtt.broker.actors.ActorSystemContext;
 import org.thingsboard.mqtt.broker.actors.TbActorCtx;
+import org.thingsboard.mqtt.broker.actors.client.state.PublishedInFlightCtx;
 import org.thingsboard.mqtt.broker.actors.client.messages.mqtt.MqttDisconnectMsg;
 import org.thingsboard.mqtt.broker.actors.device.messages.DeviceConnectedEventMsg;
 import org.thingsboard.mqtt.broker.actors.device.messages.IncomingPublishMsg;
@@ -32,6 +33,8 @@ import org.thingsboard.mqtt.broker.actors.device.messages.PacketAcknowledgedEven
 import org.thingsboard.mqtt.broker.actors.device.messages.PacketCompletedEventMsg;
 import org.thingsboard.mqtt.broker.actors.device.messages.PacketReceivedEventMsg;
 import org.thingsboard.mqtt.broker.actors.device.messages.PacketReceivedNoDeliveryEventMsg;
+import org.thingsboard.mqtt.broker.actors.device.messages.PersistedMsgsPageLoadedEventMsg;
+import org.thingsboard.mqtt.broker.actors.device.messages.ResumePersistedMsgsReplayCommandMsg;
 import org.thingsboard.mqtt.broker.actors.device.messages.SharedSubscriptionEventMsg;
 import org.thingsboard.mqtt.broker.actors.device.messages.StopDeviceActorCommandMsg;
 import org.thingsboard.mqtt.broker.actors.shared.AbstractContextAwareMsgProcessor;
@@ -47,6 +50,7 @@ import org.thingsboard.mqtt.broker.dto.SharedSubscriptionPublishPacket;
 import org.thingsboard.mqtt.broker.service.analysis.ClientLogger;
 import org.thingsboard.mqtt.broker.service.mqtt.PublishMsg;
 import org.thingsboard.mqtt.broker.service.mqtt.PublishMsgDeliveryService;
+import org.thingsboard.mqtt.broker.service.mqtt.persistence.device.DeviceMsgReplayService;
 import org.thingsboard.mqtt.broker.service.subscription.shared.SharedSubscriptionCacheService;
 import org.thingsboard.mqtt.broker.service.subscription.shared.TopicSharedSubscription;
 import org.thingsboard.mqtt.broker.session.ClientMqttActorManager;
@@ -55,12 +59,14 @@ import org.thingsboard.mqtt.broker.session.DisconnectReason;
 import org.thingsboard.mqtt.broker.session.DisconnectReasonType;
 import org.thingsboard.mqtt.broker.util.MqttPropertiesUtil;
 
+import java.util.ArrayDeque;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 @Slf4j
 @Getter
@@ -68,6 +74,7 @@ class PersistedDeviceActorMessageProcessor extends AbstractContextAwareMsgProces
 
     private final String clientId;
     private final DeviceMsgService deviceMsgService;
+    private final DeviceMsgReplayService deviceMsgReplayService;
     private final DeviceSessionCtxService deviceSessionCtxService;
     private final DevicePacketIdAndSerialNumberService serialNumberService;
     private final PublishMsgDeliveryService publishMsgDeliveryService;
@@ -78,6 +85,11 @@ class PersistedDeviceActorMessageProcessor extends AbstractContextAwareMsgProces
 
     private final Set<Integer> inFlightPacketIds = Sets.newConcurrentHashSet();
     private final ConcurrentMap<Integer, SharedSubscriptionPublishPacket> sentPacketIdsFromSharedSubscription = Maps.newConcurrentMap();
+    /**
+     * New messages received while the persisted messages are replayed, merged in by serial number once the replay catches up
+     */
+    private final ArrayDeque<DevicePublishMsg> replayIncomingMsgs = new ArrayDeque<>();
+    private final AtomicBoolean replayAwaitingInFlightWindow = new AtomicBoolean();
 
     @Setter
     private volatile ClientSessionCtx sessionCtx;
@@ -86,11 +98,20 @@ class PersistedDeviceActorMessageProcessor extends AbstractContextAwareMsgProces
     @Setter
     private volatile boolean processedAnyMsg = false;
     private volatile UUID stopActorCommandUUID;
+    private volatile TbActorCtx actorCtx;
+    /**
+     * Id of the persisted messages replay in progress, null if there is no replay in progress
+     */
+    private volatile UUID replayId;
+    private volatile int replayInFlightWindow;
+    private long replayNextSerialNumber;
+    private boolean replayIncomingMsgsDropped;
 
     PersistedDeviceActorMessageProcessor(ActorSystemContext systemContext, String clientId) {
         super(systemContext);
         this.clientId = clientId;
         this.deviceMsgService = systemContext.getDeviceMsgService();
+        this.deviceMsgReplayService = systemContext.getDeviceMsgReplayService();
         this.deviceSessionCtxService = systemContext.getDeviceSessionCtxService();
         this.serialNumberService = systemContext.getSerialNumberService();
         this.publishMsgDeliveryService = systemContext.getPublishMsgDeliveryService();
@@ -100,12 +121,17 @@ class PersistedDeviceActorMessageProcessor extends AbstractContextAwareMsgProces
         this.sharedSubscriptionCacheService = systemContext.getSharedSubscriptionCacheService();
     }
 
-    public void processDeviceConnect(DeviceConnectedEventMsg msg) {
+    public void processDeviceConnect(TbActorCtx actorCtx, DeviceConnectedEventMsg msg) {
         if (log.isTraceEnabled()) {
             log.trace("[{}] Start processing persisted messages on Device connect", msg.getSessionCtx().getClientId());
         }
         this.sessionCtx = msg.getSessionCtx();
         this.stopActorCommandUUID = null;
+        this.actorCtx = actorCtx;
+        if (deviceActorConfig.isReplayEnabled()) {
+            startPersistedMsgsReplay();
+            return;
+        }
         List<DevicePublishMsg> persistedMessages = deviceMsgService.findPersistedMessages(clientId);
         try {
             persistedMessages.forEach(this::deliverPersistedMsg);
@@ -115,6 +141,133 @@ class PersistedDeviceActorMessageProcessor extends AbstractContextAwareMsgProces
         }
     }
 
+    private void startPersistedMsgsReplay() {
+        stopPersistedMsgsReplay();
+        this.replayId = UUID.randomUUID();
+        this.replayInFlightWindow = getClientInFlightWindow();
+        this.replayNextSerialNumber = 0L;
+        this.replayIncomingMsgsDropped = false;
+        requestPersistedMsgsPage();
+    }
+
+    private void stopPersistedMsgsReplay() {
+        this.replayId = null;
+        replayIncomingMsgs.clear();
+        replayAwaitingInFlightWindow.set(false);
+    }
+
+    private void requestPersistedMsgsPage() {
+        UUID currentReplayId = replayId;
+        TbActorCtx currentActorCtx = actorCtx;
+        if (log.isTraceEnabled()) {
+            log.trace("[{}][{}] Requesting persisted messages page, fromSerialNumber - {}", clientId, currentReplayId, replayNextSerialNumber);
+        }
+        DonAsynchron.withCallback(
+                deviceMsgReplayService.findPersistedMessagesPage(clientId, replayNextSerialNumber, deviceActorConfig.getReplayPageSize()),
+                persistedMessages -> currentActorCtx.tell(new PersistedMsgsPageLoadedEventMsg(currentReplayId, persistedMessages, null)),
+                throwable -> currentActorCtx.tell(new PersistedMsgsPageLoadedEventMsg(currentReplayId, null, throwable))
+        );
+    }
+
+    public void processPersistedMsgsPage(PersistedMsgsPageLoadedEventMsg msg) {
+        if (!isCurrentReplay(msg.getReplayId())) {
+            if (log.isDebugEnabled()) {
+                log.debug("[{}] Replay {} is not active, ignoring persisted messages page.", clientId, msg.getReplayId());
+            }
+            return;
+        }
+        if (msg.getError() != null) {
+            log.warn("[{}][{}] Failed to load persisted messages.", clientId, sessionCtx.getSessionId(), msg.getError());
+            stopPersistedMsgsReplay();
+            disconnect("Failed to process persisted messages");
+            return;
+        }
+        List<DevicePublishMsg> persistedMessages = msg.getPersistedMessages();
+        try {
+            for (DevicePublishMsg persistedMessage : persistedMessages) {
+                deliverPersistedMsg(persistedMessage);
+                replayNextSerialNumber = persistedMessage.getSerialNumber() + 1;
+            }
+        } catch (Exception e) {
+            log.warn("[{}][{}] Failed to process persisted messages.", clientId, sessionCtx.getSessionId(), e);
+            stopPersistedMsgsReplay();
+            disconnect("Failed to process persisted messages");
+            return;
+        }
+        while (!replayIncomingMsgs.isEmpty() && replayIncomingMsgs.peekFirst().getSerialNumber() < replayNextSerialNumber) {
+            replayIncomingMsgs.pollFirst();
+        }
+        // messages dropped from the full buffer are persisted, so one more page is read to deliver them
+        if (persistedMessages.size() < deviceActorConfig.getReplayPageSize() && !replayIncomingMsgsDropped) {
+            finishPersistedMsgsReplay();
+        } else {
+            replayIncomingMsgsDropped = false;
+            requestNextPersistedMsgsPageIfInFlightWindowAllows();
+        }
+    }
+
+    public void processResumePersistedMsgsReplay(ResumePersistedMsgsReplayCommandMsg msg) {
+        if (isCurrentReplay(msg.getReplayId())) {
+            requestPersistedMsgsPage();
+        }
+    }
+
+    private void finishPersistedMsgsReplay() {
+        if (log.isDebugEnabled()) {
+            log.debug("[{}] Finished persisted messages replay, merging {} new messages.", clientId, replayIncomingMsgs.size());
+        }
+        this.replayId = null;
+        processedAnyMsg = true;
+        DevicePublishMsg publishMsg;
+        while ((publishMsg = replayIncomingMsgs.pollFirst()) != null) {
+            deliverIncomingMsg(publishMsg);
+        }
+    }
+
+    private void requestNextPersistedMsgsPageIfInFlightWindowAllows() {
+        if (hasReplayInFlightWindow()) {
+            requestPersistedMsgsPage();
+            return;
+        }
+        replayAwaitingInFlightWindow.set(true);
+        // acknowledgement could release the window before the flag was set
+        if (hasReplayInFlightWindow() && replayAwaitingInFlightWindow.compareAndSet(true, false)) {
+            requestPersistedMsgsPage();
+        }
+    }
+
+    private void onInFlightPacketReleased() {
+        if (replayAwaitingInFlightWindow.get() && hasReplayInFlightWindow() && replayAwaitingInFlightWindow.compareAndSet(true, false)) {
+            UUID currentReplayId = replayId;
+            if (currentReplayId != null) {
+                actorCtx.tell(new ResumePersistedMsgsReplayCommandMsg(currentReplayId));
+            }
+        }
+    }
+
+    private boolean hasReplayInFlightWindow() {
+        return getClientInFlightMsgCount() < replayInFlightWindow;
+    }
+
+    private int getClientInFlightWindow() {
+        PublishedInFlightCtx publishedInFlightCtx = getPublishedInFlightCtx();
+        return publishedInFlightCtx == null ? deviceActorConfig.getReplayPageSize() : publishedInFlightCtx.getClientReceiveMax();
+    }
+
+    private int getClientInFlightMsgCount() {
+        PublishedInFlightCtx publishedInFlightCtx = getPublishedInFlightCtx();
+        return publishedInFlightCtx == null ? inFlightPacketIds.size() : publishedInFlightCtx.getInFlightMsgCount();
+    }
+
+    private PublishedInFlightCtx getPublishedInFlightCtx() {
+        ClientSessionCtx currentSessionCtx = sessionCtx;
+        return currentSessionCtx == null ? null : currentSessionCtx.getPublishedInFlightCtx();
+    }
+
+    private boolean isCurrentReplay(UUID msgReplayId) {
+        return msgReplayId.equals(replayId) && sessionCtx != null;
+    }
+
     public void processingSharedSubscriptions(SharedSubscriptionEventMsg msg) {
         if (log.isTraceEnabled()) {
             log.trace("[{}] Start processing Device shared subscriptions", msg.getSubscriptions());
@@ -214,6 +367,7 @@ class PersistedDeviceActorMessageProcessor extends AbstractContextAwareMsgProces
 
     public void processDeviceDisconnect(TbActorCtx actorCtx) {
         this.sessionCtx = null;
+        stopPersistedMsgsReplay();
         long delayMs = TimeUnit.MINUTES.toMillis(deviceActorConfig.getTimeToWaitBeforeActorStopMinutes());
         this.stopActorCommandUUID = UUID.randomUUID();
         systemContext.scheduleMsgWithDelay(actorCtx, new StopDeviceActorCommandMsg(stopActorCommandUUID), delayMs);
@@ -228,9 +382,28 @@ class PersistedDeviceActorMessageProcessor extends AbstractContextAwareMsgProces
             return;
         }
 
+        if (replayId != null) {
+            bufferReplayIncomingMsg(publishMsg);
+            return;
+        }
+
         checkForMissedMessagesAndProcessBeforeFirstIncomingMsg(publishMsg);
         processedAnyMsg = true;
+        deliverIncomingMsg(publishMsg);
+    }
+
+    private void bufferReplayIncomingMsg(DevicePublishMsg publishMsg) {
+        if (publishMsg.getSerialNumber() < replayNextSerialNumber) {
+            return;
+        }
+        if (replayIncomingMsgs.size() >= deviceActorConfig.getReplayPageSize()) {
+            replayIncomingMsgs.pollFirst();
+            replayIncomingMsgsDropped = true;
+        }
+        replayIncomingMsgs.addLast(publishMsg);
+    }
 
+    private void deliverIncomingMsg(DevicePublishMsg publishMsg) {
         MsgExpiryResult msgExpiryResult = MqttPropertiesUtil.getMsgExpiryResult(publishMsg, System.currentTimeMillis());
         if (msgExpiryResult.isExpired()) {
             return;
@@ -299,6 +472,7 @@ class PersistedDeviceActorMessageProcessor extends AbstractContextAwareMsgProces
         future.addListener(() -> {
             try {
                 inFlightPacketIds.remove(msg.getPacketId());
+                onInFlightPacketReleased();
             } catch (Exception e) {
                 log.warn("[{}] Failed to process packet acknowledge, packetId - {}", targetClientId, msg.getPacketId(), e);
             }
@@ -313,6 +487,7 @@ class PersistedDeviceActorMessageProcessor extends AbstractContextAwareMsgProces
         future.addListener(() -> {
             try {
                 inFlightPacketIds.remove(msg.getPacketId());
+                onInFlightPacketReleased();
                 if (sessionCtx != null) {
                     publishMsgDeliveryService.sendPubRelMsgToClient(sessionCtx, msg.getPacketId());
                 }
@@ -327,7 +502,10 @@ class PersistedDeviceActorMessageProcessor extends AbstractContextAwareMsgProces
         var targetClientId = getTargetClientId(packet);
 
         ListenableFuture<Void> future = deviceMsgService.tryRemovePersistedMessage(targetClientId, getTargetPacketId(packet, msg.getPacketId()));
-        future.addListener(() -> inFlightPacketIds.remove(msg.getPacketId()), MoreExecutors.directExecutor());
+        future.addListener(() -> {
+            inFlightPacketIds.remove(msg.getPacketId());
+            onInFlightPacketReleased();
+        }, MoreExecutors.directExecutor());
     }
 
     public void processPacketComplete(PacketCompletedEventMsg msg) {
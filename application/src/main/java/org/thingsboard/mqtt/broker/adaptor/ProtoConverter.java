@@ -16,6 +16,7 @@
 package org.thingsboard.mqtt.broker.adaptor;
 
 import com.google.protobuf.ByteString;
+import com.google.protobuf.UnsafeByteOperations;
 import io.netty.handler.codec.mqtt.MqttProperties;
 import io.netty.handler.codec.mqtt.MqttProperties.IntegerProperty;
 import io.netty.handler.codec.mqtt.MqttProperties.StringProperty;
@@ -56,6 +57,14 @@ public class ProtoConverter {
      */
 
     public static QueueProtos.PublishMsgProto convertToPublishMsgProto(SessionInfo sessionInfo, PublishMsg publishMsg) {
+        return convertToPublishMsgProto(sessionInfo, publishMsg, false);
+    }
+
+    /**
+     * @param wrapPayload if true, the payload ByteBuf is wrapped instead of copied. The returned proto is then valid
+     *                    only until the ByteBuf is released, so it must be serialized before that
+     */
+    public static QueueProtos.PublishMsgProto convertToPublishMsgProto(SessionInfo sessionInfo, PublishMsg publishMsg, boolean wrapPayload) {
         UserProperties userProperties = MqttPropertiesUtil.getUserProperties(publishMsg.getProperties());
         QueueProtos.PublishMsgProto.Builder builder = QueueProtos.PublishMsgProto.newBuilder()
                 .setPacketId(publishMsg.getPacketId())
@@ -64,9 +73,7 @@ public class ProtoConverter {
                 .setRetain(publishMsg.isRetained())
                 .addAllUserProperties(toUserPropertyProtos(userProperties))
                 .setClientId(sessionInfo.getClientInfo().getClientId());
-        builder.setPayload(publishMsg.getByteBuf() != null ?
-                ByteString.copyFrom(publishMsg.getByteBuf().nioBuffer()) :
-                ByteString.copyFrom(publishMsg.getPayload()));
+        builder.setPayload(toPayloadByteString(publishMsg, wrapPayload));
 
         QueueProtos.MqttPropertiesProto.Builder mqttPropsProtoBuilder = getMqttPropsProtoBuilder(publishMsg.getProperties());
         if (mqttPropsProtoBuilder != null) {
@@ -76,6 +83,17 @@ public class ProtoConverter {
         return builder.build();
     }
 
+    private static ByteString toPayloadByteString(PublishMsg publishMsg, boolean wrapPayload) {
+        if (publishMsg.getByteBuf() != null) {
+            return wrapPayload ?
+                    UnsafeByteOperations.unsafeWrap(publishMsg.getByteBuf().nioBuffer()) :
+                    ByteString.copyFrom(publishMsg.getByteBuf().nioBuffer());
+        }
+        return wrapPayload ?
+                UnsafeByteOperations.unsafeWrap(publishMsg.getPayload()) :
+                ByteString.copyFrom(publishMsg.getPayload());
+    }
+
     public static QueueProtos.PublishMsgProto convertToPublishMsgProto(DevicePublishMsg devicePublishMsg) {
         UserProperties userProperties = MqttPropertiesUtil.getUserProperties(devicePublishMsg.getProperties());
         QueueProtos.PublishMsgProto.Builder builder = QueueProtos.PublishMsgProto.newBuilder()
@@ -408,19 +426,23 @@ public class ProtoConverter {
      */
 
     public static RetainedMsg convertProtoToRetainedMsg(QueueProtos.RetainedMsgProto retainedMsgProto) {
-        MqttProperties properties = createMqttPropertiesWithUserPropsIfPresent(retainedMsgProto.getUserPropertiesList());
-        if (retainedMsgProto.hasMqttProperties()) {
-            addFromProtoToMqttProperties(retainedMsgProto.getMqttProperties(), properties);
-        }
         return new RetainedMsg(
                 retainedMsgProto.getTopic(),
                 retainedMsgProto.getPayload().toByteArray(),
                 retainedMsgProto.getQos(),
-                properties,
+                convertProtoToRetainedMsgProperties(retainedMsgProto),
                 retainedMsgProto.getCreatedTime()
         );
     }
 
+    public static MqttProperties convertProtoToRetainedMsgProperties(QueueProtos.RetainedMsgProto retainedMsgProto) {
+        MqttProperties properties = createMqttPropertiesWithUserPropsIfPresent(retainedMsgProto.getUserPropertiesList());
+        if (retainedMsgProto.hasMqttProperties()) {
+            addFromProtoToMqttProperties(retainedMsgProto.getMqttProperties(), properties);
+        }
+        return properties;
+    }
+
     public static QueueProtos.RetainedMsgProto convertToRetainedMsgProto(RetainedMsg retainedMsg) {
         QueueProtos.RetainedMsgProto.Builder builder = QueueProtos.RetainedMsgProto.newBuilder()
                 .setPayload(ByteString.copyFrom(retainedMsg.getPayload()))
@@ -435,6 +457,19 @@ public class ProtoConverter {
         return builder.build();
     }
 
+    /**
+     * Converts only the user and MQTT properties of a retained message, without topic and payload.
+     */
+    public static QueueProtos.RetainedMsgProto convertToRetainedMsgPropertiesProto(MqttProperties properties) {
+        QueueProtos.RetainedMsgProto.Builder builder = QueueProtos.RetainedMsgProto.newBuilder()
+                .addAllUserProperties(getUserPropertyProtos(properties));
+        QueueProtos.MqttPropertiesProto.Builder mqttPropsProtoBuilder = getMqttPropsProtoBuilder(properties);
+        if (mqttPropsProtoBuilder != null) {
+            builder.setMqttProperties(mqttPropsProtoBuilder);
+        }
+        return builder.build();
+    }
+
     /**
      * MQTT properties conversion
      */
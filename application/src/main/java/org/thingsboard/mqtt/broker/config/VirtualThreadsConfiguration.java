@@ -0,0 +1,57 @@
+/**
+ * Copyright © 2016-2024 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.mqtt.broker.config;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Configuration;
+import org.thingsboard.mqtt.broker.common.util.ThingsBoardExecutors;
+
+/**
+ * Validates on startup that the virtual threads requested with 'virtual-threads.enabled' can be used by the current runtime and queue.
+ * The Kafka consumer poll blocks inside Selector.select while pinned to its carrier thread, so with more per-client loops
+ * than carrier threads the remaining loops would stop progressing. Hence, the virtual threads are allowed only with the in-memory queue.
+ */
+@Slf4j
+@Configuration
+public class VirtualThreadsConfiguration {
+
+    private static final String IN_MEMORY_QUEUE_TYPE = "in-memory";
+
+    @Value("${virtual-threads.enabled:false}")
+    private boolean enabled;
+    @Value("${queue.type:kafka}")
+    private String queueType;
+
+    @PostConstruct
+    public void init() {
+        if (!enabled) {
+            return;
+        }
+        if (!IN_MEMORY_QUEUE_TYPE.equals(queueType)) {
+            throw new IllegalStateException("Virtual threads are not supported with the '" + queueType + "' queue: " +
+                    "its per-client consumer loops pin the carrier threads while polling. " +
+                    "Disable 'virtual-threads.enabled' and use the multiplexed Application persisted messages consumers instead.");
+        }
+        if (!ThingsBoardExecutors.isVirtualThreadsSupported()) {
+            log.warn("Virtual threads are enabled but not supported by the Java {} runtime, platform threads are used instead.",
+                    Runtime.version().feature());
+            return;
+        }
+        log.info("Virtual threads are enabled for the per-client consumer loops.");
+    }
+}
@@ -19,18 +19,18 @@ import io.netty.bootstrap.ServerBootstrap;
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelOption;
 import io.netty.channel.EventLoopGroup;
-import io.netty.channel.nio.NioEventLoopGroup;
-import io.netty.channel.socket.nio.NioServerSocketChannel;
 import io.netty.util.ResourceLeakDetector;
 import io.netty.util.concurrent.Future;
 import lombok.extern.slf4j.Slf4j;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.TimeUnit;
 
 @Slf4j
 public abstract class AbstractMqttServerBootstrap implements MqttServerBootstrap {
 
-    private Channel serverChannel;
+    private final List<Channel> serverChannels = new ArrayList<>();
     private EventLoopGroup bossGroup;
     private EventLoopGroup workerGroup;
 
@@ -39,15 +39,23 @@ public abstract class AbstractMqttServerBootstrap implements MqttServerBootstrap
         ResourceLeakDetector.setLevel(ResourceLeakDetector.Level.valueOf(getLeakDetectorLevel().toUpperCase()));
 
         log.info("[{}] Starting MQTT server...", getServerName());
-        bossGroup = new NioEventLoopGroup(getBossGroupThreadCount());
-        workerGroup = new NioEventLoopGroup(getWorkerGroupThreadCount());
+        MqttServerTransportProvider transportProvider = getTransportProvider();
+        bossGroup = transportProvider.createEventLoopGroup(getBossGroupThreadCount());
+        workerGroup = transportProvider.createEventLoopGroup(getWorkerGroupThreadCount());
         ServerBootstrap b = new ServerBootstrap();
         b.group(bossGroup, workerGroup)
-                .channel(NioServerSocketChannel.class)
+                .channel(transportProvider.getServerChannelClass())
                 .childHandler(getChannelInitializer())
                 .childOption(ChannelOption.SO_KEEPALIVE, isKeepAlive());
+        transportProvider.configure(b);
 
-        serverChannel = b.bind(getHost(), getPort()).sync().channel();
+        int acceptorsCount = transportProvider.getAcceptorsCount();
+        for (int i = 0; i < acceptorsCount; i++) {
+            serverChannels.add(b.bind(getHost(), getPort()).sync().channel());
+        }
+        if (acceptorsCount > 1) {
+            log.info("[{}] Bound {} acceptor channels with SO_REUSEPORT", getServerName(), acceptorsCount);
+        }
         log.info("[{}] Mqtt server started!", getServerName());
     }
 
@@ -57,9 +65,10 @@ public abstract class AbstractMqttServerBootstrap implements MqttServerBootstrap
         Future<?> bossFuture = null;
         Future<?> workerFuture = null;
 
-        if (serverChannel != null) {
+        for (Channel serverChannel : serverChannels) {
             serverChannel.close().sync();
         }
+        serverChannels.clear();
 
         if (bossGroup != null) {
             bossFuture = bossGroup.shutdownGracefully(getShutdownQuietPeriod(), getShutdownTimeout(), TimeUnit.SECONDS);
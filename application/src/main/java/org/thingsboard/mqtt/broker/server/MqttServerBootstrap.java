@@ -35,5 +35,7 @@ public interface MqttServerBootstrap {
 
     AbstractMqttChannelInitializer getChannelInitializer();
 
+    MqttServerTransportProvider getTransportProvider();
+
     String getServerName();
 }
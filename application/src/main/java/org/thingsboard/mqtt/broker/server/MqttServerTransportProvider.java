@@ -0,0 +1,117 @@
+/**
+ * Copyright © 2016-2024 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.mqtt.broker.server;
+
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.ServerChannel;
+import io.netty.channel.epoll.Epoll;
+import io.netty.channel.epoll.EpollChannelOption;
+import io.netty.channel.epoll.EpollEventLoopGroup;
+import io.netty.channel.epoll.EpollMode;
+import io.netty.channel.epoll.EpollServerSocketChannel;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import jakarta.annotation.PostConstruct;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Selects the Netty transport shared by all MQTT listeners. NIO is used by default. The native epoll
+ * transport saves syscalls and garbage compared to NIO and enables Linux-only socket options; it is
+ * used with the EPOLL type, or with the AUTO type whenever the native library can be loaded.
+ */
+@Slf4j
+@Component
+public class MqttServerTransportProvider {
+
+    @Setter
+    @Value("${listener.transport.type:NIO}")
+    private MqttServerTransportType type;
+    @Setter
+    @Value("${listener.transport.epoll.so_reuseport:false}")
+    private boolean reusePort;
+    @Setter
+    @Value("${listener.transport.epoll.acceptors_count:1}")
+    private int acceptorsCount;
+    @Setter
+    @Value("${listener.transport.epoll.tcp_fastopen:0}")
+    private int tcpFastOpen;
+    @Setter
+    @Value("${listener.transport.epoll.edge_triggered:true}")
+    private boolean edgeTriggered;
+    @Setter
+    @Value("${listener.transport.epoll.busy_poll:0}")
+    private int busyPoll;
+
+    @Getter
+    private boolean epoll;
+
+    @PostConstruct
+    public void init() {
+        this.epoll = switch (type) {
+            case EPOLL -> {
+                Epoll.ensureAvailability();
+                yield true;
+            }
+            case AUTO -> Epoll.isAvailable();
+            case NIO -> false;
+        };
+        if (type == MqttServerTransportType.AUTO && !epoll) {
+            log.info("Native epoll transport is not available, falling back to NIO: {}", Epoll.unavailabilityCause().toString());
+        }
+        log.info("Using {} transport for MQTT listeners", epoll ? "epoll" : "NIO");
+    }
+
+    public EventLoopGroup createEventLoopGroup(int threadCount) {
+        return epoll ? new EpollEventLoopGroup(threadCount) : new NioEventLoopGroup(threadCount);
+    }
+
+    public Class<? extends ServerChannel> getServerChannelClass() {
+        return epoll ? EpollServerSocketChannel.class : NioServerSocketChannel.class;
+    }
+
+    /**
+     * @return number of server channels to bind on the same port. With SO_REUSEPORT the kernel balances
+     * incoming connections between them, so accepting is not limited to a single event loop.
+     */
+    public int getAcceptorsCount() {
+        return epoll && reusePort ? Math.max(1, acceptorsCount) : 1;
+    }
+
+    public void configure(ServerBootstrap bootstrap) {
+        if (!epoll) {
+            return;
+        }
+        EpollMode epollMode = edgeTriggered ? EpollMode.EDGE_TRIGGERED : EpollMode.LEVEL_TRIGGERED;
+        bootstrap.option(EpollChannelOption.EPOLL_MODE, epollMode)
+                .childOption(EpollChannelOption.EPOLL_MODE, epollMode);
+        if (reusePort) {
+            bootstrap.option(EpollChannelOption.SO_REUSEPORT, true);
+        }
+        if (tcpFastOpen > 0) {
+            bootstrap.option(ChannelOption.TCP_FASTOPEN, tcpFastOpen);
+        }
+        if (busyPoll > 0) {
+            bootstrap.childOption(EpollChannelOption.SO_BUSY_POLL, busyPoll);
+        }
+    }
+
+}
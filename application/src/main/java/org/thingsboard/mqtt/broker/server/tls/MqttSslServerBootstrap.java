@@ -27,6 +27,7 @@ import org.springframework.core.annotation.Order;
 import org.springframework.stereotype.Service;
 import org.thingsboard.mqtt.broker.server.AbstractMqttChannelInitializer;
 import org.thingsboard.mqtt.broker.server.AbstractMqttServerBootstrap;
+import org.thingsboard.mqtt.broker.server.MqttServerTransportProvider;
 
 @Service
 @RequiredArgsConstructor
@@ -55,6 +56,7 @@ public class MqttSslServerBootstrap extends AbstractMqttServerBootstrap {
     private int shutdownTimeout;
 
     private final MqttSslChannelInitializer mqttSslChannelInitializer;
+    private final MqttServerTransportProvider transportProvider;
 
     @EventListener(ApplicationReadyEvent.class)
     @Order(value = 101)
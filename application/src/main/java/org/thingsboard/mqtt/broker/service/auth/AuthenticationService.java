@@ -15,10 +15,20 @@
  */
 package org.thingsboard.mqtt.broker.service.auth;
 
+import com.google.common.util.concurrent.ListenableFuture;
 import org.thingsboard.mqtt.broker.exception.AuthenticationException;
 import org.thingsboard.mqtt.broker.service.auth.providers.AuthContext;
 import org.thingsboard.mqtt.broker.service.auth.providers.AuthResponse;
 
 public interface AuthenticationService {
     AuthResponse authenticate(AuthContext authContext) throws AuthenticationException;
+
+    /**
+     * Authenticates the client with a single provider of the chain selected by the auth strategy. The caller continues
+     * with the next index when the response is unsuccessful, so the chain is not continued on the thread that completed
+     * the previous provider.
+     *
+     * @return future of the provider at the given index of the chain, null if the chain has no more providers
+     */
+    ListenableFuture<AuthResponse> authenticateAsync(AuthContext authContext, int providerIdx);
 }
@@ -28,9 +28,7 @@ public interface AuthorizationRuleService {
 
     AuthRulePatterns parseBasicAuthorizationRule(BasicMqttCredentials credentials) throws AuthenticationException;
 
-    boolean isPubAuthorized(String clientId, String topic, List<AuthRulePatterns> authRulePatterns);
+    boolean isPubAuthorized(String topic, List<AuthRulePatterns> authRulePatterns);
 
     boolean isSubAuthorized(String topic, List<AuthRulePatterns> authRulePatterns);
-
-    void evict(String clientId);
 }
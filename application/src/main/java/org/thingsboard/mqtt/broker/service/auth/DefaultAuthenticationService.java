@@ -15,6 +15,9 @@
  */
 package org.thingsboard.mqtt.broker.service.auth;
 
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
 import lombok.Setter;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
@@ -27,7 +30,9 @@ import org.thingsboard.mqtt.broker.service.auth.providers.AuthResponse;
 import org.thingsboard.mqtt.broker.service.auth.providers.MqttClientAuthProvider;
 import org.thingsboard.mqtt.broker.service.auth.providers.MqttClientAuthProviderManager;
 
+import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 
 @Slf4j
 @Service
@@ -52,17 +57,8 @@ public class DefaultAuthenticationService implements AuthenticationService {
             return new AuthResponse(true, ClientType.DEVICE, null);
         }
         try {
-            if (AuthStrategy.BOTH == authStrategy) {
-                for (var authProviderType : AuthProviderType.values()) {
-                    var authResponse = authenticate(authProviderType, authContext);
-                    if (authResponse != null) {
-                        return authResponse;
-                    }
-                }
-            } else {
-                var authResponse = authContext.getSslHandler() != null ?
-                        authenticate(AuthProviderType.X_509_CERTIFICATE_CHAIN, authContext) :
-                        authenticate(AuthProviderType.BASIC, authContext);
+            for (var authProviderType : getAuthProviderTypes(authContext)) {
+                var authResponse = authenticate(authProviderType, authContext);
                 if (authResponse != null) {
                     return authResponse;
                 }
@@ -74,6 +70,40 @@ public class DefaultAuthenticationService implements AuthenticationService {
         throw new AuthenticationException("Failed to authenticate client");
     }
 
+    @Override
+    public ListenableFuture<AuthResponse> authenticateAsync(AuthContext authContext, int providerIdx) {
+        if (log.isTraceEnabled()) {
+            log.trace("[{}] Authenticating client asynchronously, provider index {}", authContext.getClientId(), providerIdx);
+        }
+        if (authProviders.isEmpty()) {
+            return providerIdx == 0 ? Futures.immediateFuture(new AuthResponse(true, ClientType.DEVICE, null)) : null;
+        }
+        List<MqttClientAuthProvider> chain = getAuthProviderTypes(authContext).stream()
+                .map(authProviders::get)
+                .filter(Objects::nonNull)
+                .toList();
+        if (providerIdx >= chain.size()) {
+            return null;
+        }
+        ListenableFuture<AuthResponse> authResponseFuture;
+        try {
+            authResponseFuture = chain.get(providerIdx).authenticateAsync(authContext);
+        } catch (Exception e) {
+            authResponseFuture = Futures.immediateFailedFuture(e);
+        }
+        return Futures.catchingAsync(authResponseFuture, Exception.class, e -> {
+            log.warn("[{}] Failed to authenticate client.", authContext.getClientId(), e);
+            return Futures.immediateFailedFuture(new AuthenticationException("Exception on client authentication"));
+        }, MoreExecutors.directExecutor());
+    }
+
+    private List<AuthProviderType> getAuthProviderTypes(AuthContext authContext) {
+        if (AuthStrategy.BOTH == authStrategy) {
+            return List.of(AuthProviderType.values());
+        }
+        return List.of(authContext.getSslHandler() != null ? AuthProviderType.X_509_CERTIFICATE_CHAIN : AuthProviderType.BASIC);
+    }
+
     private AuthResponse authenticate(AuthProviderType type, AuthContext authContext) throws AuthenticationException {
         var authProvider = authProviders.get(type);
         if (authProvider != null) {
@@ -15,8 +15,11 @@
  */
 package org.thingsboard.mqtt.broker.service.auth;
 
-import lombok.Getter;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jakarta.annotation.PostConstruct;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.util.CollectionUtils;
 import org.thingsboard.mqtt.broker.common.data.client.credentials.BasicMqttCredentials;
@@ -28,19 +31,30 @@ import org.thingsboard.mqtt.broker.service.security.authorization.AuthRulePatter
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentMap;
-import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
-import java.util.stream.Stream;
 
+/**
+ * Authorization rules are compiled once per distinct rule set and the result is shared by all clients using the same rules,
+ * every compiled rule set keeps a bounded cache of its own topic authorization decisions.
+ */
 @Service
 @Slf4j
 public class DefaultAuthorizationRuleService implements AuthorizationRuleService {
 
-    @Getter
-    private final ConcurrentMap<String, ConcurrentMap<String, Boolean>> publishAuthMap = new ConcurrentHashMap<>();
+    @Value("${security.mqtt.authorization.compiled_rules_cache_max_size:10000}")
+    private int compiledRulesCacheMaxSize;
+    @Value("${security.mqtt.authorization.decision_cache_max_size:1000}")
+    private int decisionCacheMaxSize;
+
+    private Cache<PubSubAuthorizationRules, AuthRulePatterns> compiledRules;
+    private Cache<String, Pattern> certificateMatcherPatterns;
+
+    @PostConstruct
+    public void init() {
+        this.compiledRules = Caffeine.newBuilder().maximumSize(compiledRulesCacheMaxSize).build();
+        this.certificateMatcherPatterns = Caffeine.newBuilder().maximumSize(compiledRulesCacheMaxSize).build();
+    }
 
     @Override
     public List<AuthRulePatterns> parseSslAuthorizationRule(SslMqttCredentials credentials, String clientCommonName) throws AuthenticationException {
@@ -50,13 +64,11 @@ public class DefaultAuthorizationRuleService implements AuthorizationRuleService
 
         List<AuthRulePatterns> authRulePatterns = credentials.getAuthRulesMapping().entrySet().stream()
                 .filter(entry -> {
-                    String certificateMatcherRegex = entry.getKey();
-                    Pattern pattern = Pattern.compile(certificateMatcherRegex);
-                    Matcher commonNameMatcher = pattern.matcher(clientCommonName);
-                    return commonNameMatcher.find();
+                    Pattern pattern = certificateMatcherPatterns.get(entry.getKey(), Pattern::compile);
+                    return pattern.matcher(clientCommonName).find();
                 })
                 .map(Map.Entry::getValue)
-                .map(this::newAuthRulePatterns)
+                .map(this::getAuthRulePatterns)
                 .collect(Collectors.toList());
 
         if (authRulePatterns.isEmpty()) {
@@ -72,13 +84,18 @@ public class DefaultAuthorizationRuleService implements AuthorizationRuleService
         if (credentials == null) {
             throw new AuthenticationException("Cannot parse BasicMqttCredentials.");
         }
-        return newAuthRulePatterns(credentials.getAuthRules());
+        return getAuthRulePatterns(credentials.getAuthRules());
+    }
+
+    private AuthRulePatterns getAuthRulePatterns(PubSubAuthorizationRules pubSubAuthRules) {
+        return compiledRules.get(pubSubAuthRules, this::newAuthRulePatterns);
     }
 
     private AuthRulePatterns newAuthRulePatterns(PubSubAuthorizationRules pubSubAuthRules) {
         return new AuthRulePatterns(
                 compilePatterns(pubSubAuthRules.getPubAuthRulePatterns()),
-                compilePatterns(pubSubAuthRules.getSubAuthRulePatterns()));
+                compilePatterns(pubSubAuthRules.getSubAuthRulePatterns()),
+                decisionCacheMaxSize);
     }
 
     private List<Pattern> compilePatterns(List<String> authRulePatterns) {
@@ -87,45 +104,25 @@ public class DefaultAuthorizationRuleService implements AuthorizationRuleService
     }
 
     @Override
-    public boolean isPubAuthorized(String clientId, String topic, List<AuthRulePatterns> authRulePatterns) {
+    public boolean isPubAuthorized(String topic, List<AuthRulePatterns> authRulePatterns) {
         if (CollectionUtils.isEmpty(authRulePatterns)) {
             return true;
         }
-        ConcurrentMap<String, Boolean> topicAuthMap = publishAuthMap.get(clientId);
-        if (topicAuthMap == null) {
-            topicAuthMap = publishAuthMap.computeIfAbsent(clientId, s -> new ConcurrentHashMap<>());
-        }
-        Boolean isAuthorized = topicAuthMap.get(topic);
-        if (isAuthorized == null) {
-            return topicAuthMap.computeIfAbsent(topic, s -> {
-                Stream<List<Pattern>> pubPatterns = authRulePatterns.stream().map(AuthRulePatterns::getPubPatterns);
-                return isAuthorized(topic, pubPatterns);
-            });
+        for (AuthRulePatterns patterns : authRulePatterns) {
+            if (patterns.isPubAuthorized(topic)) {
+                return true;
+            }
         }
-        return isAuthorized;
+        return false;
     }
 
     @Override
     public boolean isSubAuthorized(String topic, List<AuthRulePatterns> authRulePatterns) {
-        Stream<List<Pattern>> subPatterns = authRulePatterns.stream().map(AuthRulePatterns::getSubPatterns);
-        return isAuthorized(topic, subPatterns);
-    }
-
-    private boolean isAuthorized(String topic, Stream<List<Pattern>> stream) {
-        List<Pattern> patterns = stream.flatMap(List::stream).collect(Collectors.toList());
-        if (CollectionUtils.isEmpty(patterns)) {
-            return false;
-        }
-        return patterns.stream().anyMatch(pattern -> pattern.matcher(topic).matches());
-    }
-
-    @Override
-    public void evict(String clientId) {
-        if (clientId != null) {
-            var topicAuthMap = publishAuthMap.remove(clientId);
-            if (topicAuthMap != null) {
-                topicAuthMap.clear();
+        for (AuthRulePatterns patterns : authRulePatterns) {
+            if (patterns.isSubAuthorized(topic)) {
+                return true;
             }
         }
+        return false;
     }
 }
@@ -15,11 +15,19 @@
  */
 package org.thingsboard.mqtt.broker.service.auth.providers;
 
+import com.github.benmanes.caffeine.cache.Caffeine;
 import com.google.common.hash.HashFunction;
 import com.google.common.hash.Hashing;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.MoreExecutors;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.cache.Cache;
 import org.springframework.context.annotation.Lazy;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
@@ -31,16 +39,27 @@ import org.thingsboard.mqtt.broker.common.data.client.credentials.BasicMqttCrede
 import org.thingsboard.mqtt.broker.common.data.security.MqttClientCredentials;
 import org.thingsboard.mqtt.broker.common.util.JacksonUtil;
 import org.thingsboard.mqtt.broker.common.util.MqttClientCredentialsUtil;
+import org.thingsboard.mqtt.broker.common.util.ThingsBoardThreadFactory;
 import org.thingsboard.mqtt.broker.dao.client.MqttClientCredentialsService;
 import org.thingsboard.mqtt.broker.dao.util.protocol.ProtocolUtil;
 import org.thingsboard.mqtt.broker.exception.AuthenticationException;
 import org.thingsboard.mqtt.broker.service.auth.AuthorizationRuleService;
 import org.thingsboard.mqtt.broker.service.security.authorization.AuthRulePatterns;
+import org.thingsboard.mqtt.broker.service.stats.BasicAuthStats;
+import org.thingsboard.mqtt.broker.service.stats.StatsManager;
 
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 @Slf4j
 @Service
@@ -50,27 +69,121 @@ public class BasicMqttClientAuthProvider implements MqttClientAuthProvider {
     private final AuthorizationRuleService authorizationRuleService;
     private final MqttClientCredentialsService clientCredentialsService;
     private final CacheNameResolver cacheNameResolver;
+    private final StatsManager statsManager;
     private BCryptPasswordEncoder passwordEncoder;
     private HashFunction hashFunction;
 
+    @Value("${security.mqtt.basic.password_check.threads:4}")
+    private int passwordCheckThreads;
+    @Value("${security.mqtt.basic.password_check.queue_size:1000}")
+    private int passwordCheckQueueSize;
+    @Value("${security.mqtt.basic.password_check.timeout_ms:10000}")
+    private long passwordCheckTimeoutMs;
+    @Value("${security.mqtt.basic.verified_credentials_cache.ttl_sec:60}")
+    private int verifiedCredentialsCacheTtlSec;
+    @Value("${security.mqtt.basic.verified_credentials_cache.max_size:100000}")
+    private int verifiedCredentialsCacheMaxSize;
+
+    /**
+     * Credentials lookups and BCrypt checks are done by the bounded pool, so a reconnect storm is rejected as soon as the queue is full
+     * instead of occupying the threads that authenticate clients. The callers are not blocked: the check result completes
+     * the future returned by {@link #authenticateAsync}, and a check still queued or running after the timeout is cancelled.
+     */
+    private ThreadPoolExecutor passwordCheckExecutor;
+    private ListeningExecutorService passwordCheckListeningExecutor;
+    private ScheduledExecutorService passwordCheckTimeoutScheduler;
+    /**
+     * Keys of the recently verified (credentials, password) pairs, see {@link #toVerifiedCredentialsKey}.
+     */
+    private com.github.benmanes.caffeine.cache.Cache<String, Boolean> verifiedCredentialsCache;
+    private BasicAuthStats basicAuthStats;
+
     @Autowired
     public BasicMqttClientAuthProvider(AuthorizationRuleService authorizationRuleService,
                                        MqttClientCredentialsService clientCredentialsService,
                                        CacheNameResolver cacheNameResolver,
+                                       StatsManager statsManager,
                                        @Lazy BCryptPasswordEncoder passwordEncoder) {
         this.authorizationRuleService = authorizationRuleService;
         this.clientCredentialsService = clientCredentialsService;
         this.cacheNameResolver = cacheNameResolver;
+        this.statsManager = statsManager;
         this.passwordEncoder = passwordEncoder;
         this.hashFunction = Hashing.sha256();
     }
 
+    @PostConstruct
+    public void init() {
+        this.passwordCheckExecutor = new ThreadPoolExecutor(passwordCheckThreads, passwordCheckThreads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(passwordCheckQueueSize), ThingsBoardThreadFactory.forName("basic-auth-password-check"));
+        this.passwordCheckListeningExecutor = MoreExecutors.listeningDecorator(passwordCheckExecutor);
+        this.passwordCheckTimeoutScheduler = Executors.newSingleThreadScheduledExecutor(ThingsBoardThreadFactory.forName("basic-auth-password-check-timeout"));
+        if (verifiedCredentialsCacheTtlSec > 0) {
+            this.verifiedCredentialsCache = Caffeine.newBuilder()
+                    .expireAfterWrite(verifiedCredentialsCacheTtlSec, TimeUnit.SECONDS)
+                    .maximumSize(verifiedCredentialsCacheMaxSize)
+                    .build();
+        }
+        this.basicAuthStats = statsManager.createBasicAuthStats(passwordCheckExecutor);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (passwordCheckExecutor != null) {
+            passwordCheckExecutor.shutdownNow();
+        }
+        if (passwordCheckTimeoutScheduler != null) {
+            passwordCheckTimeoutScheduler.shutdownNow();
+        }
+    }
+
+    /**
+     * Blocks until {@link #authenticateAsync} completes, which takes no longer than the password check timeout.
+     */
     @Override
     public AuthResponse authenticate(AuthContext authContext) throws AuthenticationException {
+        try {
+            return authenticateAsync(authContext).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new AuthenticationException("Interrupted while waiting for password check");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof AuthenticationException) {
+                throw (AuthenticationException) e.getCause();
+            }
+            throw new AuthenticationException("Failed to check password", e.getCause());
+        }
+    }
+
+    @Override
+    public ListenableFuture<AuthResponse> authenticateAsync(AuthContext authContext) {
         if (log.isTraceEnabled()) {
             log.trace("[{}] Authenticating client with basic credentials", authContext.getClientId());
         }
-        MqttClientCredentials basicCredentials = authWithBasicCredentials(authContext.getClientId(), authContext.getUsername(), authContext.getPasswordBytes());
+        long startTime = System.nanoTime();
+        ListenableFuture<AuthResponse> future;
+        try {
+            future = passwordCheckListeningExecutor.submit(() -> {
+                try {
+                    return toAuthResponse(authContext,
+                            authWithBasicCredentials(authContext.getClientId(), authContext.getUsername(), authContext.getPasswordBytes()));
+                } finally {
+                    basicAuthStats.logAuthTime(System.nanoTime() - startTime, TimeUnit.NANOSECONDS);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            basicAuthStats.logPasswordCheckRejected();
+            future = Futures.immediateFailedFuture(new AuthenticationException("Password check queue is full"));
+        }
+        // cancels the check on timeout, so it is dropped even if it is still waiting in the queue
+        ListenableFuture<AuthResponse> timedFuture = Futures.withTimeout(future, passwordCheckTimeoutMs, TimeUnit.MILLISECONDS, passwordCheckTimeoutScheduler);
+        return Futures.catchingAsync(timedFuture, TimeoutException.class, e -> {
+            basicAuthStats.logPasswordCheckRejected();
+            return Futures.immediateFailedFuture(new AuthenticationException("Password check timed out"));
+        }, MoreExecutors.directExecutor());
+    }
+
+    private AuthResponse toAuthResponse(AuthContext authContext, MqttClientCredentials basicCredentials) throws AuthenticationException {
         if (basicCredentials == null) {
             log.error("Failed to authenticate client with Basic credentials matching clientId: [{}] username: [{}]", authContext.getClientId(), authContext.getUsername());
             return new AuthResponse(false, null, null);
@@ -91,24 +204,79 @@ public class BasicMqttClientAuthProvider implements MqttClientAuthProvider {
         }
         String password = passwordBytesToString(passwordBytes);
         if (password != null) {
+            MqttClientCredentials verifiedCredentials = findVerifiedCredentials(matchingCredentialsList, password);
+            if (verifiedCredentials != null) {
+                basicAuthStats.logVerifiedCacheHit();
+                return verifiedCredentials;
+            }
             MqttClientCredentials credentialsFromCache = getBasicCredsPwCache().get(toHashString(password), MqttClientCredentials.class);
             if (credentialsFromCache != null && matchingCredentialsList.contains(credentialsFromCache)) {
+                putVerifiedCredentials(credentialsFromCache, password);
                 return credentialsFromCache;
             }
         }
 
+        MqttClientCredentials credentials = findMatchingCredentials(matchingCredentialsList, password);
+        if (password != null && credentials != null) {
+            BasicMqttCredentials basicMqttCredentials = MqttClientCredentialsUtil.getMqttCredentials(credentials, BasicMqttCredentials.class);
+            if (basicMqttCredentials.getPassword() != null) {
+                getBasicCredsPwCache().put(toHashString(password), credentials);
+                putVerifiedCredentials(credentials, password);
+            }
+        }
+        return credentials;
+    }
+
+    private MqttClientCredentials findMatchingCredentials(List<MqttClientCredentials> matchingCredentialsList, String password) {
         for (MqttClientCredentials credentials : matchingCredentialsList) {
             BasicMqttCredentials basicMqttCredentials = MqttClientCredentialsUtil.getMqttCredentials(credentials, BasicMqttCredentials.class);
             if (isMatchingPassword(password, basicMqttCredentials)) {
-                if (password != null && basicMqttCredentials.getPassword() != null) {
-                    getBasicCredsPwCache().put(toHashString(password), credentials);
-                }
                 return credentials;
             }
         }
         return null;
     }
 
+    private MqttClientCredentials findVerifiedCredentials(List<MqttClientCredentials> matchingCredentialsList, String password) {
+        if (verifiedCredentialsCache == null) {
+            return null;
+        }
+        for (MqttClientCredentials credentials : matchingCredentialsList) {
+            String key = toVerifiedCredentialsKey(credentials, password);
+            if (key != null && verifiedCredentialsCache.getIfPresent(key) != null) {
+                return credentials;
+            }
+        }
+        return null;
+    }
+
+    private void putVerifiedCredentials(MqttClientCredentials credentials, String password) {
+        if (verifiedCredentialsCache == null) {
+            return;
+        }
+        String key = toVerifiedCredentialsKey(credentials, password);
+        if (key != null) {
+            verifiedCredentialsCache.put(key, Boolean.TRUE);
+        }
+    }
+
+    /**
+     * The key includes the stored password hash, so the entry is not matched anymore once the password of the credentials is changed.
+     *
+     * @return hash of the credentials id, the stored password hash and the raw password, null if the credentials have no password
+     */
+    private String toVerifiedCredentialsKey(MqttClientCredentials credentials, String password) {
+        BasicMqttCredentials basicMqttCredentials = MqttClientCredentialsUtil.getMqttCredentials(credentials, BasicMqttCredentials.class);
+        if (basicMqttCredentials.getPassword() == null) {
+            return null;
+        }
+        return hashFunction.newHasher()
+                .putString(credentials.getCredentialsId(), StandardCharsets.UTF_8)
+                .putString(basicMqttCredentials.getPassword(), StandardCharsets.UTF_8)
+                .putString(password, StandardCharsets.UTF_8)
+                .hash().toString();
+    }
+
     private List<String> getCredentialIds(String clientId, String username) {
         List<String> credentialIds = new ArrayList<>();
         if (!StringUtils.isEmpty(username)) {
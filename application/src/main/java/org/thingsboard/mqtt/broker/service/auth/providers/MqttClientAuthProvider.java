@@ -15,10 +15,23 @@
  */
 package org.thingsboard.mqtt.broker.service.auth.providers;
 
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
 import org.thingsboard.mqtt.broker.exception.AuthenticationException;
 
 public interface MqttClientAuthProvider {
 
     AuthResponse authenticate(AuthContext authContext) throws AuthenticationException;
 
+    /**
+     * Providers doing slow checks override it to complete the future from another thread instead of blocking the caller.
+     */
+    default ListenableFuture<AuthResponse> authenticateAsync(AuthContext authContext) {
+        try {
+            return Futures.immediateFuture(authenticate(authContext));
+        } catch (AuthenticationException e) {
+            return Futures.immediateFailedFuture(e);
+        }
+    }
+
 }
@@ -18,7 +18,11 @@ package org.thingsboard.mqtt.broker.service.historical.stats;
 
 public interface TbMessageStatsReportClient {
 
-    void reportStats(String key);
+    void reportIncomingMsg();
+
+    void reportOutgoingMsg();
+
+    void reportDroppedMsg();
 
     void reportTraffic(long bytes);
 }
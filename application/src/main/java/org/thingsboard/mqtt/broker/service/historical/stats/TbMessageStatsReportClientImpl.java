@@ -26,6 +26,7 @@ import org.springframework.stereotype.Component;
 import org.thingsboard.mqtt.broker.cluster.ServiceInfoProvider;
 import org.thingsboard.mqtt.broker.common.data.kv.BasicTsKvEntry;
 import org.thingsboard.mqtt.broker.common.data.kv.LongDataEntry;
+import org.thingsboard.mqtt.broker.common.stats.StripedCounter;
 import org.thingsboard.mqtt.broker.common.util.DonAsynchron;
 import org.thingsboard.mqtt.broker.dao.timeseries.TimeseriesService;
 import org.thingsboard.mqtt.broker.gen.queue.QueueProtos;
@@ -40,13 +41,15 @@ import org.thingsboard.mqtt.broker.queue.provider.HistoricalDataQueueFactory;
 import java.time.LocalDateTime;
 import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentMap;
-import java.util.concurrent.atomic.AtomicLong;
+import java.util.Map;
 
 import static java.time.ZoneOffset.UTC;
+import static org.thingsboard.mqtt.broker.common.util.BrokerConstants.DROPPED_MSGS;
+import static org.thingsboard.mqtt.broker.common.util.BrokerConstants.INCOMING_MSGS;
 import static org.thingsboard.mqtt.broker.common.util.BrokerConstants.MSG_RELATED_HISTORICAL_KEYS;
+import static org.thingsboard.mqtt.broker.common.util.BrokerConstants.OUTGOING_MSGS;
 import static org.thingsboard.mqtt.broker.common.util.BrokerConstants.PROCESSED_BYTES;
 
 @Component
@@ -66,7 +69,11 @@ public class TbMessageStatsReportClientImpl implements TbMessageStatsReportClien
     private final HistoricalStatsTotalHelper helper;
 
     private String serviceId;
-    private ConcurrentMap<String, AtomicLong> stats;
+    private Map<String, StripedCounter> stats;
+    private StripedCounter incomingMsgs;
+    private StripedCounter outgoingMsgs;
+    private StripedCounter droppedMsgs;
+    private StripedCounter processedBytes;
     private TbQueueProducer<TbProtoQueueMsg<QueueProtos.ToUsageStatsMsgProto>> historicalStatsProducer;
 
     @PostConstruct
@@ -76,10 +83,14 @@ public class TbMessageStatsReportClientImpl implements TbMessageStatsReportClien
 
         serviceId = serviceInfoProvider.getServiceId();
         historicalStatsProducer = historicalDataQueueFactory.createProducer(serviceId);
-        stats = new ConcurrentHashMap<>();
+        stats = new LinkedHashMap<>();
         for (String key : MSG_RELATED_HISTORICAL_KEYS) {
-            stats.put(key, new AtomicLong(0));
+            stats.put(key, new StripedCounter());
         }
+        incomingMsgs = stats.get(INCOMING_MSGS);
+        outgoingMsgs = stats.get(OUTGOING_MSGS);
+        droppedMsgs = stats.get(DROPPED_MSGS);
+        processedBytes = stats.get(PROCESSED_BYTES);
     }
 
     @Scheduled(cron = "0 0/${historical-data-report.interval} * * * *", zone = "${historical-data-report.zone}")
@@ -92,8 +103,9 @@ public class TbMessageStatsReportClientImpl implements TbMessageStatsReportClien
     private void reportStats(long ts) {
         List<ToUsageStatsMsgProto> report = new ArrayList<>();
 
-        for (String key : MSG_RELATED_HISTORICAL_KEYS) {
-            long value = stats.get(key).get();
+        for (Map.Entry<String, StripedCounter> entry : stats.entrySet()) {
+            String key = entry.getKey();
+            long value = entry.getValue().sumThenReset();
 
             UsageStatsKVProto.Builder statsItem = UsageStatsKVProto.newBuilder()
                     .setKey(key)
@@ -103,7 +115,6 @@ public class TbMessageStatsReportClientImpl implements TbMessageStatsReportClien
             statsMsg.setTs(ts);
             statsMsg.setUsageStats(statsItem.build());
             report.add(statsMsg.build());
-            stats.get(key).set(0);
         }
 
         List<ListenableFuture<Void>> futures = new ArrayList<>();
@@ -140,18 +151,30 @@ public class TbMessageStatsReportClientImpl implements TbMessageStatsReportClien
     }
 
     @Override
-    public void reportStats(String key) {
+    public void reportIncomingMsg() {
+        if (enabled) {
+            incomingMsgs.increment();
+        }
+    }
+
+    @Override
+    public void reportOutgoingMsg() {
+        if (enabled) {
+            outgoingMsgs.increment();
+        }
+    }
+
+    @Override
+    public void reportDroppedMsg() {
         if (enabled) {
-            AtomicLong al = stats.get(key);
-            al.incrementAndGet();
+            droppedMsgs.increment();
         }
     }
 
     @Override
     public void reportTraffic(long bytes) {
         if (enabled) {
-            AtomicLong al = stats.get(PROCESSED_BYTES);
-            al.addAndGet(bytes);
+            processedBytes.add(bytes);
         }
     }
 
@@ -17,6 +17,7 @@ package org.thingsboard.mqtt.broker.service.mqtt;
 
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.Unpooled;
 import io.netty.buffer.UnpooledByteBufAllocator;
 import io.netty.handler.codec.mqtt.MqttConnAckMessage;
 import io.netty.handler.codec.mqtt.MqttConnAckVariableHeader;
@@ -45,6 +46,7 @@ import org.thingsboard.mqtt.broker.actors.client.messages.ConnectionAcceptedMsg;
 import org.thingsboard.mqtt.broker.actors.client.state.ClientActorStateInfo;
 import org.thingsboard.mqtt.broker.common.data.StringUtils;
 import org.thingsboard.mqtt.broker.gen.queue.QueueProtos.PublishMsgProto;
+import org.thingsboard.mqtt.broker.service.mqtt.retain.OffHeapRetainedMsg;
 import org.thingsboard.mqtt.broker.service.mqtt.retain.RetainedMsg;
 import org.thingsboard.mqtt.broker.session.ClientSessionCtx;
 import org.thingsboard.mqtt.broker.util.MqttPropertiesUtil;
@@ -91,6 +93,9 @@ public class DefaultMqttMessageCreator implements MqttMessageGenerator {
     @Setter
     @Value("${mqtt.max-in-flight-msgs:65535}")
     private int maxInFlightMessages;
+    @Setter
+    @Value("${mqtt.zero-copy-payload:false}")
+    private boolean zeroCopyPayload;
 
     @PostConstruct
     public void init() {
@@ -210,22 +215,54 @@ public class DefaultMqttMessageCreator implements MqttMessageGenerator {
 
     @Override
     public MqttPublishMessage createPubMsg(PublishMsgProto msg, int qos, boolean retain, String topicName, int packetId, MqttProperties properties) {
+        if (zeroCopyPayload) {
+            // all the subscribers share the immutable payload of the consumed msg, only a thin ByteBuf view is created per subscriber
+            return getMqttPublishMessage(false, qos, retain, topicName, packetId,
+                    Unpooled.wrappedBuffer(msg.getPayload().asReadOnlyByteBuffer()), properties);
+        }
         return getMqttPublishMessage(false, qos, retain, topicName, packetId, msg.getPayload().toByteArray(), properties);
     }
 
     @Override
     public MqttPublishMessage createPubRetainMsg(int msgId, RetainedMsg retainedMsg) {
+        if (retainedMsg instanceof OffHeapRetainedMsg offHeapRetainedMsg) {
+            return createPubRetainMsg(msgId, offHeapRetainedMsg);
+        }
         return getMqttPublishMessage(false, retainedMsg.getQosLevel(), true,
                 retainedMsg.getTopic(), msgId, retainedMsg.getPayload(), retainedMsg.getProperties());
     }
 
+    private MqttPublishMessage createPubRetainMsg(int msgId, OffHeapRetainedMsg retainedMsg) {
+        // properties are decoded first so that nothing has to be released if the message was cleared meanwhile
+        MqttProperties properties = retainedMsg.materializeProperties();
+        if (properties == null) {
+            return null;
+        }
+        ByteBuf payload = retainedMsg.retainedPayload();
+        if (payload == null) {
+            return null;
+        }
+        return getMqttPublishMessage(false, retainedMsg.getQosLevel(), true,
+                retainedMsg.getTopic(), msgId, payload, properties);
+    }
+
     private MqttPublishMessage getMqttPublishMessage(boolean isDup, int qos, boolean isRetain,
                                                      String topic, int packetId, byte[] payloadBytes, MqttProperties properties) {
+        ByteBuf payload;
+        if (zeroCopyPayload) {
+            payload = Unpooled.wrappedBuffer(payloadBytes);
+        } else {
+            payload = ALLOCATOR.buffer();
+            payload.writeBytes(payloadBytes);
+        }
+        return getMqttPublishMessage(isDup, qos, isRetain, topic, packetId, payload, properties);
+    }
+
+    private MqttPublishMessage getMqttPublishMessage(boolean isDup, int qos, boolean isRetain,
+                                                     String topic, int packetId, ByteBuf payload, MqttProperties properties) {
         MqttFixedHeader mqttFixedHeader =
                 new MqttFixedHeader(MqttMessageType.PUBLISH, isDup, MqttQoS.valueOf(qos), isRetain, 0);
         MqttPublishVariableHeader header = new MqttPublishVariableHeader(topic, packetId, properties);
-        ByteBuf payload = ALLOCATOR.buffer();
-        payload.writeBytes(payloadBytes);
         return new MqttPublishMessage(mqttFixedHeader, header, payload);
     }
 
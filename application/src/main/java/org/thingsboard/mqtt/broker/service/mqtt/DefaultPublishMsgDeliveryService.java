@@ -38,9 +38,6 @@ import org.thingsboard.mqtt.broker.util.MqttReasonCodeResolver;
 import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
 
-import static org.thingsboard.mqtt.broker.common.util.BrokerConstants.DROPPED_MSGS;
-import static org.thingsboard.mqtt.broker.common.util.BrokerConstants.OUTGOING_MSGS;
-
 @Slf4j
 @Service
 public class DefaultPublishMsgDeliveryService implements PublishMsgDeliveryService {
@@ -76,7 +73,7 @@ public class DefaultPublishMsgDeliveryService implements PublishMsgDeliveryServi
         }
         pubMsg = sessionCtx.getTopicAliasCtx().createPublishMsgUsingTopicAlias(pubMsg, minTopicNameLengthForAliasReplacement);
         MqttPublishMessage mqttPubMsg = mqttMessageGenerator.createPubMsg(pubMsg);
-        tbMessageStatsReportClient.reportStats(OUTGOING_MSGS);
+        tbMessageStatsReportClient.reportOutgoingMsg();
         sendPublishMsgToClient(sessionCtx, mqttPubMsg);
     }
 
@@ -92,7 +89,8 @@ public class DefaultPublishMsgDeliveryService implements PublishMsgDeliveryServi
         sendPublishMsgProtoToClient(sessionCtx, msg, qos, retain);
     }
 
-    private void sendPublishMsgProtoToClient(ClientSessionCtx sessionCtx, PublishMsgProto msg, int qos, boolean retain) {
+    @Override
+    public void sendPublishMsgProtoToClient(ClientSessionCtx sessionCtx, PublishMsgProto msg, int qos, boolean retain) {
         if (isTraceEnabled) {
             log.trace("[{}] Executing sendPublishMsgProtoToClient [{}][{}][{}]", sessionCtx.getClientId(), msg, qos, retain);
         }
@@ -109,7 +107,7 @@ public class DefaultPublishMsgDeliveryService implements PublishMsgDeliveryServi
         int packetId = sessionCtx.getMsgIdSeq().nextMsgId();
         MqttPublishMessage mqttPubMsg = mqttMessageGenerator.createPubMsg(msg, qos, retain, topicName, packetId, properties);
 
-        tbMessageStatsReportClient.reportStats(OUTGOING_MSGS);
+        tbMessageStatsReportClient.reportOutgoingMsg();
         if (writeAndFlush) {
             sendPublishMsgToClient(sessionCtx, mqttPubMsg);
         } else {
@@ -127,7 +125,7 @@ public class DefaultPublishMsgDeliveryService implements PublishMsgDeliveryServi
         }
         pubMsg = sessionCtx.getTopicAliasCtx().createPublishMsgUsingTopicAlias(pubMsg, minTopicNameLengthForAliasReplacement);
         MqttPublishMessage mqttPubMsg = mqttMessageGenerator.createPubMsg(pubMsg);
-        tbMessageStatsReportClient.reportStats(OUTGOING_MSGS);
+        tbMessageStatsReportClient.reportOutgoingMsg();
         sendPublishMsgWithoutFlushToClient(sessionCtx, mqttPubMsg);
     }
 
@@ -138,6 +136,12 @@ public class DefaultPublishMsgDeliveryService implements PublishMsgDeliveryServi
         }
         int packetId = sessionCtx.getMsgIdSeq().nextMsgId();
         MqttPublishMessage mqttPubMsg = mqttMessageGenerator.createPubRetainMsg(packetId, retainedMsg);
+        if (mqttPubMsg == null) {
+            if (isTraceEnabled) {
+                log.trace("[{}][{}] Retained msg was cleared before it was sent", sessionCtx.getClientId(), retainedMsg.getTopic());
+            }
+            return;
+        }
         sendPublishMsgToClient(sessionCtx, mqttPubMsg);
     }
 
@@ -176,7 +180,7 @@ public class DefaultPublishMsgDeliveryService implements PublishMsgDeliveryServi
             log.warn("[{}][{}] Failed to send PUBLISH msg to MQTT client.",
                     sessionCtx.getClientId(), sessionCtx.getSessionId(), e);
             if (!mqttPubMsg.fixedHeader().isRetain()) {
-                tbMessageStatsReportClient.reportStats(DROPPED_MSGS);
+                tbMessageStatsReportClient.reportDroppedMsg();
             }
             throw e;
         }
@@ -52,6 +52,9 @@ public interface MqttMessageGenerator {
 
     MqttPublishMessage createPubMsg(PublishMsgProto publishMsgProto, int qos, boolean retain, String topicName, int packetId, MqttProperties properties);
 
+    /**
+     * Returns null if the retained msg is kept off-heap and was cleared in the meantime.
+     */
     MqttPublishMessage createPubRetainMsg(int msgId, RetainedMsg retainedMsg);
 
     MqttMessage createPingRespMsg();
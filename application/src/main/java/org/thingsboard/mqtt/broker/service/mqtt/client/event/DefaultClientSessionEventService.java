@@ -17,6 +17,7 @@ package org.thingsboard.mqtt.broker.service.mqtt.client.event;
 
 import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
 import com.google.common.util.concurrent.SettableFuture;
 import jakarta.annotation.PostConstruct;
 import jakarta.annotation.PreDestroy;
@@ -26,6 +27,10 @@ import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.time.StopWatch;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import org.thingsboard.mqtt.broker.actors.client.messages.ClientCallback;
+import org.thingsboard.mqtt.broker.actors.client.messages.ConnectionRequestInfo;
+import org.thingsboard.mqtt.broker.actors.client.messages.cluster.ConnectionRequestMsg;
+import org.thingsboard.mqtt.broker.actors.client.messages.cluster.SessionClusterManagementMsg;
 import org.thingsboard.mqtt.broker.adaptor.ProtoConverter;
 import org.thingsboard.mqtt.broker.cluster.ServiceInfoProvider;
 import org.thingsboard.mqtt.broker.common.data.ClientInfo;
@@ -33,6 +38,7 @@ import org.thingsboard.mqtt.broker.common.data.ClientSessionInfo;
 import org.thingsboard.mqtt.broker.common.data.SessionInfo;
 import org.thingsboard.mqtt.broker.common.util.ThingsBoardThreadFactory;
 import org.thingsboard.mqtt.broker.gen.queue.QueueProtos;
+import org.thingsboard.mqtt.broker.queue.TbQueueAdmin;
 import org.thingsboard.mqtt.broker.queue.TbQueueCallback;
 import org.thingsboard.mqtt.broker.queue.TbQueueControlledOffsetConsumer;
 import org.thingsboard.mqtt.broker.queue.TbQueueMsgMetadata;
@@ -51,6 +57,7 @@ import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
 
 import static org.thingsboard.mqtt.broker.common.util.BrokerConstants.REQUEST_ID_HEADER;
 import static org.thingsboard.mqtt.broker.common.util.BrokerConstants.REQUEST_TIME;
@@ -70,6 +77,9 @@ public class DefaultClientSessionEventService implements ClientSessionEventServi
     private final ClientSessionEventQueueFactory clientSessionEventQueueFactory;
     private final ServiceInfoProvider serviceInfoProvider;
     private final ClientSessionEventFactory eventFactory;
+    private final ClientSessionCallbackMsgFactory callbackMsgFactory;
+    private final ClientSessionEventActorManager clientSessionEventActorManager;
+    private final TbQueueAdmin tbQueueAdmin;
 
     @Value("${queue.client-session-event.max-pending-requests}")
     private long maxPendingRequests;
@@ -79,6 +89,8 @@ public class DefaultClientSessionEventService implements ClientSessionEventServi
     private long cleanupInterval;
     @Value("${queue.client-session-event-response.max-request-timeout}")
     private long maxRequestTimeout;
+    @Value("${queue.client-session-event.local-fast-path.enabled:false}")
+    private boolean localFastPathEnabled;
 
     private ScheduledExecutorService cleanupStaleRequestsScheduler;
     private TbQueueProducer<TbProtoQueueMsg<QueueProtos.ClientSessionEventProto>> eventProducer;
@@ -88,6 +100,9 @@ public class DefaultClientSessionEventService implements ClientSessionEventServi
 
     @PostConstruct
     public void init() {
+        if (localFastPathEnabled) {
+            validateLocalFastPath();
+        }
         this.eventProducer = clientSessionEventQueueFactory.createEventProducer(serviceInfoProvider.getServiceId());
         this.eventResponseConsumer = clientSessionEventQueueFactory.createEventResponseConsumer(serviceInfoProvider.getServiceId());
         startProcessingEventResponses();
@@ -99,11 +114,15 @@ public class DefaultClientSessionEventService implements ClientSessionEventServi
         if (tickSize.get() > maxPendingRequests) {
             return Futures.immediateFailedFuture(new RuntimeException("Cannot send CONNECTION_REQUEST. Pending request map is full!"));
         }
+        if (localFastPathEnabled) {
+            return requestLocalConnection(sessionInfo);
+        }
 
         return sendEvent(
                 sessionInfo.getClientInfo().getClientId(),
                 eventFactory.createConnectionRequestEventProto(sessionInfo),
                 true,
+                false,
                 null);
     }
 
@@ -113,6 +132,7 @@ public class DefaultClientSessionEventService implements ClientSessionEventServi
                 clientInfo.getClientId(),
                 eventFactory.createDisconnectedEventProto(clientInfo, sessionId, sessionExpiryInterval),
                 false,
+                localFastPathEnabled,
                 null);
     }
 
@@ -122,6 +142,7 @@ public class DefaultClientSessionEventService implements ClientSessionEventServi
                 clientInfo.getClientId(),
                 eventFactory.createDisconnectedEventProto(clientInfo, sessionId, -1),
                 false,
+                false,
                 callback);
     }
 
@@ -131,6 +152,7 @@ public class DefaultClientSessionEventService implements ClientSessionEventServi
                 sessionInfo.getClientInfo().getClientId(),
                 eventFactory.createTryClearSessionRequestEventProto(sessionInfo),
                 false,
+                localFastPathEnabled,
                 null);
     }
 
@@ -140,6 +162,7 @@ public class DefaultClientSessionEventService implements ClientSessionEventServi
                 clientSessionInfo.getClientId(),
                 eventFactory.createTryClearSessionRequestEventProto(clientSessionInfo),
                 false,
+                localFastPathEnabled,
                 null);
     }
 
@@ -149,14 +172,20 @@ public class DefaultClientSessionEventService implements ClientSessionEventServi
                 clientId,
                 eventFactory.createApplicationTopicRemoveRequestProto(clientId),
                 false,
+                localFastPathEnabled,
                 null);
     }
 
     private ListenableFuture<ConnectionResponse> sendEvent(String clientId, QueueProtos.ClientSessionEventProto eventProto,
-                                                           boolean isAwaitingResponse, TbQueueCallback callback) {
+                                                           boolean isAwaitingResponse, boolean processLocally, TbQueueCallback callback) {
         UUID requestId = UUID.randomUUID();
         TbProtoQueueMsg<QueueProtos.ClientSessionEventProto> eventRequest = generateRequest(clientId, eventProto, requestId);
 
+        if (processLocally) {
+            sendLocalEvent(clientId, eventRequest);
+            return Futures.immediateFuture(null);
+        }
+
         SettableFuture<ConnectionResponse> future = SettableFuture.create();
         if (isAwaitingResponse) {
             EventFuture eventFuture = new EventFuture(tickTs.get() + maxRequestTimeout, future);
@@ -188,6 +217,64 @@ public class DefaultClientSessionEventService implements ClientSessionEventServi
         return future;
     }
 
+    /**
+     * Resolves the connection request by the client actor of this node directly instead of the round trip through
+     * the client session event request and response topics. Safe only when this node processes all client session events,
+     * i.e. it is the only node in the cluster, which is checked once on startup by {@link #validateLocalFastPath()}.
+     * All the events of this node are sent the same way for the whole node lifetime, so their order for a client is kept by the actor mailbox.
+     */
+    private ListenableFuture<ConnectionResponse> requestLocalConnection(SessionInfo sessionInfo) {
+        String clientId = sessionInfo.getClientInfo().getClientId();
+        UUID requestId = UUID.randomUUID();
+        SettableFuture<ConnectionResponse> future = SettableFuture.create();
+        pendingRequests.put(requestId, new EventFuture(tickTs.get() + maxRequestTimeout, future));
+        future.addListener(() -> pendingRequests.remove(requestId), MoreExecutors.directExecutor());
+
+        if (log.isTraceEnabled()) {
+            log.trace("[{}][{}] Sending local connection request.", clientId, requestId);
+        }
+        ConnectionRequestInfo requestInfo = new ConnectionRequestInfo(requestId, System.currentTimeMillis(), null, future);
+        ClientCallback callback = new ClientCallback() {
+            @Override
+            public void onSuccess() {
+            }
+
+            @Override
+            public void onFailure(Throwable e) {
+                future.setException(e);
+            }
+        };
+        try {
+            clientSessionEventActorManager.sendSessionClusterManagementMsg(clientId, new ConnectionRequestMsg(callback, sessionInfo, requestInfo));
+        } catch (Exception e) {
+            future.setException(e);
+        }
+        return future;
+    }
+
+    private void sendLocalEvent(String clientId, TbProtoQueueMsg<QueueProtos.ClientSessionEventProto> eventRequest) {
+        String eventType = eventRequest.getValue().getEventType();
+        if (log.isTraceEnabled()) {
+            log.trace("[{}][{}] Sending local client session event.", clientId, eventType);
+        }
+        ClientCallback callback = new ClientCallback() {
+            @Override
+            public void onSuccess() {
+            }
+
+            @Override
+            public void onFailure(Throwable e) {
+                log.warn("[{}] Failed to process local {} event.", clientId, eventType, e);
+            }
+        };
+        try {
+            SessionClusterManagementMsg msg = callbackMsgFactory.createSessionClusterManagementMsg(eventRequest, callback);
+            clientSessionEventActorManager.sendSessionClusterManagementMsg(clientId, msg);
+        } catch (Exception e) {
+            log.warn("[{}] Failed to send local {} event to actor.", clientId, eventType, e);
+        }
+    }
+
     private TbProtoQueueMsg<QueueProtos.ClientSessionEventProto> generateRequest(String clientId, QueueProtos.ClientSessionEventProto clientSessionEventProto, UUID requestId) {
         TbProtoQueueMsg<QueueProtos.ClientSessionEventProto> eventRequest = new TbProtoQueueMsg<>(clientId, clientSessionEventProto);
         eventRequest.getHeaders().put(REQUEST_ID_HEADER, BytesUtil.uuidToBytes(requestId));
@@ -269,6 +356,24 @@ public class DefaultClientSessionEventService implements ClientSessionEventServi
         }, cleanupInterval, cleanupInterval, TimeUnit.MILLISECONDS);
     }
 
+    /**
+     * The local fast path skips the cluster-wide ownership check of the client session, so it is a static single-node setting.
+     * Switching it at runtime would let the events of the same client be processed locally and through the queue at the same time,
+     * hence the broker refuses to start with the fast path enabled when other broker nodes are present in the cluster
+     * (i.e. other nodes created their client session event response topics).
+     */
+    void validateLocalFastPath() {
+        String serviceId = serviceInfoProvider.getServiceId();
+        List<String> otherServiceIds = tbQueueAdmin.getBrokerServiceIds().stream()
+                .filter(brokerServiceId -> !serviceId.equals(brokerServiceId))
+                .collect(Collectors.toList());
+        if (!otherServiceIds.isEmpty()) {
+            throw new IllegalStateException("Client session events local fast path supports a single-node deployment only, but other broker nodes " +
+                    "were found: " + otherServiceIds + ". Disable the fast path or remove the client session event topics of decommissioned nodes");
+        }
+        log.info("[{}] Node is alone in the cluster, processing client session events locally.", serviceId);
+    }
+
     private void cleanup() {
         pendingRequests.forEach((key, eventFuture) -> {
             if (eventFuture.expTime < tickTs.get()) {
@@ -17,6 +17,7 @@ package org.thingsboard.mqtt.broker.service.mqtt.client.session;
 
 import org.thingsboard.mqtt.broker.common.data.ClientSessionInfo;
 import org.thingsboard.mqtt.broker.exception.QueuePersistenceException;
+import org.thingsboard.mqtt.broker.service.snapshot.StateSnapshot;
 
 import java.util.Map;
 
@@ -24,6 +25,10 @@ public interface ClientSessionConsumer {
 
     Map<String, ClientSessionInfo> initLoad() throws QueuePersistenceException;
 
+    Map<String, ClientSessionInfo> initLoad(StateSnapshot<ClientSessionInfo> snapshot) throws QueuePersistenceException;
+
+    Map<Integer, Long> getProcessedOffsets();
+
     void listen(ClientSessionChangesCallback callback);
 
 }
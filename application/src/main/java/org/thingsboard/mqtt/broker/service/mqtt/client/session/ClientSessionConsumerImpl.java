@@ -31,14 +31,18 @@ import org.thingsboard.mqtt.broker.gen.queue.QueueProtos;
 import org.thingsboard.mqtt.broker.queue.TbQueueAdmin;
 import org.thingsboard.mqtt.broker.queue.TbQueueControlledOffsetConsumer;
 import org.thingsboard.mqtt.broker.queue.common.TbProtoQueueMsg;
+import org.thingsboard.mqtt.broker.queue.common.TbQueuePartitionedLoader;
 import org.thingsboard.mqtt.broker.queue.constants.QueueConstants;
 import org.thingsboard.mqtt.broker.queue.provider.ClientSessionQueueFactory;
+import org.thingsboard.mqtt.broker.service.snapshot.StateSnapshot;
+import org.thingsboard.mqtt.broker.service.snapshot.StateSnapshotUtil;
 
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 
@@ -52,10 +56,13 @@ public class ClientSessionConsumerImpl implements ClientSessionConsumer {
     private volatile boolean initializing = true;
     private volatile boolean stopped = false;
 
+    private final Map<Integer, Long> processedOffsets = new ConcurrentHashMap<>();
     private final ExecutorService consumerExecutor = Executors.newSingleThreadExecutor(ThingsBoardThreadFactory.forName("client-session-listener"));
 
     @Value("${queue.client-session.poll-interval}")
     private long pollDuration;
+    @Value("${queue.init-load.parallel:false}")
+    private boolean parallelInitLoad;
 
     private final ClientSessionQueueFactory clientSessionQueueFactory;
     private final ServiceInfoProvider serviceInfoProvider;
@@ -72,16 +79,30 @@ public class ClientSessionConsumerImpl implements ClientSessionConsumer {
 
     @Override
     public Map<String, ClientSessionInfo> initLoad() throws QueuePersistenceException {
+        return initLoad(null);
+    }
+
+    @Override
+    public Map<String, ClientSessionInfo> initLoad(StateSnapshot<ClientSessionInfo> snapshot) throws QueuePersistenceException {
+        if (parallelInitLoad) {
+            return parallelInitLoad(snapshot);
+        }
         log.debug("Starting client sessions initLoad");
         long startTime = System.nanoTime();
         long totalMessageCount = 0L;
 
         String dummySessionClientId = persistDummySession();
-        clientSessionConsumer.assignOrSubscribe();
+        Map<String, ClientSessionInfo> allClientSessions;
+        if (StateSnapshotUtil.seekToSnapshot(clientSessionConsumer, snapshot)) {
+            allClientSessions = snapshot.getEntries();
+            processedOffsets.putAll(snapshot.getOffsets());
+        } else {
+            clientSessionConsumer.assignOrSubscribe();
+            allClientSessions = new HashMap<>();
+        }
 
         List<TbProtoQueueMsg<QueueProtos.ClientSessionInfoProto>> messages;
         boolean encounteredDummySession = false;
-        Map<String, ClientSessionInfo> allClientSessions = new HashMap<>();
         do {
             try {
                 messages = clientSessionConsumer.poll(pollDuration);
@@ -102,6 +123,7 @@ public class ClientSessionConsumerImpl implements ClientSessionConsumer {
                             allClientSessions.put(clientId, clientSession);
                         }
                     }
+                    processedOffsets.put(msg.getPartition(), msg.getOffset() + 1);
                 }
                 clientSessionConsumer.commitSync();
             } catch (Exception e) {
@@ -122,6 +144,45 @@ public class ClientSessionConsumerImpl implements ClientSessionConsumer {
         return allClientSessions;
     }
 
+    private Map<String, ClientSessionInfo> parallelInitLoad(StateSnapshot<ClientSessionInfo> snapshot) {
+        log.debug("Starting client sessions parallel initLoad");
+        long startTime = System.nanoTime();
+
+        boolean fromSnapshot = StateSnapshotUtil.isApplicable(clientSessionConsumer, snapshot);
+        Map<String, ClientSessionInfo> allClientSessions = fromSnapshot ? new ConcurrentHashMap<>(snapshot.getEntries()) : new ConcurrentHashMap<>();
+        Map<Integer, Long> offsets = TbQueuePartitionedLoader.<TbProtoQueueMsg<QueueProtos.ClientSessionInfoProto>>builder()
+                .consumer(clientSessionConsumer)
+                .partitionConsumerFactory(partition -> clientSessionQueueFactory.createConsumer(serviceInfoProvider.getServiceId() + "-" + partition,
+                        clientSessionConsumer.getConsumerGroupId()))
+                .admin(queueAdmin)
+                .pollDuration(pollDuration)
+                .stopped(() -> stopped)
+                .threadNamePrefix("client-session-init-load")
+                .build()
+                .load(fromSnapshot ? snapshot.getOffsets() : Collections.emptyMap(), msg -> {
+                    if (isClientSessionInfoProtoEmpty(msg.getValue())) {
+                        allClientSessions.remove(msg.getKey());
+                    } else {
+                        allClientSessions.put(msg.getKey(), ProtoConverter.convertToClientSessionInfo(msg.getValue()));
+                    }
+                });
+        processedOffsets.putAll(offsets);
+
+        initializing = false;
+
+        if (log.isDebugEnabled()) {
+            long endTime = System.nanoTime();
+            log.debug("Finished client sessions parallel initLoad for {} sessions within time: {} nanos", allClientSessions.size(), endTime - startTime);
+        }
+
+        return allClientSessions;
+    }
+
+    @Override
+    public Map<Integer, Long> getProcessedOffsets() {
+        return new HashMap<>(processedOffsets);
+    }
+
     @Override
     public void listen(ClientSessionChangesCallback callback) {
         if (initializing) {
@@ -143,6 +204,7 @@ public class ClientSessionConsumerImpl implements ClientSessionConsumer {
                             ClientSessionInfo clientSession = ProtoConverter.convertToClientSessionInfo(msg.getValue());
                             callback.accept(clientId, serviceId, clientSession);
                         }
+                        processedOffsets.put(msg.getPartition(), msg.getOffset() + 1);
                     }
                     clientSessionConsumer.commitSync();
                 } catch (Exception e) {
@@ -23,4 +23,10 @@ public interface FlowControlService {
 
     void removeFromMap(String clientId);
 
+    /**
+     * Schedules sending of the delayed messages of the client, e.g. when PUBACK/PUBCOMP released an in-flight slot.
+     * Does nothing if the client has no delayed messages or the processing is already scheduled.
+     */
+    void scheduleDelayedMsgProcessing(String clientId);
+
 }
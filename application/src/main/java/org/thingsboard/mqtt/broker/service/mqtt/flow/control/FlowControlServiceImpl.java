@@ -18,39 +18,49 @@ package org.thingsboard.mqtt.broker.service.mqtt.flow.control;
 import jakarta.annotation.PostConstruct;
 import jakarta.annotation.PreDestroy;
 import lombok.Getter;
+import lombok.RequiredArgsConstructor;
 import lombok.Setter;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.thingsboard.mqtt.broker.actors.client.state.PublishedInFlightCtx;
 import org.thingsboard.mqtt.broker.common.util.ThingsBoardExecutors;
+import org.thingsboard.mqtt.broker.service.stats.StatsManager;
 
-import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
 
+/**
+ * Sends the delayed messages of the clients that reached their "Receive Maximum".
+ * The processing of the client is scheduled when its PUBACK/PUBCOMP releases an in-flight slot
+ * and sends as many delayed messages as the free slots allow.
+ */
 @Service
 @Slf4j
+@RequiredArgsConstructor
 public class FlowControlServiceImpl implements FlowControlService {
 
-    private static final int PARALLELISM = 1;
+    private final StatsManager statsManager;
 
     @Setter
     @Value("${mqtt.flow-control.enabled:true}")
     private boolean flowControlEnabled;
-    @Setter
-    @Value("${mqtt.flow-control.timeout:1000}")
-    private int timeout;
+    @Value("${mqtt.flow-control.threads-count:1}")
+    private int threadsCount;
     @Value("${mqtt.flow-control.ttl:600}")
     private int ttlSecs;
 
     @Getter
     @Setter
     private ConcurrentMap<String, PublishedInFlightCtx> clientsWithDelayedMsgMap;
+    private final Set<String> clientsWithScheduledProcessing = ConcurrentHashMap.newKeySet();
     @Setter
     private ExecutorService service;
+    @Setter
     private long ttlMs;
     private volatile boolean stopped = false;
 
@@ -61,63 +71,62 @@ public class FlowControlServiceImpl implements FlowControlService {
         }
         clientsWithDelayedMsgMap = new ConcurrentHashMap<>();
         ttlMs = TimeUnit.SECONDS.toMillis(ttlSecs);
-        service = ThingsBoardExecutors.initExecutorService(PARALLELISM, "flow-control-executor");
-        launchProcessing();
-    }
-
-    void launchProcessing() {
-        service.submit(() -> {
-            while (!stopped) {
-                try {
-                    if (clientsWithDelayedMsgMap.isEmpty()) {
-                        sleep();
-                        continue;
-                    }
-                    boolean atLeastOneMsgProcessed = false;
-                    for (Map.Entry<String, PublishedInFlightCtx> entry : clientsWithDelayedMsgMap.entrySet()) {
-                        boolean isMessageProcessed = entry.getValue().processMsg(ttlMs);
-                        if (isMessageProcessed) {
-                            atLeastOneMsgProcessed = true;
-                        }
-                    }
-                    if (!atLeastOneMsgProcessed) {
-                        sleep();
-                    }
-                } catch (Exception e) {
-                    if (e instanceof InterruptedException) {
-                        log.info("Flow control processing was interrupted");
-                        break;
-                    }
-                    if (!stopped) {
-                        log.error("Failed to process msg", e);
-                        try {
-                            sleep();
-                        } catch (InterruptedException e2) {
-                            log.info("Thread was interrupted!");
-                            break;
-                        }
-                    }
-                }
-            }
-        });
+        service = ThingsBoardExecutors.initExecutorService(threadsCount, "flow-control-executor");
+        statsManager.registerFlowControlStats(clientsWithDelayedMsgMap);
     }
 
     @Override
     public void addToMap(String clientId, PublishedInFlightCtx ctx) {
         if (flowControlEnabled && clientId != null && ctx != null) {
-            clientsWithDelayedMsgMap.put(clientId, ctx);
+            PublishedInFlightCtx previousCtx = clientsWithDelayedMsgMap.put(clientId, ctx);
+            if (previousCtx != ctx) {
+                if (previousCtx != null) {
+                    statsManager.clearClientDelayedMsgStats(clientId);
+                }
+                statsManager.registerClientDelayedMsgStats(clientId, ctx);
+            }
         }
     }
 
     @Override
     public void removeFromMap(String clientId) {
         if (flowControlEnabled && clientId != null) {
-            clientsWithDelayedMsgMap.remove(clientId);
+            if (clientsWithDelayedMsgMap.remove(clientId) != null) {
+                statsManager.clearClientDelayedMsgStats(clientId);
+            }
         }
     }
 
-    void sleep() throws InterruptedException {
-        Thread.sleep(timeout);
+    @Override
+    public void scheduleDelayedMsgProcessing(String clientId) {
+        if (!flowControlEnabled || clientId == null || stopped) {
+            return;
+        }
+        if (!clientsWithDelayedMsgMap.containsKey(clientId) || !clientsWithScheduledProcessing.add(clientId)) {
+            return;
+        }
+        try {
+            service.execute(() -> processDelayedMsgs(clientId));
+        } catch (RejectedExecutionException e) {
+            clientsWithScheduledProcessing.remove(clientId);
+            if (!stopped) {
+                log.warn("[{}] Failed to schedule delayed messages processing", clientId, e);
+            }
+        }
+    }
+
+    void processDelayedMsgs(String clientId) {
+        // removed before processing so the ack received in the meantime schedules the next round
+        clientsWithScheduledProcessing.remove(clientId);
+        PublishedInFlightCtx ctx = clientsWithDelayedMsgMap.get(clientId);
+        if (ctx == null) {
+            return;
+        }
+        try {
+            ctx.processMsg(ttlMs);
+        } catch (Exception e) {
+            log.error("[{}] Failed to process delayed messages", clientId, e);
+        }
     }
 
     @PreDestroy
@@ -15,10 +15,12 @@
  */
 package org.thingsboard.mqtt.broker.service.mqtt.keepalive;
 
-import lombok.AllArgsConstructor;
+import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.RequiredArgsConstructor;
+import lombok.Setter;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.thingsboard.mqtt.broker.actors.client.messages.mqtt.MqttDisconnectMsg;
@@ -27,30 +29,80 @@ import org.thingsboard.mqtt.broker.session.ClientMqttActorManager;
 import org.thingsboard.mqtt.broker.session.DisconnectReason;
 import org.thingsboard.mqtt.broker.session.DisconnectReasonType;
 
+import java.util.ArrayDeque;
 import java.util.Map;
+import java.util.Queue;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
 
+/**
+ * Tracks the keep-alive of the sessions with a timing wheel, so each monitoring tick visits only the sessions that may be expired.
+ * <p>
+ * Every session is placed into the wheel bucket of its expiry time. When the bucket is processed, the session is either
+ * disconnected or moved to the bucket of its new expiry time calculated from the last received packet, so an active session
+ * is visited about once per its keep-alive period. Receiving a packet only updates the last packet time with the cached clock.
+ * The wheel is accessed only by the monitoring thread, new sessions are passed to it through a queue.
+ */
 @Slf4j
 @Service
 @RequiredArgsConstructor
 public class KeepAliveServiceImpl implements KeepAliveService {
 
     private static final int CLEARED_KEEP_ALIVE_VALUE = -1;
+    private static final int WHEEL_SIZE = 512;
 
     private final Map<UUID, KeepAliveInfo> keepAliveInfoMap = new ConcurrentHashMap<>();
+    private final Queue<KeepAliveInfo> newSessions = new ConcurrentLinkedQueue<>();
+    private final ArrayDeque<KeepAliveInfo>[] wheel = newWheel();
 
     private final ClientMqttActorManager clientMqttActorManager;
 
+    @Value("${mqtt.keep-alive.monitoring-delay-ms:100}")
+    private long monitoringDelayMs = 100;
+
+    @Setter(AccessLevel.PACKAGE)
+    private LongSupplier timeSource = System::currentTimeMillis;
+
+    private volatile long clock = System.currentTimeMillis();
+    private long lastProcessedTick = -1;
+
     @Scheduled(fixedRateString = "${mqtt.keep-alive.monitoring-delay-ms}")
     void processKeepAlive() {
-        for (Map.Entry<UUID, KeepAliveInfo> entry : keepAliveInfoMap.entrySet()) {
-            UUID sessionId = entry.getKey();
-            KeepAliveInfo keepAliveInfo = entry.getValue();
+        long now = timeSource.getAsLong();
+        clock = now;
+        long currentTick = now / monitoringDelayMs;
+        if (lastProcessedTick == -1) {
+            lastProcessedTick = currentTick - 1;
+        }
+
+        KeepAliveInfo newSession;
+        while ((newSession = newSessions.poll()) != null) {
+            schedule(newSession, newSession.getLastPacketTime().get() + newSession.getKeepAliveMs(), currentTick);
+        }
+
+        long firstTick = Math.max(lastProcessedTick + 1, currentTick - WHEEL_SIZE + 1);
+        for (long tick = firstTick; tick <= currentTick; tick++) {
+            processBucket(wheel[(int) (tick % WHEEL_SIZE)], now, currentTick);
+        }
+        lastProcessedTick = currentTick;
+    }
+
+    private void processBucket(ArrayDeque<KeepAliveInfo> bucket, long now, long currentTick) {
+        for (int i = bucket.size(); i > 0; i--) {
+            KeepAliveInfo keepAliveInfo = bucket.poll();
+            UUID sessionId = keepAliveInfo.getSessionId();
+            if (keepAliveInfoMap.get(sessionId) != keepAliveInfo) {
+                continue;
+            }
             long lastPacketTime = keepAliveInfo.getLastPacketTime().get();
-            if (isInactive(keepAliveInfo.getKeepAliveSeconds(), lastPacketTime)
+            if (lastPacketTime == CLEARED_KEEP_ALIVE_VALUE) {
+                continue;
+            }
+            if (isInactive(keepAliveInfo.getKeepAliveSeconds(), lastPacketTime, now)
                     && keepAliveInfo.getLastPacketTime().compareAndSet(lastPacketTime, CLEARED_KEEP_ALIVE_VALUE)) {
                 keepAliveInfoMap.remove(sessionId);
                 if (log.isDebugEnabled()) {
@@ -59,18 +111,32 @@ public class KeepAliveServiceImpl implements KeepAliveService {
                 }
                 clientMqttActorManager.disconnect(keepAliveInfo.getClientId(), new MqttDisconnectMsg(sessionId,
                         new DisconnectReason(DisconnectReasonType.ON_KEEP_ALIVE, "Client was inactive too long")));
+            } else {
+                schedule(keepAliveInfo, keepAliveInfo.getLastPacketTime().get() + keepAliveInfo.getKeepAliveMs(), currentTick);
             }
         }
     }
 
+    private void schedule(KeepAliveInfo keepAliveInfo, long expiryTime, long currentTick) {
+        // sessions expiring later than one wheel rotation are visited on each rotation and rescheduled
+        long tick = Math.max(expiryTime / monitoringDelayMs + 1, currentTick + 1);
+        wheel[(int) (tick % WHEEL_SIZE)].add(keepAliveInfo);
+    }
+
     boolean isInactive(int keepAliveSeconds, long lastPacketTime) {
+        return isInactive(keepAliveSeconds, lastPacketTime, timeSource.getAsLong());
+    }
+
+    private boolean isInactive(int keepAliveSeconds, long lastPacketTime, long now) {
         // A Keep Alive value of 0 has the effect of turning off the Keep Alive mechanism
         if (keepAliveSeconds == 0) {
             return false;
         }
-        long now = System.currentTimeMillis();
-        long actualKeepAliveMs = (long) (TimeUnit.SECONDS.toMillis(keepAliveSeconds) * 1.5);
-        return lastPacketTime + actualKeepAliveMs < now;
+        return lastPacketTime + toActualKeepAliveMs(keepAliveSeconds) < now;
+    }
+
+    private static long toActualKeepAliveMs(int keepAliveSeconds) {
+        return (long) (TimeUnit.SECONDS.toMillis(keepAliveSeconds) * 1.5);
     }
 
     @Override
@@ -78,8 +144,12 @@ public class KeepAliveServiceImpl implements KeepAliveService {
         if (log.isTraceEnabled()) {
             log.trace("[{}] Registering keep-alive session for {} seconds", sessionId, keepAliveSeconds);
         }
-        keepAliveInfoMap.put(sessionId, new KeepAliveInfo(clientId, keepAliveSeconds,
-                new AtomicLong(System.currentTimeMillis())));
+        KeepAliveInfo keepAliveInfo = new KeepAliveInfo(clientId, sessionId, keepAliveSeconds, toActualKeepAliveMs(keepAliveSeconds),
+                new AtomicLong(clock));
+        keepAliveInfoMap.put(sessionId, keepAliveInfo);
+        if (keepAliveSeconds != 0) {
+            newSessions.add(keepAliveInfo);
+        }
     }
 
     @Override
@@ -99,7 +169,7 @@ public class KeepAliveServiceImpl implements KeepAliveService {
         }
         long lastPacketTime = keepAliveInfo.getLastPacketTime().get();
         if (lastPacketTime == CLEARED_KEEP_ALIVE_VALUE
-                || !keepAliveInfo.getLastPacketTime().compareAndSet(lastPacketTime, System.currentTimeMillis())) {
+                || !keepAliveInfo.getLastPacketTime().compareAndSet(lastPacketTime, clock)) {
             log.warn("[{}] LastPacketTime is already cleared", sessionId);
             throw new MqttException("LastPacketTime is already cleared for session " + sessionId);
         }
@@ -109,11 +179,22 @@ public class KeepAliveServiceImpl implements KeepAliveService {
         return keepAliveInfoMap.size();
     }
 
-    @AllArgsConstructor
+    @SuppressWarnings("unchecked")
+    private static ArrayDeque<KeepAliveInfo>[] newWheel() {
+        ArrayDeque<KeepAliveInfo>[] wheel = new ArrayDeque[WHEEL_SIZE];
+        for (int i = 0; i < WHEEL_SIZE; i++) {
+            wheel[i] = new ArrayDeque<>();
+        }
+        return wheel;
+    }
+
+    @RequiredArgsConstructor
     @Getter
     private static class KeepAliveInfo {
         private final String clientId;
+        private final UUID sessionId;
         private final int keepAliveSeconds;
+        private final long keepAliveMs;
         private final AtomicLong lastPacketTime;
     }
 }
@@ -0,0 +1,243 @@
+/**
+ * Copyright © 2016-2024 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.mqtt.broker.service.mqtt.persistence.application;
+
+import lombok.extern.slf4j.Slf4j;
+import org.thingsboard.mqtt.broker.gen.queue.QueueProtos.PublishMsgProto;
+import org.thingsboard.mqtt.broker.queue.TbQueueMultiplexedConsumer;
+import org.thingsboard.mqtt.broker.queue.common.TbProtoQueueMsg;
+import org.thingsboard.mqtt.broker.service.mqtt.persistence.application.data.ApplicationMultiplexedClientCtx;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reads the topics of many Application clients with a single consumer and demultiplexes the polled messages
+ * to the per-client delivery contexts. The topic of a client is paused while its pack is in flight
+ * and resumed once the pack is acknowledged, so a slow client does not hold back the others.
+ * <p>
+ * All the consumer and client state is accessed only by the thread running this consumer,
+ * other threads hand their requests over with commands.
+ */
+@Slf4j
+class ApplicationMultiplexedConsumer implements Runnable {
+
+    private final TbQueueMultiplexedConsumer<TbProtoQueueMsg<PublishMsgProto>> consumer;
+    private final ApplicationPersistenceProcessorImpl processor;
+    private final long pollDuration;
+
+    private final BlockingQueue<Runnable> commands = new LinkedBlockingQueue<>();
+    private final Queue<ApplicationMultiplexedClientCtx> processedPacks = new ConcurrentLinkedQueue<>();
+    private final Map<String, ApplicationMultiplexedClientCtx> clients = new HashMap<>();
+
+    private volatile boolean stopped;
+    private long nextTimeoutCheckNanos;
+
+    ApplicationMultiplexedConsumer(TbQueueMultiplexedConsumer<TbProtoQueueMsg<PublishMsgProto>> consumer,
+                                   ApplicationPersistenceProcessorImpl processor, long pollDuration) {
+        this.consumer = consumer;
+        this.processor = processor;
+        this.pollDuration = pollDuration;
+    }
+
+    /**
+     * @return the future that is completed once the client is not processed anymore, cancel it to stop the processing
+     */
+    CompletableFuture<Void> register(ApplicationMultiplexedClientCtx clientCtx) {
+        clientCtx.setOnPackProcessed(() -> {
+            processedPacks.add(clientCtx);
+            consumer.wakeup();
+        });
+        CompletableFuture<Void> future = clientCtx.getFuture();
+        future.whenComplete((unused, throwable) -> submit(() -> unassign(clientCtx)));
+        submit(() -> assign(clientCtx));
+        return future;
+    }
+
+    void stop() {
+        stopped = true;
+        consumer.wakeup();
+    }
+
+    @Override
+    public void run() {
+        while (!stopped) {
+            try {
+                executeCommands();
+                completeProcessedPacks();
+                completeTimedOutPacks();
+                if (consumer.getAssignedTopicsCount() == 0) {
+                    Runnable command = commands.poll(pollDuration, TimeUnit.MILLISECONDS);
+                    if (command != null) {
+                        command.run();
+                    }
+                    continue;
+                }
+                Map<String, List<TbProtoQueueMsg<PublishMsgProto>>> messages = consumer.poll(pollDuration);
+                messages.forEach(this::onMessages);
+            } catch (InterruptedException e) {
+                break;
+            } catch (Exception e) {
+                if (!stopped) {
+                    log.warn("Failed to process messages from multiplexed queue consumer.", e);
+                    try {
+                        Thread.sleep(pollDuration);
+                    } catch (InterruptedException e2) {
+                        break;
+                    }
+                }
+            }
+        }
+        clients.clear();
+        consumer.close();
+        if (log.isDebugEnabled()) {
+            log.debug("Application persisted messages multiplexed consumer stopped.");
+        }
+    }
+
+    private void submit(Runnable command) {
+        commands.add(command);
+        consumer.wakeup();
+    }
+
+    private void executeCommands() {
+        Runnable command;
+        while ((command = commands.poll()) != null) {
+            command.run();
+        }
+    }
+
+    private void assign(ApplicationMultiplexedClientCtx clientCtx) {
+        if (clientCtx.getFuture().isDone()) {
+            return;
+        }
+        String clientId = clientCtx.getClientId();
+        try {
+            processor.initMultiplexedClientCtx(clientCtx);
+            clients.put(clientCtx.getTopic(), clientCtx);
+            consumer.assign(clientCtx.getTopic(), clientCtx.getConsumerGroupId()).whenComplete((unused, throwable) -> {
+                if (throwable != null) {
+                    submit(() -> onAssignFailed(clientCtx, throwable));
+                }
+            });
+            if (!clientCtx.getPubRelMsgCtx().nothingToDeliver()) {
+                consumer.pause(clientCtx.getTopic());
+                startPack(clientCtx, Collections.emptyList());
+            }
+        } catch (Exception e) {
+            log.warn("[{}] Failed to start processing persisted messages.", clientId, e);
+            clientCtx.getFuture().completeExceptionally(e);
+            processor.disconnectClient(clientCtx);
+        }
+    }
+
+    private void onAssignFailed(ApplicationMultiplexedClientCtx clientCtx, Throwable throwable) {
+        if (clients.get(clientCtx.getTopic()) != clientCtx) {
+            return;
+        }
+        log.warn("[{}] Failed to assign the topic of persisted messages.", clientCtx.getClientId(), throwable);
+        clientCtx.getFuture().completeExceptionally(throwable);
+        processor.disconnectClient(clientCtx);
+    }
+
+    private void unassign(ApplicationMultiplexedClientCtx clientCtx) {
+        if (clients.remove(clientCtx.getTopic(), clientCtx)) {
+            consumer.unassign(clientCtx.getTopic());
+            if (log.isDebugEnabled()) {
+                log.debug("[{}] Application persisted messages processing stopped.", clientCtx.getClientId());
+            }
+        }
+    }
+
+    private void onMessages(String topic, List<TbProtoQueueMsg<PublishMsgProto>> messages) {
+        ApplicationMultiplexedClientCtx clientCtx = clients.get(topic);
+        if (clientCtx == null || messages.isEmpty()) {
+            return;
+        }
+        consumer.pause(topic);
+        clientCtx.setUncommittedOffset(messages.get(messages.size() - 1).getOffset() + 1);
+        if (processor.isClientConnected(clientCtx)) {
+            startPack(clientCtx, messages);
+        }
+    }
+
+    private void startPack(ApplicationMultiplexedClientCtx clientCtx, List<TbProtoQueueMsg<PublishMsgProto>> messages) {
+        processor.startPack(clientCtx, messages);
+        onPackSent(clientCtx);
+    }
+
+    private void onPackSent(ApplicationMultiplexedClientCtx clientCtx) {
+        if (clientCtx.getPackCtx().isProcessed()) {
+            processedPacks.add(clientCtx);
+        }
+    }
+
+    private void completeProcessedPacks() {
+        ApplicationMultiplexedClientCtx clientCtx;
+        while ((clientCtx = processedPacks.poll()) != null) {
+            completePack(clientCtx);
+        }
+    }
+
+    private void completeTimedOutPacks() {
+        long now = System.nanoTime();
+        if (now < nextTimeoutCheckNanos) {
+            return;
+        }
+        nextTimeoutCheckNanos = now + TimeUnit.MILLISECONDS.toNanos(pollDuration);
+        for (ApplicationMultiplexedClientCtx clientCtx : clients.values()) {
+            if (clientCtx.isPackInFlight() && now >= clientCtx.getPackDeadlineNanos()) {
+                completePack(clientCtx);
+            }
+        }
+    }
+
+    private void completePack(ApplicationMultiplexedClientCtx clientCtx) {
+        if (clients.get(clientCtx.getTopic()) != clientCtx || !clientCtx.isPackInFlight()) {
+            return;
+        }
+        if (!clientCtx.getPackCtx().isProcessed() && System.nanoTime() < clientCtx.getPackDeadlineNanos()) {
+            return;
+        }
+        if (!processor.isClientConnected(clientCtx)) {
+            return;
+        }
+        if (!processor.completePack(clientCtx)) {
+            processor.resendPack(clientCtx);
+            onPackSent(clientCtx);
+            return;
+        }
+        String topic = clientCtx.getTopic();
+        if (clientCtx.getUncommittedOffset() != null) {
+            consumer.commit(topic, clientCtx.getUncommittedOffset());
+            clientCtx.setUncommittedOffset(null);
+        }
+        if (clientCtx.getPubRelMsgCtx().nothingToDeliver()) {
+            consumer.resume(topic);
+        } else {
+            startPack(clientCtx, Collections.emptyList());
+        }
+    }
+
+}
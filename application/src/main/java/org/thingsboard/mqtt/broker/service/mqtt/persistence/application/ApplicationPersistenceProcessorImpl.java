@@ -35,11 +35,13 @@ import org.thingsboard.mqtt.broker.gen.queue.QueueProtos.PublishMsgProto;
 import org.thingsboard.mqtt.broker.queue.TbQueueAdmin;
 import org.thingsboard.mqtt.broker.queue.TbQueueConsumer;
 import org.thingsboard.mqtt.broker.queue.TbQueueControlledOffsetConsumer;
+import org.thingsboard.mqtt.broker.queue.TbQueueMultiplexedConsumer;
 import org.thingsboard.mqtt.broker.queue.common.TbProtoQueueMsg;
 import org.thingsboard.mqtt.broker.queue.provider.ApplicationPersistenceMsgQueueFactory;
 import org.thingsboard.mqtt.broker.service.analysis.ClientLogger;
 import org.thingsboard.mqtt.broker.service.mqtt.PublishMsg;
 import org.thingsboard.mqtt.broker.service.mqtt.PublishMsgDeliveryService;
+import org.thingsboard.mqtt.broker.service.mqtt.persistence.application.data.ApplicationMultiplexedClientCtx;
 import org.thingsboard.mqtt.broker.service.mqtt.persistence.application.data.ApplicationSharedSubscriptionCtx;
 import org.thingsboard.mqtt.broker.service.mqtt.persistence.application.data.ApplicationSharedSubscriptionJob;
 import org.thingsboard.mqtt.broker.service.mqtt.persistence.application.processing.ApplicationAckStrategy;
@@ -115,17 +117,45 @@ public class ApplicationPersistenceProcessorImpl implements ApplicationPersisten
     private long packProcessingTimeout;
     @Value("${queue.application-persisted-msg.shared-topic-validation:true}")
     private boolean validateSharedTopicFilter;
+    @Value("${queue.application-persisted-msg.multiplexed.enabled:false}")
+    private boolean multiplexedEnabled;
+    @Value("${queue.application-persisted-msg.multiplexed.consumers-count:4}")
+    private int multiplexedConsumersCount;
+    @Value("${virtual-threads.enabled:false}")
+    private boolean virtualThreadsEnabled;
 
     private volatile boolean stopped = false;
     private ExecutorService persistedMsgsConsumerExecutor;
     private ExecutorService sharedSubsMsgsConsumerExecutor;
+    private ExecutorService multiplexedConsumersExecutor;
+    private List<ApplicationMultiplexedConsumer> multiplexedConsumers = Collections.emptyList();
 
     @PostConstruct
     public void init() {
         statsManager.registerActiveApplicationProcessorsStats(processingFutures);
         statsManager.registerActiveSharedApplicationProcessorsStats(sharedSubscriptionsProcessingJobs);
-        persistedMsgsConsumerExecutor = ThingsBoardExecutors.initCachedExecutorService("application-persisted-msg-consumers");
-        sharedSubsMsgsConsumerExecutor = ThingsBoardExecutors.initCachedExecutorService("application-shared-subs-msg-consumers");
+        persistedMsgsConsumerExecutor = ThingsBoardExecutors.initCachedExecutorService("application-persisted-msg-consumers", virtualThreadsEnabled);
+        sharedSubsMsgsConsumerExecutor = ThingsBoardExecutors.initCachedExecutorService("application-shared-subs-msg-consumers", virtualThreadsEnabled);
+        if (multiplexedEnabled) {
+            initMultiplexedConsumers();
+        }
+    }
+
+    private void initMultiplexedConsumers() {
+        if (multiplexedConsumersCount < 1) {
+            throw new IllegalArgumentException("Number of Application persisted messages multiplexed consumers should be positive");
+        }
+        multiplexedConsumersExecutor = ThingsBoardExecutors.initExecutorService(multiplexedConsumersCount, "application-persisted-msg-multiplexed-consumers");
+        List<ApplicationMultiplexedConsumer> consumers = new ArrayList<>(multiplexedConsumersCount);
+        for (int i = 0; i < multiplexedConsumersCount; i++) {
+            TbQueueMultiplexedConsumer<TbProtoQueueMsg<PublishMsgProto>> consumer =
+                    applicationPersistenceMsgQueueFactory.createMultiplexedConsumer(serviceInfoProvider.getServiceId() + "-" + i);
+            ApplicationMultiplexedConsumer multiplexedConsumer = new ApplicationMultiplexedConsumer(consumer, this, pollDuration);
+            consumers.add(multiplexedConsumer);
+            multiplexedConsumersExecutor.submit(multiplexedConsumer);
+        }
+        multiplexedConsumers = consumers;
+        log.info("Processing Application persisted messages with {} multiplexed consumers", multiplexedConsumersCount);
     }
 
     @Override
@@ -388,6 +418,19 @@ public class ApplicationPersistenceProcessorImpl implements ApplicationPersisten
                                             ApplicationPackProcessingCtx ctx,
                                             int totalPublishMsgs,
                                             int totalPubRelMsgs) {
+        if (analyzeIfProcessingDone(clientId, stats, submitStrategy, ctx, totalPublishMsgs, totalPubRelMsgs)) {
+            consumer.commitSync();
+            return true;
+        }
+        return false;
+    }
+
+    private boolean analyzeIfProcessingDone(String clientId,
+                                            ApplicationProcessorStats stats,
+                                            ApplicationSubmitStrategy submitStrategy,
+                                            ApplicationPackProcessingCtx ctx,
+                                            int totalPublishMsgs,
+                                            int totalPubRelMsgs) {
         ApplicationAckStrategy ackStrategy = acknowledgeStrategyFactory.newInstance(clientId);
 
         ApplicationPackProcessingResult result = new ApplicationPackProcessingResult(ctx);
@@ -397,7 +440,6 @@ public class ApplicationPersistenceProcessorImpl implements ApplicationPersisten
 
         if (decision.isCommit()) {
             ctx.clear();
-            consumer.commitSync();
             return true;
         } else {
             submitStrategy.update(decision.getReprocessMap());
@@ -464,6 +506,12 @@ public class ApplicationPersistenceProcessorImpl implements ApplicationPersisten
         if (log.isDebugEnabled()) {
             log.debug("[{}] Starting persisted messages processing.", clientId);
         }
+        if (multiplexedEnabled) {
+            ApplicationMultiplexedClientCtx clientCtx = new ApplicationMultiplexedClientCtx(clientState, clientTopic,
+                    appClientHelperService.getAppConsumerGroup(clientId));
+            processingFutures.put(clientId, getMultiplexedConsumer(clientId).register(clientCtx));
+            return;
+        }
         TbQueueControlledOffsetConsumer<TbProtoQueueMsg<PublishMsgProto>> consumer = initConsumer(clientId, clientTopic);
         Future<?> future = persistedMsgsConsumerExecutor.submit(() -> {
             try {
@@ -478,10 +526,18 @@ public class ApplicationPersistenceProcessorImpl implements ApplicationPersisten
         processingFutures.put(clientId, future);
     }
 
+    private ApplicationMultiplexedConsumer getMultiplexedConsumer(String clientId) {
+        return multiplexedConsumers.get(Math.floorMod(clientId.hashCode(), multiplexedConsumers.size()));
+    }
+
     private void disconnectClient(String clientId, ClientActorStateInfo clientState) {
         disconnectClient(clientId, clientState.getCurrentSessionCtx().getSessionId(), "Failed to start processing persisted messages");
     }
 
+    void disconnectClient(ApplicationMultiplexedClientCtx clientCtx) {
+        disconnectClient(clientCtx.getClientId(), clientCtx.getSessionId(), "Failed to start processing persisted messages");
+    }
+
     private void disconnectClient(String clientId, UUID sessionId, String message) {
         clientMqttActorManager.disconnect(clientId, new MqttDisconnectMsg(
                 sessionId,
@@ -742,6 +798,70 @@ public class ApplicationPersistenceProcessorImpl implements ApplicationPersisten
         }
     }
 
+    void initMultiplexedClientCtx(ApplicationMultiplexedClientCtx clientCtx) {
+        String clientId = clientCtx.getClientId();
+        clientCtx.setStats(statsManager.createApplicationProcessorStats(clientId));
+
+        ApplicationPersistedMsgCtx persistedMsgCtx = unacknowledgedPersistedMsgCtxService.loadPersistedMsgCtx(clientId);
+        persistedMsgCtxMap.put(clientId, persistedMsgCtx);
+        clientCtx.setPersistedMsgCtx(persistedMsgCtx);
+
+        clientCtx.getClientSessionCtx().getMsgIdSeq().updateMsgIdSequence(persistedMsgCtx.getLastPacketId());
+        clientCtx.setPubRelMsgCtx(persistedMsgCtxToPubRelMsgCtx(persistedMsgCtx));
+    }
+
+    void startPack(ApplicationMultiplexedClientCtx clientCtx, List<TbProtoQueueMsg<PublishMsgProto>> publishProtoMessages) {
+        ApplicationSubmitStrategy submitStrategy = submitStrategyFactory.newInstance(clientCtx.getClientId());
+        List<PersistedMsg> messagesToDeliver = getMessagesToDeliver(
+                clientCtx.getPubRelMsgCtx(),
+                clientCtx.getClientSessionCtx(),
+                clientCtx.getPersistedMsgCtx(),
+                publishProtoMessages,
+                null);
+        submitStrategy.init(messagesToDeliver);
+
+        clientCtx.setSubmitStrategy(submitStrategy);
+        clientCtx.setPubRelMsgCtx(new ApplicationPubRelMsgCtx(Sets.newConcurrentHashSet()));
+        clientCtx.setPackProcessingStartNanos(System.nanoTime());
+        resendPack(clientCtx);
+    }
+
+    void resendPack(ApplicationMultiplexedClientCtx clientCtx) {
+        String clientId = clientCtx.getClientId();
+        ApplicationPackProcessingCtx ctx = new ApplicationPackProcessingCtx(clientCtx.getSubmitStrategy(), clientCtx.getPubRelMsgCtx(),
+                clientCtx.getStats(), clientCtx.getOnPackProcessed());
+        clientCtx.setPackCtx(ctx);
+        clientCtx.setTotalPublishMsgs(ctx.getPublishPendingMsgMap().size());
+        clientCtx.setTotalPubRelMsgs(ctx.getPubRelPendingMsgMap().size());
+        clientCtx.setPackDeadlineNanos(System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(packProcessingTimeout));
+        packProcessingCtxMap.put(clientId, ctx);
+
+        process(clientCtx.getSubmitStrategy(), clientCtx.getClientSessionCtx(), clientId);
+    }
+
+    /**
+     * @return true if the pack is done and the offset of its messages can be committed, otherwise the pack should be resent
+     */
+    boolean completePack(ApplicationMultiplexedClientCtx clientCtx) {
+        String clientId = clientCtx.getClientId();
+        boolean done = analyzeIfProcessingDone(clientId, clientCtx.getStats(), clientCtx.getSubmitStrategy(), clientCtx.getPackCtx(),
+                clientCtx.getTotalPublishMsgs(), clientCtx.getTotalPubRelMsgs());
+        if (done) {
+            if (isTraceEnabled) {
+                log.trace("[{}] Pack processing took {} ms, pack size - {}", clientId,
+                        (double) (System.nanoTime() - clientCtx.getPackProcessingStartNanos()) / 1_000_000,
+                        clientCtx.getSubmitStrategy().getOrderedMessages().size());
+            }
+            clientCtx.setPackCtx(null);
+            clientCtx.setSubmitStrategy(null);
+        }
+        return done;
+    }
+
+    boolean isClientConnected(ApplicationMultiplexedClientCtx clientCtx) {
+        return isClientConnected(clientCtx.getSessionId(), clientCtx.getClientState());
+    }
+
     private void process(ApplicationSubmitStrategy submitStrategy, ClientSessionCtx clientSessionCtx, String clientId) {
         if (isDebugEnabled) {
             log.debug("[{}] Start sending the pack of messages from processing ctx: {}", clientId, submitStrategy.getOrderedMessages());
@@ -839,7 +959,9 @@ public class ApplicationPersistenceProcessorImpl implements ApplicationPersisten
                 log.warn("[{}] Failed to save APPLICATION context.", clientId);
             }
         });
+        multiplexedConsumers.forEach(ApplicationMultiplexedConsumer::stop);
         shutdownExecutor(persistedMsgsConsumerExecutor, "persistence");
+        shutdownExecutor(multiplexedConsumersExecutor, "multiplexed");
         shutdownExecutor(sharedSubsMsgsConsumerExecutor, "shared subscriptions");
     }
 
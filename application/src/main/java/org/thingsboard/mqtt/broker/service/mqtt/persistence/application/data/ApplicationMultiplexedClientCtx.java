@@ -0,0 +1,74 @@
+/**
+ * Copyright © 2016-2024 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.mqtt.broker.service.mqtt.persistence.application.data;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.thingsboard.mqtt.broker.actors.client.state.ClientActorStateInfo;
+import org.thingsboard.mqtt.broker.service.mqtt.persistence.application.processing.ApplicationPackProcessingCtx;
+import org.thingsboard.mqtt.broker.service.mqtt.persistence.application.processing.ApplicationPersistedMsgCtx;
+import org.thingsboard.mqtt.broker.service.mqtt.persistence.application.processing.ApplicationPubRelMsgCtx;
+import org.thingsboard.mqtt.broker.service.mqtt.persistence.application.processing.ApplicationSubmitStrategy;
+import org.thingsboard.mqtt.broker.service.stats.ApplicationProcessorStats;
+import org.thingsboard.mqtt.broker.session.ClientSessionCtx;
+
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Delivery state of an Application client whose topic is read by a multiplexed consumer.
+ * Apart from the future, it is accessed only by the thread polling that consumer.
+ */
+@Getter
+@Setter
+public class ApplicationMultiplexedClientCtx {
+
+    private final ClientActorStateInfo clientState;
+    private final ClientSessionCtx clientSessionCtx;
+    private final UUID sessionId;
+    private final String topic;
+    private final String consumerGroupId;
+    private final CompletableFuture<Void> future = new CompletableFuture<>();
+
+    private Runnable onPackProcessed;
+    private ApplicationProcessorStats stats;
+    private ApplicationPersistedMsgCtx persistedMsgCtx;
+    private ApplicationPubRelMsgCtx pubRelMsgCtx;
+
+    private ApplicationSubmitStrategy submitStrategy;
+    private ApplicationPackProcessingCtx packCtx;
+    private int totalPublishMsgs;
+    private int totalPubRelMsgs;
+    private long packProcessingStartNanos;
+    private long packDeadlineNanos;
+    private Long uncommittedOffset;
+
+    public ApplicationMultiplexedClientCtx(ClientActorStateInfo clientState, String topic, String consumerGroupId) {
+        this.clientState = clientState;
+        this.clientSessionCtx = clientState.getCurrentSessionCtx();
+        this.sessionId = clientSessionCtx.getSessionId();
+        this.topic = topic;
+        this.consumerGroupId = consumerGroupId;
+    }
+
+    public String getClientId() {
+        return clientSessionCtx.getClientId();
+    }
+
+    public boolean isPackInFlight() {
+        return packCtx != null;
+    }
+}
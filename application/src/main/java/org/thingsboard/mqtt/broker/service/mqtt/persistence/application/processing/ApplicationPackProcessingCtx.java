@@ -37,6 +37,7 @@ public class ApplicationPackProcessingCtx {
     private final ApplicationProcessorStats stats;
     private final long processingStartTimeNanos;
     private final CountDownLatch processingTimeoutLatch;
+    private final Runnable onProcessed;
     @Getter
     private final ApplicationPubRelMsgCtx pubRelMsgCtx;
     private final boolean isDebugEnabled = log.isDebugEnabled();
@@ -46,10 +47,19 @@ public class ApplicationPackProcessingCtx {
         this.stats = null;
         this.processingStartTimeNanos = System.nanoTime();
         this.processingTimeoutLatch = null;
+        this.onProcessed = null;
         this.pubRelMsgCtx = new ApplicationPubRelMsgCtx(Sets.newConcurrentHashSet());
     }
 
     public ApplicationPackProcessingCtx(ApplicationSubmitStrategy submitStrategy, ApplicationPubRelMsgCtx pubRelMsgCtx, ApplicationProcessorStats stats) {
+        this(submitStrategy, pubRelMsgCtx, stats, null);
+    }
+
+    /**
+     * @param onProcessed invoked once all the messages of the pack are acknowledged
+     */
+    public ApplicationPackProcessingCtx(ApplicationSubmitStrategy submitStrategy, ApplicationPubRelMsgCtx pubRelMsgCtx,
+                                        ApplicationProcessorStats stats, Runnable onProcessed) {
         this.clientId = submitStrategy.getClientId();
         if (isDebugEnabled) {
             log.debug("[{}] Init ApplicationPackProcessingCtx", clientId);
@@ -74,12 +84,24 @@ public class ApplicationPackProcessingCtx {
             }
         }
         this.processingTimeoutLatch = new CountDownLatch(publishPendingMsgMap.size() + pubRelPendingMsgMap.size());
+        this.onProcessed = onProcessed;
     }
 
     public boolean await(long packProcessingTimeout, TimeUnit timeUnit) throws InterruptedException {
         return processingTimeoutLatch.await(packProcessingTimeout, timeUnit);
     }
 
+    public boolean isProcessed() {
+        return processingTimeoutLatch.getCount() == 0;
+    }
+
+    private void onMsgProcessed() {
+        processingTimeoutLatch.countDown();
+        if (onProcessed != null && isProcessed()) {
+            onProcessed.run();
+        }
+    }
+
     // TODO: save only messages with higher offset (InFlightMessagesCtx)
 
     public boolean onPubAck(Integer packetId) {
@@ -89,7 +111,7 @@ public class ApplicationPackProcessingCtx {
                 log.debug("Found PUBLISH packet {} to process PubAck msg.", packetId);
             }
             stats.logPubAckLatency(processingStartTimeNanos, TimeUnit.NANOSECONDS);
-            processingTimeoutLatch.countDown();
+            onMsgProcessed();
             return true;
         } else {
             if (isDebugEnabled) {
@@ -124,7 +146,7 @@ public class ApplicationPackProcessingCtx {
     private void onPublishMsgSuccess(Integer packetId) {
         PersistedPublishMsg msg = publishPendingMsgMap.remove(packetId);
         if (msg != null) {
-            processingTimeoutLatch.countDown();
+            onMsgProcessed();
         } else {
             if (isDebugEnabled) {
                 log.debug("[{}] Couldn't find PUBLISH packet {} to process PubRec msg successfully from {}.", clientId, packetId, publishPendingMsgMap.keySet());
@@ -139,7 +161,7 @@ public class ApplicationPackProcessingCtx {
                 log.debug("Found PubRel packet {} to process PubComp msg.", packetId);
             }
             stats.logPubCompLatency(processingStartTimeNanos, TimeUnit.NANOSECONDS);
-            processingTimeoutLatch.countDown();
+            onMsgProcessed();
             return true;
         } else {
             if (isDebugEnabled) {
@@ -0,0 +1,55 @@
+/**
+ * Copyright © 2016-2024 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.mqtt.broker.service.mqtt.persistence.device;
+
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.thingsboard.mqtt.broker.cluster.ServiceInfoProvider;
+import org.thingsboard.mqtt.broker.queue.TbQueueAdmin;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * The write-behind log of the DEVICE persisted messages is local to the broker node, so its reads and acknowledgements
+ * are only correct when every DEVICE client is served by this node. The broker refuses to start with the log enabled
+ * when other broker nodes are present in the cluster (i.e. other nodes created their client session event response topics).
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(prefix = "mqtt.persistent-session.device.persisted-messages.log", value = "enabled", havingValue = "true")
+@RequiredArgsConstructor
+public class DeviceMsgLogSingleNodeValidator {
+
+    private final TbQueueAdmin tbQueueAdmin;
+    private final ServiceInfoProvider serviceInfoProvider;
+
+    @PostConstruct
+    public void validate() {
+        String serviceId = serviceInfoProvider.getServiceId();
+        List<String> otherServiceIds = tbQueueAdmin.getBrokerServiceIds().stream()
+                .filter(brokerServiceId -> !serviceId.equals(brokerServiceId))
+                .collect(Collectors.toList());
+        if (!otherServiceIds.isEmpty()) {
+            throw new IllegalStateException("Device persisted messages log supports a single-node deployment only, but other broker nodes " +
+                    "were found: " + otherServiceIds + ". Disable the log or remove the client session event topics of decommissioned nodes");
+        }
+        log.info("[{}] Node is alone in the cluster, device persisted messages log is allowed", serviceId);
+    }
+}
@@ -0,0 +1,61 @@
+/**
+ * Copyright © 2016-2024 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.mqtt.broker.service.mqtt.persistence.device;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.MoreExecutors;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.thingsboard.mqtt.broker.common.data.DevicePublishMsg;
+import org.thingsboard.mqtt.broker.common.util.ThingsBoardExecutors;
+import org.thingsboard.mqtt.broker.dao.messages.DeviceMsgService;
+
+import java.util.List;
+
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class DeviceMsgReplayServiceImpl implements DeviceMsgReplayService {
+
+    private final DeviceMsgService deviceMsgService;
+
+    @Value("${actors.system.persisted-device.replay.threads-count:2}")
+    private int threadsCount;
+
+    private ListeningExecutorService replayExecutor;
+
+    @PostConstruct
+    public void init() {
+        this.replayExecutor = MoreExecutors.listeningDecorator(ThingsBoardExecutors.initExecutorService(threadsCount, "device-msg-replay-executor"));
+    }
+
+    @Override
+    public ListenableFuture<List<DevicePublishMsg>> findPersistedMessagesPage(String clientId, long fromSerialNumber, int pageSize) {
+        return replayExecutor.submit(() -> deviceMsgService.findPersistedMessagesPage(clientId, fromSerialNumber, pageSize));
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (replayExecutor != null) {
+            replayExecutor.shutdownNow();
+        }
+    }
+}
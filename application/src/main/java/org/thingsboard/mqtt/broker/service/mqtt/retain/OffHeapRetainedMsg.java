@@ -0,0 +1,246 @@
+/**
+ * Copyright © 2016-2024 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.mqtt.broker.service.mqtt.retain;
+
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.google.protobuf.WireFormat;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.handler.codec.mqtt.MqttProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.thingsboard.mqtt.broker.adaptor.ProtoConverter;
+import org.thingsboard.mqtt.broker.gen.queue.QueueProtos;
+import org.thingsboard.mqtt.broker.util.MqttPropertiesUtil;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Retained message whose payload and properties live in a direct buffer allocated by {@link RetainedMsgOffHeapArena}.
+ * Only the topic, QoS, created time and message expiry interval are kept on the heap, so the topic index and the
+ * expiry checks never touch the off-heap data. {@link #getProperties()} returns the expiry interval only, the full
+ * properties are decoded on demand by {@link #materializeProperties()}.
+ * <p>
+ * The buffer is shared with the copies created by {@link #copy(int)} and is freed by {@link #release()} once the
+ * message is replaced or cleared. After that the payload can no longer be read and the accessors return null.
+ */
+@Slf4j
+public class OffHeapRetainedMsg extends RetainedMsg {
+
+    private final Body body;
+
+    OffHeapRetainedMsg(String topic, int qosLevel, MqttProperties expiryProperties, long createdTime,
+                       ByteBuf data, int payloadLength) {
+        this(topic, qosLevel, expiryProperties, createdTime, new Body(data, payloadLength));
+    }
+
+    private OffHeapRetainedMsg(String topic, int qosLevel, MqttProperties expiryProperties, long createdTime, Body body) {
+        super(topic, null, qosLevel, expiryProperties, createdTime);
+        this.body = body;
+    }
+
+    /**
+     * Copies the payload to the heap. Prefer {@link #retainedPayload()} when the payload is sent to a subscriber.
+     */
+    @Override
+    public byte[] getPayload() {
+        if (!body.tryRetain()) {
+            return null;
+        }
+        try {
+            return ByteBufUtil.getBytes(body.data, body.data.readerIndex(), body.payloadLength);
+        } finally {
+            body.release();
+        }
+    }
+
+    public int getPayloadLength() {
+        return body.payloadLength;
+    }
+
+    /**
+     * Returns a retained slice of the pooled off-heap buffer that holds the payload, the caller is responsible for
+     * releasing it (e.g. by writing it to the channel), or null if the message was already released.
+     */
+    public ByteBuf retainedPayload() {
+        if (!body.tryRetain()) {
+            return null;
+        }
+        try {
+            return body.data.retainedSlice(body.data.readerIndex(), body.payloadLength);
+        } finally {
+            body.release();
+        }
+    }
+
+    /**
+     * Decodes the user and MQTT properties stored off-heap and adds the message expiry interval of this instance,
+     * or returns null if the message was already released.
+     */
+    public MqttProperties materializeProperties() {
+        if (!body.tryRetain()) {
+            return null;
+        }
+        MqttProperties properties;
+        try {
+            int propertiesIndex = body.data.readerIndex() + body.payloadLength;
+            int propertiesLength = body.data.writerIndex() - propertiesIndex;
+            properties = ProtoConverter.convertProtoToRetainedMsgProperties(
+                    QueueProtos.RetainedMsgProto.parseFrom(body.data.nioBuffer(propertiesIndex, propertiesLength)));
+        } catch (InvalidProtocolBufferException e) {
+            log.warn("[{}] Failed to decode off-heap retained msg properties", getTopic(), e);
+            return null;
+        } finally {
+            body.release();
+        }
+        MqttProperties.IntegerProperty expiryProperty = MqttPropertiesUtil.getPubExpiryIntervalProperty(getProperties());
+        if (expiryProperty != null) {
+            MqttPropertiesUtil.addMsgExpiryIntervalToPublish(properties, expiryProperty.value());
+        }
+        return properties;
+    }
+
+    /**
+     * Returns a heap copy of this message or null if it was already released.
+     */
+    public RetainedMsg materialize() {
+        MqttProperties properties = materializeProperties();
+        byte[] payload = getPayload();
+        if (properties == null || payload == null) {
+            return null;
+        }
+        return new RetainedMsg(getTopic(), payload, getQosLevel(), properties, getCreatedTime());
+    }
+
+    /**
+     * Returns the size of the {@link QueueProtos.RetainedMsgProto} written by {@link #writeProto(OutputStream)}.
+     */
+    public int getProtoSize() {
+        return getProtoHeaderSize() + body.payloadLength + getPropertiesLength();
+    }
+
+    /**
+     * Writes this message as a {@link QueueProtos.RetainedMsgProto} straight from the off-heap buffer, so the payload is not copied
+     * to the heap as a whole. The properties are stored as an encoded proto already and a concatenation of encoded protos
+     * is parsed as their merge, so the topic, QoS, created time and payload fields are written in front of them.
+     * The caller must hold a reference to the message, see {@link #tryRetain()}.
+     */
+    public void writeProto(OutputStream output) throws IOException {
+        int headerSize = getProtoHeaderSize();
+        CodedOutputStream codedOutput = CodedOutputStream.newInstance(output, headerSize);
+        codedOutput.writeString(QueueProtos.RetainedMsgProto.TOPIC_FIELD_NUMBER, getTopic());
+        codedOutput.writeInt32(QueueProtos.RetainedMsgProto.QOS_FIELD_NUMBER, getQosLevel());
+        codedOutput.writeInt64(QueueProtos.RetainedMsgProto.CREATEDTIME_FIELD_NUMBER, getCreatedTime());
+        codedOutput.writeTag(QueueProtos.RetainedMsgProto.PAYLOAD_FIELD_NUMBER, WireFormat.WIRETYPE_LENGTH_DELIMITED);
+        codedOutput.writeUInt32NoTag(body.payloadLength);
+        codedOutput.flush();
+        body.data.getBytes(body.data.readerIndex(), output, body.payloadLength + getPropertiesLength());
+    }
+
+    private int getProtoHeaderSize() {
+        return CodedOutputStream.computeStringSize(QueueProtos.RetainedMsgProto.TOPIC_FIELD_NUMBER, getTopic())
+                + CodedOutputStream.computeInt32Size(QueueProtos.RetainedMsgProto.QOS_FIELD_NUMBER, getQosLevel())
+                + CodedOutputStream.computeInt64Size(QueueProtos.RetainedMsgProto.CREATEDTIME_FIELD_NUMBER, getCreatedTime())
+                + CodedOutputStream.computeTagSize(QueueProtos.RetainedMsgProto.PAYLOAD_FIELD_NUMBER)
+                + CodedOutputStream.computeUInt32SizeNoTag(body.payloadLength);
+    }
+
+    private int getPropertiesLength() {
+        return body.data.writerIndex() - body.data.readerIndex() - body.payloadLength;
+    }
+
+    /**
+     * Creates a copy with the given QoS that shares the off-heap buffer but has its own message expiry property.
+     */
+    public OffHeapRetainedMsg copy(int qosLevel) {
+        return new OffHeapRetainedMsg(getTopic(), qosLevel, RetainedMsgOffHeapArena.toExpiryProperties(getProperties()),
+                getCreatedTime(), body);
+    }
+
+    /**
+     * Takes one more reference to the off-heap buffer, so it can be read until the matching {@link #release()}.
+     *
+     * @return false if the message was already released
+     */
+    boolean tryRetain() {
+        return body.tryRetain();
+    }
+
+    /**
+     * Releases the reference held by the retained messages store or taken by {@link #tryRetain()}.
+     * Must be called once per reference, by its owner.
+     */
+    public void release() {
+        body.release();
+    }
+
+    boolean isReleased() {
+        return body.refCnt.get() == 0;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof OffHeapRetainedMsg that)) {
+            return false;
+        }
+        return body == that.body && getQosLevel() == that.getQosLevel() && getTopic().equals(that.getTopic());
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * (31 * getTopic().hashCode() + getQosLevel()) + System.identityHashCode(body);
+    }
+
+    @Override
+    public String toString() {
+        return "OffHeapRetainedMsg(topic=" + getTopic() + ", payloadLength=" + body.payloadLength +
+                ", qosLevel=" + getQosLevel() + ", createdTime=" + getCreatedTime() + ")";
+    }
+
+    private static final class Body {
+
+        private final ByteBuf data;
+        private final int payloadLength;
+        private final AtomicInteger refCnt = new AtomicInteger(1);
+
+        private Body(ByteBuf data, int payloadLength) {
+            this.data = data;
+            this.payloadLength = payloadLength;
+        }
+
+        private boolean tryRetain() {
+            int current;
+            do {
+                current = refCnt.get();
+                if (current == 0) {
+                    return false;
+                }
+            } while (!refCnt.compareAndSet(current, current + 1));
+            return true;
+        }
+
+        private void release() {
+            if (refCnt.decrementAndGet() == 0) {
+                data.release();
+            }
+        }
+    }
+}
@@ -16,6 +16,7 @@
 package org.thingsboard.mqtt.broker.service.mqtt.retain;
 
 import org.thingsboard.mqtt.broker.exception.QueuePersistenceException;
+import org.thingsboard.mqtt.broker.service.snapshot.StateSnapshot;
 
 import java.util.Map;
 
@@ -23,5 +24,9 @@ public interface RetainedMsgConsumer {
 
     Map<String, RetainedMsg> initLoad() throws QueuePersistenceException;
 
+    Map<String, RetainedMsg> initLoad(StateSnapshot<RetainedMsg> snapshot) throws QueuePersistenceException;
+
+    Map<Integer, Long> getProcessedOffsets();
+
     void listen(RetainedMsgChangesCallback callback);
 }
@@ -29,8 +29,11 @@ import org.thingsboard.mqtt.broker.gen.queue.QueueProtos;
 import org.thingsboard.mqtt.broker.queue.TbQueueAdmin;
 import org.thingsboard.mqtt.broker.queue.TbQueueControlledOffsetConsumer;
 import org.thingsboard.mqtt.broker.queue.common.TbProtoQueueMsg;
+import org.thingsboard.mqtt.broker.queue.common.TbQueuePartitionedLoader;
 import org.thingsboard.mqtt.broker.queue.constants.QueueConstants;
 import org.thingsboard.mqtt.broker.queue.provider.RetainedMsgQueueFactory;
+import org.thingsboard.mqtt.broker.service.snapshot.StateSnapshot;
+import org.thingsboard.mqtt.broker.service.snapshot.StateSnapshotUtil;
 import org.thingsboard.mqtt.broker.service.stats.RetainedMsgConsumerStats;
 import org.thingsboard.mqtt.broker.service.stats.StatsManager;
 import org.thingsboard.mqtt.broker.util.BytesUtil;
@@ -41,6 +44,7 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 
@@ -54,11 +58,16 @@ public class RetainedMsgConsumerImpl implements RetainedMsgConsumer {
     private volatile boolean initializing = true;
     private volatile boolean stopped = false;
 
+    private final Map<Integer, Long> processedOffsets = new ConcurrentHashMap<>();
     private final ExecutorService consumerExecutor = Executors.newSingleThreadExecutor(ThingsBoardThreadFactory.forName("retained-msg-listener"));
 
     @Value("${queue.retained-msg.poll-interval}")
     private long pollDuration;
+    @Value("${queue.init-load.parallel:false}")
+    private boolean parallelInitLoad;
 
+    private final RetainedMsgQueueFactory retainedMsgQueueFactory;
+    private final String serviceId;
     private final RetainedMsgPersistenceService persistenceService;
     private final TbQueueControlledOffsetConsumer<TbProtoQueueMsg<QueueProtos.RetainedMsgProto>> retainedMsgConsumer;
     private final TbQueueAdmin queueAdmin;
@@ -66,8 +75,10 @@ public class RetainedMsgConsumerImpl implements RetainedMsgConsumer {
 
     public RetainedMsgConsumerImpl(RetainedMsgQueueFactory retainedMsgQueueFactory, ServiceInfoProvider serviceInfoProvider,
                                    RetainedMsgPersistenceService persistenceService, TbQueueAdmin queueAdmin, StatsManager statsManager) {
-        String uniqueConsumerGroupId = serviceInfoProvider.getServiceId() + "-" + System.currentTimeMillis();
-        this.retainedMsgConsumer = retainedMsgQueueFactory.createConsumer(serviceInfoProvider.getServiceId(), uniqueConsumerGroupId);
+        this.retainedMsgQueueFactory = retainedMsgQueueFactory;
+        this.serviceId = serviceInfoProvider.getServiceId();
+        String uniqueConsumerGroupId = serviceId + "-" + System.currentTimeMillis();
+        this.retainedMsgConsumer = retainedMsgQueueFactory.createConsumer(serviceId, uniqueConsumerGroupId);
         this.queueAdmin = queueAdmin;
         this.persistenceService = persistenceService;
         this.stats = statsManager.getRetainedMsgConsumerStats();
@@ -75,16 +86,30 @@ public class RetainedMsgConsumerImpl implements RetainedMsgConsumer {
 
     @Override
     public Map<String, RetainedMsg> initLoad() throws QueuePersistenceException {
+        return initLoad(null);
+    }
+
+    @Override
+    public Map<String, RetainedMsg> initLoad(StateSnapshot<RetainedMsg> snapshot) throws QueuePersistenceException {
+        if (parallelInitLoad) {
+            return parallelInitLoad(snapshot);
+        }
         log.debug("Starting retained messages initLoad");
         long startTime = System.nanoTime();
         long totalMessageCount = 0L;
 
         String dummyTopic = persistDummyRetainedMsg();
-        retainedMsgConsumer.assignOrSubscribe();
+        Map<String, RetainedMsg> allRetainedMsgs;
+        if (StateSnapshotUtil.seekToSnapshot(retainedMsgConsumer, snapshot)) {
+            allRetainedMsgs = snapshot.getEntries();
+            processedOffsets.putAll(snapshot.getOffsets());
+        } else {
+            retainedMsgConsumer.assignOrSubscribe();
+            allRetainedMsgs = new HashMap<>();
+        }
 
         List<TbProtoQueueMsg<QueueProtos.RetainedMsgProto>> messages;
         boolean encounteredDummyTopic = false;
-        Map<String, RetainedMsg> allRetainedMsgs = new HashMap<>();
         do {
             try {
                 messages = retainedMsgConsumer.poll(pollDuration);
@@ -105,6 +130,7 @@ public class RetainedMsgConsumerImpl implements RetainedMsgConsumer {
                             allRetainedMsgs.put(topic, retainedMsg);
                         }
                     }
+                    processedOffsets.put(msg.getPartition(), msg.getOffset() + 1);
                 }
                 retainedMsgConsumer.commitSync();
             } catch (Exception e) {
@@ -125,6 +151,45 @@ public class RetainedMsgConsumerImpl implements RetainedMsgConsumer {
         return allRetainedMsgs;
     }
 
+    private Map<String, RetainedMsg> parallelInitLoad(StateSnapshot<RetainedMsg> snapshot) {
+        log.debug("Starting retained messages parallel initLoad");
+        long startTime = System.nanoTime();
+
+        boolean fromSnapshot = StateSnapshotUtil.isApplicable(retainedMsgConsumer, snapshot);
+        Map<String, RetainedMsg> allRetainedMsgs = fromSnapshot ? new ConcurrentHashMap<>(snapshot.getEntries()) : new ConcurrentHashMap<>();
+        Map<Integer, Long> offsets = TbQueuePartitionedLoader.<TbProtoQueueMsg<QueueProtos.RetainedMsgProto>>builder()
+                .consumer(retainedMsgConsumer)
+                .partitionConsumerFactory(partition -> retainedMsgQueueFactory.createConsumer(serviceId + "-" + partition,
+                        retainedMsgConsumer.getConsumerGroupId()))
+                .admin(queueAdmin)
+                .pollDuration(pollDuration)
+                .stopped(() -> stopped)
+                .threadNamePrefix("retained-msg-init-load")
+                .build()
+                .load(fromSnapshot ? snapshot.getOffsets() : Collections.emptyMap(), msg -> {
+                    if (isRetainedMsgProtoEmpty(msg.getValue())) {
+                        allRetainedMsgs.remove(msg.getKey());
+                    } else {
+                        allRetainedMsgs.put(msg.getKey(), convertToRetainedMsg(msg));
+                    }
+                });
+        processedOffsets.putAll(offsets);
+
+        initializing = false;
+
+        if (log.isDebugEnabled()) {
+            long endTime = System.nanoTime();
+            log.debug("Finished retained messages parallel initLoad for {} topics within time: {} nanos", allRetainedMsgs.size(), endTime - startTime);
+        }
+
+        return allRetainedMsgs;
+    }
+
+    @Override
+    public Map<Integer, Long> getProcessedOffsets() {
+        return new HashMap<>(processedOffsets);
+    }
+
     @Override
     public void listen(RetainedMsgChangesCallback callback) {
         if (initializing) {
@@ -152,6 +217,7 @@ public class RetainedMsgConsumerImpl implements RetainedMsgConsumer {
                             callback.accept(topic, serviceId, retainedMsg);
                             newRetainedMsgCount++;
                         }
+                        processedOffsets.put(msg.getPartition(), msg.getOffset() + 1);
                     }
                     stats.log(newRetainedMsgCount, clearedRetainedMsgCount);
                     retainedMsgConsumer.commitSync();
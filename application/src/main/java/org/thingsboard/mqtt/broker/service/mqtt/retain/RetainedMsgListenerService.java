@@ -43,4 +43,10 @@ public interface RetainedMsgListenerService {
 
     List<RetainedMsg> getRetainedMessages();
 
+    /**
+     * Returns the not expired retained messages by topic as they are stored, without copying the off-heap payloads to the heap.
+     * Every returned {@link OffHeapRetainedMsg} is retained for the caller, who must {@link OffHeapRetainedMsg#release() release} it.
+     */
+    Map<String, RetainedMsg> getStoredRetainedMessages();
+
 }
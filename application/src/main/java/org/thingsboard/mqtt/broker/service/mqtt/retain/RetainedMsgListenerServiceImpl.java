@@ -18,6 +18,7 @@ package org.thingsboard.mqtt.broker.service.mqtt.retain;
 import io.netty.handler.codec.mqtt.MqttProperties;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.thingsboard.mqtt.broker.adaptor.ProtoConverter;
@@ -30,8 +31,10 @@ import org.thingsboard.mqtt.broker.service.stats.StatsManager;
 import org.thingsboard.mqtt.broker.util.MqttPropertiesUtil;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 
@@ -46,12 +49,16 @@ public class RetainedMsgListenerServiceImpl implements RetainedMsgListenerServic
     private final RetainedMsgPersistenceService retainedMsgPersistenceService;
     private final ServiceInfoProvider serviceInfoProvider;
     private final StatsManager statsManager;
+    private final RetainedMsgOffHeapArena offHeapArena;
+
+    @Value("${mqtt.retain-msg.off-heap:false}")
+    private boolean offHeap;
 
     private ConcurrentMap<String, RetainedMsg> retainedMessagesMap;
 
     @Override
     public void init(Map<String, RetainedMsg> retainedMsgMap) {
-        this.retainedMessagesMap = new ConcurrentHashMap<>(retainedMsgMap);
+        this.retainedMessagesMap = new ConcurrentHashMap<>(retainedMsgMap.size());
         statsManager.registerRetainedMsgStats(retainedMessagesMap);
 
         log.info("Restoring stored retained messages for {} topics.", retainedMsgMap.size());
@@ -59,8 +66,13 @@ public class RetainedMsgListenerServiceImpl implements RetainedMsgListenerServic
             if (log.isTraceEnabled()) {
                 log.trace("[{}] Restoring retained msg - {}.", topic, retainedMsg);
             }
-            retainedMsgService.saveRetainedMsg(topic, retainedMsg);
+            RetainedMsg storedRetainedMsg = toStoredRetainedMsg(retainedMsg);
+            retainedMessagesMap.put(topic, storedRetainedMsg);
+            retainedMsgService.saveRetainedMsg(topic, storedRetainedMsg);
         });
+        if (offHeap) {
+            log.info("Restored retained messages are using {} bytes of off-heap memory.", offHeapArena.getUsedMemory());
+        }
     }
 
     @Override
@@ -102,8 +114,12 @@ public class RetainedMsgListenerServiceImpl implements RetainedMsgListenerServic
         if (log.isTraceEnabled()) {
             log.trace("[{}] Executing cacheRetainedMsg {}.", topic, retainedMsg);
         }
-        retainedMsgService.saveRetainedMsg(topic, retainedMsg);
-        retainedMessagesMap.put(topic, retainedMsg);
+        RetainedMsg storedRetainedMsg = toStoredRetainedMsg(retainedMsg);
+        retainedMessagesMap.compute(topic, (t, previousRetainedMsg) -> {
+            retainedMsgService.saveRetainedMsg(topic, storedRetainedMsg);
+            release(previousRetainedMsg);
+            return storedRetainedMsg;
+        });
     }
 
     @Override
@@ -133,8 +149,11 @@ public class RetainedMsgListenerServiceImpl implements RetainedMsgListenerServic
         if (log.isTraceEnabled()) {
             log.trace("[{}] Executing clearRetainedMsg", topic);
         }
-        retainedMsgService.clearRetainedMsg(topic);
-        retainedMessagesMap.remove(topic);
+        retainedMessagesMap.compute(topic, (t, previousRetainedMsg) -> {
+            retainedMsgService.clearRetainedMsg(topic);
+            release(previousRetainedMsg);
+            return null;
+        });
     }
 
     @Override
@@ -142,7 +161,7 @@ public class RetainedMsgListenerServiceImpl implements RetainedMsgListenerServic
         if (log.isTraceEnabled()) {
             log.trace("[{}] Executing getRetainedMsgForTopic", topic);
         }
-        RetainedMsg retainedMsg = retainedMessagesMap.getOrDefault(topic, null);
+        RetainedMsg retainedMsg = materialize(retainedMessagesMap.getOrDefault(topic, null));
         if (retainedMsg != null) {
             return MqttPropertiesUtil
                     .isRetainedMsgExpired(retainedMsg, System.currentTimeMillis()) ? null : RetainedMsgDto.newInstance(retainedMsg);
@@ -160,10 +179,24 @@ public class RetainedMsgListenerServiceImpl implements RetainedMsgListenerServic
                 .values()
                 .stream()
                 .filter(retainedMsg -> MqttPropertiesUtil.isRetainedMsgNotExpired(retainedMsg, currentTs))
+                .map(RetainedMsgListenerServiceImpl::materialize)
+                .filter(Objects::nonNull)
                 .toList();
         return new ArrayList<>(collect);
     }
 
+    @Override
+    public Map<String, RetainedMsg> getStoredRetainedMessages() {
+        long currentTs = System.currentTimeMillis();
+        Map<String, RetainedMsg> storedRetainedMessages = new HashMap<>();
+        retainedMessagesMap.forEach((topic, retainedMsg) -> {
+            if (MqttPropertiesUtil.isRetainedMsgNotExpired(retainedMsg, currentTs) && retain(retainedMsg)) {
+                storedRetainedMessages.put(topic, retainedMsg);
+            }
+        });
+        return storedRetainedMessages;
+    }
+
     private void processRetainedMsgUpdate(String topic, String serviceId, RetainedMsg retainedMsg) {
         if (serviceInfoProvider.getServiceId().equals(serviceId)) {
             if (log.isTraceEnabled()) {
@@ -203,4 +236,22 @@ public class RetainedMsgListenerServiceImpl implements RetainedMsgListenerServic
             }
         });
     }
+
+    private RetainedMsg toStoredRetainedMsg(RetainedMsg retainedMsg) {
+        return offHeap ? offHeapArena.allocate(retainedMsg) : retainedMsg;
+    }
+
+    private static RetainedMsg materialize(RetainedMsg retainedMsg) {
+        return retainedMsg instanceof OffHeapRetainedMsg offHeapRetainedMsg ? offHeapRetainedMsg.materialize() : retainedMsg;
+    }
+
+    private static boolean retain(RetainedMsg retainedMsg) {
+        return !(retainedMsg instanceof OffHeapRetainedMsg offHeapRetainedMsg) || offHeapRetainedMsg.tryRetain();
+    }
+
+    private static void release(RetainedMsg retainedMsg) {
+        if (retainedMsg instanceof OffHeapRetainedMsg offHeapRetainedMsg) {
+            offHeapRetainedMsg.release();
+        }
+    }
 }
@@ -0,0 +1,56 @@
+/**
+ * Copyright © 2016-2024 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.mqtt.broker.service.mqtt.retain;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.handler.codec.mqtt.MqttProperties;
+import org.springframework.stereotype.Component;
+import org.thingsboard.mqtt.broker.adaptor.ProtoConverter;
+import org.thingsboard.mqtt.broker.util.MqttPropertiesUtil;
+
+/**
+ * Dedicated pooled direct memory arena for the payloads and properties of {@link OffHeapRetainedMsg}.
+ * A separate allocator keeps the long-lived retained messages out of the pools used by the channels.
+ */
+@Component
+public class RetainedMsgOffHeapArena {
+
+    private final PooledByteBufAllocator allocator = new PooledByteBufAllocator(true);
+
+    public OffHeapRetainedMsg allocate(RetainedMsg retainedMsg) {
+        byte[] payload = retainedMsg.getPayload();
+        byte[] properties = ProtoConverter.convertToRetainedMsgPropertiesProto(retainedMsg.getProperties()).toByteArray();
+        ByteBuf data = allocator.directBuffer(payload.length + properties.length);
+        data.writeBytes(payload).writeBytes(properties);
+        return new OffHeapRetainedMsg(retainedMsg.getTopic(), retainedMsg.getQosLevel(),
+                toExpiryProperties(retainedMsg.getProperties()), retainedMsg.getCreatedTime(), data, payload.length);
+    }
+
+    public long getUsedMemory() {
+        return allocator.metric().usedDirectMemory();
+    }
+
+    static MqttProperties toExpiryProperties(MqttProperties properties) {
+        MqttProperties.IntegerProperty expiryProperty = MqttPropertiesUtil.getPubExpiryIntervalProperty(properties);
+        if (expiryProperty == null) {
+            return MqttProperties.NO_PROPERTIES;
+        }
+        MqttProperties expiryProperties = new MqttProperties();
+        MqttPropertiesUtil.addMsgExpiryIntervalToPublish(expiryProperties, expiryProperty.value());
+        return expiryProperties;
+    }
+}
@@ -19,12 +19,12 @@ import io.netty.buffer.ByteBuf;
 import io.netty.handler.codec.mqtt.MqttMessage;
 import io.netty.handler.codec.mqtt.MqttPublishMessage;
 import io.netty.handler.codec.mqtt.MqttQoS;
+import io.netty.util.Timer;
 import lombok.Getter;
 import lombok.Setter;
 import lombok.extern.slf4j.Slf4j;
 import org.thingsboard.mqtt.broker.session.ClientSessionCtx;
 
-import java.util.concurrent.ScheduledExecutorService;
 import java.util.function.BiConsumer;
 
 @Getter
@@ -60,7 +60,7 @@ public class MqttPendingPublish {
         this.pubRelRetransmissionHandler = new RetransmissionHandler<>(operation, retransmissionInitDelay, retransmissionPeriod);
     }
 
-    public void startPublishRetransmissionTimer(ScheduledExecutorService scheduler, BiConsumer<ClientSessionCtx, MqttMessage> sendPacket) {
+    public void startPublishRetransmissionTimer(Timer scheduler, BiConsumer<ClientSessionCtx, MqttMessage> sendPacket) {
         this.publishRetransmissionHandler.setHandler(((fixedHeader, originalMessage) ->
                 sendPacket.accept(sessionCtx, new MqttPublishMessage(fixedHeader, originalMessage.variableHeader(), this.payload.retain()))));
         this.publishRetransmissionHandler.start(scheduler);
@@ -74,7 +74,7 @@ public class MqttPendingPublish {
         this.pubRelRetransmissionHandler.setOriginalMessage(pubRelMessage);
     }
 
-    public void startPubRelRetransmissionTimer(ScheduledExecutorService scheduler, BiConsumer<ClientSessionCtx, MqttMessage> sendPacket) {
+    public void startPubRelRetransmissionTimer(Timer scheduler, BiConsumer<ClientSessionCtx, MqttMessage> sendPacket) {
         this.pubRelRetransmissionHandler.setHandler((fixedHeader, originalMessage) ->
                 sendPacket.accept(sessionCtx, new MqttMessage(fixedHeader, originalMessage.variableHeader())));
         this.pubRelRetransmissionHandler.start(scheduler);
@@ -19,12 +19,12 @@ import io.netty.handler.codec.mqtt.MqttFixedHeader;
 import io.netty.handler.codec.mqtt.MqttMessage;
 import io.netty.handler.codec.mqtt.MqttMessageType;
 import io.netty.handler.codec.mqtt.MqttQoS;
+import io.netty.util.Timeout;
+import io.netty.util.Timer;
 import lombok.RequiredArgsConstructor;
 import lombok.Setter;
 import lombok.extern.slf4j.Slf4j;
 
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 import java.util.function.BiConsumer;
 
@@ -37,14 +37,14 @@ public class RetransmissionHandler<T extends MqttMessage> {
     private final int retransmissionPeriod;
 
     private volatile boolean stopped;
-    private ScheduledFuture<?> timer;
+    private Timeout timer;
     private int timeout;
     @Setter
     private BiConsumer<MqttFixedHeader, T> handler;
     @Setter
     private T originalMessage;
 
-    void start(ScheduledExecutorService scheduler) {
+    void start(Timer scheduler) {
         if (scheduler == null) {
             throw new NullPointerException("Retransmission scheduler is null");
         }
@@ -55,11 +55,11 @@ public class RetransmissionHandler<T extends MqttMessage> {
         this.startTimer(scheduler);
     }
 
-    private void startTimer(ScheduledExecutorService scheduler) {
+    private void startTimer(Timer scheduler) {
         if (stopped || pendingOperation.isCanceled()) {
             return;
         }
-        this.timer = scheduler.schedule(() -> {
+        this.timer = scheduler.newTimeout(t -> {
             if (stopped || pendingOperation.isCanceled()) {
                 return;
             }
@@ -88,7 +88,7 @@ public class RetransmissionHandler<T extends MqttMessage> {
     void stop() {
         stopped = true;
         if (this.timer != null) {
-            this.timer.cancel(true);
+            this.timer.cancel();
         }
     }
 }
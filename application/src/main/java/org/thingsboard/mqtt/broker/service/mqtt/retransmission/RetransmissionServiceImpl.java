@@ -21,51 +21,59 @@ import io.netty.handler.codec.mqtt.MqttMessageIdVariableHeader;
 import io.netty.handler.codec.mqtt.MqttPublishMessage;
 import io.netty.handler.codec.mqtt.MqttQoS;
 import io.netty.handler.codec.mqtt.MqttVersion;
+import io.netty.util.HashedWheelTimer;
 import jakarta.annotation.PostConstruct;
 import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.thingsboard.mqtt.broker.common.util.ThingsBoardThreadFactory;
+import org.thingsboard.mqtt.broker.service.stats.RetransmissionStats;
+import org.thingsboard.mqtt.broker.service.stats.StatsManager;
 import org.thingsboard.mqtt.broker.session.ClientSessionCtx;
 
 import java.util.concurrent.ConcurrentMap;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 @Service
 @Slf4j
+@RequiredArgsConstructor
 public class RetransmissionServiceImpl implements RetransmissionService {
 
+    private final StatsManager statsManager;
+
     @Value("${mqtt.retransmission.enabled:true}")
     private boolean retransmissionEnabled;
-    @Value("${mqtt.retransmission.scheduler-pool-size:0}")
-    private int schedulerPoolSize;
+    @Value("${mqtt.retransmission.timer-tick-duration-ms:100}")
+    private long timerTickDurationMs;
+    @Value("${mqtt.retransmission.timer-ticks-per-wheel:512}")
+    private int timerTicksPerWheel;
     @Value("${mqtt.retransmission.initial-delay:10}")
     private int retransmissionInitDelay;
     @Value("${mqtt.retransmission.period:5}")
     private int retransmissionPeriod;
 
-    private ScheduledExecutorService scheduler;
+    /**
+     * Hashed wheel timer gives O(1) scheduling and cancellation of the retransmissions of every unacknowledged PUBLISH and PUBREL,
+     * the retransmissions are fired with the precision of the tick duration that is enough for the delays measured in seconds.
+     */
+    private HashedWheelTimer scheduler;
+    private RetransmissionStats retransmissionStats;
 
     @PostConstruct
     public void init() {
         if (retransmissionEnabled) {
-            this.scheduler = Executors.newScheduledThreadPool(getCorePoolSize(), ThingsBoardThreadFactory.forName("retransmission-scheduler"));
-        }
-    }
-
-    private int getCorePoolSize() {
-        if (schedulerPoolSize == 0) {
-            return Math.max(1, Runtime.getRuntime().availableProcessors() * 2);
+            this.scheduler = new HashedWheelTimer(ThingsBoardThreadFactory.forName("retransmission-scheduler"),
+                    timerTickDurationMs, TimeUnit.MILLISECONDS, timerTicksPerWheel);
+            this.retransmissionStats = statsManager.createRetransmissionStats(scheduler);
         }
-        return schedulerPoolSize;
     }
 
     @PreDestroy
     public void destroy() {
         if (this.scheduler != null) {
-            this.scheduler.shutdownNow();
+            this.scheduler.stop();
         }
     }
 
@@ -104,7 +112,7 @@ public class RetransmissionServiceImpl implements RetransmissionService {
                 if (pendingPublish.isSent() && pendingPublish.getQos() == MqttQoS.AT_MOST_ONCE) {
                     pendingPublishes.remove(pendingPublish.getPacketId());
                 } else if (pendingPublish.isSent()) {
-                    pendingPublish.startPublishRetransmissionTimer(this.scheduler, this::sendAndFlush);
+                    pendingPublish.startPublishRetransmissionTimer(this.scheduler, this::resendPublish);
                 } else {
                     pendingPublishes.remove(pendingPublish.getPacketId());
                 }
@@ -112,6 +120,16 @@ public class RetransmissionServiceImpl implements RetransmissionService {
         });
     }
 
+    private void resendPublish(ClientSessionCtx sessionCtx, MqttMessage mqttMsg) {
+        retransmissionStats.logPublishRetransmission();
+        sendAndFlush(sessionCtx, mqttMsg);
+    }
+
+    private void resendPubRel(ClientSessionCtx sessionCtx, MqttMessage mqttMsg) {
+        retransmissionStats.logPubRelRetransmission();
+        sendAndFlush(sessionCtx, mqttMsg);
+    }
+
     private void sendAndFlush(ClientSessionCtx sessionCtx, MqttMessage mqttMsg) {
         sessionCtx.getChannel().writeAndFlush(mqttMsg);
     }
@@ -195,7 +213,7 @@ public class RetransmissionServiceImpl implements RetransmissionService {
         ctx.getChannel().writeAndFlush(pubRelMsg);
 
         pendingPublish.setPubRelMessage(pubRelMsg);
-        pendingPublish.startPubRelRetransmissionTimer(this.scheduler, this::sendAndFlush);
+        pendingPublish.startPubRelRetransmissionTimer(this.scheduler, this::resendPubRel);
     }
 
     @Override
@@ -47,7 +47,7 @@ public class PublishMsgValidationServiceImpl implements PublishMsgValidationServ
     }
 
     boolean validateClientAccess(ClientSessionCtx ctx, String clientId, String topic) {
-        boolean isClientAuthorized = authorizationRuleService.isPubAuthorized(clientId, topic, ctx.getAuthRulePatterns());
+        boolean isClientAuthorized = authorizationRuleService.isPubAuthorized(topic, ctx.getAuthRulePatterns());
         if (!isClientAuthorized) {
             log.warn("[{}][{}][{}] Client is not authorized to publish to the topic {}",
                     clientId, ctx.getSessionId(), ctx.getAuthRulePatterns(), topic);
@@ -0,0 +1,146 @@
+/**
+ * Copyright © 2016-2024 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.mqtt.broker.service.processing;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import org.thingsboard.mqtt.broker.queue.TbQueueMsg;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Packs of messages that were dispatched by a consumer, but not all of their callbacks have completed yet.
+ * <p>
+ * Packs are kept in the poll order and are released only from the head of the window,
+ * so the released packs always form a contiguous prefix of the consumed records.
+ * The offsets of the released packs form the watermark that is safe to commit.
+ * Not thread-safe, must be used only by the consumer thread.
+ */
+public class InFlightPackWindow {
+
+    private final int maxPacksInFlight;
+    private final long packProcessingTimeoutNanos;
+    private final Deque<InFlightPack> packs = new ArrayDeque<>();
+    private final Map<Integer, Long> watermark = new HashMap<>();
+
+    public InFlightPackWindow(int maxPacksInFlight, long packProcessingTimeout, TimeUnit timeUnit) {
+        this.maxPacksInFlight = Math.max(1, maxPacksInFlight);
+        this.packProcessingTimeoutNanos = timeUnit.toNanos(packProcessingTimeout);
+    }
+
+    /**
+     * @param ctx         processing context of the dispatched messages, null if nothing was dispatched (e.g. all messages were rate-limited)
+     * @param polledMsgs  all messages returned by the poll, including the ones that were not dispatched
+     */
+    public void add(PackProcessingContext ctx, int totalMsgCount, List<? extends TbQueueMsg> polledMsgs, long startNanos) {
+        Map<Integer, Long> nextOffsets = new HashMap<>();
+        for (TbQueueMsg msg : polledMsgs) {
+            if (msg.getOffset() >= 0) {
+                nextOffsets.merge(msg.getPartition(), msg.getOffset() + 1, Math::max);
+            }
+        }
+        packs.addLast(new InFlightPack(ctx, totalMsgCount, polledMsgs.size(), nextOffsets, startNanos, startNanos + packProcessingTimeoutNanos));
+    }
+
+    public boolean isFull() {
+        return packs.size() >= maxPacksInFlight;
+    }
+
+    public boolean isEmpty() {
+        return packs.isEmpty();
+    }
+
+    public int size() {
+        return packs.size();
+    }
+
+    /**
+     * Waits until the oldest pack is processed or its processing timeout is reached.
+     */
+    public void awaitHead() throws InterruptedException {
+        InFlightPack head = packs.peekFirst();
+        if (head == null || head.ctx == null) {
+            return;
+        }
+        long remainingNanos = head.deadlineNanos - System.nanoTime();
+        if (remainingNanos > 0) {
+            head.ctx.await(remainingNanos, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * Releases packs from the head of the window until the first one that is still being processed
+     * and moves the watermark past their offsets.
+     *
+     * @return released packs in the poll order
+     */
+    public List<InFlightPack> releaseCompleted() throws InterruptedException {
+        List<InFlightPack> released = null;
+        long now = System.nanoTime();
+        while (!packs.isEmpty()) {
+            InFlightPack head = packs.peekFirst();
+            if (!head.isCompleted(now)) {
+                break;
+            }
+            packs.pollFirst();
+            head.nextOffsets.forEach((partition, offset) -> watermark.merge(partition, offset, Math::max));
+            if (released == null) {
+                released = new ArrayList<>();
+            }
+            released.add(head);
+        }
+        return released == null ? Collections.emptyList() : released;
+    }
+
+    /**
+     * @return next offsets per partition that were not returned before, empty if the watermark did not move
+     */
+    public Map<Integer, Long> drainWatermark() {
+        if (watermark.isEmpty()) {
+            return Collections.emptyMap();
+        }
+        Map<Integer, Long> result = new HashMap<>(watermark);
+        watermark.clear();
+        return result;
+    }
+
+    public void clear() {
+        packs.clear();
+        watermark.clear();
+    }
+
+    @Getter
+    @RequiredArgsConstructor
+    public static class InFlightPack {
+        private final PackProcessingContext ctx;
+        private final int totalMsgCount;
+        private final int polledMsgCount;
+        private final Map<Integer, Long> nextOffsets;
+        private final long startNanos;
+        private final long deadlineNanos;
+
+        private boolean isCompleted(long now) throws InterruptedException {
+            return ctx == null || now - deadlineNanos >= 0 || ctx.await(0, TimeUnit.NANOSECONDS);
+        }
+    }
+}
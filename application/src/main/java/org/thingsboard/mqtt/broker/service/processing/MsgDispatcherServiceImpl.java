@@ -53,6 +53,9 @@ import org.thingsboard.mqtt.broker.service.subscription.Subscription;
 import org.thingsboard.mqtt.broker.service.subscription.ValueWithTopicFilter;
 import org.thingsboard.mqtt.broker.service.subscription.shared.SharedSubscription;
 import org.thingsboard.mqtt.broker.service.subscription.shared.SharedSubscriptionCacheService;
+import org.thingsboard.mqtt.broker.service.subscription.shared.SharedSubscriptionGroup;
+import org.thingsboard.mqtt.broker.service.subscription.shared.SharedSubscriptionGroupRegistry;
+import org.thingsboard.mqtt.broker.service.subscription.shared.SharedSubscriptionGroupStrategy;
 import org.thingsboard.mqtt.broker.service.subscription.shared.SharedSubscriptionProcessingStrategy;
 import org.thingsboard.mqtt.broker.service.subscription.shared.SharedSubscriptionProcessingStrategyFactory;
 import org.thingsboard.mqtt.broker.service.subscription.shared.SharedSubscriptions;
@@ -69,9 +72,6 @@ import java.util.Set;
 import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
-import static org.thingsboard.mqtt.broker.common.util.BrokerConstants.DROPPED_MSGS;
-import static org.thingsboard.mqtt.broker.common.util.BrokerConstants.INCOMING_MSGS;
-
 @Service
 @Slf4j
 @RequiredArgsConstructor
@@ -86,6 +86,7 @@ public class MsgDispatcherServiceImpl implements MsgDispatcherService {
     private final PublishMsgQueuePublisher publishMsgQueuePublisher;
     private final SharedSubscriptionProcessingStrategyFactory sharedSubscriptionProcessingStrategyFactory;
     private final SharedSubscriptionCacheService sharedSubscriptionCacheService;
+    private final SharedSubscriptionGroupRegistry sharedSubscriptionGroupRegistry;
     private final TbMessageStatsReportClient tbMessageStatsReportClient;
     private final ServiceInfoProvider serviceInfoProvider;
     private final RateLimitService rateLimitService;
@@ -95,6 +96,10 @@ public class MsgDispatcherServiceImpl implements MsgDispatcherService {
 
     @Value("${mqtt.msg-subscriptions-parallel-processing:false}")
     private boolean processSubscriptionsInParallel;
+    @Value("${mqtt.zero-copy-payload:false}")
+    private boolean zeroCopyPayload;
+    @Value("${queue.basic-downlink-msg.multicast.enabled:false}")
+    private boolean multicastDownLinkEnabled;
 
     @PostConstruct
     public void init() {
@@ -104,9 +109,10 @@ public class MsgDispatcherServiceImpl implements MsgDispatcherService {
 
     @Override
     public void persistPublishMsg(SessionInfo sessionInfo, PublishMsg publishMsg, TbQueueCallback callback) {
-        PublishMsgProto publishMsgProto = ProtoConverter.convertToPublishMsgProto(sessionInfo, publishMsg);
+        // the proto is serialized synchronously by the producer, before the actor releases the payload ByteBuf
+        PublishMsgProto publishMsgProto = ProtoConverter.convertToPublishMsgProto(sessionInfo, publishMsg, zeroCopyPayload);
         producerStats.incrementTotal();
-        tbMessageStatsReportClient.reportStats(INCOMING_MSGS);
+        tbMessageStatsReportClient.reportIncomingMsg();
         callback = statsManager.wrapTbQueueCallback(callback, producerStats);
 
         DefaultTbQueueMsgHeaders headers = createHeaders(publishMsg);
@@ -126,7 +132,7 @@ public class MsgDispatcherServiceImpl implements MsgDispatcherService {
             if (log.isDebugEnabled()) {
                 log.debug("[{}] No subscriptions found for publish message!", publishMsgProto.getTopicName());
             }
-            tbMessageStatsReportClient.reportStats(DROPPED_MSGS);
+            tbMessageStatsReportClient.reportDroppedMsg();
             callback.onSuccess();
             return;
         }
@@ -157,11 +163,16 @@ public class MsgDispatcherServiceImpl implements MsgDispatcherService {
         );
         long startTime = System.nanoTime();
 
+        List<Subscription> basicSubscriptions = multicastDownLinkEnabled ?
+                initArrayList(sizeOf(msgSubscriptions.getCommonSubscriptions()) + sizeOf(msgSubscriptions.getTargetDeviceSharedSubscriptions())) : null;
         if (!CollectionUtils.isEmpty(msgSubscriptions.getCommonSubscriptions())) {
-            processSubscriptions(msgSubscriptions.getCommonSubscriptions(), publishMsgProto, persistentSubscriptions);
+            processSubscriptions(msgSubscriptions.getCommonSubscriptions(), publishMsgProto, persistentSubscriptions, basicSubscriptions);
         }
         if (!CollectionUtils.isEmpty(msgSubscriptions.getTargetDeviceSharedSubscriptions())) {
-            processSubscriptions(msgSubscriptions.getTargetDeviceSharedSubscriptions(), publishMsgProto, persistentSubscriptions);
+            processSubscriptions(msgSubscriptions.getTargetDeviceSharedSubscriptions(), publishMsgProto, persistentSubscriptions, basicSubscriptions);
+        }
+        if (!CollectionUtils.isEmpty(basicSubscriptions)) {
+            downLinkProxy.sendBasicMsg(basicSubscriptions, publishMsgProto);
         }
 
         if (publishMsgProcessingTimerStats != null) {
@@ -171,16 +182,17 @@ public class MsgDispatcherServiceImpl implements MsgDispatcherService {
     }
 
     private void processSubscriptions(List<Subscription> subscriptions, PublishMsgProto publishMsgProto,
-                                      final PersistentMsgSubscriptions persistentMsgSubscriptions) {
+                                      final PersistentMsgSubscriptions persistentMsgSubscriptions,
+                                      List<Subscription> basicSubscriptions) {
         boolean nonPersistentByPubQos = publishMsgProto.getQos() == MqttQoS.AT_MOST_ONCE.value();
         if (nonPersistentByPubQos) {
             if (processSubscriptionsInParallel) {
                 subscriptions
                         .parallelStream()
-                        .forEach(subscription -> deliver(publishMsgProto, subscription));
+                        .forEach(subscription -> deliver(publishMsgProto, subscription, basicSubscriptions));
             } else {
                 for (Subscription subscription : subscriptions) {
-                    deliver(publishMsgProto, subscription);
+                    deliver(publishMsgProto, subscription, basicSubscriptions);
                 }
             }
         } else {
@@ -193,7 +205,8 @@ public class MsgDispatcherServiceImpl implements MsgDispatcherService {
                                 subscription,
                                 publishMsgProto,
                                 persistentMsgSubscriptions.getApplicationSubscriptions(),
-                                persistentMsgSubscriptions.getDeviceSubscriptions())
+                                persistentMsgSubscriptions.getDeviceSubscriptions(),
+                                basicSubscriptions)
                         );
             } else {
                 for (Subscription subscription : subscriptions) {
@@ -201,7 +214,8 @@ public class MsgDispatcherServiceImpl implements MsgDispatcherService {
                             subscription,
                             publishMsgProto,
                             persistentMsgSubscriptions.getApplicationSubscriptions(),
-                            persistentMsgSubscriptions.getDeviceSubscriptions()
+                            persistentMsgSubscriptions.getDeviceSubscriptions(),
+                            basicSubscriptions
                     );
                 }
             }
@@ -209,7 +223,8 @@ public class MsgDispatcherServiceImpl implements MsgDispatcherService {
     }
 
     private void processSubscription(Subscription subscription, PublishMsgProto publishMsgProto,
-                                     List<Subscription> applicationSubscriptions, List<Subscription> deviceSubscriptions) {
+                                     List<Subscription> applicationSubscriptions, List<Subscription> deviceSubscriptions,
+                                     List<Subscription> basicSubscriptions) {
         if (isPersistentBySubInfo(subscription)) {
             if (ClientType.APPLICATION == subscription.getClientSessionInfo().getType()) {
                 applicationSubscriptions.add(subscription);
@@ -217,7 +232,7 @@ public class MsgDispatcherServiceImpl implements MsgDispatcherService {
                 deviceSubscriptions.add(subscription);
             }
         } else {
-            deliver(publishMsgProto, subscription);
+            deliver(publishMsgProto, subscription, basicSubscriptions);
         }
     }
 
@@ -225,6 +240,10 @@ public class MsgDispatcherServiceImpl implements MsgDispatcherService {
         return subscriptions == null ? initArrayList(size) : subscriptions;
     }
 
+    private int sizeOf(List<Subscription> subscriptions) {
+        return subscriptions == null ? 0 : subscriptions.size();
+    }
+
     private List<Subscription> initArrayList(int size) {
         return processSubscriptionsInParallel ? Collections.synchronizedList(new ArrayList<>(size)) : new ArrayList<>(size);
     }
@@ -254,6 +273,14 @@ public class MsgDispatcherServiceImpl implements MsgDispatcherService {
                 topicSharedSubscriptions = addSubscription(clientSubscription, commonClientSubscriptions, topicSharedSubscriptions);
             }
 
+            if (sharedSubscriptionGroupRegistry.isEnabled()) {
+                return new MsgSubscriptions(
+                        collectCommonSubscriptions(commonClientSubscriptions, senderClientId),
+                        collectApplicationSharedSubscriptions(topicSharedSubscriptions),
+                        selectDeviceSharedSubscriptions(topicSharedSubscriptions, publishMsgProto.getQos(), senderClientId)
+                );
+            }
+
             SharedSubscriptions sharedSubscriptions = sharedSubscriptionCacheService.get(topicSharedSubscriptions);
 
             return new MsgSubscriptions(
@@ -308,6 +335,45 @@ public class MsgDispatcherServiceImpl implements MsgDispatcherService {
         return collectOneSubscriptionFromEveryDeviceSharedSubscription(sharedSubscriptionList, qos);
     }
 
+    Set<Subscription> collectApplicationSharedSubscriptions(Set<TopicSharedSubscription> topicSharedSubscriptions) {
+        if (CollectionUtils.isEmpty(topicSharedSubscriptions)) {
+            return null;
+        }
+        Set<Subscription> result = null;
+        for (TopicSharedSubscription topicSharedSubscription : topicSharedSubscriptions) {
+            SharedSubscriptionGroup group = sharedSubscriptionGroupRegistry.getGroup(topicSharedSubscription);
+            Subscription applicationMember = group == null ? null : group.getAnyApplicationMember();
+            if (applicationMember != null) {
+                result = result == null ? new HashSet<>() : result;
+                result.add(applicationMember);
+            }
+        }
+        return result;
+    }
+
+    List<Subscription> selectDeviceSharedSubscriptions(Set<TopicSharedSubscription> topicSharedSubscriptions, int qos, String senderClientId) {
+        if (CollectionUtils.isEmpty(topicSharedSubscriptions)) {
+            return null;
+        }
+        List<Subscription> result = null;
+        SharedSubscriptionGroupStrategy strategy = sharedSubscriptionProcessingStrategyFactory.getGroupStrategy();
+        for (TopicSharedSubscription topicSharedSubscription : topicSharedSubscriptions) {
+            SharedSubscriptionGroup group = sharedSubscriptionGroupRegistry.getGroup(topicSharedSubscription);
+            if (group == null || !group.hasDeviceMembers()) {
+                continue;
+            }
+            result = result == null ? new ArrayList<>(topicSharedSubscriptions.size()) : result;
+            Subscription subscription = strategy.select(group, senderClientId);
+            if (subscription == null) {
+                log.info("[{}] No active subscription found for shared subscription - all are persisted and disconnected", topicSharedSubscription);
+                result.add(createDummySubscription(topicSharedSubscription, qos));
+            } else {
+                result.add(subscription);
+            }
+        }
+        return result;
+    }
+
     List<SharedSubscription> toSharedSubscriptionList(Set<Subscription> sharedSubscriptions) {
         return sharedSubscriptions.stream()
                 .collect(Collectors.groupingBy(subscription ->
@@ -344,7 +410,7 @@ public class MsgDispatcherServiceImpl implements MsgDispatcherService {
         Subscription anyActive = findAnyConnectedSubscription(sharedSubscription.getSubscriptions());
         if (anyActive == null) {
             log.info("[{}] No active subscription found for shared subscription - all are persisted and disconnected", sharedSubscription.getTopicSharedSubscription());
-            return createDummySubscription(sharedSubscription, qos);
+            return createDummySubscription(sharedSubscription.getTopicSharedSubscription(), qos);
         } else {
             SharedSubscriptionProcessingStrategy strategy = sharedSubscriptionProcessingStrategyFactory.newInstance();
             return strategy.analyze(sharedSubscription);
@@ -362,18 +428,18 @@ public class MsgDispatcherServiceImpl implements MsgDispatcherService {
                 .orElse(null);
     }
 
-    private Subscription createDummySubscription(SharedSubscription sharedSubscription, int qos) {
+    private Subscription createDummySubscription(TopicSharedSubscription topicSharedSubscription, int qos) {
         return new Subscription(
-                sharedSubscription.getTopicSharedSubscription().getTopicFilter(),
+                topicSharedSubscription.getTopicFilter(),
                 qos,
-                createDummyClientSession(sharedSubscription),
-                sharedSubscription.getTopicSharedSubscription().getShareName(),
+                createDummyClientSession(topicSharedSubscription),
+                topicSharedSubscription.getShareName(),
                 SubscriptionOptions.newInstance()
         );
     }
 
-    private ClientSessionInfo createDummyClientSession(SharedSubscription sharedSubscription) {
-        ClientInfo clientInfo = ClientSessionInfoFactory.getClientInfo(sharedSubscription.getTopicSharedSubscription().getKey());
+    private ClientSessionInfo createDummyClientSession(TopicSharedSubscription topicSharedSubscription) {
+        ClientInfo clientInfo = ClientSessionInfoFactory.getClientInfo(topicSharedSubscription.getKey());
         return ClientSessionInfo.builder()
                 .connected(false)
                 .serviceId(serviceInfoProvider.getServiceId())
@@ -395,7 +461,7 @@ public class MsgDispatcherServiceImpl implements MsgDispatcherService {
                 if (log.isDebugEnabled()) {
                     log.debug("[{}] No local option is met for sender client!", senderClientId);
                 }
-                tbMessageStatsReportClient.reportStats(DROPPED_MSGS);
+                tbMessageStatsReportClient.reportDroppedMsg();
                 continue;
             }
 
@@ -451,8 +517,16 @@ public class MsgDispatcherServiceImpl implements MsgDispatcherService {
         return subscription.getClientSessionInfo().isPersistent() && subscription.getQos() != MqttQoS.AT_MOST_ONCE.value();
     }
 
-    private void deliver(PublishMsgProto publishMsgProto, Subscription subscription) {
-        downLinkProxy.sendBasicMsg(subscription, publishMsgProto);
+    /**
+     * When multicast down-link is enabled, the subscription is only collected here to be delivered at once with the others,
+     * so that the msg is sent to every other node once instead of once per subscriber.
+     */
+    private void deliver(PublishMsgProto publishMsgProto, Subscription subscription, List<Subscription> basicSubscriptions) {
+        if (basicSubscriptions != null) {
+            basicSubscriptions.add(subscription);
+        } else {
+            downLinkProxy.sendBasicMsg(subscription, publishMsgProto);
+        }
     }
 
     private DefaultTbQueueMsgHeaders createHeaders(PublishMsg publishMsg) {
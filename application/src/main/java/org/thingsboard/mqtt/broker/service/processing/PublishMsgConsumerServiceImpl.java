@@ -25,6 +25,7 @@ import org.thingsboard.mqtt.broker.cluster.ServiceInfoProvider;
 import org.thingsboard.mqtt.broker.common.util.ThingsBoardExecutors;
 import org.thingsboard.mqtt.broker.gen.queue.QueueProtos.PublishMsgProto;
 import org.thingsboard.mqtt.broker.queue.TbQueueConsumer;
+import org.thingsboard.mqtt.broker.queue.TbQueueControlledOffsetConsumer;
 import org.thingsboard.mqtt.broker.queue.common.TbProtoQueueMsg;
 import org.thingsboard.mqtt.broker.queue.provider.PublishMsgQueueFactory;
 import org.thingsboard.mqtt.broker.service.limits.RateLimitService;
@@ -48,10 +49,11 @@ public class PublishMsgConsumerServiceImpl implements PublishMsgConsumerService
 
     public static final long MAX_VALUE = 1_000_000_000L;
 
-    private final List<TbQueueConsumer<TbProtoQueueMsg<PublishMsgProto>>> publishMsgConsumers = new ArrayList<>();
+    private final List<TbQueueControlledOffsetConsumer<TbProtoQueueMsg<PublishMsgProto>>> publishMsgConsumers = new ArrayList<>();
     private final MsgDispatcherService msgDispatcherService;
     private final PublishMsgQueueFactory publishMsgQueueFactory;
     private final AckStrategyFactory ackStrategyFactory;
+    private final AckStrategyConfiguration ackStrategyConfiguration;
     private final SubmitStrategyFactory submitStrategyFactory;
     private final ServiceInfoProvider serviceInfoProvider;
     private final StatsManager statsManager;
@@ -68,10 +70,19 @@ public class PublishMsgConsumerServiceImpl implements PublishMsgConsumerService
     private long pollDuration;
     @Value("${queue.msg-all.pack-processing-timeout}")
     private long packProcessingTimeout;
+    @Value("${queue.msg-all.pipelining.enabled:false}")
+    private boolean pipeliningEnabled;
+    @Value("${queue.msg-all.pipelining.max-packs-in-flight:4}")
+    private int maxPacksInFlight;
 
     @PostConstruct
     public void init() {
         consumersExecutor = ThingsBoardExecutors.initExecutorService(threadsCount, "msg-all-consumer");
+        if (pipeliningEnabled && ackStrategyConfiguration.getType() != AckStrategyType.SKIP_ALL) {
+            log.warn("Pipelined processing of 'msg-all' packs is not supported with {} ack strategy " +
+                    "since retried messages would be dispatched after the newer ones. Falling back to sequential processing.", ackStrategyConfiguration.getType());
+            pipeliningEnabled = false;
+        }
     }
 
     @Override
@@ -79,14 +90,18 @@ public class PublishMsgConsumerServiceImpl implements PublishMsgConsumerService
         for (int i = 0; i < consumersCount; i++) {
             String consumerId = serviceInfoProvider.getServiceId() + "-" + i;
             // TODO: think about the fact that all consumed messages can be processed multiple time (if kafka is disconnected while msgs are processing)
-            TbQueueConsumer<TbProtoQueueMsg<PublishMsgProto>> consumer = publishMsgQueueFactory.createConsumer(consumerId);
+            TbQueueControlledOffsetConsumer<TbProtoQueueMsg<PublishMsgProto>> consumer = publishMsgQueueFactory.createConsumer(consumerId);
             publishMsgConsumers.add(consumer);
-            consumer.subscribe();
-            launchConsumer(consumerId, consumer);
+            if (pipeliningEnabled) {
+                launchPipelinedConsumer(consumerId, consumer);
+            } else {
+                launchConsumer(consumerId, consumer);
+            }
         }
     }
 
     private void launchConsumer(String consumerId, TbQueueConsumer<TbProtoQueueMsg<PublishMsgProto>> consumer) {
+        consumer.subscribe();
         PublishMsgConsumerStats stats = statsManager.createPublishMsgConsumerStats(consumerId);
         final AtomicLong counter = new AtomicLong(0);
         consumersExecutor.submit(() -> {
@@ -155,6 +170,122 @@ public class PublishMsgConsumerServiceImpl implements PublishMsgConsumerService
         });
     }
 
+    /**
+     * Dispatches every polled pack right away and keeps up to {@code maxPacksInFlight} packs waiting for their callbacks,
+     * so a slow subscriber and the fetch latency do not stall the partition.
+     * Packs are still dispatched one after another by this thread, so the per-publisher order is the same as in the sequential mode.
+     * Offsets are committed asynchronously only up to the last pack of the contiguous processed prefix.
+     * When partitions are revoked, the window is drained and committed synchronously first,
+     * so the new owner does not receive the dispatched packs again.
+     */
+    private void launchPipelinedConsumer(String consumerId, TbQueueControlledOffsetConsumer<TbProtoQueueMsg<PublishMsgProto>> consumer) {
+        PublishMsgConsumerStats stats = statsManager.createPublishMsgConsumerStats(consumerId);
+        final AtomicLong counter = new AtomicLong(0);
+        InFlightPackWindow window = new InFlightPackWindow(maxPacksInFlight, packProcessingTimeout, TimeUnit.MILLISECONDS);
+        AckStrategy ackStrategy = ackStrategyFactory.newInstance(consumerId);
+        consumer.subscribe(partitions -> drainOnPartitionsRevoked(consumerId, consumer, window, ackStrategy, stats));
+        consumersExecutor.submit(() -> {
+            SubmitStrategy submitStrategy = submitStrategyFactory.newInstance(consumerId);
+            while (!stopped) {
+                try {
+                    releaseCompletedPacks(window, ackStrategy, stats);
+                    window.drainWatermark().forEach(consumer::commit);
+                    if (window.isFull()) {
+                        window.awaitHead();
+                        continue;
+                    }
+
+                    List<TbProtoQueueMsg<PublishMsgProto>> msgs = consumer.poll(pollDuration);
+                    if (msgs.isEmpty()) {
+                        continue;
+                    }
+
+                    long packProcessingStart = System.nanoTime();
+                    List<TbProtoQueueMsg<PublishMsgProto>> msgsAfterRateLimits = applyRateLimitsWithoutCommit(msgs);
+                    if (msgsAfterRateLimits.isEmpty()) {
+                        window.add(null, 0, msgs, packProcessingStart);
+                        continue;
+                    }
+
+                    long packId = counter.incrementAndGet();
+                    if (packId == MAX_VALUE) {
+                        counter.set(0);
+                    }
+                    submitStrategy.init(toPendingPubMsgWithIdMap(msgsAfterRateLimits, packId));
+
+                    PackProcessingContext ctx = new PackProcessingContext(submitStrategy.getPendingMap());
+                    int totalMsgCount = ctx.getPendingMap().size();
+                    submitStrategy.process(msg -> {
+                        long msgProcessingStart = System.nanoTime();
+                        msgDispatcherService.processPublishMsg(msg, new BasePublishMsgCallback(msg.getId(), ctx));
+                        stats.logMsgProcessingTime(System.nanoTime() - msgProcessingStart, TimeUnit.NANOSECONDS);
+                    });
+                    window.add(ctx, totalMsgCount, msgs, packProcessingStart);
+                } catch (Exception e) {
+                    if (!stopped) {
+                        log.error("[{}] Failed to process messages from queue.", consumerId, e);
+                        try {
+                            Thread.sleep(pollDuration);
+                        } catch (InterruptedException e2) {
+                            if (log.isDebugEnabled()) {
+                                log.debug("[{}] Failed to wait until the server has capacity to handle new requests", consumerId, e2);
+                            }
+                        }
+                    }
+                }
+            }
+            window.clear();
+            log.info("[{}] Publish Msg Consumer stopped.", consumerId);
+        });
+    }
+
+    /**
+     * Invoked by the consumer thread from within the poll. Waits for every in-flight pack to be processed or timed out,
+     * bounded by the pack processing timeout, and commits the watermark before the partitions are handed over.
+     */
+    private void drainOnPartitionsRevoked(String consumerId, TbQueueControlledOffsetConsumer<TbProtoQueueMsg<PublishMsgProto>> consumer,
+                                          InFlightPackWindow window, AckStrategy ackStrategy, PublishMsgConsumerStats stats) {
+        if (stopped) {
+            return;
+        }
+        try {
+            while (!window.isEmpty()) {
+                window.awaitHead();
+                releaseCompletedPacks(window, ackStrategy, stats);
+            }
+            window.drainWatermark().forEach(consumer::commitSync);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            log.warn("[{}] Failed to commit in-flight packs on partitions revocation, they may be processed again by the new owner.", consumerId, e);
+        }
+    }
+
+    private void releaseCompletedPacks(InFlightPackWindow window, AckStrategy ackStrategy, PublishMsgConsumerStats stats) throws InterruptedException {
+        for (InFlightPackWindow.InFlightPack pack : window.releaseCompleted()) {
+            PackProcessingContext ctx = pack.getCtx();
+            if (ctx == null) {
+                continue;
+            }
+            PackProcessingResult result = new PackProcessingResult(ctx);
+            ctx.cleanup();
+            ProcessingDecision decision = ackStrategy.analyze(result);
+            stats.log(pack.getTotalMsgCount(), result, decision.isCommit());
+            stats.logPackProcessingTime(pack.getPolledMsgCount(), System.nanoTime() - pack.getStartNanos(), TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private List<TbProtoQueueMsg<PublishMsgProto>> applyRateLimitsWithoutCommit(List<TbProtoQueueMsg<PublishMsgProto>> msgs) {
+        if (rateLimitService.isTotalMsgsLimitEnabled()) {
+            int availableTokens = (int) rateLimitService.tryConsumeAsMuchAsPossibleTotalMsgs(msgs.size());
+            if (availableTokens < msgs.size() && log.isDebugEnabled()) {
+                log.debug("Hitting total messages rate limits on consumer polling. Skipping {} messages", msgs.size() - availableTokens);
+            }
+            return msgs.subList(0, availableTokens);
+        }
+        return msgs;
+    }
+
     private List<TbProtoQueueMsg<PublishMsgProto>> applyRateLimits(TbQueueConsumer<TbProtoQueueMsg<PublishMsgProto>> consumer,
                                                                    List<TbProtoQueueMsg<PublishMsgProto>> msgs) {
         if (rateLimitService.isTotalMsgsLimitEnabled()) {
@@ -19,12 +19,16 @@ import org.thingsboard.mqtt.broker.common.data.DevicePublishMsg;
 import org.thingsboard.mqtt.broker.gen.queue.QueueProtos.PublishMsgProto;
 import org.thingsboard.mqtt.broker.service.subscription.Subscription;
 
+import java.util.List;
+
 public interface DownLinkProxy {
 
     void sendBasicMsg(String targetServiceId, String clientId, PublishMsgProto msg);
 
     void sendBasicMsg(Subscription subscription, PublishMsgProto msg);
 
+    void sendBasicMsg(List<Subscription> subscriptions, PublishMsgProto msg);
+
     void sendPersistentMsg(String targetServiceId, String clientId, DevicePublishMsg devicePublishMsg);
 
 }
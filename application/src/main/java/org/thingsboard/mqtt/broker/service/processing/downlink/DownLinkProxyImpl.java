@@ -25,6 +25,11 @@ import org.thingsboard.mqtt.broker.service.processing.downlink.basic.BasicDownLi
 import org.thingsboard.mqtt.broker.service.processing.downlink.persistent.PersistentDownLinkProcessor;
 import org.thingsboard.mqtt.broker.service.subscription.Subscription;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
 @Slf4j
 @Service
 @RequiredArgsConstructor
@@ -57,6 +62,36 @@ public class DownLinkProxyImpl implements DownLinkProxy {
         }
     }
 
+    /**
+     * Delivers the msg to the subscriptions of this node directly and groups the rest by the target node,
+     * so that every other node receives the payload once together with the list of its target clients.
+     */
+    @Override
+    public void sendBasicMsg(List<Subscription> subscriptions, PublishMsgProto msg) {
+        Map<String, List<Subscription>> remoteSubscriptions = null;
+        for (Subscription subscription : subscriptions) {
+            if (belongsToThisNode(subscription.getServiceId())) {
+                basicDownLinkProcessor.process(subscription, msg);
+            } else {
+                if (remoteSubscriptions == null) {
+                    remoteSubscriptions = new HashMap<>();
+                }
+                remoteSubscriptions.computeIfAbsent(subscription.getServiceId(), serviceId -> new ArrayList<>()).add(subscription);
+            }
+        }
+        if (remoteSubscriptions == null) {
+            return;
+        }
+        remoteSubscriptions.forEach((targetServiceId, targetSubscriptions) -> {
+            if (targetSubscriptions.size() == 1) {
+                Subscription subscription = targetSubscriptions.get(0);
+                queuePublisher.publishBasicMsg(targetServiceId, subscription.getClientId(), updatePublishMsg(subscription, msg));
+            } else {
+                queuePublisher.publishBasicMulticastMsg(targetServiceId, targetSubscriptions, msg);
+            }
+        });
+    }
+
     @Override
     public void sendPersistentMsg(String targetServiceId, String clientId, DevicePublishMsg devicePublishMsg) {
         if (belongsToThisNode(targetServiceId)) {
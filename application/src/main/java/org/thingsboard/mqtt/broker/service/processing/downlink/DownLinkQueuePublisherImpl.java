@@ -19,6 +19,7 @@ import jakarta.annotation.PostConstruct;
 import jakarta.annotation.PreDestroy;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.thingsboard.mqtt.broker.adaptor.ProtoConverter;
 import org.thingsboard.mqtt.broker.cluster.ServiceInfoProvider;
@@ -31,8 +32,11 @@ import org.thingsboard.mqtt.broker.queue.provider.DownLinkBasicPublishMsgQueueFa
 import org.thingsboard.mqtt.broker.queue.provider.DownLinkPersistentPublishMsgQueueFactory;
 import org.thingsboard.mqtt.broker.queue.publish.TbPublishServiceImpl;
 import org.thingsboard.mqtt.broker.service.analysis.ClientLogger;
+import org.thingsboard.mqtt.broker.service.subscription.Subscription;
 import org.thingsboard.mqtt.broker.util.MqttPropertiesUtil;
 
+import java.util.List;
+
 @Slf4j
 @Service
 @RequiredArgsConstructor
@@ -46,6 +50,9 @@ class DownLinkQueuePublisherImpl implements DownLinkQueuePublisher {
 
     private final boolean isTraceEnabled = log.isTraceEnabled();
 
+    @Value("${queue.basic-downlink-msg.multicast.max-targets-per-msg:1000}")
+    private int maxTargetsPerMsg;
+
     private TbPublishServiceImpl<QueueProtos.ClientPublishMsgProto> basicPublisher;
     private TbPublishServiceImpl<QueueProtos.DevicePublishMsgProto> persistentPublisher;
 
@@ -90,6 +97,41 @@ class DownLinkQueuePublisherImpl implements DownLinkQueuePublisher {
         );
     }
 
+    @Override
+    public void publishBasicMulticastMsg(String targetServiceId, List<Subscription> subscriptions, QueueProtos.PublishMsgProto msg) {
+        String topic = downLinkPublisherHelper.getBasicDownLinkServiceTopic(targetServiceId);
+        for (int from = 0; from < subscriptions.size(); from += maxTargetsPerMsg) {
+            List<Subscription> targetSubscriptions = subscriptions.subList(from, Math.min(from + maxTargetsPerMsg, subscriptions.size()));
+            QueueProtos.ClientPublishMsgProto.Builder builder = QueueProtos.ClientPublishMsgProto.newBuilder()
+                    .setPublishMsg(msg);
+            for (Subscription subscription : targetSubscriptions) {
+                builder.addTargets(QueueProtos.MulticastTargetProto.newBuilder()
+                        .setClientId(subscription.getClientId())
+                        .setQos(Math.min(subscription.getQos(), msg.getQos()))
+                        .setRetain(subscription.getOptions().isRetain(msg.getRetain()))
+                        .build());
+                clientLogger.logEvent(subscription.getClientId(), this.getClass(), "Putting msg to basic down-link queue");
+            }
+            int targetsCount = targetSubscriptions.size();
+            basicPublisher.send(new TbProtoQueueMsg<>(msg.getTopicName(), builder.build()),
+                    new TbQueueCallback() {
+                        @Override
+                        public void onSuccess(TbQueueMsgMetadata metadata) {
+                            if (isTraceEnabled) {
+                                log.trace("[{}] Successfully published BASIC multicast msg for {} clients to {} service.", msg.getTopicName(), targetsCount, targetServiceId);
+                            }
+                        }
+
+                        @Override
+                        public void onFailure(Throwable t) {
+                            log.warn("[{}] Failed to publish BASIC multicast msg for {} clients to {} service.", msg.getTopicName(), targetsCount, targetServiceId, t);
+                        }
+                    },
+                    topic
+            );
+        }
+    }
+
     @Override
     public void publishPersistentMsg(String targetServiceId, String clientId, DevicePublishMsg devicePublishMsg) {
         String topic = downLinkPublisherHelper.getPersistentDownLinkServiceTopic(targetServiceId);
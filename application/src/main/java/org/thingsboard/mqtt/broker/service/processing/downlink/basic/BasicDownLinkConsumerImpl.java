@@ -88,7 +88,13 @@ public class BasicDownLinkConsumerImpl implements BasicDownLinkConsumer {
 
                     for (TbProtoQueueMsg<QueueProtos.ClientPublishMsgProto> msg : msgs) {
                         QueueProtos.ClientPublishMsgProto clientPublishMsgProto = msg.getValue();
-                        processor.process(clientPublishMsgProto.getClientId(), clientPublishMsgProto.getPublishMsg());
+                        if (clientPublishMsgProto.getTargetsCount() == 0) {
+                            processor.process(clientPublishMsgProto.getClientId(), clientPublishMsgProto.getPublishMsg());
+                        } else {
+                            for (QueueProtos.MulticastTargetProto target : clientPublishMsgProto.getTargetsList()) {
+                                processor.process(target, clientPublishMsgProto.getPublishMsg());
+                            }
+                        }
                     }
                     consumer.commitSync();
                 } catch (Exception e) {
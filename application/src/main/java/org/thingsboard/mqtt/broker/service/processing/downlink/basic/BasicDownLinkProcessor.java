@@ -15,6 +15,7 @@
  */
 package org.thingsboard.mqtt.broker.service.processing.downlink.basic;
 
+import org.thingsboard.mqtt.broker.gen.queue.QueueProtos.MulticastTargetProto;
 import org.thingsboard.mqtt.broker.gen.queue.QueueProtos.PublishMsgProto;
 import org.thingsboard.mqtt.broker.service.subscription.Subscription;
 
@@ -24,4 +25,6 @@ public interface BasicDownLinkProcessor {
 
     void process(Subscription subscription, PublishMsgProto msg);
 
+    void process(MulticastTargetProto target, PublishMsgProto msg);
+
 }
@@ -19,6 +19,7 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 import org.thingsboard.mqtt.broker.actors.client.messages.mqtt.MqttDisconnectMsg;
+import org.thingsboard.mqtt.broker.gen.queue.QueueProtos.MulticastTargetProto;
 import org.thingsboard.mqtt.broker.gen.queue.QueueProtos.PublishMsgProto;
 import org.thingsboard.mqtt.broker.service.analysis.ClientLogger;
 import org.thingsboard.mqtt.broker.service.limits.RateLimitService;
@@ -77,6 +78,24 @@ public class BasicDownLinkProcessorImpl implements BasicDownLinkProcessor {
         clientLogger.logEvent(subscription.getClientId(), this.getClass(), "Delivered msg to basic client");
     }
 
+    @Override
+    public void process(MulticastTargetProto target, PublishMsgProto msg) {
+        String clientId = target.getClientId();
+        ClientSessionCtx clientSessionCtx = clientSessionCtxService.getClientSessionCtx(clientId);
+        if (clientSessionCtx == null) {
+            if (log.isTraceEnabled()) {
+                log.trace("[{}] No client session on the node while processing basic multicast downlink.", clientId);
+            }
+            return;
+        }
+        if (rateLimitService.checkOutgoingLimits(clientId, msg)) {
+            publishMsgDeliveryService.sendPublishMsgProtoToClient(clientSessionCtx, msg, target.getQos(), target.getRetain());
+        } else {
+            disconnectOnRateLimits(clientId, clientSessionCtx.getSessionId());
+        }
+        clientLogger.logEvent(clientId, this.getClass(), "Delivered msg to basic client");
+    }
+
     private void disconnectOnRateLimits(String clientId, UUID sessionId) {
         clientMqttActorManager.disconnect(clientId, new MqttDisconnectMsg(sessionId, new DisconnectReason(DisconnectReasonType.ON_RATE_LIMITS)));
     }
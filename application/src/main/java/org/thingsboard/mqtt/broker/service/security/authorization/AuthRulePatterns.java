@@ -15,22 +15,49 @@
  */
 package org.thingsboard.mqtt.broker.service.security.authorization;
 
-import lombok.AllArgsConstructor;
 import lombok.Getter;
 import lombok.ToString;
 
 import java.util.List;
 import java.util.regex.Pattern;
 
-@AllArgsConstructor
-@Getter
+/**
+ * Compiled authorization rules of the credentials. Instances are shared by all clients authorized with the same rules.
+ */
 @ToString
 public class AuthRulePatterns {
 
+    public static final int DEFAULT_DECISION_CACHE_MAX_SIZE = 1000;
+
+    @Getter
     private final List<Pattern> pubPatterns;
+    @Getter
     private final List<Pattern> subPatterns;
+    @ToString.Exclude
+    private final TopicAuthorizationMatcher pubMatcher;
+    @ToString.Exclude
+    private final TopicAuthorizationMatcher subMatcher;
+
+    public AuthRulePatterns(List<Pattern> pubPatterns, List<Pattern> subPatterns) {
+        this(pubPatterns, subPatterns, DEFAULT_DECISION_CACHE_MAX_SIZE);
+    }
+
+    public AuthRulePatterns(List<Pattern> pubPatterns, List<Pattern> subPatterns, int decisionCacheMaxSize) {
+        this.pubPatterns = pubPatterns;
+        this.subPatterns = subPatterns;
+        this.pubMatcher = new TopicAuthorizationMatcher(pubPatterns, decisionCacheMaxSize);
+        this.subMatcher = pubPatterns == subPatterns ? pubMatcher : new TopicAuthorizationMatcher(subPatterns, decisionCacheMaxSize);
+    }
 
     public static AuthRulePatterns newInstance(List<Pattern> patterns) {
         return new AuthRulePatterns(patterns, patterns);
     }
+
+    public boolean isPubAuthorized(String topic) {
+        return pubMatcher.matches(topic);
+    }
+
+    public boolean isSubAuthorized(String topic) {
+        return subMatcher.matches(topic);
+    }
 }
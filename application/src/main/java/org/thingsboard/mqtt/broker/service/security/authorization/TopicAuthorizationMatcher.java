@@ -0,0 +1,92 @@
+/**
+ * Copyright © 2016-2024 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.mqtt.broker.service.security.authorization;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import java.util.List;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+import java.util.stream.Collectors;
+
+/**
+ * Authorization rule patterns of one rule set merged into a single compiled regex alternation, so a topic needs one
+ * matcher instead of one per rule. The regex engine still tries the branches one after another, the main gain is
+ * the bounded decision cache, so repeated topics are authorized without matching at all.
+ * <p>
+ * Patterns with back references can not be merged as the group numbers change, such rule sets are matched one by one.
+ */
+public class TopicAuthorizationMatcher {
+
+    private static final Pattern BACK_REFERENCE = Pattern.compile("\\\\[1-9]|\\\\k<");
+
+    private final Pattern mergedPattern;
+    private final List<Pattern> patterns;
+    private final Cache<String, Boolean> decisions;
+
+    public TopicAuthorizationMatcher(List<Pattern> patterns, int decisionCacheMaxSize) {
+        this.patterns = patterns;
+        this.mergedPattern = merge(patterns);
+        this.decisions = patterns.isEmpty() || decisionCacheMaxSize <= 0 ? null : Caffeine.newBuilder()
+                .maximumSize(decisionCacheMaxSize)
+                .executor(Runnable::run)
+                .build();
+    }
+
+    public boolean matches(String topic) {
+        if (patterns.isEmpty()) {
+            return false;
+        }
+        if (decisions == null) {
+            return doMatch(topic);
+        }
+        Boolean decision = decisions.getIfPresent(topic);
+        if (decision == null) {
+            decision = doMatch(topic);
+            decisions.put(topic, decision);
+        }
+        return decision;
+    }
+
+    private boolean doMatch(String topic) {
+        if (mergedPattern != null) {
+            return mergedPattern.matcher(topic).matches();
+        }
+        for (Pattern pattern : patterns) {
+            if (pattern.matcher(topic).matches()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static Pattern merge(List<Pattern> patterns) {
+        if (patterns.size() == 1) {
+            return patterns.get(0);
+        }
+        if (patterns.isEmpty() || patterns.stream().anyMatch(pattern -> BACK_REFERENCE.matcher(pattern.pattern()).find())) {
+            return null;
+        }
+        try {
+            return Pattern.compile(patterns.stream()
+                    .map(pattern -> "(?:" + pattern.pattern() + ")")
+                    .collect(Collectors.joining("|")));
+        } catch (PatternSyntaxException e) {
+            return null;
+        }
+    }
+}
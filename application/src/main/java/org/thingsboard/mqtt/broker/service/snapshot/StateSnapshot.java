@@ -0,0 +1,36 @@
+/**
+ * Copyright © 2016-2024 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.mqtt.broker.service.snapshot;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import java.util.Map;
+
+/**
+ * State of a compacted topic (client sessions, subscriptions or retained messages) as of the given offsets.
+ * Records with the offsets lower than {@link #getOffsets()} are reflected in the entries, so the topic
+ * only has to be read from these offsets on. The entries map is mutable and is completed in place by the tail replay.
+ */
+@Getter
+@RequiredArgsConstructor
+public class StateSnapshot<V> {
+
+    private final long createdTime;
+    private final Map<Integer, Long> offsets;
+    private final Map<String, V> entries;
+
+}
@@ -0,0 +1,40 @@
+/**
+ * Copyright © 2016-2024 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.mqtt.broker.service.snapshot;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+interface StateSnapshotSerializer<V> {
+
+    byte[] serialize(V value);
+
+    /**
+     * Writes the length of the serialized value followed by the value itself.
+     */
+    default void write(V value, DataOutputStream output) throws IOException {
+        byte[] bytes = serialize(value);
+        output.writeInt(bytes.length);
+        output.write(bytes);
+    }
+
+    /**
+     * @param buffer read-only slice of the memory-mapped snapshot file holding exactly one value
+     */
+    V deserialize(ByteBuffer buffer) throws IOException;
+
+}
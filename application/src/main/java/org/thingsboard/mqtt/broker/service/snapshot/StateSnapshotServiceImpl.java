@@ -0,0 +1,283 @@
+/**
+ * Copyright © 2016-2024 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.mqtt.broker.service.snapshot;
+
+import io.netty.handler.codec.mqtt.MqttProperties;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.thingsboard.mqtt.broker.actors.client.service.session.ClientSessionService;
+import org.thingsboard.mqtt.broker.actors.client.service.subscription.ClientSubscriptionService;
+import org.thingsboard.mqtt.broker.adaptor.ProtoConverter;
+import org.thingsboard.mqtt.broker.common.data.ClientSessionInfo;
+import org.thingsboard.mqtt.broker.common.data.subscription.TopicSubscription;
+import org.thingsboard.mqtt.broker.common.util.ThingsBoardExecutors;
+import org.thingsboard.mqtt.broker.gen.queue.QueueProtos;
+import org.thingsboard.mqtt.broker.service.mqtt.client.session.ClientSessionConsumer;
+import org.thingsboard.mqtt.broker.service.mqtt.retain.OffHeapRetainedMsg;
+import org.thingsboard.mqtt.broker.service.mqtt.retain.RetainedMsg;
+import org.thingsboard.mqtt.broker.service.mqtt.retain.RetainedMsgConsumer;
+import org.thingsboard.mqtt.broker.service.mqtt.retain.RetainedMsgListenerService;
+import org.thingsboard.mqtt.broker.service.subscription.ClientSubscriptionConsumer;
+import org.thingsboard.mqtt.broker.util.MqttPropertiesUtil;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Paths;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Periodically writes the client sessions, subscriptions and retained messages to the local snapshots, so that on startup
+ * the compacted topics are read only from the snapshot offsets instead of from the beginning.
+ * <p>
+ * Every topic record holds the whole value of its key, so reading a topic from an earlier offset than needed is harmless.
+ * This is used to make the snapshot consistent without stopping the consumers: the offsets are captured on one run and written
+ * together with the state copied on the next run, since the state is updated by the client actors after the record is consumed.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class StateSnapshotServiceImpl implements StateSnapshotService {
+
+    static final String CLIENT_SESSIONS = "client-sessions";
+    static final String CLIENT_SUBSCRIPTIONS = "client-subscriptions";
+    static final String RETAINED_MESSAGES = "retained-messages";
+
+    static final StateSnapshotSerializer<ClientSessionInfo> CLIENT_SESSION_SERIALIZER = new StateSnapshotSerializer<>() {
+        @Override
+        public byte[] serialize(ClientSessionInfo clientSessionInfo) {
+            return ProtoConverter.convertToClientSessionInfoProto(clientSessionInfo).toByteArray();
+        }
+
+        @Override
+        public ClientSessionInfo deserialize(ByteBuffer buffer) throws IOException {
+            return ProtoConverter.convertToClientSessionInfo(QueueProtos.ClientSessionInfoProto.parseFrom(buffer));
+        }
+    };
+
+    static final StateSnapshotSerializer<Set<TopicSubscription>> CLIENT_SUBSCRIPTIONS_SERIALIZER = new StateSnapshotSerializer<>() {
+        @Override
+        public byte[] serialize(Set<TopicSubscription> topicSubscriptions) {
+            return ProtoConverter.convertToClientSubscriptionsProto(topicSubscriptions).toByteArray();
+        }
+
+        @Override
+        public Set<TopicSubscription> deserialize(ByteBuffer buffer) throws IOException {
+            return ProtoConverter.convertProtoToClientSubscriptions(QueueProtos.ClientSubscriptionsProto.parseFrom(buffer));
+        }
+    };
+
+    /**
+     * The message expiry interval is not a part of the proto (it is sent in the record headers), so it precedes the proto
+     * as 4 bytes, -1 if absent. The off-heap messages are written straight from their buffers.
+     */
+    static final StateSnapshotSerializer<RetainedMsg> RETAINED_MSG_SERIALIZER = new StateSnapshotSerializer<>() {
+        @Override
+        public byte[] serialize(RetainedMsg retainedMsg) {
+            byte[] proto = ProtoConverter.convertToRetainedMsgProto(retainedMsg).toByteArray();
+            return ByteBuffer.allocate(4 + proto.length)
+                    .putInt(getMessageExpiryInterval(retainedMsg))
+                    .put(proto)
+                    .array();
+        }
+
+        @Override
+        public void write(RetainedMsg retainedMsg, DataOutputStream output) throws IOException {
+            if (retainedMsg instanceof OffHeapRetainedMsg offHeapRetainedMsg) {
+                output.writeInt(4 + offHeapRetainedMsg.getProtoSize());
+                output.writeInt(getMessageExpiryInterval(retainedMsg));
+                offHeapRetainedMsg.writeProto(output);
+            } else {
+                StateSnapshotSerializer.super.write(retainedMsg, output);
+            }
+        }
+
+        private int getMessageExpiryInterval(RetainedMsg retainedMsg) {
+            MqttProperties.IntegerProperty messageExpiryIntervalProperty = MqttPropertiesUtil.getPubExpiryIntervalProperty(retainedMsg);
+            return messageExpiryIntervalProperty != null ? messageExpiryIntervalProperty.value() : -1;
+        }
+
+        @Override
+        public RetainedMsg deserialize(ByteBuffer buffer) throws IOException {
+            int messageExpiryInterval = buffer.getInt();
+            RetainedMsg retainedMsg = ProtoConverter.convertProtoToRetainedMsg(QueueProtos.RetainedMsgProto.parseFrom(buffer));
+            if (messageExpiryInterval >= 0) {
+                MqttPropertiesUtil.addMsgExpiryIntervalToPublish(retainedMsg.getProperties(), messageExpiryInterval);
+            }
+            return retainedMsg;
+        }
+    };
+
+    private final StateSnapshotConfiguration config;
+    private final ClientSessionConsumer clientSessionConsumer;
+    private final ClientSubscriptionConsumer clientSubscriptionConsumer;
+    private final RetainedMsgConsumer retainedMsgConsumer;
+    private final ClientSessionService clientSessionService;
+    private final ClientSubscriptionService clientSubscriptionService;
+    private final RetainedMsgListenerService retainedMsgListenerService;
+
+    private StateSnapshotStore store;
+    private ScheduledExecutorService scheduler;
+
+    private CompletableFuture<StateSnapshot<ClientSessionInfo>> clientSessionsSnapshotFuture;
+    private CompletableFuture<StateSnapshot<Set<TopicSubscription>>> clientSubscriptionsSnapshotFuture;
+    private CompletableFuture<StateSnapshot<RetainedMsg>> retainedMsgSnapshotFuture;
+
+    private Map<String, Map<Integer, Long>> previousOffsets;
+    private long previousOffsetsTime;
+
+    @PostConstruct
+    public void init() {
+        if (config.isEnabled()) {
+            store = new StateSnapshotStore(Paths.get(config.getDir()), config.getShards());
+            scheduler = ThingsBoardExecutors.initScheduledExecutorService(1, "state-snapshot");
+        }
+    }
+
+    @Override
+    public void loadSnapshots() {
+        if (!config.isEnabled()) {
+            return;
+        }
+        long minCreatedTime = System.currentTimeMillis() - TimeUnit.SECONDS.toMillis(config.getMaxAge());
+        ExecutorService loadExecutor = ThingsBoardExecutors.initExecutorService(config.getLoadThreadsCount(), "state-snapshot-loader");
+        clientSessionsSnapshotFuture = readSnapshot(CLIENT_SESSIONS, CLIENT_SESSION_SERIALIZER, minCreatedTime, loadExecutor);
+        clientSubscriptionsSnapshotFuture = readSnapshot(CLIENT_SUBSCRIPTIONS, CLIENT_SUBSCRIPTIONS_SERIALIZER, minCreatedTime, loadExecutor);
+        retainedMsgSnapshotFuture = readSnapshot(RETAINED_MESSAGES, RETAINED_MSG_SERIALIZER, minCreatedTime, loadExecutor);
+        CompletableFuture.allOf(clientSessionsSnapshotFuture, clientSubscriptionsSnapshotFuture, retainedMsgSnapshotFuture)
+                .whenComplete((result, throwable) -> loadExecutor.shutdown());
+    }
+
+    private <V> CompletableFuture<StateSnapshot<V>> readSnapshot(String name, StateSnapshotSerializer<V> serializer,
+                                                                  long minCreatedTime, ExecutorService loadExecutor) {
+        try {
+            return store.readLatest(name, serializer, minCreatedTime, loadExecutor);
+        } catch (Exception e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    @Override
+    public StateSnapshot<ClientSessionInfo> getClientSessionsSnapshot() {
+        StateSnapshot<ClientSessionInfo> snapshot = awaitSnapshot(CLIENT_SESSIONS, clientSessionsSnapshotFuture);
+        clientSessionsSnapshotFuture = null;
+        return snapshot;
+    }
+
+    @Override
+    public StateSnapshot<Set<TopicSubscription>> getClientSubscriptionsSnapshot() {
+        StateSnapshot<Set<TopicSubscription>> snapshot = awaitSnapshot(CLIENT_SUBSCRIPTIONS, clientSubscriptionsSnapshotFuture);
+        clientSubscriptionsSnapshotFuture = null;
+        return snapshot;
+    }
+
+    @Override
+    public StateSnapshot<RetainedMsg> getRetainedMsgSnapshot() {
+        StateSnapshot<RetainedMsg> snapshot = awaitSnapshot(RETAINED_MESSAGES, retainedMsgSnapshotFuture);
+        retainedMsgSnapshotFuture = null;
+        return snapshot;
+    }
+
+    private <V> StateSnapshot<V> awaitSnapshot(String name, CompletableFuture<StateSnapshot<V>> snapshotFuture) {
+        if (snapshotFuture == null) {
+            return null;
+        }
+        try {
+            StateSnapshot<V> snapshot = snapshotFuture.join();
+            if (snapshot != null) {
+                log.info("[{}] Loaded state snapshot of {} entries created at {}.",
+                        name, snapshot.getEntries().size(), snapshot.getCreatedTime());
+            }
+            return snapshot;
+        } catch (CompletionException e) {
+            log.warn("[{}] Failed to load state snapshot, the topic is read from the beginning.", name, e.getCause());
+            return null;
+        }
+    }
+
+    @Override
+    public void startSnapshotting() {
+        if (!config.isEnabled()) {
+            return;
+        }
+        scheduler.scheduleWithFixedDelay(this::makeSnapshots, 0, config.getInterval(), TimeUnit.SECONDS);
+    }
+
+    void makeSnapshots() {
+        Map<String, Map<Integer, Long>> offsets = previousOffsets;
+        long offsetsTime = previousOffsetsTime;
+
+        previousOffsetsTime = System.currentTimeMillis();
+        previousOffsets = Map.of(
+                CLIENT_SESSIONS, clientSessionConsumer.getProcessedOffsets(),
+                CLIENT_SUBSCRIPTIONS, clientSubscriptionConsumer.getProcessedOffsets(),
+                RETAINED_MESSAGES, retainedMsgConsumer.getProcessedOffsets());
+        if (offsets == null) {
+            return;
+        }
+
+        writeSnapshot(CLIENT_SESSIONS, offsetsTime, offsets, clientSessionService::getAllClientSessions, CLIENT_SESSION_SERIALIZER);
+        writeSnapshot(CLIENT_SUBSCRIPTIONS, offsetsTime, offsets,
+                clientSubscriptionService::getAllClientSubscriptions, CLIENT_SUBSCRIPTIONS_SERIALIZER);
+        writeRetainedMsgSnapshot(offsetsTime, offsets);
+    }
+
+    private <V> void writeSnapshot(String name, long offsetsTime, Map<String, Map<Integer, Long>> offsets,
+                                   Supplier<Map<String, V>> entriesSupplier, StateSnapshotSerializer<V> serializer) {
+        try {
+            long startTime = System.nanoTime();
+            Map<String, V> entries = entriesSupplier.get();
+            // the snapshot age is counted from the offsets capture, the records after it are replayed on startup
+            store.write(name, new StateSnapshot<>(offsetsTime, offsets.get(name), entries), serializer);
+            if (log.isDebugEnabled()) {
+                log.debug("[{}] Saved state snapshot of {} entries within {} ms.", name, entries.size(),
+                        TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime));
+            }
+        } catch (Exception e) {
+            log.warn("[{}] Failed to save state snapshot.", name, e);
+        }
+    }
+
+    private void writeRetainedMsgSnapshot(long offsetsTime, Map<String, Map<Integer, Long>> offsets) {
+        Map<String, RetainedMsg> retainedMessages = retainedMsgListenerService.getStoredRetainedMessages();
+        try {
+            writeSnapshot(RETAINED_MESSAGES, offsetsTime, offsets, () -> retainedMessages, RETAINED_MSG_SERIALIZER);
+        } finally {
+            for (RetainedMsg retainedMsg : retainedMessages.values()) {
+                if (retainedMsg instanceof OffHeapRetainedMsg offHeapRetainedMsg) {
+                    offHeapRetainedMsg.release();
+                }
+            }
+        }
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+}
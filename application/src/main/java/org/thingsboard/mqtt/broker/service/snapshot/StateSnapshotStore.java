@@ -0,0 +1,243 @@
+/**
+ * Copyright © 2016-2024 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.mqtt.broker.service.snapshot;
+
+import com.google.common.collect.Maps;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Stores the snapshots of one state under {@code <dir>/<name>/<createdTime>/}. Every snapshot is split by the key hash
+ * into the shard files, so that the shards are memory-mapped and decoded in parallel on load and a single file stays below 2GB.
+ * <p>
+ * Shard file layout: the entries one after another, each entry is key length (4 bytes), UTF-8 key, value length (4 bytes), value.
+ * <p>
+ * Manifest layout: magic (4 bytes), version (4 bytes), created time (8 bytes), shards count (4 bytes),
+ * entries count (4 bytes) and CRC32 (8 bytes) of every shard, partitions count (4 bytes), partition (4 bytes) and offset (8 bytes)
+ * of every partition, CRC32 of all the previous bytes (8 bytes).
+ * The manifest is moved into the snapshot directory after all the shards are written, so a snapshot without the manifest is incomplete.
+ */
+@Slf4j
+class StateSnapshotStore {
+
+    static final String MANIFEST_FILE = "manifest";
+    private static final String SHARD_FILE_PREFIX = "shard-";
+    private static final int MAGIC = 0x54424d53;
+    private static final int VERSION = 1;
+
+    private final Path dir;
+    private final int shards;
+
+    StateSnapshotStore(Path dir, int shards) {
+        this.dir = dir;
+        this.shards = Math.max(1, shards);
+    }
+
+    <V> void write(String name, StateSnapshot<V> snapshot, StateSnapshotSerializer<V> serializer) throws IOException {
+        Path snapshotDir = dir.resolve(name).resolve(Long.toString(snapshot.getCreatedTime()));
+        Files.createDirectories(snapshotDir);
+
+        int[] entriesCounts = new int[shards];
+        CRC32[] checksums = new CRC32[shards];
+        DataOutputStream[] outputs = new DataOutputStream[shards];
+        try {
+            for (int i = 0; i < shards; i++) {
+                checksums[i] = new CRC32();
+                outputs[i] = new DataOutputStream(new BufferedOutputStream(
+                        new CheckedOutputStream(Files.newOutputStream(snapshotDir.resolve(shardFileName(i))), checksums[i]), 65536));
+            }
+            for (Map.Entry<String, V> entry : snapshot.getEntries().entrySet()) {
+                int shard = Math.floorMod(entry.getKey().hashCode(), shards);
+                byte[] key = entry.getKey().getBytes(StandardCharsets.UTF_8);
+                DataOutputStream output = outputs[shard];
+                output.writeInt(key.length);
+                output.write(key);
+                serializer.write(entry.getValue(), output);
+                entriesCounts[shard]++;
+            }
+        } finally {
+            for (DataOutputStream output : outputs) {
+                if (output != null) {
+                    output.close();
+                }
+            }
+        }
+
+        ByteBuffer manifest = ByteBuffer.allocate(32 + shards * 12 + snapshot.getOffsets().size() * 12);
+        manifest.putInt(MAGIC).putInt(VERSION).putLong(snapshot.getCreatedTime()).putInt(shards);
+        for (int i = 0; i < shards; i++) {
+            manifest.putInt(entriesCounts[i]).putLong(checksums[i].getValue());
+        }
+        manifest.putInt(snapshot.getOffsets().size());
+        snapshot.getOffsets().forEach((partition, offset) -> manifest.putInt(partition).putLong(offset));
+        CRC32 manifestChecksum = new CRC32();
+        manifestChecksum.update(manifest.array(), 0, manifest.position());
+        manifest.putLong(manifestChecksum.getValue());
+
+        Path tmpFile = snapshotDir.resolve(MANIFEST_FILE + ".tmp");
+        Files.write(tmpFile, manifest.array());
+        Files.move(tmpFile, snapshotDir.resolve(MANIFEST_FILE), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        deleteOlderSnapshots(name, snapshot.getCreatedTime());
+    }
+
+    /**
+     * Reads the manifest of the latest complete snapshot in the caller thread and decodes its shards with the given executor.
+     *
+     * @return future of the snapshot or of null if there is no complete snapshot created not earlier than {@code minCreatedTime}
+     */
+    <V> CompletableFuture<StateSnapshot<V>> readLatest(String name, StateSnapshotSerializer<V> serializer,
+                                                        long minCreatedTime, Executor executor) throws IOException {
+        Path snapshotDir = findLatestSnapshotDir(name);
+        if (snapshotDir == null) {
+            log.info("[{}] No state snapshot found.", name);
+            return CompletableFuture.completedFuture(null);
+        }
+        ByteBuffer manifest = readManifest(snapshotDir);
+        long createdTime = manifest.getLong();
+        if (createdTime < minCreatedTime) {
+            log.info("[{}] Ignoring state snapshot created at {} since it is too old.", name, createdTime);
+            return CompletableFuture.completedFuture(null);
+        }
+        int shardsCount = manifest.getInt();
+        List<CompletableFuture<Map<String, V>>> shardFutures = new ArrayList<>(shardsCount);
+        int totalEntries = 0;
+        for (int i = 0; i < shardsCount; i++) {
+            Path shardFile = snapshotDir.resolve(shardFileName(i));
+            int entriesCount = manifest.getInt();
+            long checksum = manifest.getLong();
+            totalEntries += entriesCount;
+            shardFutures.add(CompletableFuture.supplyAsync(() -> readShard(shardFile, entriesCount, checksum, serializer), executor));
+        }
+        int partitionsCount = manifest.getInt();
+        Map<Integer, Long> offsets = new HashMap<>();
+        for (int i = 0; i < partitionsCount; i++) {
+            offsets.put(manifest.getInt(), manifest.getLong());
+        }
+
+        int expectedSize = totalEntries;
+        return CompletableFuture.allOf(shardFutures.toArray(CompletableFuture[]::new)).thenApply(__ -> {
+            Map<String, V> entries = Maps.newHashMapWithExpectedSize(expectedSize);
+            for (CompletableFuture<Map<String, V>> shardFuture : shardFutures) {
+                entries.putAll(shardFuture.join());
+            }
+            return new StateSnapshot<>(createdTime, offsets, entries);
+        });
+    }
+
+    private <V> Map<String, V> readShard(Path shardFile, int entriesCount, long checksum, StateSnapshotSerializer<V> serializer) {
+        try (FileChannel channel = FileChannel.open(shardFile, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("Snapshot shard " + shardFile + " exceeds 2GB, increase the number of shards");
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            CRC32 crc = new CRC32();
+            crc.update(buffer.duplicate());
+            if (crc.getValue() != checksum) {
+                throw new IOException("Checksum mismatch of snapshot shard " + shardFile);
+            }
+            Map<String, V> entries = Maps.newHashMapWithExpectedSize(entriesCount);
+            for (int i = 0; i < entriesCount; i++) {
+                byte[] key = new byte[buffer.getInt()];
+                buffer.get(key);
+                int valueLength = buffer.getInt();
+                V value = serializer.deserialize(buffer.slice(buffer.position(), valueLength));
+                buffer.position(buffer.position() + valueLength);
+                entries.put(new String(key, StandardCharsets.UTF_8), value);
+            }
+            return entries;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private ByteBuffer readManifest(Path snapshotDir) throws IOException {
+        byte[] bytes = Files.readAllBytes(snapshotDir.resolve(MANIFEST_FILE));
+        ByteBuffer manifest = ByteBuffer.wrap(bytes);
+        if (bytes.length < 32 || manifest.getInt() != MAGIC || manifest.getInt() != VERSION) {
+            throw new IOException("Unsupported snapshot manifest in " + snapshotDir);
+        }
+        CRC32 crc = new CRC32();
+        crc.update(bytes, 0, bytes.length - 8);
+        if (crc.getValue() != manifest.getLong(bytes.length - 8)) {
+            throw new IOException("Checksum mismatch of snapshot manifest in " + snapshotDir);
+        }
+        return manifest;
+    }
+
+    private Path findLatestSnapshotDir(String name) throws IOException {
+        return listSnapshotDirs(name).stream()
+                .filter(snapshotDir -> Files.exists(snapshotDir.resolve(MANIFEST_FILE)))
+                .max(Comparator.comparingLong(StateSnapshotStore::createdTime))
+                .orElse(null);
+    }
+
+    private void deleteOlderSnapshots(String name, long createdTime) throws IOException {
+        for (Path snapshotDir : listSnapshotDirs(name)) {
+            if (createdTime(snapshotDir) < createdTime) {
+                try (Stream<Path> files = Files.list(snapshotDir)) {
+                    for (Path file : (Iterable<Path>) files::iterator) {
+                        Files.deleteIfExists(file);
+                    }
+                }
+                Files.deleteIfExists(snapshotDir);
+            }
+        }
+    }
+
+    private List<Path> listSnapshotDirs(String name) throws IOException {
+        Path stateDir = dir.resolve(name);
+        if (!Files.isDirectory(stateDir)) {
+            return List.of();
+        }
+        try (Stream<Path> dirs = Files.list(stateDir)) {
+            return dirs.filter(Files::isDirectory)
+                    .filter(snapshotDir -> snapshotDir.getFileName().toString().chars().allMatch(Character::isDigit))
+                    .toList();
+        }
+    }
+
+    private static long createdTime(Path snapshotDir) {
+        return Long.parseLong(snapshotDir.getFileName().toString());
+    }
+
+    private static String shardFileName(int shard) {
+        return SHARD_FILE_PREFIX + shard;
+    }
+}
@@ -0,0 +1,65 @@
+/**
+ * Copyright © 2016-2024 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.mqtt.broker.service.snapshot;
+
+import lombok.extern.slf4j.Slf4j;
+import org.thingsboard.mqtt.broker.queue.TbQueueControlledOffsetConsumer;
+
+import java.util.Map;
+
+@Slf4j
+public class StateSnapshotUtil {
+
+    /**
+     * Assigns all the partitions of the topic to the consumer and moves it to the snapshot offsets.
+     *
+     * @return false without touching the consumer if the snapshot is not {@link #isApplicable applicable},
+     * so the topic has to be read from the beginning
+     */
+    public static boolean seekToSnapshot(TbQueueControlledOffsetConsumer<?> consumer, StateSnapshot<?> snapshot) {
+        if (!isApplicable(consumer, snapshot)) {
+            return false;
+        }
+        consumer.assignAllPartitions();
+        snapshot.getOffsets().forEach(consumer::seek);
+        return true;
+    }
+
+    /**
+     * @return false if there is no snapshot or it does not match the topic
+     * (e.g. the topic was recreated and its end offsets are below the snapshot ones)
+     */
+    public static boolean isApplicable(TbQueueControlledOffsetConsumer<?> consumer, StateSnapshot<?> snapshot) {
+        if (snapshot == null) {
+            return false;
+        }
+        String topic = consumer.getTopic();
+        try {
+            for (Map.Entry<Integer, Long> partitionOffset : snapshot.getOffsets().entrySet()) {
+                long endOffset = consumer.getEndOffset(topic, partitionOffset.getKey());
+                if (partitionOffset.getValue() > endOffset) {
+                    log.warn("[{}] Snapshot offset {} of partition {} is beyond the end offset {}. Ignoring the snapshot.",
+                            topic, partitionOffset.getValue(), partitionOffset.getKey(), endOffset);
+                    return false;
+                }
+            }
+        } catch (Exception e) {
+            log.warn("[{}] Failed to check the snapshot offsets. Ignoring the snapshot.", topic, e);
+            return false;
+        }
+        return true;
+    }
+}
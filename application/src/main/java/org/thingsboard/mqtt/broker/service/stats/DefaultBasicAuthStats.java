@@ -0,0 +1,92 @@
+/**
+ * Copyright © 2016-2024 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.mqtt.broker.service.stats;
+
+import org.thingsboard.mqtt.broker.common.stats.DefaultCounter;
+import org.thingsboard.mqtt.broker.common.stats.ResettableTimer;
+import org.thingsboard.mqtt.broker.common.stats.StatsFactory;
+
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+public class DefaultBasicAuthStats implements BasicAuthStats {
+    private final String statsKey = StatsType.BASIC_AUTH.getPrintName();
+
+    private final ResettableTimer authTimer;
+    private final DefaultCounter verifiedCacheHitCounter;
+    private final DefaultCounter passwordCheckRejectedCounter;
+    private final ThreadPoolExecutor passwordCheckExecutor;
+
+    public DefaultBasicAuthStats(StatsFactory statsFactory, ThreadPoolExecutor passwordCheckExecutor) {
+        this.authTimer = new ResettableTimer(statsFactory.createTimer(statsKey + ".latency"), true);
+        this.verifiedCacheHitCounter = statsFactory.createDefaultCounter(statsKey + ".verifiedCacheHits");
+        this.passwordCheckRejectedCounter = statsFactory.createDefaultCounter(statsKey + ".passwordCheckRejected");
+        this.passwordCheckExecutor = passwordCheckExecutor;
+        statsFactory.createGauge(statsKey + ".passwordCheckQueueSize", passwordCheckExecutor, executor -> executor.getQueue().size());
+    }
+
+    @Override
+    public void logAuthTime(long amount, TimeUnit unit) {
+        authTimer.logTime(amount, unit);
+    }
+
+    @Override
+    public void logVerifiedCacheHit() {
+        verifiedCacheHitCounter.increment();
+    }
+
+    @Override
+    public void logPasswordCheckRejected() {
+        passwordCheckRejectedCounter.increment();
+    }
+
+    @Override
+    public int getAuthCount() {
+        return authTimer.getCount();
+    }
+
+    @Override
+    public double getAuthTimeAvg() {
+        return authTimer.getAvg();
+    }
+
+    @Override
+    public double getAuthTimeMax() {
+        return authTimer.getMax();
+    }
+
+    @Override
+    public int getVerifiedCacheHitCount() {
+        return verifiedCacheHitCounter.get();
+    }
+
+    @Override
+    public int getPasswordCheckRejectedCount() {
+        return passwordCheckRejectedCounter.get();
+    }
+
+    @Override
+    public int getPasswordCheckQueueSize() {
+        return passwordCheckExecutor.getQueue().size();
+    }
+
+    @Override
+    public void reset() {
+        authTimer.reset();
+        verifiedCacheHitCounter.clear();
+        passwordCheckRejectedCounter.clear();
+    }
+}
@@ -0,0 +1,67 @@
+/**
+ * Copyright © 2016-2024 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.mqtt.broker.service.stats;
+
+import io.netty.util.HashedWheelTimer;
+import org.thingsboard.mqtt.broker.common.stats.DefaultCounter;
+import org.thingsboard.mqtt.broker.common.stats.StatsFactory;
+
+public class DefaultRetransmissionStats implements RetransmissionStats {
+    private static final String MSG_TYPE_TAG = "msgType";
+    private final String statsKey = StatsType.RETRANSMISSION.getPrintName();
+
+    private final DefaultCounter publishRetransmissionCounter;
+    private final DefaultCounter pubRelRetransmissionCounter;
+    private final HashedWheelTimer retransmissionTimer;
+
+    public DefaultRetransmissionStats(StatsFactory statsFactory, HashedWheelTimer retransmissionTimer) {
+        this.publishRetransmissionCounter = statsFactory.createDefaultCounter(statsKey + ".sent", MSG_TYPE_TAG, "PUBLISH");
+        this.pubRelRetransmissionCounter = statsFactory.createDefaultCounter(statsKey + ".sent", MSG_TYPE_TAG, "PUBREL");
+        this.retransmissionTimer = retransmissionTimer;
+        statsFactory.createGauge(statsKey + ".pending", retransmissionTimer, HashedWheelTimer::pendingTimeouts);
+    }
+
+    @Override
+    public void logPublishRetransmission() {
+        publishRetransmissionCounter.increment();
+    }
+
+    @Override
+    public void logPubRelRetransmission() {
+        pubRelRetransmissionCounter.increment();
+    }
+
+    @Override
+    public int getPublishRetransmissionCount() {
+        return publishRetransmissionCounter.get();
+    }
+
+    @Override
+    public int getPubRelRetransmissionCount() {
+        return pubRelRetransmissionCounter.get();
+    }
+
+    @Override
+    public int getPendingRetransmissionCount() {
+        return (int) retransmissionTimer.pendingTimeouts();
+    }
+
+    @Override
+    public void reset() {
+        publishRetransmissionCounter.clear();
+        pubRelRetransmissionCounter.clear();
+    }
+}
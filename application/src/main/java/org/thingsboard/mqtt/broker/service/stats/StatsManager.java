@@ -15,6 +15,8 @@
  */
 package org.thingsboard.mqtt.broker.service.stats;
 
+import io.netty.util.HashedWheelTimer;
+import org.thingsboard.mqtt.broker.actors.client.state.PublishedInFlightCtx;
 import org.thingsboard.mqtt.broker.common.stats.MessagesStats;
 import org.thingsboard.mqtt.broker.queue.TbQueueCallback;
 import org.thingsboard.mqtt.broker.service.mqtt.persistence.application.data.ApplicationSharedSubscriptionJob;
@@ -26,6 +28,7 @@ import org.thingsboard.mqtt.broker.service.subscription.shared.TopicSharedSubscr
 
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 
@@ -48,6 +51,8 @@ public interface StatsManager {
 
     RetainedMsgConsumerStats getRetainedMsgConsumerStats();
 
+    SubscriptionMatchCacheStats getSubscriptionMatchCacheStats();
+
     void clearApplicationProcessorStats(String clientId);
 
     void clearSharedApplicationProcessorStats(String clientId);
@@ -78,6 +83,16 @@ public interface StatsManager {
 
     void registerActiveSharedApplicationProcessorsStats(Map<String, List<ApplicationSharedSubscriptionJob>> processingFuturesMap);
 
+    void registerFlowControlStats(Map<?, ?> clientsWithDelayedMsgMap);
+
+    void registerClientDelayedMsgStats(String clientId, PublishedInFlightCtx publishedInFlightCtx);
+
+    void clearClientDelayedMsgStats(String clientId);
+
+    RetransmissionStats createRetransmissionStats(HashedWheelTimer retransmissionTimer);
+
+    BasicAuthStats createBasicAuthStats(ThreadPoolExecutor passwordCheckExecutor);
+
     SubscriptionTimerStats getSubscriptionTimerStats();
 
     RetainedMsgTimerStats getRetainedMsgTimerStats();
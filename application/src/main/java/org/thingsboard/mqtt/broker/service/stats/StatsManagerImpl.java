@@ -15,6 +15,8 @@
  */
 package org.thingsboard.mqtt.broker.service.stats;
 
+import io.micrometer.core.instrument.DistributionSummary;
+import io.netty.util.HashedWheelTimer;
 import jakarta.annotation.PostConstruct;
 import jakarta.annotation.PreDestroy;
 import lombok.AllArgsConstructor;
@@ -28,6 +30,7 @@ import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.springframework.util.CollectionUtils;
 import org.thingsboard.mqtt.broker.actors.ActorStatsManager;
+import org.thingsboard.mqtt.broker.actors.client.state.PublishedInFlightCtx;
 import org.thingsboard.mqtt.broker.common.stats.MessagesStats;
 import org.thingsboard.mqtt.broker.common.stats.ResettableTimer;
 import org.thingsboard.mqtt.broker.common.stats.StatsConstantNames;
@@ -51,6 +54,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Supplier;
@@ -73,11 +77,15 @@ public class StatsManagerImpl implements StatsManager, ActorStatsManager, SqlQue
     private final Map<String, List<String>> sharedSubscriptionCompoundClientIds = new ConcurrentHashMap<>();
     private final Map<String, ResettableTimer> managedQueueProducers = new ConcurrentHashMap<>();
     private final Map<String, ResettableTimer> managedQueueConsumers = new ConcurrentHashMap<>();
+    private final Map<String, ResettableTimer> managedSqlQueueFlushTimers = new ConcurrentHashMap<>();
     private final StatsFactory statsFactory;
 
     private ClientSubscriptionConsumerStats managedClientSubscriptionConsumerStats;
     private RetainedMsgConsumerStats retainedMsgConsumerStats;
+    private SubscriptionMatchCacheStats subscriptionMatchCacheStats;
     private ClientActorStats clientActorStats;
+    private RetransmissionStats retransmissionStats;
+    private BasicAuthStats basicAuthStats;
 
     @Value("${stats.application-processor.enabled}")
     private boolean applicationProcessorStatsEnabled;
@@ -89,6 +97,7 @@ public class StatsManagerImpl implements StatsManager, ActorStatsManager, SqlQue
         this.timerStats = new TimerStats(statsFactory);
         this.managedClientSubscriptionConsumerStats = new DefaultClientSubscriptionConsumerStats(statsFactory);
         this.retainedMsgConsumerStats = new DefaultRetainedMsgConsumerStats(statsFactory);
+        this.subscriptionMatchCacheStats = new DefaultSubscriptionMatchCacheStats(statsFactory);
         this.clientActorStats = new DefaultClientActorStats(statsFactory);
     }
 
@@ -191,6 +200,11 @@ public class StatsManagerImpl implements StatsManager, ActorStatsManager, SqlQue
         return retainedMsgConsumerStats;
     }
 
+    @Override
+    public SubscriptionMatchCacheStats getSubscriptionMatchCacheStats() {
+        return subscriptionMatchCacheStats;
+    }
+
     @Override
     public void clearApplicationProcessorStats(String clientId) {
         if (log.isTraceEnabled()) {
@@ -332,6 +346,50 @@ public class StatsManagerImpl implements StatsManager, ActorStatsManager, SqlQue
         gauges.add(new Gauge(StatsType.ACTIVE_SHARED_APP_PROCESSORS.getPrintName(), () -> getSum(processingFuturesMap)));
     }
 
+    @Override
+    public void registerFlowControlStats(Map<?, ?> clientsWithDelayedMsgMap) {
+        if (log.isTraceEnabled()) {
+            log.trace("Registering FlowControlStats.");
+        }
+        statsFactory.createGauge(StatsType.FLOW_CONTROL_DELAYED_CLIENTS.getPrintName(), clientsWithDelayedMsgMap, Map::size);
+        gauges.add(new Gauge(StatsType.FLOW_CONTROL_DELAYED_CLIENTS.getPrintName(), clientsWithDelayedMsgMap::size));
+    }
+
+    @Override
+    public void registerClientDelayedMsgStats(String clientId, PublishedInFlightCtx publishedInFlightCtx) {
+        if (log.isTraceEnabled()) {
+            log.trace("Registering ClientDelayedMsgStats, clientId - {}.", clientId);
+        }
+        statsFactory.createGauge(StatsType.CLIENT_DELAYED_MSGS.getPrintName(), publishedInFlightCtx,
+                PublishedInFlightCtx::getDelayedMsgCount, "clientId", clientId);
+    }
+
+    @Override
+    public void clearClientDelayedMsgStats(String clientId) {
+        if (log.isTraceEnabled()) {
+            log.trace("Clearing ClientDelayedMsgStats, clientId - {}.", clientId);
+        }
+        statsFactory.removeGauge(StatsType.CLIENT_DELAYED_MSGS.getPrintName(), "clientId", clientId);
+    }
+
+    @Override
+    public RetransmissionStats createRetransmissionStats(HashedWheelTimer retransmissionTimer) {
+        if (log.isTraceEnabled()) {
+            log.trace("Creating RetransmissionStats.");
+        }
+        retransmissionStats = new DefaultRetransmissionStats(statsFactory, retransmissionTimer);
+        return retransmissionStats;
+    }
+
+    @Override
+    public BasicAuthStats createBasicAuthStats(ThreadPoolExecutor passwordCheckExecutor) {
+        if (log.isTraceEnabled()) {
+            log.trace("Creating BasicAuthStats.");
+        }
+        basicAuthStats = new DefaultBasicAuthStats(statsFactory, passwordCheckExecutor);
+        return basicAuthStats;
+    }
+
     private int getSum(Map<String, List<ApplicationSharedSubscriptionJob>> processingFuturesMap) {
         return processingFuturesMap.values().stream().mapToInt(List::size).sum();
     }
@@ -376,6 +434,20 @@ public class StatsManagerImpl implements StatsManager, ActorStatsManager, SqlQue
         return stats;
     }
 
+    @Override
+    public ResettableTimer createSqlQueueFlushTimer(String queueName, int queueIndex) {
+        ResettableTimer timer = new ResettableTimer(statsFactory.createTimer(StatsType.SQL_QUEUE.getPrintName() + ".flush",
+                "queueName", queueName, "queueIndex", String.valueOf(queueIndex)), true);
+        managedSqlQueueFlushTimers.put(queueName + "-" + queueIndex, timer);
+        return timer;
+    }
+
+    @Override
+    public DistributionSummary createSqlQueueDepthSummary(String queueName, int queueIndex) {
+        return statsFactory.createDistributionSummary(StatsType.SQL_QUEUE.getPrintName() + ".depth",
+                "queueName", queueName, "queueIndex", String.valueOf(queueIndex));
+    }
+
     @Override
     public Timer createSendTimer(String clientId) {
         ResettableTimer timer = new ResettableTimer(statsFactory.createTimer(StatsType.QUEUE_PRODUCER.getPrintName(), "producerId", clientId));
@@ -483,6 +555,12 @@ public class StatsManagerImpl implements StatsManager, ActorStatsManager, SqlQue
         log.info("[{}] Stats: {}", StatsType.RETAINED_MSG_CONSUMER.getPrintName(), retainedMsgStatsStr);
         retainedMsgConsumerStats.reset();
 
+        String subscriptionMatchCacheStatsStr = subscriptionMatchCacheStats.getStatsCounters().stream()
+                .map(statsCounter -> statsCounter.getName() + " = [" + statsCounter.get() + "]")
+                .collect(Collectors.joining(" "));
+        log.info("[{}] Stats: {}", StatsType.SUBSCRIPTION_MATCH_CACHE.getPrintName(), subscriptionMatchCacheStatsStr);
+        subscriptionMatchCacheStats.reset();
+
         StringBuilder gaugeLogBuilder = new StringBuilder();
         for (Gauge gauge : gauges) {
             gaugeLogBuilder.append(gauge.getName()).append(" = [").append(gauge.getValueSupplier().get().intValue()).append("] ");
@@ -501,6 +579,21 @@ public class StatsManagerImpl implements StatsManager, ActorStatsManager, SqlQue
         clientActorStats.reset();
         log.info("Client Actor Average Stats: {}", clientActorLogBuilder.toString());
 
+        if (retransmissionStats != null) {
+            log.info("[{}] Stats: publish = [{}] pubRel = [{}] pending = [{}]", StatsType.RETRANSMISSION.getPrintName(),
+                    retransmissionStats.getPublishRetransmissionCount(), retransmissionStats.getPubRelRetransmissionCount(),
+                    retransmissionStats.getPendingRetransmissionCount());
+            retransmissionStats.reset();
+        }
+
+        if (basicAuthStats != null) {
+            log.info("[{}] Stats: latency = [{} | {} | {}] verifiedCacheHits = [{}] passwordCheckRejected = [{}] passwordCheckQueueSize = [{}]",
+                    StatsType.BASIC_AUTH.getPrintName(), basicAuthStats.getAuthCount(), basicAuthStats.getAuthTimeAvg(),
+                    basicAuthStats.getAuthTimeMax(), basicAuthStats.getVerifiedCacheHitCount(),
+                    basicAuthStats.getPasswordCheckRejectedCount(), basicAuthStats.getPasswordCheckQueueSize());
+            basicAuthStats.reset();
+        }
+
         StringBuilder timerLogBuilder = new StringBuilder();
         for (ResettableTimer resettableTimer : timerStats.getTimers()) {
             timerLogBuilder.append(resettableTimer.getTimer().getId().getName()).append(" = [").append(resettableTimer.getCount()).append(" | ")
@@ -524,6 +617,16 @@ public class StatsManagerImpl implements StatsManager, ActorStatsManager, SqlQue
             timer.reset();
         });
         log.info("Queue Consumer Commit Time Average Stats: {}", queueConsumerLogBuilder.toString());
+
+        if (!managedSqlQueueFlushTimers.isEmpty()) {
+            StringBuilder sqlQueueFlushLogBuilder = new StringBuilder();
+            managedSqlQueueFlushTimers.forEach((queueId, timer) -> {
+                sqlQueueFlushLogBuilder.append(queueId).append(" = [").append(timer.getCount()).append(" | ")
+                        .append(timer.getAvg()).append(" | ").append(timer.getMax()).append("] ");
+                timer.reset();
+            });
+            log.info("Sql Queue Flush Time Stats: {}", sqlQueueFlushLogBuilder.toString());
+        }
     }
 
     @AllArgsConstructor
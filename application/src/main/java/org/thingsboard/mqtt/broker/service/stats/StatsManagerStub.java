@@ -15,10 +15,12 @@
  */
 package org.thingsboard.mqtt.broker.service.stats;
 
+import io.netty.util.HashedWheelTimer;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Service;
 import org.thingsboard.mqtt.broker.actors.ActorStatsManager;
+import org.thingsboard.mqtt.broker.actors.client.state.PublishedInFlightCtx;
 import org.thingsboard.mqtt.broker.common.stats.MessagesStats;
 import org.thingsboard.mqtt.broker.common.stats.StubMessagesStats;
 import org.thingsboard.mqtt.broker.queue.TbQueueCallback;
@@ -35,6 +37,7 @@ import org.thingsboard.mqtt.broker.service.subscription.shared.TopicSharedSubscr
 
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 
@@ -89,6 +92,11 @@ public class StatsManagerStub implements StatsManager, ActorStatsManager, Produc
         return StubRetainedMsgConsumerStats.STUB_RETAINED_MSG_CONSUMER_STATS;
     }
 
+    @Override
+    public SubscriptionMatchCacheStats getSubscriptionMatchCacheStats() {
+        return StubSubscriptionMatchCacheStats.STUB_SUBSCRIPTION_MATCH_CACHE_STATS;
+    }
+
     @Override
     public void clearApplicationProcessorStats(String clientId) {
     }
@@ -148,6 +156,28 @@ public class StatsManagerStub implements StatsManager, ActorStatsManager, Produc
 
     }
 
+    @Override
+    public void registerFlowControlStats(Map<?, ?> clientsWithDelayedMsgMap) {
+    }
+
+    @Override
+    public void registerClientDelayedMsgStats(String clientId, PublishedInFlightCtx publishedInFlightCtx) {
+    }
+
+    @Override
+    public void clearClientDelayedMsgStats(String clientId) {
+    }
+
+    @Override
+    public RetransmissionStats createRetransmissionStats(HashedWheelTimer retransmissionTimer) {
+        return StubRetransmissionStats.STUB_RETRANSMISSION_STATS;
+    }
+
+    @Override
+    public BasicAuthStats createBasicAuthStats(ThreadPoolExecutor passwordCheckExecutor) {
+        return StubBasicAuthStats.STUB_BASIC_AUTH_STATS;
+    }
+
     @Override
     public SubscriptionTimerStats getSubscriptionTimerStats() {
         return timerStats;
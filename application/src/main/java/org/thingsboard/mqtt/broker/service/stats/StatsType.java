@@ -38,6 +38,11 @@ public enum StatsType {
     CLIENT_SUBSCRIPTIONS_CONSUMER("clientSubscriptionsConsumer"),
     RETAINED_MSG_CONSUMER("retainedMsgConsumer"),
     CLIENT_ACTOR("clientActor"),
+    SUBSCRIPTION_MATCH_CACHE("subscriptionMatchCache"),
+    FLOW_CONTROL_DELAYED_CLIENTS("flowControlDelayedClients"),
+    CLIENT_DELAYED_MSGS("clientDelayedMsgs"),
+    RETRANSMISSION("retransmission"),
+    BASIC_AUTH("basicAuth"),
 
     SUBSCRIPTION_LOOKUP("subscriptionLookup"),
     RETAINED_MSG_LOOKUP("retainedMsgLookup"),
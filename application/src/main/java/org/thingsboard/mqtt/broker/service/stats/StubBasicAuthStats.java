@@ -0,0 +1,71 @@
+/**
+ * Copyright © 2016-2024 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.mqtt.broker.service.stats;
+
+import java.util.concurrent.TimeUnit;
+
+public class StubBasicAuthStats implements BasicAuthStats {
+    public static BasicAuthStats STUB_BASIC_AUTH_STATS = new StubBasicAuthStats();
+
+    private StubBasicAuthStats() {
+    }
+
+    @Override
+    public void logAuthTime(long amount, TimeUnit unit) {
+    }
+
+    @Override
+    public void logVerifiedCacheHit() {
+    }
+
+    @Override
+    public void logPasswordCheckRejected() {
+    }
+
+    @Override
+    public int getAuthCount() {
+        return 0;
+    }
+
+    @Override
+    public double getAuthTimeAvg() {
+        return 0;
+    }
+
+    @Override
+    public double getAuthTimeMax() {
+        return 0;
+    }
+
+    @Override
+    public int getVerifiedCacheHitCount() {
+        return 0;
+    }
+
+    @Override
+    public int getPasswordCheckRejectedCount() {
+        return 0;
+    }
+
+    @Override
+    public int getPasswordCheckQueueSize() {
+        return 0;
+    }
+
+    @Override
+    public void reset() {
+    }
+}
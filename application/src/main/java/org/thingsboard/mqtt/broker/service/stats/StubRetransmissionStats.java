@@ -0,0 +1,50 @@
+/**
+ * Copyright © 2016-2024 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.mqtt.broker.service.stats;
+
+public class StubRetransmissionStats implements RetransmissionStats {
+    public static RetransmissionStats STUB_RETRANSMISSION_STATS = new StubRetransmissionStats();
+
+    private StubRetransmissionStats() {
+    }
+
+    @Override
+    public void logPublishRetransmission() {
+    }
+
+    @Override
+    public void logPubRelRetransmission() {
+    }
+
+    @Override
+    public int getPublishRetransmissionCount() {
+        return 0;
+    }
+
+    @Override
+    public int getPubRelRetransmissionCount() {
+        return 0;
+    }
+
+    @Override
+    public int getPendingRetransmissionCount() {
+        return 0;
+    }
+
+    @Override
+    public void reset() {
+    }
+}
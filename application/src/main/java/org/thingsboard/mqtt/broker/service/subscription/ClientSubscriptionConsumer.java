@@ -17,6 +17,7 @@ package org.thingsboard.mqtt.broker.service.subscription;
 
 import org.thingsboard.mqtt.broker.common.data.subscription.TopicSubscription;
 import org.thingsboard.mqtt.broker.exception.QueuePersistenceException;
+import org.thingsboard.mqtt.broker.service.snapshot.StateSnapshot;
 
 import java.util.Map;
 import java.util.Set;
@@ -25,6 +26,10 @@ public interface ClientSubscriptionConsumer {
 
     Map<String, Set<TopicSubscription>> initLoad() throws QueuePersistenceException;
 
+    Map<String, Set<TopicSubscription>> initLoad(StateSnapshot<Set<TopicSubscription>> snapshot) throws QueuePersistenceException;
+
+    Map<Integer, Long> getProcessedOffsets();
+
     void listen(ClientSubscriptionChangesCallback callback);
 
 }
@@ -29,7 +29,10 @@ import org.thingsboard.mqtt.broker.gen.queue.QueueProtos;
 import org.thingsboard.mqtt.broker.queue.TbQueueAdmin;
 import org.thingsboard.mqtt.broker.queue.TbQueueControlledOffsetConsumer;
 import org.thingsboard.mqtt.broker.queue.common.TbProtoQueueMsg;
+import org.thingsboard.mqtt.broker.queue.common.TbQueuePartitionedLoader;
 import org.thingsboard.mqtt.broker.queue.provider.ClientSubscriptionsQueueFactory;
+import org.thingsboard.mqtt.broker.service.snapshot.StateSnapshot;
+import org.thingsboard.mqtt.broker.service.snapshot.StateSnapshotUtil;
 import org.thingsboard.mqtt.broker.service.stats.ClientSubscriptionConsumerStats;
 import org.thingsboard.mqtt.broker.service.stats.StatsManager;
 
@@ -39,6 +42,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 
@@ -52,11 +56,16 @@ public class ClientSubscriptionConsumerImpl implements ClientSubscriptionConsume
     private volatile boolean initializing = true;
     private volatile boolean stopped = false;
 
+    private final Map<Integer, Long> processedOffsets = new ConcurrentHashMap<>();
     private final ExecutorService consumerExecutor = Executors.newSingleThreadExecutor(ThingsBoardThreadFactory.forName("client-subscriptions-listener"));
 
     @Value("${queue.client-subscriptions.poll-interval}")
     private long pollDuration;
+    @Value("${queue.init-load.parallel:false}")
+    private boolean parallelInitLoad;
 
+    private final ClientSubscriptionsQueueFactory clientSubscriptionsQueueFactory;
+    private final String serviceId;
     private final SubscriptionPersistenceService persistenceService;
     private final TbQueueControlledOffsetConsumer<TbProtoQueueMsg<QueueProtos.ClientSubscriptionsProto>> clientSubscriptionsConsumer;
     private final TbQueueAdmin queueAdmin;
@@ -64,8 +73,10 @@ public class ClientSubscriptionConsumerImpl implements ClientSubscriptionConsume
 
     public ClientSubscriptionConsumerImpl(ClientSubscriptionsQueueFactory clientSubscriptionsQueueFactory, ServiceInfoProvider serviceInfoProvider,
                                           SubscriptionPersistenceService persistenceService, TbQueueAdmin queueAdmin, StatsManager statsManager) {
-        String uniqueConsumerGroupId = serviceInfoProvider.getServiceId() + "-" + System.currentTimeMillis();
-        this.clientSubscriptionsConsumer = clientSubscriptionsQueueFactory.createConsumer(serviceInfoProvider.getServiceId(), uniqueConsumerGroupId);
+        this.clientSubscriptionsQueueFactory = clientSubscriptionsQueueFactory;
+        this.serviceId = serviceInfoProvider.getServiceId();
+        String uniqueConsumerGroupId = serviceId + "-" + System.currentTimeMillis();
+        this.clientSubscriptionsConsumer = clientSubscriptionsQueueFactory.createConsumer(serviceId, uniqueConsumerGroupId);
         this.persistenceService = persistenceService;
         this.queueAdmin = queueAdmin;
         this.stats = statsManager.getClientSubscriptionConsumerStats();
@@ -73,16 +84,30 @@ public class ClientSubscriptionConsumerImpl implements ClientSubscriptionConsume
 
     @Override
     public Map<String, Set<TopicSubscription>> initLoad() throws QueuePersistenceException {
+        return initLoad(null);
+    }
+
+    @Override
+    public Map<String, Set<TopicSubscription>> initLoad(StateSnapshot<Set<TopicSubscription>> snapshot) throws QueuePersistenceException {
+        if (parallelInitLoad) {
+            return parallelInitLoad(snapshot);
+        }
         log.debug("Starting subscriptions initLoad");
         long startTime = System.nanoTime();
         long totalMessageCount = 0L;
 
         String dummyClientId = persistDummyClientSubscriptions();
-        clientSubscriptionsConsumer.assignOrSubscribe();
+        Map<String, Set<TopicSubscription>> allSubscriptions;
+        if (StateSnapshotUtil.seekToSnapshot(clientSubscriptionsConsumer, snapshot)) {
+            allSubscriptions = snapshot.getEntries();
+            processedOffsets.putAll(snapshot.getOffsets());
+        } else {
+            clientSubscriptionsConsumer.assignOrSubscribe();
+            allSubscriptions = new HashMap<>();
+        }
 
         List<TbProtoQueueMsg<QueueProtos.ClientSubscriptionsProto>> messages;
         boolean encounteredDummyClient = false;
-        Map<String, Set<TopicSubscription>> allSubscriptions = new HashMap<>();
         do {
             try {
                 messages = clientSubscriptionsConsumer.poll(pollDuration);
@@ -101,6 +126,7 @@ public class ClientSubscriptionConsumerImpl implements ClientSubscriptionConsume
                     } else {
                         allSubscriptions.put(clientId, clientSubscriptions);
                     }
+                    processedOffsets.put(msg.getPartition(), msg.getOffset() + 1);
                 }
                 clientSubscriptionsConsumer.commitSync();
             } catch (Exception e) {
@@ -121,6 +147,46 @@ public class ClientSubscriptionConsumerImpl implements ClientSubscriptionConsume
         return allSubscriptions;
     }
 
+    private Map<String, Set<TopicSubscription>> parallelInitLoad(StateSnapshot<Set<TopicSubscription>> snapshot) {
+        log.debug("Starting subscriptions parallel initLoad");
+        long startTime = System.nanoTime();
+
+        boolean fromSnapshot = StateSnapshotUtil.isApplicable(clientSubscriptionsConsumer, snapshot);
+        Map<String, Set<TopicSubscription>> allSubscriptions = fromSnapshot ? new ConcurrentHashMap<>(snapshot.getEntries()) : new ConcurrentHashMap<>();
+        Map<Integer, Long> offsets = TbQueuePartitionedLoader.<TbProtoQueueMsg<QueueProtos.ClientSubscriptionsProto>>builder()
+                .consumer(clientSubscriptionsConsumer)
+                .partitionConsumerFactory(partition -> clientSubscriptionsQueueFactory.createConsumer(serviceId + "-" + partition,
+                        clientSubscriptionsConsumer.getConsumerGroupId()))
+                .admin(queueAdmin)
+                .pollDuration(pollDuration)
+                .stopped(() -> stopped)
+                .threadNamePrefix("client-subscriptions-init-load")
+                .build()
+                .load(fromSnapshot ? snapshot.getOffsets() : Collections.emptyMap(), msg -> {
+                    Set<TopicSubscription> clientSubscriptions = ProtoConverter.convertProtoToClientSubscriptions(msg.getValue());
+                    if (clientSubscriptions.isEmpty()) {
+                        allSubscriptions.remove(msg.getKey());
+                    } else {
+                        allSubscriptions.put(msg.getKey(), clientSubscriptions);
+                    }
+                });
+        processedOffsets.putAll(offsets);
+
+        initializing = false;
+
+        if (log.isDebugEnabled()) {
+            long endTime = System.nanoTime();
+            log.debug("Finished subscriptions parallel initLoad for {} clients within time: {} nanos", allSubscriptions.size(), endTime - startTime);
+        }
+
+        return allSubscriptions;
+    }
+
+    @Override
+    public Map<Integer, Long> getProcessedOffsets() {
+        return new HashMap<>(processedOffsets);
+    }
+
     @Override
     public void listen(ClientSubscriptionChangesCallback callback) {
         if (initializing) {
@@ -146,6 +212,7 @@ public class ClientSubscriptionConsumerImpl implements ClientSubscriptionConsume
                         } else {
                             ignoredSubscriptions++;
                         }
+                        processedOffsets.put(msg.getPartition(), msg.getOffset() + 1);
                     }
                     stats.log(acceptedSubscriptions, ignoredSubscriptions);
                     clientSubscriptionsConsumer.commitSync();
@@ -20,6 +20,7 @@ import lombok.AllArgsConstructor;
 import lombok.Setter;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Service;
 import org.thingsboard.mqtt.broker.common.util.BrokerConstants;
 import org.thingsboard.mqtt.broker.exception.SubscriptionTrieClearException;
@@ -27,6 +28,7 @@ import org.thingsboard.mqtt.broker.service.stats.StatsManager;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
@@ -39,11 +41,13 @@ import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.BiConsumer;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
 @Slf4j
 @Service
+@ConditionalOnProperty(prefix = "mqtt.subscription-trie", value = "type", havingValue = "concurrent-map", matchIfMissing = true)
 public class ConcurrentMapSubscriptionTrie<T> implements SubscriptionTrie<T> {
 
     private final AtomicInteger size;
@@ -62,22 +66,28 @@ public class ConcurrentMapSubscriptionTrie<T> implements SubscriptionTrie<T> {
 
     @Override
     public List<ValueWithTopicFilter<T>> get(String topic) {
+        List<ValueWithTopicFilter<T>> result = new ArrayList<>();
+        get(topic, (value, topicFilter) -> result.add(new ValueWithTopicFilter<>(value, topicFilter)));
+        return result;
+    }
+
+    @Override
+    public void get(String topic, BiConsumer<T, String> sink) {
         if (topic == null) {
             throw new IllegalArgumentException("Topic cannot be null");
         }
-        List<ValueWithTopicFilter<T>> result = new ArrayList<>();
         Stack<TopicPosition<T>> topicPositions = new Stack<>();
         topicPositions.add(new TopicPosition<>(BrokerConstants.NULL_CHAR_STR, 0, root));
 
         while (!topicPositions.isEmpty()) {
             TopicPosition<T> topicPosition = topicPositions.pop();
             if (topicPosition.segmentStartIndex > topic.length()) {
-                result.addAll(wrapValuesWithTopicFilter(topicPosition.prevTopicFilter, topicPosition.node.values));
+                acceptValues(topicPosition.prevTopicFilter, topicPosition.node.values, sink);
 
                 Node<T> multiLevelWildcardSubs = topicPosition.node.children.get(BrokerConstants.MULTI_LEVEL_WILDCARD);
                 if (multiLevelWildcardSubs != null) {
                     String currentTopicFilter = appendSegment(topicPosition.prevTopicFilter, BrokerConstants.MULTI_LEVEL_WILDCARD);
-                    result.addAll(wrapValuesWithTopicFilter(currentTopicFilter, multiLevelWildcardSubs.values));
+                    acceptValues(currentTopicFilter, multiLevelWildcardSubs.values, sink);
                 }
                 continue;
             }
@@ -89,7 +99,7 @@ public class ConcurrentMapSubscriptionTrie<T> implements SubscriptionTrie<T> {
                 Node<T> multiLevelWildcardSubs = childNodes.get(BrokerConstants.MULTI_LEVEL_WILDCARD);
                 if (multiLevelWildcardSubs != null) {
                     String currentTopicFilter = appendSegment(topicPosition.prevTopicFilter, BrokerConstants.MULTI_LEVEL_WILDCARD);
-                    result.addAll(wrapValuesWithTopicFilter(currentTopicFilter, multiLevelWildcardSubs.values));
+                    acceptValues(currentTopicFilter, multiLevelWildcardSubs.values, sink);
                 }
                 Node<T> singleLevelWildcardSubs = childNodes.get(BrokerConstants.SINGLE_LEVEL_WILDCARD);
                 if (singleLevelWildcardSubs != null) {
@@ -104,19 +114,16 @@ public class ConcurrentMapSubscriptionTrie<T> implements SubscriptionTrie<T> {
                 topicPositions.add(new TopicPosition<>(currentTopicFilter, nextSegmentStartIndex, segmentNode));
             }
         }
-        return result;
     }
 
     private boolean notStartingWith$(String topic, TopicPosition<T> topicPosition) {
         return topicPosition.segmentStartIndex != 0 || topic.charAt(0) != '$';
     }
 
-    private List<ValueWithTopicFilter<T>> wrapValuesWithTopicFilter(String topicFilter, Collection<T> values) {
-        List<ValueWithTopicFilter<T>> result = new ArrayList<>(values.size());
+    private void acceptValues(String topicFilter, Collection<T> values, BiConsumer<T, String> sink) {
         for (T value : values) {
-            result.add(new ValueWithTopicFilter<>(value, topicFilter));
+            sink.accept(value, topicFilter);
         }
-        return result;
     }
 
     @Override
@@ -137,7 +144,9 @@ public class ConcurrentMapSubscriptionTrie<T> implements SubscriptionTrie<T> {
 
     private void put(Node<T> x, String key, T val, int segmentStartIndex) {
         if (segmentStartIndex > key.length()) {
-            addOrReplace(x.values, val);
+            if (addOrReplace(x.values, val)) {
+                size.getAndIncrement();
+            }
         } else {
             String segment = getSegment(key, segmentStartIndex);
             Node<T> nextNode = x.children.computeIfAbsent(segment, s -> {
@@ -148,13 +157,73 @@ public class ConcurrentMapSubscriptionTrie<T> implements SubscriptionTrie<T> {
         }
     }
 
-    private void addOrReplace(Set<T> values, T val) {
+    @Override
+    public void putAll(Map<String, ? extends Collection<T>> valuesByTopicFilter) {
+        if (log.isTraceEnabled()) {
+            log.trace("Executing putAll for {} topic filters", valuesByTopicFilter.size());
+        }
+        List<TopicFilterValues<T>> entries = new ArrayList<>(valuesByTopicFilter.size());
+        valuesByTopicFilter.forEach((topicFilter, values) -> {
+            if (topicFilter == null || values == null) {
+                throw new IllegalArgumentException("Topic filter or values cannot be null");
+            }
+            entries.add(new TopicFilterValues<>(topicFilter, values));
+        });
+        PutAllCounters counters = new PutAllCounters();
+        lock.writeLock().lock();
+        try {
+            putAll(root, entries, 0, counters);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        nodesCount.addAndGet(counters.nodes);
+        size.addAndGet(counters.values);
+    }
+
+    /**
+     * Groups the entries by the current segment first, so every missing node is created already sized for its children and values.
+     */
+    private Node<T> putAll(Node<T> x, List<TopicFilterValues<T>> entries, int segmentStartIndex, PutAllCounters counters) {
+        List<T> nodeValues = new ArrayList<>();
+        Map<String, List<TopicFilterValues<T>>> entriesBySegment = new HashMap<>();
+        for (TopicFilterValues<T> entry : entries) {
+            if (segmentStartIndex > entry.topicFilter.length()) {
+                nodeValues.addAll(entry.values);
+            } else {
+                String segment = getSegment(entry.topicFilter, segmentStartIndex);
+                entriesBySegment.computeIfAbsent(segment, s -> new ArrayList<>()).add(entry);
+            }
+        }
+        if (x == null) {
+            x = new Node<>(entriesBySegment.size(), nodeValues.size());
+            counters.nodes++;
+        }
+        for (T val : nodeValues) {
+            if (val == null) {
+                throw new IllegalArgumentException("Value cannot be null");
+            }
+            if (addOrReplace(x.values, val)) {
+                counters.values++;
+            }
+        }
+        for (Map.Entry<String, List<TopicFilterValues<T>>> segmentEntries : entriesBySegment.entrySet()) {
+            String segment = segmentEntries.getKey();
+            Node<T> child = x.children.get(segment);
+            Node<T> updatedChild = putAll(child, segmentEntries.getValue(), getNextSegmentStartIndex(segmentStartIndex, segment), counters);
+            if (child == null) {
+                x.children.put(segment, updatedChild);
+            }
+        }
+        return x;
+    }
+
+    private boolean addOrReplace(Set<T> values, T val) {
         if (!values.add(val)) {
             values.remove(val);
             values.add(val);
-        } else {
-            size.getAndIncrement();
+            return false;
         }
+        return true;
     }
 
     @Override
@@ -267,10 +336,17 @@ public class ConcurrentMapSubscriptionTrie<T> implements SubscriptionTrie<T> {
     }
 
     private static class Node<T> {
-        private final ConcurrentMap<String, Node<T>> children = new ConcurrentHashMap<>();
-        private final Set<T> values = Sets.newConcurrentHashSet();
+        private final ConcurrentMap<String, Node<T>> children;
+        private final Set<T> values;
 
         public Node() {
+            this.children = new ConcurrentHashMap<>();
+            this.values = Sets.newConcurrentHashSet();
+        }
+
+        Node(int childrenCount, int valuesCount) {
+            this.children = new ConcurrentHashMap<>(childrenCount);
+            this.values = ConcurrentHashMap.newKeySet(valuesCount);
         }
 
         @Override
@@ -288,6 +364,17 @@ public class ConcurrentMapSubscriptionTrie<T> implements SubscriptionTrie<T> {
         }
     }
 
+    @AllArgsConstructor
+    private static class TopicFilterValues<T> {
+        private final String topicFilter;
+        private final Collection<T> values;
+    }
+
+    private static class PutAllCounters {
+        private long nodes;
+        private int values;
+    }
+
     @AllArgsConstructor
     private static class TopicPosition<T> {
         private final String prevTopicFilter;
@@ -0,0 +1,526 @@
+/**
+ * Copyright © 2016-2024 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.mqtt.broker.service.subscription;
+
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
+import lombok.Setter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+import org.thingsboard.mqtt.broker.common.util.BrokerConstants;
+import org.thingsboard.mqtt.broker.exception.SubscriptionTrieClearException;
+import org.thingsboard.mqtt.broker.service.stats.StatsManager;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * Subscription trie with allocation-free lookups.
+ * <p>
+ * Segments are interned on insert and looked up by a reusable probe key that compares the topic region in place,
+ * every node keeps its full topic filter together with the values already paired with it, wildcard children are stored
+ * in dedicated fields and the traversal stack is reused per thread. {@link #getEntries(String, Consumer)} passes
+ * the node-owned pairs as is and does not allocate at all, the only allocation on {@link #get(String)} is the result list.
+ */
+@Slf4j
+@Service
+@ConditionalOnProperty(prefix = "mqtt.subscription-trie", value = "type", havingValue = "segment-interned")
+public class SegmentInternedSubscriptionTrie<T> implements SubscriptionTrie<T> {
+
+    private static final int INITIAL_STACK_SIZE = 16;
+
+    private static final ThreadLocal<TraversalState> TRAVERSAL_STATE = ThreadLocal.withInitial(TraversalState::new);
+
+    private final Interner<String> segmentInterner = Interners.newWeakInterner();
+    private final AtomicInteger size;
+    private final AtomicLong nodesCount;
+    private final Node<T> root = new Node<>(BrokerConstants.NULL_CHAR_STR);
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    @Setter
+    @Value("${mqtt.subscription-trie.wait-for-clear-lock-ms}")
+    private int waitForClearLockMs;
+
+    public SegmentInternedSubscriptionTrie(StatsManager statsManager) {
+        this.size = statsManager.createSubscriptionSizeCounter();
+        this.nodesCount = statsManager.createSubscriptionTrieNodesCounter();
+    }
+
+    @Override
+    public List<ValueWithTopicFilter<T>> get(String topic) {
+        List<ValueWithTopicFilter<T>> result = new ArrayList<>();
+        getEntries(topic, result::add);
+        return result;
+    }
+
+    @Override
+    public void get(String topic, BiConsumer<T, String> sink) {
+        getEntries(topic, entry -> sink.accept(entry.getValue(), entry.getTopicFilter()));
+    }
+
+    @Override
+    public void getEntries(String topic, Consumer<ValueWithTopicFilter<T>> sink) {
+        if (topic == null) {
+            throw new IllegalArgumentException("Topic cannot be null");
+        }
+        TraversalState state = TRAVERSAL_STATE.get();
+        if (state.inUse) {
+            // sink is querying the trie again on the same thread, do not corrupt the outer traversal
+            state = new TraversalState();
+        }
+        state.inUse = true;
+        try {
+            traverse(topic, sink, state);
+        } finally {
+            state.reset();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void traverse(String topic, Consumer<ValueWithTopicFilter<T>> sink, TraversalState state) {
+        int topicLength = topic.length();
+        boolean startsWith$ = topicLength > 0 && topic.charAt(0) == '$';
+        SegmentProbe probe = state.probe;
+        state.push(root, 0);
+
+        while (state.size > 0) {
+            state.size--;
+            Node<T> node = (Node<T>) state.nodes[state.size];
+            int segmentStartIndex = state.segmentStartIndexes[state.size];
+            state.nodes[state.size] = null;
+
+            if (segmentStartIndex > topicLength) {
+                acceptValues(node, sink);
+                Node<T> multiLevelWildcardSubs = node.multiLevelWildcard;
+                if (multiLevelWildcardSubs != null) {
+                    acceptValues(multiLevelWildcardSubs, sink);
+                }
+                continue;
+            }
+            int nextDelimiterIndex = topic.indexOf(BrokerConstants.TOPIC_DELIMITER, segmentStartIndex);
+            int segmentEndIndex = nextDelimiterIndex == -1 ? topicLength : nextDelimiterIndex;
+            int nextSegmentStartIndex = segmentEndIndex + 1;
+
+            if (segmentStartIndex != 0 || !startsWith$) {
+                Node<T> multiLevelWildcardSubs = node.multiLevelWildcard;
+                if (multiLevelWildcardSubs != null) {
+                    acceptValues(multiLevelWildcardSubs, sink);
+                }
+                Node<T> singleLevelWildcardSubs = node.singleLevelWildcard;
+                if (singleLevelWildcardSubs != null) {
+                    state.push(singleLevelWildcardSubs, nextSegmentStartIndex);
+                }
+            }
+
+            if (!node.children.isEmpty()) {
+                Node<T> segmentNode = node.children.get(probe.wrap(topic, segmentStartIndex, segmentEndIndex));
+                if (segmentNode != null) {
+                    state.push(segmentNode, nextSegmentStartIndex);
+                }
+            }
+        }
+        probe.clear();
+    }
+
+    private void acceptValues(Node<T> node, Consumer<ValueWithTopicFilter<T>> sink) {
+        for (ValueWithTopicFilter<T> entry : node.values.values()) {
+            sink.accept(entry);
+        }
+    }
+
+    @Override
+    public void put(String topicFilter, T val) {
+        if (log.isTraceEnabled()) {
+            log.trace("Executing put [{}] [{}]", topicFilter, val);
+        }
+        if (topicFilter == null || val == null) {
+            throw new IllegalArgumentException("Topic filter or value cannot be null");
+        }
+        lock.readLock().lock();
+        try {
+            Node<T> x = root;
+            int segmentStartIndex = 0;
+            while (segmentStartIndex <= topicFilter.length()) {
+                String segment = getSegment(topicFilter, segmentStartIndex);
+                x = getOrCreateChild(x, segment);
+                segmentStartIndex += segment.length() + 1;
+            }
+            if (addOrReplace(x, val)) {
+                size.getAndIncrement();
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private Node<T> getOrCreateChild(Node<T> parent, String segment) {
+        if (BrokerConstants.MULTI_LEVEL_WILDCARD.equals(segment)) {
+            Node<T> node = parent.multiLevelWildcard;
+            if (node != null) {
+                return node;
+            }
+            synchronized (parent) {
+                if (parent.multiLevelWildcard == null) {
+                    parent.multiLevelWildcard = newChild(parent, BrokerConstants.MULTI_LEVEL_WILDCARD);
+                }
+                return parent.multiLevelWildcard;
+            }
+        }
+        if (BrokerConstants.SINGLE_LEVEL_WILDCARD.equals(segment)) {
+            Node<T> node = parent.singleLevelWildcard;
+            if (node != null) {
+                return node;
+            }
+            synchronized (parent) {
+                if (parent.singleLevelWildcard == null) {
+                    parent.singleLevelWildcard = newChild(parent, BrokerConstants.SINGLE_LEVEL_WILDCARD);
+                }
+                return parent.singleLevelWildcard;
+            }
+        }
+        Node<T> node = parent.children.get(segment);
+        if (node != null) {
+            return node;
+        }
+        String internedSegment = segmentInterner.intern(segment);
+        return parent.children.computeIfAbsent(internedSegment, s -> newChild(parent, internedSegment));
+    }
+
+    private Node<T> newChild(Node<T> parent, String segment) {
+        nodesCount.incrementAndGet();
+        return new Node<>(childTopicFilter(parent, segment));
+    }
+
+    private String childTopicFilter(Node<T> parent, String segment) {
+        return parent == root ? segment : parent.topicFilter + BrokerConstants.TOPIC_DELIMITER + segment;
+    }
+
+    @Override
+    public void putAll(Map<String, ? extends Collection<T>> valuesByTopicFilter) {
+        if (log.isTraceEnabled()) {
+            log.trace("Executing putAll for {} topic filters", valuesByTopicFilter.size());
+        }
+        List<TopicFilterValues<T>> entries = new ArrayList<>(valuesByTopicFilter.size());
+        valuesByTopicFilter.forEach((topicFilter, values) -> {
+            if (topicFilter == null || values == null) {
+                throw new IllegalArgumentException("Topic filter or values cannot be null");
+            }
+            entries.add(new TopicFilterValues<>(topicFilter, values));
+        });
+        PutAllCounters counters = new PutAllCounters();
+        lock.writeLock().lock();
+        try {
+            putAll(null, null, root, entries, 0, counters);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        nodesCount.addAndGet(counters.nodes);
+        size.addAndGet(counters.values);
+    }
+
+    /**
+     * Groups the entries by the current segment first, so every missing node is created already sized for its children and values.
+     */
+    private Node<T> putAll(Node<T> parent, String segment, Node<T> x, List<TopicFilterValues<T>> entries,
+                           int segmentStartIndex, PutAllCounters counters) {
+        List<T> nodeValues = new ArrayList<>();
+        Map<String, List<TopicFilterValues<T>>> entriesBySegment = new HashMap<>();
+        for (TopicFilterValues<T> entry : entries) {
+            if (segmentStartIndex > entry.topicFilter.length()) {
+                nodeValues.addAll(entry.values);
+            } else {
+                String childSegment = getSegment(entry.topicFilter, segmentStartIndex);
+                entriesBySegment.computeIfAbsent(childSegment, s -> new ArrayList<>()).add(entry);
+            }
+        }
+        if (x == null) {
+            x = new Node<>(childTopicFilter(parent, segment), entriesBySegment.size(), nodeValues.size());
+            counters.nodes++;
+        }
+        for (T val : nodeValues) {
+            if (val == null) {
+                throw new IllegalArgumentException("Value cannot be null");
+            }
+            if (addOrReplace(x, val)) {
+                counters.values++;
+            }
+        }
+        for (Map.Entry<String, List<TopicFilterValues<T>>> segmentEntries : entriesBySegment.entrySet()) {
+            String childSegment = segmentEntries.getKey();
+            int nextSegmentStartIndex = segmentStartIndex + childSegment.length() + 1;
+            if (BrokerConstants.MULTI_LEVEL_WILDCARD.equals(childSegment)) {
+                x.multiLevelWildcard = putAll(x, childSegment, x.multiLevelWildcard, segmentEntries.getValue(), nextSegmentStartIndex, counters);
+            } else if (BrokerConstants.SINGLE_LEVEL_WILDCARD.equals(childSegment)) {
+                x.singleLevelWildcard = putAll(x, childSegment, x.singleLevelWildcard, segmentEntries.getValue(), nextSegmentStartIndex, counters);
+            } else {
+                Node<T> child = x.children.get(childSegment);
+                if (child == null) {
+                    String internedSegment = segmentInterner.intern(childSegment);
+                    x.children.put(internedSegment, putAll(x, internedSegment, null, segmentEntries.getValue(), nextSegmentStartIndex, counters));
+                } else {
+                    putAll(x, childSegment, child, segmentEntries.getValue(), nextSegmentStartIndex, counters);
+                }
+            }
+        }
+        return x;
+    }
+
+    private boolean addOrReplace(Node<T> node, T val) {
+        return node.values.put(val, new ValueWithTopicFilter<>(val, node.topicFilter)) == null;
+    }
+
+    @Override
+    public boolean delete(String topicFilter, Predicate<T> deletionFilter) {
+        if (log.isTraceEnabled()) {
+            log.trace("Executing delete [{}]", topicFilter);
+        }
+        if (topicFilter == null || deletionFilter == null) {
+            throw new IllegalArgumentException("Topic filter or deletionFilter cannot be null");
+        }
+        Node<T> x = getNode(topicFilter);
+        if (x != null) {
+            List<T> valuesToDelete = x.values.values().stream().map(ValueWithTopicFilter::getValue).filter(deletionFilter).toList();
+            if (valuesToDelete.isEmpty()) {
+                return false;
+            }
+            if (valuesToDelete.size() > 1) {
+                log.error("There are more than one value to delete!");
+            }
+            boolean deleted = x.values.keySet().removeAll(valuesToDelete);
+            if (deleted) {
+                size.decrementAndGet();
+            }
+            return deleted;
+        }
+        return false;
+    }
+
+    private Node<T> getNode(String topicFilter) {
+        Node<T> x = root;
+        int segmentStartIndex = 0;
+        while (x != null && segmentStartIndex <= topicFilter.length()) {
+            String segment = getSegment(topicFilter, segmentStartIndex);
+            if (BrokerConstants.MULTI_LEVEL_WILDCARD.equals(segment)) {
+                x = x.multiLevelWildcard;
+            } else if (BrokerConstants.SINGLE_LEVEL_WILDCARD.equals(segment)) {
+                x = x.singleLevelWildcard;
+            } else {
+                x = x.children.get(segment);
+            }
+            segmentStartIndex += segment.length() + 1;
+        }
+        return x;
+    }
+
+    @Override
+    public void clearEmptyNodes() throws SubscriptionTrieClearException {
+        if (log.isTraceEnabled()) {
+            log.trace("Executing clearEmptyNodes");
+        }
+        acquireClearTrieLock();
+        long nodesBefore = nodesCount.get();
+        long clearStartTime = System.currentTimeMillis();
+        try {
+            clearEmptyChildren(root);
+            long nodesAfter = nodesCount.get();
+            long clearEndTime = System.currentTimeMillis();
+            if (log.isDebugEnabled()) {
+                log.debug("Clearing trie took {} ms, cleared {} nodes.",
+                        clearEndTime - clearStartTime, nodesBefore - nodesAfter);
+            }
+        } catch (Exception e) {
+            long nodesAfter = nodesCount.get();
+            log.error("Failed on clearing empty nodes. Managed to clear {} nodes.", nodesBefore - nodesAfter, e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void acquireClearTrieLock() throws SubscriptionTrieClearException {
+        boolean successfullyAcquiredLock = false;
+        try {
+            successfullyAcquiredLock = lock.writeLock().tryLock(waitForClearLockMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            log.warn("Acquiring lock was interrupted.");
+        }
+        if (!successfullyAcquiredLock) {
+            throw new SubscriptionTrieClearException("Couldn't acquire lock for clearing trie. " +
+                    "There are a lot of clients subscribing right now.");
+        }
+    }
+
+    private boolean clearEmptyChildren(Node<T> node) {
+        boolean isNodeEmpty = node.values.isEmpty();
+        for (Map.Entry<Object, Node<T>> entry : node.children.entrySet()) {
+            if (clearEmptyChildren(entry.getValue())) {
+                node.children.remove(entry.getKey());
+                nodesCount.decrementAndGet();
+            } else {
+                isNodeEmpty = false;
+            }
+        }
+        if (node.singleLevelWildcard != null) {
+            if (clearEmptyChildren(node.singleLevelWildcard)) {
+                node.singleLevelWildcard = null;
+                nodesCount.decrementAndGet();
+            } else {
+                isNodeEmpty = false;
+            }
+        }
+        if (node.multiLevelWildcard != null) {
+            if (clearEmptyChildren(node.multiLevelWildcard)) {
+                node.multiLevelWildcard = null;
+                nodesCount.decrementAndGet();
+            } else {
+                isNodeEmpty = false;
+            }
+        }
+        return isNodeEmpty;
+    }
+
+    private String getSegment(String key, int segmentStartIndex) {
+        int nextDelimiterIndex = key.indexOf(BrokerConstants.TOPIC_DELIMITER, segmentStartIndex);
+
+        return nextDelimiterIndex == -1 ?
+                key.substring(segmentStartIndex)
+                : key.substring(segmentStartIndex, nextDelimiterIndex);
+    }
+
+    private static class Node<T> {
+        /**
+         * Keys are interned {@link String} segments, lookups are done with {@link SegmentProbe}.
+         */
+        private final ConcurrentMap<Object, Node<T>> children;
+        /**
+         * Values mapped to their pairs with the topic filter of the node, which are handed out on lookups.
+         */
+        private final ConcurrentMap<T, ValueWithTopicFilter<T>> values;
+        private final String topicFilter;
+        private volatile Node<T> singleLevelWildcard;
+        private volatile Node<T> multiLevelWildcard;
+
+        Node(String topicFilter) {
+            this.children = new ConcurrentHashMap<>();
+            this.values = new ConcurrentHashMap<>();
+            this.topicFilter = topicFilter;
+        }
+
+        Node(String topicFilter, int childrenCount, int valuesCount) {
+            this.children = new ConcurrentHashMap<>(childrenCount);
+            this.values = new ConcurrentHashMap<>(valuesCount);
+            this.topicFilter = topicFilter;
+        }
+    }
+
+    private static final class TopicFilterValues<T> {
+        private final String topicFilter;
+        private final Collection<T> values;
+
+        TopicFilterValues(String topicFilter, Collection<T> values) {
+            this.topicFilter = topicFilter;
+            this.values = values;
+        }
+    }
+
+    private static final class PutAllCounters {
+        private long nodes;
+        private int values;
+    }
+
+    /**
+     * Mutable view over a region of the topic used as a {@link ConcurrentHashMap} lookup key.
+     * Its hash code is computed the same way as {@link String#hashCode()} and {@link ConcurrentHashMap#get(Object)}
+     * always calls {@code probe.equals(storedKey)}, so no segment substring has to be created for the lookup.
+     * The probe must never be stored in the map.
+     */
+    private static final class SegmentProbe {
+        private String topic;
+        private int start;
+        private int end;
+        private int hash;
+
+        SegmentProbe wrap(String topic, int start, int end) {
+            this.topic = topic;
+            this.start = start;
+            this.end = end;
+            int h = 0;
+            for (int i = start; i < end; i++) {
+                h = 31 * h + topic.charAt(i);
+            }
+            this.hash = h;
+            return this;
+        }
+
+        void clear() {
+            this.topic = null;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof String segment)) {
+                return false;
+            }
+            int length = end - start;
+            return segment.length() == length && topic.regionMatches(start, segment, 0, length);
+        }
+    }
+
+    private static final class TraversalState {
+        private final SegmentProbe probe = new SegmentProbe();
+        private Object[] nodes = new Object[INITIAL_STACK_SIZE];
+        private int[] segmentStartIndexes = new int[INITIAL_STACK_SIZE];
+        private int size;
+        private boolean inUse;
+
+        void push(Object node, int segmentStartIndex) {
+            if (size == nodes.length) {
+                nodes = Arrays.copyOf(nodes, size * 2);
+                segmentStartIndexes = Arrays.copyOf(segmentStartIndexes, size * 2);
+            }
+            nodes[size] = node;
+            segmentStartIndexes[size] = segmentStartIndex;
+            size++;
+        }
+
+        void reset() {
+            Arrays.fill(nodes, 0, size, null);
+            size = 0;
+            probe.clear();
+            inUse = false;
+        }
+    }
+}
@@ -0,0 +1,149 @@
+/**
+ * Copyright © 2016-2024 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.mqtt.broker.service.subscription;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import jakarta.annotation.PostConstruct;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.Setter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.thingsboard.mqtt.broker.common.util.BrokerConstants;
+import org.thingsboard.mqtt.broker.service.stats.StatsManager;
+import org.thingsboard.mqtt.broker.service.stats.SubscriptionMatchCacheStats;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Bounded cache of subscription trie lookup results per topic name.
+ * <p>
+ * Every entry is stamped with the sum of three monotonically growing generations that cover the topic:
+ * the global one (bumped by topic filters starting with a wildcard), the one of the topic's first level
+ * (bumped by other wildcard topic filters) and the one of the exact topic (bumped by topic filters without wildcards).
+ * Since generations only grow, an unchanged sum means none of the topic filters that may match the topic
+ * were added or removed after the lookup started, so a stale entry is detected on read without scanning the cache.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class SubscriptionMatchCache {
+
+    private static final int GENERATION_STRIPES = 1 << 12;
+    private static final int STRIPE_MASK = GENERATION_STRIPES - 1;
+
+    private final StatsManager statsManager;
+
+    private final AtomicLong globalGeneration = new AtomicLong();
+    private final AtomicLongArray firstLevelGenerations = new AtomicLongArray(GENERATION_STRIPES);
+    private final AtomicLongArray exactTopicGenerations = new AtomicLongArray(GENERATION_STRIPES);
+
+    @Getter
+    @Setter
+    @Value("${mqtt.subscription-trie.match-cache.enabled}")
+    private boolean enabled;
+    @Setter
+    @Value("${mqtt.subscription-trie.match-cache.max-weight}")
+    private long maxWeight;
+
+    private SubscriptionMatchCacheStats stats;
+    private Cache<String, CachedMatch> cache;
+
+    @PostConstruct
+    public void init() {
+        this.stats = statsManager.getSubscriptionMatchCacheStats();
+        if (!enabled) {
+            return;
+        }
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(maxWeight)
+                .weigher((String topic, CachedMatch match) -> 1 + match.subscriptions.size())
+                .removalListener((String topic, CachedMatch match, RemovalCause cause) -> {
+                    if (cause.wasEvicted()) {
+                        stats.logEviction();
+                    }
+                })
+                .build();
+        log.info("Subscription match cache is enabled with max weight {}", maxWeight);
+    }
+
+    /**
+     * Must be called before the trie lookup, the result of which will be passed to {@link #put(String, long, List)}.
+     */
+    public long getStamp(String topic) {
+        return globalGeneration.get()
+                + firstLevelGenerations.get(firstLevelHash(topic) & STRIPE_MASK)
+                + exactTopicGenerations.get(topic.hashCode() & STRIPE_MASK);
+    }
+
+    public List<ValueWithTopicFilter<ClientSubscription>> get(String topic) {
+        CachedMatch cachedMatch = cache.getIfPresent(topic);
+        if (cachedMatch != null && cachedMatch.stamp == getStamp(topic)) {
+            stats.logHit();
+            return cachedMatch.subscriptions;
+        }
+        stats.logMiss();
+        return null;
+    }
+
+    public List<ValueWithTopicFilter<ClientSubscription>> put(String topic, long stamp, List<ValueWithTopicFilter<ClientSubscription>> subscriptions) {
+        List<ValueWithTopicFilter<ClientSubscription>> unmodifiableSubscriptions = Collections.unmodifiableList(subscriptions);
+        cache.put(topic, new CachedMatch(stamp, unmodifiableSubscriptions));
+        return unmodifiableSubscriptions;
+    }
+
+    /**
+     * Must be called after the topic filter was added to or removed from the trie.
+     */
+    public void onTopicFilterChanged(String topicFilter) {
+        if (!enabled) {
+            return;
+        }
+        if (topicFilter.startsWith(BrokerConstants.MULTI_LEVEL_WILDCARD) || topicFilter.startsWith(BrokerConstants.SINGLE_LEVEL_WILDCARD)) {
+            globalGeneration.incrementAndGet();
+        } else if (topicFilter.contains(BrokerConstants.MULTI_LEVEL_WILDCARD) || topicFilter.contains(BrokerConstants.SINGLE_LEVEL_WILDCARD)) {
+            firstLevelGenerations.incrementAndGet(firstLevelHash(topicFilter) & STRIPE_MASK);
+        } else {
+            exactTopicGenerations.incrementAndGet(topicFilter.hashCode() & STRIPE_MASK);
+            cache.invalidate(topicFilter);
+        }
+    }
+
+    private int firstLevelHash(String topic) {
+        int h = 0;
+        for (int i = 0; i < topic.length(); i++) {
+            char c = topic.charAt(i);
+            if (c == BrokerConstants.TOPIC_DELIMITER) {
+                break;
+            }
+            h = 31 * h + c;
+        }
+        return h;
+    }
+
+    @AllArgsConstructor
+    private static class CachedMatch {
+        private final long stamp;
+        private final List<ValueWithTopicFilter<ClientSubscription>> subscriptions;
+    }
+}
@@ -17,15 +17,45 @@ package org.thingsboard.mqtt.broker.service.subscription;
 
 import org.thingsboard.mqtt.broker.exception.SubscriptionTrieClearException;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
 import java.util.function.Predicate;
 
 public interface SubscriptionTrie<T> {
 
     List<ValueWithTopicFilter<T>> get(String topic);
 
+    /**
+     * Pushes every value matching the topic together with its topic filter into the supplied sink
+     * instead of materializing an intermediate result list.
+     */
+    default void get(String topic, BiConsumer<T, String> sink) {
+        for (ValueWithTopicFilter<T> valueWithTopicFilter : get(topic)) {
+            sink.accept(valueWithTopicFilter.getValue(), valueWithTopicFilter.getTopicFilter());
+        }
+    }
+
+    /**
+     * Pushes every value matching the topic already paired with its topic filter into the supplied sink.
+     * Implementations keeping the pairs on the trie nodes pass them as is, so nothing is allocated per match.
+     */
+    default void getEntries(String topic, Consumer<ValueWithTopicFilter<T>> sink) {
+        get(topic, (value, topicFilter) -> sink.accept(new ValueWithTopicFilter<>(value, topicFilter)));
+    }
+
     void put(String topicFilter, T val);
 
+    /**
+     * Inserts the values of many topic filters at once, e.g. when the subscriptions are restored on startup.
+     * Implementations may build the missing nodes pre-sized under a single exclusive lock and update the counters once.
+     */
+    default void putAll(Map<String, ? extends Collection<T>> valuesByTopicFilter) {
+        valuesByTopicFilter.forEach((topicFilter, values) -> values.forEach(value -> put(topicFilter, value)));
+    }
+
     boolean delete(String topicFilter, Predicate<T> deletionFilter);
 
     void clearEmptyNodes() throws SubscriptionTrieClearException;
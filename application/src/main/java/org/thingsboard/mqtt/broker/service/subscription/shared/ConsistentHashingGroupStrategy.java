@@ -0,0 +1,35 @@
+/**
+ * Copyright © 2016-2024 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.mqtt.broker.service.subscription.shared;
+
+import org.thingsboard.mqtt.broker.service.subscription.Subscription;
+
+/**
+ * Sends all messages of one publisher to the same member while the group membership is unchanged.
+ * Connecting or disconnecting a member moves only the publishers that belong to its part of the hash ring.
+ */
+public class ConsistentHashingGroupStrategy implements SharedSubscriptionGroupStrategy {
+
+    @Override
+    public Subscription select(SharedSubscriptionGroup group, String publisherClientId) {
+        if (publisherClientId == null) {
+            Subscription[] members = group.getConnectedDeviceMembers();
+            return members.length == 0 ? null : members[group.nextCursor() % members.length];
+        }
+        return group.getByHash(publisherClientId);
+    }
+
+}
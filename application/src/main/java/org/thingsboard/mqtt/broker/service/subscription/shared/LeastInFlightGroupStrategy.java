@@ -0,0 +1,61 @@
+/**
+ * Copyright © 2016-2024 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.mqtt.broker.service.subscription.shared;
+
+import lombok.RequiredArgsConstructor;
+import org.thingsboard.mqtt.broker.actors.client.state.PublishedInFlightCtx;
+import org.thingsboard.mqtt.broker.service.mqtt.client.session.ClientSessionCtxService;
+import org.thingsboard.mqtt.broker.service.subscription.Subscription;
+import org.thingsboard.mqtt.broker.session.ClientSessionCtx;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Picks the less loaded of two members: the next one by the group cursor and a random one ("power of two choices"),
+ * so the selection stays O(1) for large groups.
+ * The number of in-flight messages is known only for the sessions connected to this node,
+ * members connected to other nodes are treated as idle.
+ */
+@RequiredArgsConstructor
+public class LeastInFlightGroupStrategy implements SharedSubscriptionGroupStrategy {
+
+    private final ClientSessionCtxService clientSessionCtxService;
+
+    @Override
+    public Subscription select(SharedSubscriptionGroup group, String publisherClientId) {
+        Subscription[] members = group.getConnectedDeviceMembers();
+        int size = members.length;
+        if (size == 0) {
+            return null;
+        }
+        int first = group.nextCursor() % size;
+        if (size == 1) {
+            return members[first];
+        }
+        int second = (first + 1 + ThreadLocalRandom.current().nextInt(size - 1)) % size;
+        return getInFlightMsgCount(members[second]) < getInFlightMsgCount(members[first]) ? members[second] : members[first];
+    }
+
+    private int getInFlightMsgCount(Subscription subscription) {
+        ClientSessionCtx clientSessionCtx = clientSessionCtxService.getClientSessionCtx(subscription.getClientId());
+        if (clientSessionCtx == null) {
+            return 0;
+        }
+        PublishedInFlightCtx publishedInFlightCtx = clientSessionCtx.getPublishedInFlightCtx();
+        return publishedInFlightCtx == null ? 0 : publishedInFlightCtx.getInFlightMsgCount();
+    }
+
+}
@@ -47,6 +47,7 @@ public class SharedSubscriptionCacheServiceImpl implements SharedSubscriptionCac
     // TODO: 01.11.23 improve data persistence - probably only clientId is needed in the map since later the current session state is fetched
 
     private final ClientSessionCache clientSessionCache;
+    private final SharedSubscriptionGroupRegistry sharedSubscriptionGroupRegistry;
     @Getter
     private final ConcurrentMap<TopicSharedSubscription, SharedSubscriptions> sharedSubscriptionsMap = new ConcurrentHashMap<>();
 
@@ -74,12 +75,14 @@ public class SharedSubscriptionCacheServiceImpl implements SharedSubscriptionCac
         for (TopicSubscription topicSubscription : sharedTopicSubscriptions) {
             Subscription subscription = newSubscription(topicSubscription, clientSessionInfo);
 
-            SharedSubscriptions sharedSubscriptions = sharedSubscriptionsMap.computeIfAbsent(getKey(topicSubscription), tss -> SharedSubscriptions.newInstance());
+            TopicSharedSubscription key = getKey(topicSubscription);
+            SharedSubscriptions sharedSubscriptions = sharedSubscriptionsMap.computeIfAbsent(key, tss -> SharedSubscriptions.newInstance());
             if (ClientType.APPLICATION == clientSessionInfo.getType()) {
                 updateSharedSubscriptions(sharedSubscriptions.getApplicationSubscriptions(), clientId, topicSubscription, subscription);
             } else {
                 updateSharedSubscriptions(sharedSubscriptions.getDeviceSubscriptions(), clientId, topicSubscription, subscription);
             }
+            sharedSubscriptionGroupRegistry.addMember(key, subscription);
         }
         if (log.isTraceEnabled()) {
             log.trace("Shared subscriptions updated!");
@@ -109,6 +112,7 @@ public class SharedSubscriptionCacheServiceImpl implements SharedSubscriptionCac
             log.trace("[{}] Executing remove of shared subscription {}", clientId, topicSubscription);
         }
         TopicSharedSubscription key = getKey(topicSubscription);
+        sharedSubscriptionGroupRegistry.removeMember(key, clientId);
         SharedSubscriptions sharedSubscriptions = sharedSubscriptionsMap.get(key);
         if (sharedSubscriptions == null) {
             return;
@@ -0,0 +1,205 @@
+/**
+ * Copyright © 2016-2024 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.mqtt.broker.service.subscription.shared;
+
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+import lombok.Getter;
+import org.thingsboard.mqtt.broker.common.data.ClientSessionInfo;
+import org.thingsboard.mqtt.broker.common.data.ClientType;
+import org.thingsboard.mqtt.broker.service.subscription.Subscription;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Members of one shared subscription group ({@code $share/{shareName}/{topicFilter}}).
+ * <p>
+ * Membership is changed under the group lock, after every change the snapshot read by the publishing threads is rebuilt:
+ * the compact array of the connected DEVICE members (sorted by client id), the number of DEVICE members
+ * and any APPLICATION member (only the topic filter of APPLICATION members is needed to publish to the shared topic).
+ */
+public class SharedSubscriptionGroup {
+
+    private static final Subscription[] EMPTY = new Subscription[0];
+    private static final HashFunction HASH_FUNCTION = Hashing.murmur3_32_fixed();
+    private static final int VIRTUAL_NODES_PER_MEMBER = 64;
+
+    @Getter
+    private final TopicSharedSubscription topicSharedSubscription;
+    private final Map<String, Subscription> members = new HashMap<>();
+    private final Set<String> clientsWithoutSession = new HashSet<>();
+    private final AtomicInteger cursor = new AtomicInteger();
+
+    private volatile Subscription[] connectedDeviceMembers = EMPTY;
+    private volatile int deviceMembersCount;
+    private volatile Subscription anyApplicationMember;
+    private volatile HashRing hashRing;
+
+    public SharedSubscriptionGroup(TopicSharedSubscription topicSharedSubscription) {
+        this.topicSharedSubscription = topicSharedSubscription;
+    }
+
+    synchronized void putMember(Subscription subscription) {
+        members.put(subscription.getClientId(), subscription);
+        clientsWithoutSession.remove(subscription.getClientId());
+        rebuild();
+    }
+
+    synchronized void removeMember(String clientId) {
+        if (members.remove(clientId) != null) {
+            clientsWithoutSession.remove(clientId);
+            rebuild();
+        }
+    }
+
+    /**
+     * @param clientSessionInfo the current session of the client, null if the session was cleared
+     */
+    synchronized void updateClientSessionInfo(String clientId, ClientSessionInfo clientSessionInfo) {
+        Subscription member = members.get(clientId);
+        if (member == null) {
+            return;
+        }
+        if (clientSessionInfo == null) {
+            if (!clientsWithoutSession.add(clientId)) {
+                return;
+            }
+        } else {
+            clientsWithoutSession.remove(clientId);
+            members.put(clientId, new Subscription(member.getTopicFilter(), member.getQos(), clientSessionInfo,
+                    member.getShareName(), member.getOptions()));
+        }
+        rebuild();
+    }
+
+    synchronized boolean isEmpty() {
+        return members.isEmpty();
+    }
+
+    private void rebuild() {
+        List<Subscription> connected = new ArrayList<>();
+        int devices = 0;
+        Subscription application = null;
+        for (Subscription member : members.values()) {
+            if (clientsWithoutSession.contains(member.getClientId())) {
+                continue;
+            }
+            if (ClientType.APPLICATION == member.getClientType()) {
+                if (application == null) {
+                    application = member;
+                }
+            } else {
+                devices++;
+                if (member.isConnected()) {
+                    connected.add(member);
+                }
+            }
+        }
+        connected.sort(Comparator.comparing(Subscription::getClientId));
+        this.hashRing = null;
+        this.anyApplicationMember = application;
+        this.deviceMembersCount = devices;
+        this.connectedDeviceMembers = connected.toArray(EMPTY);
+    }
+
+    public Subscription[] getConnectedDeviceMembers() {
+        return connectedDeviceMembers;
+    }
+
+    public boolean hasDeviceMembers() {
+        return deviceMembersCount > 0;
+    }
+
+    public Subscription getAnyApplicationMember() {
+        return anyApplicationMember;
+    }
+
+    /**
+     * @return next non-negative value of the group cursor shared by all publishing threads
+     */
+    public int nextCursor() {
+        return cursor.getAndIncrement() & Integer.MAX_VALUE;
+    }
+
+    /**
+     * @return the connected DEVICE member that owns the key on the consistent hash ring, null if there are no connected members
+     */
+    public Subscription getByHash(String key) {
+        Subscription[] members = connectedDeviceMembers;
+        if (members.length == 0) {
+            return null;
+        }
+        if (members.length == 1) {
+            return members[0];
+        }
+        HashRing ring = hashRing;
+        if (ring == null || ring.members != members) {
+            ring = new HashRing(members);
+            hashRing = ring;
+        }
+        return ring.get(hash(key));
+    }
+
+    private static int hash(String key) {
+        return HASH_FUNCTION.hashString(key, StandardCharsets.UTF_8).asInt();
+    }
+
+    private static class HashRing {
+
+        private final Subscription[] members;
+        private final int[] points;
+        private final int[] owners;
+
+        HashRing(Subscription[] members) {
+            this.members = members;
+            long[] pointsWithOwners = new long[members.length * VIRTUAL_NODES_PER_MEMBER];
+            int i = 0;
+            for (int member = 0; member < members.length; member++) {
+                String clientId = members[member].getClientId();
+                for (int node = 0; node < VIRTUAL_NODES_PER_MEMBER; node++) {
+                    pointsWithOwners[i++] = ((long) hash(clientId + "#" + node) << 32) | member;
+                }
+            }
+            Arrays.sort(pointsWithOwners);
+            this.points = new int[pointsWithOwners.length];
+            this.owners = new int[pointsWithOwners.length];
+            for (int j = 0; j < pointsWithOwners.length; j++) {
+                points[j] = (int) (pointsWithOwners[j] >> 32);
+                owners[j] = (int) pointsWithOwners[j];
+            }
+        }
+
+        Subscription get(int hash) {
+            int idx = Arrays.binarySearch(points, hash);
+            if (idx < 0) {
+                idx = -idx - 1;
+                if (idx == points.length) {
+                    idx = 0;
+                }
+            }
+            return members[owners[idx]];
+        }
+    }
+}
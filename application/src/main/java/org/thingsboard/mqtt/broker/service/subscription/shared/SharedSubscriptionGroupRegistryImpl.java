@@ -0,0 +1,111 @@
+/**
+ * Copyright © 2016-2024 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.mqtt.broker.service.subscription.shared;
+
+import jakarta.annotation.PostConstruct;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.thingsboard.mqtt.broker.common.data.ClientSessionInfo;
+import org.thingsboard.mqtt.broker.service.subscription.Subscription;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Keeps shared subscription groups ready for member selection, so publishing does not need to copy
+ * and regroup the shared subscriptions and look up the client sessions for every message.
+ * Updated on subscribe/unsubscribe from {@link SharedSubscriptionCacheService} and on every client session change.
+ */
+@Slf4j
+@Service
+public class SharedSubscriptionGroupRegistryImpl implements SharedSubscriptionGroupRegistry {
+
+    private final ConcurrentMap<TopicSharedSubscription, SharedSubscriptionGroup> groups = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Set<TopicSharedSubscription>> clientGroups = new ConcurrentHashMap<>();
+
+    @Value("${mqtt.shared-subscriptions.registry-enabled:false}")
+    private boolean registryEnabled;
+    @Value("${mqtt.shared-subscriptions.processing-type:ROUND_ROBIN}")
+    private SharedSubscriptionProcessingType processingType;
+
+    @Getter
+    private boolean enabled;
+
+    @PostConstruct
+    public void init() {
+        enabled = registryEnabled || SharedSubscriptionProcessingType.ROUND_ROBIN != processingType;
+        if (enabled) {
+            log.info("Shared subscription group registry is enabled with {} processing type", processingType);
+        }
+    }
+
+    @Override
+    public void addMember(TopicSharedSubscription topicSharedSubscription, Subscription subscription) {
+        if (!enabled) {
+            return;
+        }
+        groups.compute(topicSharedSubscription, (key, group) -> {
+            SharedSubscriptionGroup result = group == null ? new SharedSubscriptionGroup(key) : group;
+            result.putMember(subscription);
+            return result;
+        });
+        clientGroups.compute(subscription.getClientId(), (clientId, keys) -> {
+            Set<TopicSharedSubscription> result = keys == null ? ConcurrentHashMap.newKeySet() : keys;
+            result.add(topicSharedSubscription);
+            return result;
+        });
+    }
+
+    @Override
+    public void removeMember(TopicSharedSubscription topicSharedSubscription, String clientId) {
+        if (!enabled) {
+            return;
+        }
+        groups.computeIfPresent(topicSharedSubscription, (key, group) -> {
+            group.removeMember(clientId);
+            return group.isEmpty() ? null : group;
+        });
+        clientGroups.computeIfPresent(clientId, (id, keys) -> {
+            keys.remove(topicSharedSubscription);
+            return keys.isEmpty() ? null : keys;
+        });
+    }
+
+    @Override
+    public void onClientSessionChanged(String clientId, ClientSessionInfo clientSessionInfo) {
+        if (!enabled) {
+            return;
+        }
+        Set<TopicSharedSubscription> keys = clientGroups.get(clientId);
+        if (keys == null) {
+            return;
+        }
+        for (TopicSharedSubscription key : keys) {
+            SharedSubscriptionGroup group = groups.get(key);
+            if (group != null) {
+                group.updateClientSessionInfo(clientId, clientSessionInfo);
+            }
+        }
+    }
+
+    @Override
+    public SharedSubscriptionGroup getGroup(TopicSharedSubscription topicSharedSubscription) {
+        return groups.get(topicSharedSubscription);
+    }
+}
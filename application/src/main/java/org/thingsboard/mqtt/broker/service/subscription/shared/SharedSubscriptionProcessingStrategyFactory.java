@@ -15,10 +15,13 @@
  */
 package org.thingsboard.mqtt.broker.service.subscription.shared;
 
+import jakarta.annotation.PostConstruct;
+import lombok.Getter;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
+import org.thingsboard.mqtt.broker.service.mqtt.client.session.ClientSessionCtxService;
 
 @Slf4j
 @Component
@@ -29,6 +32,30 @@ public class SharedSubscriptionProcessingStrategyFactory {
     private SharedSubscriptionProcessingType type;
 
     private final SharedSubscriptionProcessor sharedSubscriptionProcessor;
+    private final ClientSessionCtxService clientSessionCtxService;
+
+    /**
+     * Strategy used when {@link SharedSubscriptionGroupRegistry} is enabled.
+     */
+    @Getter
+    private SharedSubscriptionGroupStrategy groupStrategy;
+
+    @PostConstruct
+    public void init() {
+        switch (type) {
+            case ROUND_ROBIN:
+                groupStrategy = new RoundRobinGroupStrategy();
+                break;
+            case LEAST_IN_FLIGHT:
+                groupStrategy = new LeastInFlightGroupStrategy(clientSessionCtxService);
+                break;
+            case CONSISTENT_HASHING:
+                groupStrategy = new ConsistentHashingGroupStrategy();
+                break;
+            default:
+                throw new RuntimeException("SharedSubscriptionProcessingType " + type + " is not supported!");
+        }
+    }
 
     public SharedSubscriptionProcessingStrategy newInstance() {
         if (SharedSubscriptionProcessingType.ROUND_ROBIN == type) {
@@ -17,6 +17,8 @@ package org.thingsboard.mqtt.broker.service.subscription.shared;
 
 public enum SharedSubscriptionProcessingType {
 
-    ROUND_ROBIN
+    ROUND_ROBIN,
+    LEAST_IN_FLIGHT,
+    CONSISTENT_HASHING
 
 }
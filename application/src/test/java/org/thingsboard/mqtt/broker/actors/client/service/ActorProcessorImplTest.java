@@ -15,10 +15,15 @@
  */
 package org.thingsboard.mqtt.broker.actors.client.service;
 
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.SettableFuture;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.junit.MockitoJUnitRunner;
+import org.thingsboard.mqtt.broker.actors.TbActorRef;
+import org.thingsboard.mqtt.broker.actors.client.messages.SessionAuthResultMsg;
 import org.thingsboard.mqtt.broker.actors.client.messages.SessionInitMsg;
 import org.thingsboard.mqtt.broker.actors.client.messages.mqtt.MqttDisconnectMsg;
 import org.thingsboard.mqtt.broker.actors.client.service.disconnect.DisconnectService;
@@ -26,7 +31,6 @@ import org.thingsboard.mqtt.broker.actors.client.state.ClientActorState;
 import org.thingsboard.mqtt.broker.actors.client.state.DefaultClientActorState;
 import org.thingsboard.mqtt.broker.actors.client.state.SessionState;
 import org.thingsboard.mqtt.broker.common.data.ClientType;
-import org.thingsboard.mqtt.broker.exception.AuthenticationException;
 import org.thingsboard.mqtt.broker.service.auth.AuthenticationService;
 import org.thingsboard.mqtt.broker.service.auth.providers.AuthResponse;
 import org.thingsboard.mqtt.broker.service.mqtt.MqttMessageGenerator;
@@ -41,7 +45,12 @@ import java.util.UUID;
 import java.util.regex.Pattern;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.doNothing;
 import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.mock;
@@ -57,6 +66,7 @@ public class ActorProcessorImplTest {
     DisconnectService disconnectService;
     AuthenticationService authenticationService;
     MqttMessageGenerator mqttMessageGenerator;
+    TbActorRef actorRef;
 
     ClientActorState clientActorState;
 
@@ -65,6 +75,7 @@ public class ActorProcessorImplTest {
         disconnectService = mock(DisconnectService.class);
         authenticationService = mock(AuthenticationService.class);
         mqttMessageGenerator = mock(MqttMessageGenerator.class);
+        actorRef = mock(TbActorRef.class);
         actorProcessor = spy(new ActorProcessorImpl(disconnectService, authenticationService, mqttMessageGenerator));
 
         clientActorState = new DefaultClientActorState("clientId", false, 0);
@@ -92,14 +103,14 @@ public class ActorProcessorImplTest {
     }
 
     @Test
-    public void givenDisconnectedSession_whenOnInit_thenOk() throws AuthenticationException {
+    public void givenDisconnectedSession_whenOnInit_thenOk() {
         updateSessionState(SessionState.DISCONNECTED);
 
         AuthResponse authResponse = getAuthResponse(true);
-        doReturn(authResponse).when(authenticationService).authenticate(any());
+        doReturn(Futures.immediateFuture(authResponse)).when(authenticationService).authenticateAsync(any(), anyInt());
 
         SessionInitMsg sessionInitMsg = getSessionInitMsg(getClientSessionCtx());
-        actorProcessor.onInit(clientActorState, sessionInitMsg);
+        assertNull(actorProcessor.onInit(clientActorState, sessionInitMsg, actorRef));
 
         assertEquals(SessionState.INITIALIZED, clientActorState.getCurrentSessionState());
         assertEquals(sessionInitMsg.getClientSessionCtx(), clientActorState.getCurrentSessionCtx());
@@ -112,37 +123,94 @@ public class ActorProcessorImplTest {
     }
 
     @Test
-    public void givenSameSession_whenOnInit_thenDisconnect() throws AuthenticationException {
+    public void givenSameSession_whenOnInit_thenDisconnect() {
         updateSessionState(SessionState.CONNECTED);
 
         ClientSessionCtx clientSessionCtx = getClientSessionCtx();
         clientActorState.setClientSessionCtx(clientSessionCtx);
 
         SessionInitMsg sessionInitMsg = getSessionInitMsg(clientSessionCtx);
-        actorProcessor.onInit(clientActorState, sessionInitMsg);
+        assertNull(actorProcessor.onInit(clientActorState, sessionInitMsg, actorRef));
 
         assertEquals(SessionState.DISCONNECTING, clientActorState.getCurrentSessionState());
         verify(disconnectService, times(1)).disconnect(any(), any());
-        verify(authenticationService, never()).authenticate(any());
+        verify(authenticationService, never()).authenticateAsync(any(), anyInt());
     }
 
     @Test
-    public void givenDisconnectedSession_whenOnInitAndAuthenticateFailed_thenClose() throws AuthenticationException {
+    public void givenDisconnectedSession_whenOnInitAndAuthenticateFailed_thenClose() {
         updateSessionState(SessionState.DISCONNECTED);
 
         AuthResponse authResponse = getAuthResponse(false);
-        doReturn(authResponse).when(authenticationService).authenticate(any());
+        doReturn(Futures.immediateFuture(authResponse)).when(authenticationService).authenticateAsync(any(), eq(0));
 
         doNothing().when(actorProcessor).sendConnectionRefusedMsgAndCloseChannel(any());
 
         SessionInitMsg sessionInitMsg = getSessionInitMsg(getClientSessionCtx());
-        actorProcessor.onInit(clientActorState, sessionInitMsg);
+        assertNull(actorProcessor.onInit(clientActorState, sessionInitMsg, actorRef));
 
         assertEquals(SessionState.DISCONNECTED, clientActorState.getCurrentSessionState());
         verify(actorProcessor, never()).updateClientActorState(any(), any());
         verify(actorProcessor, times(1)).sendConnectionRefusedMsgAndCloseChannel(any());
     }
 
+    @Test
+    public void givenPendingAuthentication_whenOnInit_thenSessionInitializedOnAuthResult() {
+        updateSessionState(SessionState.DISCONNECTED);
+
+        SettableFuture<AuthResponse> authResponseFuture = SettableFuture.create();
+        doReturn(authResponseFuture).when(authenticationService).authenticateAsync(any(), anyInt());
+
+        SessionInitMsg sessionInitMsg = getSessionInitMsg(getClientSessionCtx());
+        assertSame(authResponseFuture, actorProcessor.onInit(clientActorState, sessionInitMsg, actorRef));
+        assertEquals(SessionState.DISCONNECTED, clientActorState.getCurrentSessionState());
+        verify(actorRef, never()).tellWithHighPriority(any());
+
+        authResponseFuture.set(getAuthResponse(true));
+        ArgumentCaptor<SessionAuthResultMsg> captor = ArgumentCaptor.forClass(SessionAuthResultMsg.class);
+        verify(actorRef).tellWithHighPriority(captor.capture());
+        assertSame(sessionInitMsg, captor.getValue().getSessionInitMsg());
+
+        assertNull(actorProcessor.onAuthResult(clientActorState, captor.getValue(), actorRef));
+        assertEquals(SessionState.INITIALIZED, clientActorState.getCurrentSessionState());
+        assertEquals(sessionInitMsg.getClientSessionCtx(), clientActorState.getCurrentSessionCtx());
+    }
+
+    @Test
+    public void givenPendingAuthenticationUnsuccessful_whenOnAuthResult_thenNextProviderTriedOnActor() {
+        updateSessionState(SessionState.DISCONNECTED);
+
+        SettableFuture<AuthResponse> firstProviderFuture = SettableFuture.create();
+        doReturn(firstProviderFuture).when(authenticationService).authenticateAsync(any(), eq(0));
+        doReturn(Futures.immediateFuture(getAuthResponse(true))).when(authenticationService).authenticateAsync(any(), eq(1));
+
+        SessionInitMsg sessionInitMsg = getSessionInitMsg(getClientSessionCtx());
+        assertNotNull(actorProcessor.onInit(clientActorState, sessionInitMsg, actorRef));
+
+        firstProviderFuture.set(getAuthResponse(false));
+        verify(authenticationService, never()).authenticateAsync(any(), eq(1));
+        ArgumentCaptor<SessionAuthResultMsg> captor = ArgumentCaptor.forClass(SessionAuthResultMsg.class);
+        verify(actorRef).tellWithHighPriority(captor.capture());
+        assertEquals(1, captor.getValue().getNextProviderIdx());
+
+        assertNull(actorProcessor.onAuthResult(clientActorState, captor.getValue(), actorRef));
+        assertEquals(SessionState.INITIALIZED, clientActorState.getCurrentSessionState());
+    }
+
+    @Test
+    public void givenPendingAuthentication_whenCancelled_thenResultNotSent() {
+        updateSessionState(SessionState.DISCONNECTED);
+
+        SettableFuture<AuthResponse> authResponseFuture = SettableFuture.create();
+        doReturn(authResponseFuture).when(authenticationService).authenticateAsync(any(), anyInt());
+
+        SessionInitMsg sessionInitMsg = getSessionInitMsg(getClientSessionCtx());
+        actorProcessor.onInit(clientActorState, sessionInitMsg, actorRef).cancel(false);
+
+        verify(actorRef, never()).tellWithHighPriority(any());
+        assertEquals(SessionState.DISCONNECTED, clientActorState.getCurrentSessionState());
+    }
+
     private AuthResponse getAuthResponse(boolean success) {
         return new AuthResponse(success, ClientType.APPLICATION, getAuthorizationRules());
     }
@@ -23,12 +23,14 @@ import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.boot.test.mock.mockito.SpyBean;
 import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.util.ReflectionTestUtils;
 import org.thingsboard.mqtt.broker.actors.ActorSystemContext;
 import org.thingsboard.mqtt.broker.actors.TbActorSystem;
 import org.thingsboard.mqtt.broker.actors.client.service.session.ClientSessionService;
 import org.thingsboard.mqtt.broker.actors.client.service.subscription.ClientSubscriptionService;
 import org.thingsboard.mqtt.broker.cluster.ServiceInfoProvider;
 import org.thingsboard.mqtt.broker.common.data.ClientSessionInfo;
+import org.thingsboard.mqtt.broker.common.data.subscription.TopicSubscription;
 import org.thingsboard.mqtt.broker.exception.QueuePersistenceException;
 import org.thingsboard.mqtt.broker.service.limits.RateLimitCacheService;
 import org.thingsboard.mqtt.broker.service.mqtt.client.disconnect.DisconnectClientCommandConsumer;
@@ -41,13 +43,19 @@ import org.thingsboard.mqtt.broker.service.mqtt.retain.RetainedMsgListenerServic
 import org.thingsboard.mqtt.broker.service.processing.PublishMsgConsumerService;
 import org.thingsboard.mqtt.broker.service.processing.downlink.basic.BasicDownLinkConsumer;
 import org.thingsboard.mqtt.broker.service.processing.downlink.persistent.PersistentDownLinkConsumer;
+import org.thingsboard.mqtt.broker.service.snapshot.StateSnapshot;
+import org.thingsboard.mqtt.broker.service.snapshot.StateSnapshotService;
 import org.thingsboard.mqtt.broker.service.subscription.ClientSubscriptionConsumer;
 import org.thingsboard.mqtt.broker.util.ClientSessionInfoFactory;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Set;
 
+import static org.mockito.ArgumentMatchers.argThat;
 import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 
 // TODO: 19/05/2022 add more tests
 @RunWith(SpringRunner.class)
@@ -88,6 +96,8 @@ public class BrokerInitializerTest {
     BasicDownLinkConsumer basicDownLinkConsumer;
     @MockBean
     PersistentDownLinkConsumer persistentDownLinkConsumer;
+    @MockBean
+    StateSnapshotService stateSnapshotService;
 
     @SpyBean
     BrokerInitializer brokerInitializer;
@@ -114,6 +124,48 @@ public class BrokerInitializerTest {
         Assert.assertFalse(clientSessionInfo.isConnected());
     }
 
+    @Test
+    public void givenClientSessionsSnapshot_whenInitClientSessions_thenSessionsAreLoadedFromSnapshotOffsets() throws QueuePersistenceException {
+        Map<String, ClientSessionInfo> preparedSessions = prepareSessions();
+        StateSnapshot<ClientSessionInfo> snapshot = new StateSnapshot<>(System.currentTimeMillis(), Map.of(0, 10L), preparedSessions);
+
+        doReturn(snapshot).when(stateSnapshotService).getClientSessionsSnapshot();
+        doReturn(preparedSessions).when(clientSessionConsumer).initLoad(snapshot);
+        doReturn("serviceId1").when(serviceInfoProvider).getServiceId();
+
+        Map<String, ClientSessionInfo> allClientSessions = brokerInitializer.initClientSessions();
+
+        verify(clientSessionConsumer, never()).initLoad();
+        Assert.assertEquals(preparedSessions.size(), allClientSessions.size());
+        Assert.assertFalse(getSessionForServiceId(allClientSessions).isConnected());
+    }
+
+    @Test
+    public void givenParallelInitLoad_whenApplicationIsReady_thenAllLoadedStateIsInitialized() throws QueuePersistenceException {
+        Map<String, ClientSessionInfo> preparedSessions = prepareSessions();
+        Map<String, Set<TopicSubscription>> preparedSubscriptions = new HashMap<>();
+        preparedSubscriptions.put("clientId1", Set.of(new TopicSubscription("topic1", 1)));
+        preparedSubscriptions.put("absentClientId", Set.of(new TopicSubscription("topic2", 1)));
+
+        doReturn(preparedSessions).when(clientSessionConsumer).initLoad();
+        doReturn(preparedSubscriptions).when(clientSubscriptionConsumer).initLoad();
+        doReturn(new HashMap<>()).when(retainedMsgConsumer).initLoad();
+        doReturn("serviceId1").when(serviceInfoProvider).getServiceId();
+
+        ReflectionTestUtils.setField(brokerInitializer, "parallelInitLoad", true);
+        try {
+            brokerInitializer.onApplicationEvent(null);
+        } finally {
+            ReflectionTestUtils.setField(brokerInitializer, "parallelInitLoad", false);
+        }
+
+        verify(clientSessionService).init(argThat(sessions -> sessions.size() == preparedSessions.size()));
+        verify(clientSubscriptionService).init(argThat(subscriptions -> subscriptions.keySet().equals(Set.of("clientId1"))));
+        verify(retainedMsgListenerService).init(argThat(Map::isEmpty));
+        verify(retainedMsgListenerService).startListening(retainedMsgConsumer);
+        verify(stateSnapshotService).startSnapshotting();
+    }
+
     private ClientSessionInfo getSessionForServiceId(Map<String, ClientSessionInfo> allClientSessions) {
         return allClientSessions
                 .values().stream()
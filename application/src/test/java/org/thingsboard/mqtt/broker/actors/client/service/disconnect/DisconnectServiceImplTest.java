@@ -31,7 +31,6 @@ import org.thingsboard.mqtt.broker.actors.client.state.ClientActorStateInfo;
 import org.thingsboard.mqtt.broker.actors.client.state.QueuedMqttMessages;
 import org.thingsboard.mqtt.broker.common.data.ClientInfo;
 import org.thingsboard.mqtt.broker.common.data.SessionInfo;
-import org.thingsboard.mqtt.broker.service.auth.AuthorizationRuleService;
 import org.thingsboard.mqtt.broker.service.limits.RateLimitCacheService;
 import org.thingsboard.mqtt.broker.service.limits.RateLimitService;
 import org.thingsboard.mqtt.broker.service.mqtt.MqttMessageGenerator;
@@ -78,8 +77,6 @@ public class DisconnectServiceImplTest {
     @MockBean
     MqttMessageGenerator mqttMessageGenerator;
     @MockBean
-    AuthorizationRuleService authorizationRuleService;
-    @MockBean
     FlowControlService flowControlService;
     @MockBean
     RateLimitCacheService rateLimitCacheService;
@@ -132,7 +129,6 @@ public class DisconnectServiceImplTest {
         verify(disconnectService, times(1)).notifyClientDisconnected(clientActorState, -1);
         verify(disconnectService, times(1)).closeChannel(ctx);
         verify(rateLimitService, times(1)).remove(eq(CLIENT_ID));
-        verify(authorizationRuleService, times(1)).evict(eq(CLIENT_ID));
         verify(flowControlService, times(1)).removeFromMap(eq(CLIENT_ID));
         verify(mqttMessageGenerator, never()).createDisconnectMsg(any());
     }
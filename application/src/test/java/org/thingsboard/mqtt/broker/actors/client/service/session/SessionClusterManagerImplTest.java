@@ -15,6 +15,7 @@
  */
 package org.thingsboard.mqtt.broker.actors.client.service.session;
 
+import com.google.common.util.concurrent.SettableFuture;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
@@ -40,6 +41,7 @@ import org.thingsboard.mqtt.broker.queue.common.TbProtoQueueMsg;
 import org.thingsboard.mqtt.broker.queue.provider.ClientSessionEventQueueFactory;
 import org.thingsboard.mqtt.broker.service.limits.RateLimitCacheService;
 import org.thingsboard.mqtt.broker.service.mqtt.client.disconnect.DisconnectClientCommandService;
+import org.thingsboard.mqtt.broker.service.mqtt.client.event.ConnectionResponse;
 import org.thingsboard.mqtt.broker.service.mqtt.persistence.MsgPersistenceManager;
 import org.thingsboard.mqtt.broker.service.mqtt.persistence.application.topic.ApplicationRemovedEventService;
 import org.thingsboard.mqtt.broker.service.mqtt.persistence.application.topic.ApplicationTopicService;
@@ -119,6 +121,21 @@ public class SessionClusterManagerImplTest {
         verify(sessionClusterManager, never()).updateClientSession(any(), any(), any());
     }
 
+    @Test
+    public void givenSameSessionIdAndLocalRequest_whenProcessConnectionRequest_thenResponseIsCompletedInProcess() throws Exception {
+        SessionInfo sessionInfo = getSessionInfo("clientId");
+        SettableFuture<ConnectionResponse> responseFuture = SettableFuture.create();
+
+        doReturn(getClientSession(true, sessionInfo)).when(clientSessionService).getClientSession(any());
+
+        sessionClusterManager.processConnectionRequest(sessionInfo,
+                new ConnectionRequestInfo(UUID.randomUUID(), System.currentTimeMillis(), null, responseFuture));
+
+        Assert.assertTrue(responseFuture.isDone());
+        Assert.assertFalse(responseFuture.get().isSuccess());
+        verify(sessionClusterManager, never()).updateClientSession(any(), any(), any());
+    }
+
     @Test
     public void givenPresentNonPersistentSession_whenProcessConnectionRequest_thenVerify() {
         SessionInfo sessionInfoNew = getSessionInfo("clientId1");
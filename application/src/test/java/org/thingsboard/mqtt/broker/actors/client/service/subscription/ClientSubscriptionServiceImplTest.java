@@ -36,8 +36,10 @@ import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.spy;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
@@ -72,7 +74,8 @@ public class ClientSubscriptionServiceImplTest {
 
     @Test
     public void givenClientTopicSubscriptions_whenInit_thenOk() {
-        verify(subscriptionService, times(2)).subscribe(any(), any());
+        verify(subscriptionService).subscribeAll(argThat(clientSubscriptions -> clientSubscriptions.size() == 2));
+        verify(subscriptionService, never()).subscribe(any(), any());
     }
 
     @Test
@@ -179,6 +182,19 @@ public class ClientSubscriptionServiceImplTest {
         assertThat(clientSubscriptionsCount).isEqualTo(7);
     }
 
+    @Test
+    public void givenAllClientSubscriptionsTaken_whenClientSubscribes_thenTakenSubscriptionsAreNotChanged() {
+        Map<String, Set<TopicSubscription>> allClientSubscriptions = clientSubscriptionService.getAllClientSubscriptions();
+
+        clientSubscriptionService.subscribeInternally("clientId1", Set.of(getTopicSubscription("topic11")));
+        clientSubscriptionService.unsubscribeInternally("clientId2", Set.of("topic2"));
+
+        assertThat(allClientSubscriptions).hasSize(2);
+        assertThat(allClientSubscriptions.get("clientId1")).containsOnly(getTopicSubscription("topic1"));
+        assertThat(allClientSubscriptions.get("clientId2")).containsOnly(getTopicSubscription("topic2"));
+        assertThat(clientSubscriptionService.getAllClientSubscriptions()).containsOnlyKeys("clientId1");
+    }
+
     private Set<TopicSubscription> getAndVerifyClientSubscriptionsForClient(String clientId, int expected) {
         Set<TopicSubscription> clientSubscriptions = clientSubscriptionService.getClientSubscriptions(clientId);
         assertEquals(expected, clientSubscriptions.size());
@@ -23,12 +23,18 @@ import org.mockito.junit.MockitoJUnitRunner;
 import org.thingsboard.mqtt.broker.common.data.subscription.TopicSubscription;
 import org.thingsboard.mqtt.broker.service.stats.StatsManager;
 import org.thingsboard.mqtt.broker.service.subscription.ClientSubscription;
+import org.thingsboard.mqtt.broker.service.subscription.SubscriptionMatchCache;
 import org.thingsboard.mqtt.broker.service.subscription.SubscriptionTrie;
 
+import java.util.Collection;
+import java.util.Map;
 import java.util.Set;
 
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.spy;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
@@ -38,15 +44,18 @@ import static org.mockito.Mockito.verify;
 public class SubscriptionServiceImplTest {
 
     SubscriptionTrie<ClientSubscription> subscriptionTrie;
+    SubscriptionMatchCache subscriptionMatchCache;
     StatsManager statsManager;
     SubscriptionService subscriptionService;
 
     @Before
     public void setUp() {
         subscriptionTrie = mock(SubscriptionTrie.class);
+        subscriptionMatchCache = mock(SubscriptionMatchCache.class);
         statsManager = mock(StatsManager.class);
         subscriptionService = spy(new SubscriptionServiceImpl(
                 subscriptionTrie,
+                subscriptionMatchCache,
                 statsManager));
     }
 
@@ -59,6 +68,19 @@ public class SubscriptionServiceImplTest {
         verify(subscriptionTrie, times(2)).put(any(), any());
     }
 
+    @Test
+    public void givenSubscriptionsOfSeveralClients_whenSubscribeAll_thenTrieIsFilledWithSingleBulkInsert() {
+        subscriptionService.subscribeAll(Map.of(
+                "clientId1", Set.of(new TopicSubscription("topic1", 1), new TopicSubscription("topic2", 1)),
+                "clientId2", Set.of(new TopicSubscription("topic1", 2))
+        ));
+        verify(subscriptionTrie, never()).put(any(), any());
+        verify(subscriptionTrie).putAll(argThat((Map<String, ? extends Collection<ClientSubscription>> subscriptionsByTopicFilter) ->
+                subscriptionsByTopicFilter.size() == 2 && subscriptionsByTopicFilter.get("topic1").size() == 2));
+        verify(subscriptionMatchCache).onTopicFilterChanged(eq("topic1"));
+        verify(subscriptionMatchCache).onTopicFilterChanged(eq("topic2"));
+    }
+
     @Test
     public void givenClientTopics_whenUnsubscribe_thenOk() {
         subscriptionService.unsubscribe("clientId", Set.of("topic1", "topic2"));
@@ -31,8 +31,10 @@ import org.thingsboard.mqtt.broker.session.ClientSessionCtx;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.spy;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
@@ -66,8 +68,8 @@ public class PublishedInFlightCtxImplTest {
     public void givenQoS0Msg_whenAddInFlightMsg_thenInFlightQueueIsNotIncremented() {
         boolean result = publishedInFlightCtx.addInFlightMsg(newAtMostOnceMqttPubMsg());
 
-        assertEquals(0, publishedInFlightCtx.getPublishedInFlightMsgCounter().get());
-        assertTrue(publishedInFlightCtx.getPublishedInFlightMsgQueue().isEmpty());
+        assertEquals(0, publishedInFlightCtx.getPublishedInFlightMsgWindow().size());
+        assertTrue(publishedInFlightCtx.getPublishedInFlightMsgWindow().isEmpty());
 
         assertTrue(result);
     }
@@ -76,15 +78,15 @@ public class PublishedInFlightCtxImplTest {
     public void givenQoS1Msg_whenAddInFlightMsg_thenInFlightQueueIsIncremented() {
         boolean result = publishedInFlightCtx.addInFlightMsg(newAtLeastOnceMqttPubMsg(1));
 
-        assertEquals(1, publishedInFlightCtx.getPublishedInFlightMsgCounter().get());
-        assertFalse(publishedInFlightCtx.getPublishedInFlightMsgQueue().isEmpty());
+        assertEquals(1, publishedInFlightCtx.getPublishedInFlightMsgWindow().size());
+        assertFalse(publishedInFlightCtx.getPublishedInFlightMsgWindow().isEmpty());
 
         assertTrue(result);
     }
 
     @Test
     public void givenPublishedInFlightLimitReached_whenAddInFlightMsg_thenDelayQueueIsIncremented() {
-        publishedInFlightCtx.getPublishedInFlightMsgCounter().set(10);
+        fillPublishedInFlightMsgWindow(10);
 
         boolean result = publishedInFlightCtx.addInFlightMsg(newAtLeastOnceMqttPubMsg(1));
 
@@ -120,30 +122,30 @@ public class PublishedInFlightCtxImplTest {
     public void givenEmptyInFlightQueue_whenAckInFlightMsg_thenDoNothing() {
         publishedInFlightCtx.ackInFlightMsg(1);
 
-        assertEquals(0, publishedInFlightCtx.getPublishedInFlightMsgCounter().get());
+        assertEquals(0, publishedInFlightCtx.getPublishedInFlightMsgWindow().size());
     }
 
     @Test
-    public void givenInFlightQueueNotEmpty_whenWrongAckInFlightMsgReceived_thenReceivedAckMsgInWrongOrderQueueIsIncremented() {
-        publishedInFlightCtx.getPublishedInFlightMsgQueue().add(1);
+    public void givenInFlightQueueNotEmpty_whenWrongAckInFlightMsgReceived_thenOutOfOrderAckCountIsIncremented() {
+        publishedInFlightCtx.getPublishedInFlightMsgWindow().add(1);
 
         publishedInFlightCtx.ackInFlightMsg(2);
 
-        assertEquals(1, publishedInFlightCtx.getReceivedAckMsgInWrongOrderQueue().size());
+        assertEquals(1, publishedInFlightCtx.getPublishedInFlightMsgWindow().getOutOfOrderAckCount());
     }
 
     @Test
     public void givenInFlightQueueNotEmpty_whenAckInFlightMsg_thenPublishedInFlightQueueIsDecremented() {
-        publishedInFlightCtx.getPublishedInFlightMsgQueue().add(1);
+        publishedInFlightCtx.getPublishedInFlightMsgWindow().add(1);
 
         publishedInFlightCtx.ackInFlightMsg(1);
 
-        assertEquals(0, publishedInFlightCtx.getPublishedInFlightMsgQueue().size());
+        assertEquals(0, publishedInFlightCtx.getPublishedInFlightMsgWindow().size());
     }
 
     @Test
     public void givenInFlightLimitStillReached_whenProcessDelayedMsg_thenSkipProcessing() {
-        publishedInFlightCtx.getPublishedInFlightMsgCounter().set(10);
+        fillPublishedInFlightMsgWindow(10);
         publishedInFlightCtx.getDelayedMsgCounter().set(10);
 
         boolean result = publishedInFlightCtx.processMsg(1);
@@ -155,7 +157,7 @@ public class PublishedInFlightCtxImplTest {
 
     @Test
     public void givenNoDelayedMessages_whenProcessDelayedMsg_thenRemoveClientFromDelayedProcessing() {
-        publishedInFlightCtx.getPublishedInFlightMsgCounter().set(5);
+        fillPublishedInFlightMsgWindow(5);
 
         boolean result = publishedInFlightCtx.processMsg(1);
 
@@ -166,7 +168,7 @@ public class PublishedInFlightCtxImplTest {
 
     @Test
     public void givenOneExpiredDelayedMsg_whenProcessDelayedMsg_thenSkipMsgAndRemoveClientFromDelayedProcessing() {
-        publishedInFlightCtx.getPublishedInFlightMsgCounter().set(5);
+        fillPublishedInFlightMsgWindow(5);
 
         publishedInFlightCtx.getDelayedMsgQueue().add(new MqttPubMsgWithCreatedTime(null, System.currentTimeMillis() - 5000));
         publishedInFlightCtx.getDelayedMsgCounter().incrementAndGet();
@@ -183,7 +185,7 @@ public class PublishedInFlightCtxImplTest {
         ChannelHandlerContext channelHandlerContext = mock(ChannelHandlerContext.class);
         when(clientSessionCtx.getChannel()).thenReturn(channelHandlerContext);
 
-        publishedInFlightCtx.getPublishedInFlightMsgCounter().set(5);
+        fillPublishedInFlightMsgWindow(5);
 
         publishedInFlightCtx.getDelayedMsgQueue().add(new MqttPubMsgWithCreatedTime(newAtLeastOnceMqttPubMsg(1), System.currentTimeMillis() - 5000));
         publishedInFlightCtx.getDelayedMsgCounter().incrementAndGet();
@@ -191,11 +193,44 @@ public class PublishedInFlightCtxImplTest {
         boolean result = publishedInFlightCtx.processMsg(10000);
 
         verify(clientSessionCtx, times(1)).getChannel();
-        assertEquals(6, publishedInFlightCtx.getPublishedInFlightMsgCounter().get());
+        assertEquals(6, publishedInFlightCtx.getPublishedInFlightMsgWindow().size());
         assertEquals(0, publishedInFlightCtx.getDelayedMsgCounter().get());
         assertTrue(result);
     }
 
+    @Test
+    public void givenSeveralDelayedMsgs_whenProcessDelayedMsg_thenSendMsgsAllowedByFreeSlotsWithOneFlush() {
+        ChannelHandlerContext channelHandlerContext = mock(ChannelHandlerContext.class);
+        when(clientSessionCtx.getChannel()).thenReturn(channelHandlerContext);
+
+        fillPublishedInFlightMsgWindow(7);
+        for (int i = 1; i <= 5; i++) {
+            publishedInFlightCtx.getDelayedMsgQueue().add(new MqttPubMsgWithCreatedTime(newAtLeastOnceMqttPubMsg(i), System.currentTimeMillis()));
+            publishedInFlightCtx.getDelayedMsgCounter().incrementAndGet();
+        }
+
+        boolean result = publishedInFlightCtx.processMsg(10000);
+
+        verify(channelHandlerContext, times(3)).write(any());
+        verify(channelHandlerContext, times(1)).flush();
+        assertEquals(10, publishedInFlightCtx.getPublishedInFlightMsgWindow().size());
+        assertEquals(2, publishedInFlightCtx.getDelayedMsgCounter().get());
+        verify(flowControlService, never()).removeFromMap("test");
+        assertTrue(result);
+    }
+
+    @Test
+    public void givenDelayedMsgs_whenAckReleasesInFlightSlot_thenDelayedMsgProcessingScheduled() {
+        publishedInFlightCtx.getDelayedMsgCounter().set(1);
+        publishedInFlightCtx.getPublishedInFlightMsgWindow().add(1);
+
+        publishedInFlightCtx.ackInFlightMsg(2);
+        verify(flowControlService, never()).scheduleDelayedMsgProcessing("test");
+
+        publishedInFlightCtx.ackInFlightMsg(1);
+        verify(flowControlService, times(1)).scheduleDelayedMsgProcessing("test");
+    }
+
     @Test
     public void givenAddedInfLightMessagesCase1_whenReceivedAcknowledgements_thenSuccess() {
         publishedInFlightCtx.addInFlightMsg(newAtLeastOnceMqttPubMsg(1));
@@ -210,8 +245,8 @@ public class PublishedInFlightCtxImplTest {
         publishedInFlightCtx.ackInFlightMsg(4);
         publishedInFlightCtx.ackInFlightMsg(5);
 
-        assertTrue(publishedInFlightCtx.getPublishedInFlightMsgQueue().isEmpty());
-        assertTrue(publishedInFlightCtx.getReceivedAckMsgInWrongOrderQueue().isEmpty());
+        assertTrue(publishedInFlightCtx.getPublishedInFlightMsgWindow().isEmpty());
+        assertEquals(0, publishedInFlightCtx.getPublishedInFlightMsgWindow().getOutOfOrderAckCount());
     }
 
     @Test
@@ -228,8 +263,8 @@ public class PublishedInFlightCtxImplTest {
         publishedInFlightCtx.ackInFlightMsg(2);
         publishedInFlightCtx.ackInFlightMsg(3);
 
-        assertTrue(publishedInFlightCtx.getPublishedInFlightMsgQueue().isEmpty());
-        assertTrue(publishedInFlightCtx.getReceivedAckMsgInWrongOrderQueue().isEmpty());
+        assertTrue(publishedInFlightCtx.getPublishedInFlightMsgWindow().isEmpty());
+        assertEquals(0, publishedInFlightCtx.getPublishedInFlightMsgWindow().getOutOfOrderAckCount());
     }
 
     @Test
@@ -254,8 +289,8 @@ public class PublishedInFlightCtxImplTest {
         publishedInFlightCtx.ackInFlightMsg(9);
         publishedInFlightCtx.ackInFlightMsg(8);
 
-        assertTrue(publishedInFlightCtx.getPublishedInFlightMsgQueue().isEmpty());
-        assertTrue(publishedInFlightCtx.getReceivedAckMsgInWrongOrderQueue().isEmpty());
+        assertTrue(publishedInFlightCtx.getPublishedInFlightMsgWindow().isEmpty());
+        assertEquals(0, publishedInFlightCtx.getPublishedInFlightMsgWindow().getOutOfOrderAckCount());
     }
 
     @Test
@@ -271,8 +306,8 @@ public class PublishedInFlightCtxImplTest {
         publishedInFlightCtx.ackInFlightMsg(6);
         publishedInFlightCtx.ackInFlightMsg(3);
 
-        assertTrue(publishedInFlightCtx.getPublishedInFlightMsgQueue().isEmpty());
-        assertTrue(publishedInFlightCtx.getReceivedAckMsgInWrongOrderQueue().isEmpty());
+        assertTrue(publishedInFlightCtx.getPublishedInFlightMsgWindow().isEmpty());
+        assertEquals(0, publishedInFlightCtx.getPublishedInFlightMsgWindow().getOutOfOrderAckCount());
     }
 
     @Test
@@ -290,8 +325,8 @@ public class PublishedInFlightCtxImplTest {
         publishedInFlightCtx.ackInFlightMsg(1);
         publishedInFlightCtx.ackInFlightMsg(1);
 
-        assertTrue(publishedInFlightCtx.getPublishedInFlightMsgQueue().isEmpty());
-        assertTrue(publishedInFlightCtx.getReceivedAckMsgInWrongOrderQueue().isEmpty());
+        assertTrue(publishedInFlightCtx.getPublishedInFlightMsgWindow().isEmpty());
+        assertEquals(0, publishedInFlightCtx.getPublishedInFlightMsgWindow().getOutOfOrderAckCount());
     }
 
     @Test
@@ -311,8 +346,8 @@ public class PublishedInFlightCtxImplTest {
         publishedInFlightCtx.addInFlightMsg(newAtLeastOnceMqttPubMsg(5));
         publishedInFlightCtx.ackInFlightMsg(5);
 
-        assertTrue(publishedInFlightCtx.getPublishedInFlightMsgQueue().isEmpty());
-        assertTrue(publishedInFlightCtx.getReceivedAckMsgInWrongOrderQueue().isEmpty());
+        assertTrue(publishedInFlightCtx.getPublishedInFlightMsgWindow().isEmpty());
+        assertEquals(0, publishedInFlightCtx.getPublishedInFlightMsgWindow().getOutOfOrderAckCount());
     }
 
     @Test
@@ -344,8 +379,8 @@ public class PublishedInFlightCtxImplTest {
         publishedInFlightCtx.addInFlightMsg(newAtLeastOnceMqttPubMsg(9));
         publishedInFlightCtx.ackInFlightMsg(1);
 
-        assertTrue(publishedInFlightCtx.getPublishedInFlightMsgQueue().isEmpty());
-        assertTrue(publishedInFlightCtx.getReceivedAckMsgInWrongOrderQueue().isEmpty());
+        assertTrue(publishedInFlightCtx.getPublishedInFlightMsgWindow().isEmpty());
+        assertEquals(0, publishedInFlightCtx.getPublishedInFlightMsgWindow().getOutOfOrderAckCount());
     }
 
     @Test
@@ -377,8 +412,8 @@ public class PublishedInFlightCtxImplTest {
         publishedInFlightCtx.addInFlightMsg(newAtLeastOnceMqttPubMsg(9));
         publishedInFlightCtx.ackInFlightMsg(2);
 
-        assertTrue(publishedInFlightCtx.getPublishedInFlightMsgQueue().isEmpty());
-        assertTrue(publishedInFlightCtx.getReceivedAckMsgInWrongOrderQueue().isEmpty());
+        assertTrue(publishedInFlightCtx.getPublishedInFlightMsgWindow().isEmpty());
+        assertEquals(0, publishedInFlightCtx.getPublishedInFlightMsgWindow().getOutOfOrderAckCount());
     }
 
     @Test
@@ -411,8 +446,14 @@ public class PublishedInFlightCtxImplTest {
 //        We have not received ack for msgId=2
 //        publishedInFlightCtx.ackInFlightMsg(2);
 
-        assertEquals(8, publishedInFlightCtx.getPublishedInFlightMsgQueue().size());
-        assertEquals(7, publishedInFlightCtx.getReceivedAckMsgInWrongOrderQueue().size());
+        assertEquals(8, publishedInFlightCtx.getPublishedInFlightMsgWindow().size());
+        assertEquals(7, publishedInFlightCtx.getPublishedInFlightMsgWindow().getOutOfOrderAckCount());
+    }
+
+    private void fillPublishedInFlightMsgWindow(int count) {
+        for (int i = 0; i < count; i++) {
+            publishedInFlightCtx.getPublishedInFlightMsgWindow().add(1000 + i);
+        }
     }
 
     private MqttPublishMessage newAtLeastOnceMqttPubMsg(int packetId) {
@@ -0,0 +1,135 @@
+/**
+ * Copyright © 2016-2024 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.mqtt.broker.actors.client.state;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Queue;
+import java.util.Random;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the {@link PublishedInFlightMsgWindow} with the queues of boxed packet ids it replaced,
+ * for acknowledgements received in the send order and shuffled within the window.
+ * One operation is a full window: all packet ids are sent and then acknowledged.
+ * Not executed as a part of the test suite, run {@link #main(String[])} from the IDE or
+ * with {@code exec:java} on the test classpath. Use {@code -prof gc} options to see allocations per operation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PublishedInFlightMsgWindowBenchmark {
+
+    private static final int WINDOW_SIZE = 1024;
+
+    @Param({"in-order", "shuffled"})
+    private String ackPattern;
+
+    private int[] packetIds;
+    private int[] acks;
+    private PublishedInFlightMsgWindow window;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        packetIds = new int[WINDOW_SIZE];
+        for (int i = 0; i < WINDOW_SIZE; i++) {
+            packetIds[i] = i + 1;
+        }
+        acks = packetIds.clone();
+        if ("shuffled".equals(ackPattern)) {
+            Random r = new Random(42);
+            for (int i = acks.length - 1; i > 0; i--) {
+                int j = r.nextInt(i + 1);
+                int tmp = acks[i];
+                acks[i] = acks[j];
+                acks[j] = tmp;
+            }
+        }
+        window = new PublishedInFlightMsgWindow(WINDOW_SIZE);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(WINDOW_SIZE)
+    public int primitiveWindow() {
+        for (int packetId : packetIds) {
+            window.add(packetId);
+        }
+        for (int ack : acks) {
+            window.ack(ack);
+        }
+        return window.size();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(WINDOW_SIZE)
+    public int boxedQueues() {
+        Queue<Integer> inFlightQueue = new ConcurrentLinkedQueue<>();
+        Queue<Integer> wrongOrderAckQueue = new ConcurrentLinkedQueue<>();
+        for (int packetId : packetIds) {
+            inFlightQueue.add(packetId);
+        }
+        for (int ack : acks) {
+            Integer head = inFlightQueue.peek();
+            if (head == null) {
+                continue;
+            }
+            if (head != ack) {
+                wrongOrderAckQueue.add(ack);
+                continue;
+            }
+            inFlightQueue.poll();
+            while (!wrongOrderAckQueue.isEmpty()) {
+                Integer nextHead = inFlightQueue.peek();
+                if (nextHead == null) {
+                    wrongOrderAckQueue.clear();
+                    break;
+                }
+                if (!wrongOrderAckQueue.remove(nextHead)) {
+                    break;
+                }
+                inFlightQueue.poll();
+            }
+        }
+        return inFlightQueue.size();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(PublishedInFlightMsgWindowBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,84 @@
+/**
+ * Copyright © 2016-2024 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.mqtt.broker.actors.client.state;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class PublishedInFlightMsgWindowTest {
+
+    @Test
+    public void givenWindowWrappedAround_whenGrow_thenSendOrderPreserved() {
+        PublishedInFlightMsgWindow window = new PublishedInFlightMsgWindow(100);
+        for (int i = 1; i <= 10; i++) {
+            window.add(i);
+        }
+        for (int i = 1; i <= 8; i++) {
+            assertTrue(window.ack(i));
+        }
+        for (int i = 11; i <= 50; i++) {
+            window.add(i);
+        }
+        assertEquals(42, window.size());
+
+        for (int i = 9; i <= 50; i++) {
+            assertTrue(window.ack(i));
+        }
+        assertTrue(window.isEmpty());
+    }
+
+    @Test
+    public void givenOutOfOrderAcks_whenHeadAcked_thenAllAckedPacketIdsReleased() {
+        PublishedInFlightMsgWindow window = new PublishedInFlightMsgWindow(10);
+        for (int i = 1; i <= 5; i++) {
+            window.add(i);
+        }
+
+        assertFalse(window.ack(3));
+        assertFalse(window.ack(2));
+        assertFalse(window.ack(5));
+        assertEquals(3, window.getOutOfOrderAckCount());
+        assertEquals(5, window.size());
+
+        assertTrue(window.ack(1));
+        assertEquals(2, window.size());
+        assertEquals(1, window.getOutOfOrderAckCount());
+
+        assertTrue(window.ack(4));
+        assertTrue(window.isEmpty());
+        assertEquals(0, window.getOutOfOrderAckCount());
+    }
+
+    @Test
+    public void givenAcksForUnknownPacketIds_whenWindowBecomesEmpty_thenOutOfOrderAcksCleared() {
+        PublishedInFlightMsgWindow window = new PublishedInFlightMsgWindow(10);
+        window.add(65535);
+        window.add(1);
+
+        assertFalse(window.ack(7));
+        assertFalse(window.ack(1));
+        assertTrue(window.ack(65535));
+        assertTrue(window.isEmpty());
+        assertEquals(0, window.getOutOfOrderAckCount());
+
+        window.add(7);
+        assertEquals(1, window.size());
+        assertFalse(window.isFull());
+    }
+}
@@ -30,6 +30,8 @@ import org.thingsboard.mqtt.broker.actors.device.messages.IncomingPublishMsg;
 import org.thingsboard.mqtt.broker.actors.device.messages.PacketAcknowledgedEventMsg;
 import org.thingsboard.mqtt.broker.actors.device.messages.PacketCompletedEventMsg;
 import org.thingsboard.mqtt.broker.actors.device.messages.PacketReceivedEventMsg;
+import org.thingsboard.mqtt.broker.actors.device.messages.PersistedMsgsPageLoadedEventMsg;
+import org.thingsboard.mqtt.broker.actors.device.messages.ResumePersistedMsgsReplayCommandMsg;
 import org.thingsboard.mqtt.broker.actors.device.messages.SharedSubscriptionEventMsg;
 import org.thingsboard.mqtt.broker.common.data.DevicePublishMsg;
 import org.thingsboard.mqtt.broker.common.data.PersistedPacketType;
@@ -42,6 +44,7 @@ import org.thingsboard.mqtt.broker.dto.PacketIdAndSerialNumberDto;
 import org.thingsboard.mqtt.broker.dto.SharedSubscriptionPublishPacket;
 import org.thingsboard.mqtt.broker.service.analysis.ClientLogger;
 import org.thingsboard.mqtt.broker.service.mqtt.PublishMsgDeliveryService;
+import org.thingsboard.mqtt.broker.service.mqtt.persistence.device.DeviceMsgReplayService;
 import org.thingsboard.mqtt.broker.service.subscription.shared.SharedSubscriptionCacheService;
 import org.thingsboard.mqtt.broker.service.subscription.shared.TopicSharedSubscription;
 import org.thingsboard.mqtt.broker.session.ClientMqttActorManager;
@@ -50,6 +53,7 @@ import org.thingsboard.mqtt.broker.session.ClientSessionCtx;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.UUID;
 import java.util.concurrent.ConcurrentMap;
 
 import static org.junit.Assert.assertEquals;
@@ -76,6 +80,7 @@ public class PersistedDeviceActorMessageProcessorTest {
     PersistedDeviceActorMessageProcessor persistedDeviceActorMessageProcessor;
 
     DeviceMsgService deviceMsgService;
+    DeviceMsgReplayService deviceMsgReplayService;
     DeviceSessionCtxService deviceSessionCtxService;
     DevicePacketIdAndSerialNumberService serialNumberService;
     PublishMsgDeliveryService publishMsgDeliveryService;
@@ -89,6 +94,7 @@ public class PersistedDeviceActorMessageProcessorTest {
         ActorSystemContext actorSystemContext = mock(ActorSystemContext.class);
 
         deviceMsgService = mock(DeviceMsgService.class);
+        deviceMsgReplayService = mock(DeviceMsgReplayService.class);
         deviceSessionCtxService = mock(DeviceSessionCtxService.class);
         serialNumberService = mock(DevicePacketIdAndSerialNumberService.class);
         publishMsgDeliveryService = mock(PublishMsgDeliveryService.class);
@@ -98,6 +104,7 @@ public class PersistedDeviceActorMessageProcessorTest {
         sharedSubscriptionCacheService = mock(SharedSubscriptionCacheService.class);
 
         when(actorSystemContext.getDeviceMsgService()).thenReturn(deviceMsgService);
+        when(actorSystemContext.getDeviceMsgReplayService()).thenReturn(deviceMsgReplayService);
         when(actorSystemContext.getDeviceSessionCtxService()).thenReturn(deviceSessionCtxService);
         when(actorSystemContext.getSerialNumberService()).thenReturn(serialNumberService);
         when(actorSystemContext.getPublishMsgDeliveryService()).thenReturn(publishMsgDeliveryService);
@@ -111,19 +118,68 @@ public class PersistedDeviceActorMessageProcessorTest {
 
     @After
     public void tearDown() throws Exception {
-        Mockito.reset(deviceMsgService, deviceSessionCtxService, serialNumberService, publishMsgDeliveryService,
+        Mockito.reset(deviceMsgService, deviceMsgReplayService, deviceSessionCtxService, serialNumberService, publishMsgDeliveryService,
                 clientMqttActorManager, clientLogger, deviceActorConfig, sharedSubscriptionCacheService);
     }
 
     @Test
     public void givenDeviceConnectedEventMsg_whenProcessDeviceConnect_thenSuccess() {
         ClientSessionCtx ctx = mock(ClientSessionCtx.class);
-        persistedDeviceActorMessageProcessor.processDeviceConnect(new DeviceConnectedEventMsg(ctx));
+        persistedDeviceActorMessageProcessor.processDeviceConnect(mock(TbActorCtx.class), new DeviceConnectedEventMsg(ctx));
 
         verify(deviceMsgService, times(1)).findPersistedMessages(eq(CLIENT));
         assertEquals(persistedDeviceActorMessageProcessor.getSessionCtx(), ctx);
     }
 
+    @Test
+    public void givenReplayEnabled_whenProcessDeviceConnect_thenFirstPageRequestedAsynchronously() {
+        TbActorCtx tbActorCtx = mock(TbActorCtx.class);
+        when(deviceActorConfig.isReplayEnabled()).thenReturn(true);
+        when(deviceActorConfig.getReplayPageSize()).thenReturn(2);
+        when(deviceMsgReplayService.findPersistedMessagesPage(anyString(), anyLong(), anyInt())).thenReturn(Futures.immediateFuture(List.of()));
+
+        persistedDeviceActorMessageProcessor.processDeviceConnect(tbActorCtx, new DeviceConnectedEventMsg(mock(ClientSessionCtx.class)));
+
+        verify(deviceMsgService, times(0)).findPersistedMessages(anyString());
+        verify(deviceMsgReplayService, times(1)).findPersistedMessagesPage(eq(CLIENT), eq(0L), eq(2));
+        verify(tbActorCtx, times(1)).tell(any(PersistedMsgsPageLoadedEventMsg.class));
+        assertNotNull(persistedDeviceActorMessageProcessor.getReplayId());
+    }
+
+    @Test
+    public void givenReplayInProgress_whenPagesLoadedAndMsgsAcknowledged_thenPagesPacedAndIncomingMsgsMergedBySerialNumber() {
+        TbActorCtx tbActorCtx = mock(TbActorCtx.class);
+        when(deviceActorConfig.isReplayEnabled()).thenReturn(true);
+        when(deviceActorConfig.getReplayPageSize()).thenReturn(2);
+        when(deviceMsgReplayService.findPersistedMessagesPage(anyString(), anyLong(), anyInt())).thenReturn(Futures.immediateFuture(List.of()));
+        when(deviceMsgService.tryRemovePersistedMessage(anyString(), anyInt())).thenReturn(Futures.immediateVoidFuture());
+
+        persistedDeviceActorMessageProcessor.processDeviceConnect(tbActorCtx, new DeviceConnectedEventMsg(mock(ClientSessionCtx.class)));
+        UUID replayId = persistedDeviceActorMessageProcessor.getReplayId();
+
+        persistedDeviceActorMessageProcessor.process(new IncomingPublishMsg(newPublishMsg(2, 2L)));
+        persistedDeviceActorMessageProcessor.process(new IncomingPublishMsg(newPublishMsg(3, 3L)));
+        verify(publishMsgDeliveryService, times(0)).sendPublishMsgToClient(any(), any());
+
+        persistedDeviceActorMessageProcessor.processPersistedMsgsPage(new PersistedMsgsPageLoadedEventMsg(replayId,
+                List.of(newPublishMsg(1, 1L), newPublishMsg(2, 2L)), null));
+        verify(publishMsgDeliveryService, times(2)).sendPublishMsgToClient(any(), any());
+        verify(deviceMsgReplayService, times(1)).findPersistedMessagesPage(anyString(), anyLong(), anyInt());
+        assertEquals(1, persistedDeviceActorMessageProcessor.getReplayIncomingMsgs().size());
+
+        persistedDeviceActorMessageProcessor.processPacketAcknowledge(new PacketAcknowledgedEventMsg(1));
+        verify(tbActorCtx, times(1)).tell(any(ResumePersistedMsgsReplayCommandMsg.class));
+
+        persistedDeviceActorMessageProcessor.processResumePersistedMsgsReplay(new ResumePersistedMsgsReplayCommandMsg(replayId));
+        verify(deviceMsgReplayService, times(1)).findPersistedMessagesPage(eq(CLIENT), eq(3L), eq(2));
+
+        persistedDeviceActorMessageProcessor.processPersistedMsgsPage(new PersistedMsgsPageLoadedEventMsg(replayId, List.of(), null));
+        verify(publishMsgDeliveryService, times(3)).sendPublishMsgToClient(any(), any());
+        assertNull(persistedDeviceActorMessageProcessor.getReplayId());
+        assertTrue(persistedDeviceActorMessageProcessor.isProcessedAnyMsg());
+        assertEquals(Set.of(2, 3), persistedDeviceActorMessageProcessor.getInFlightPacketIds());
+    }
+
     @Test
     public void givenSharedSubscriptionEventMsgAndAlreadyConnectedClient_whenProcessingSharedSubscriptions_thenDoNothing() {
         TopicSharedSubscription sharedSubscription = new TopicSharedSubscription("tf", "g1", 2);
@@ -530,4 +586,17 @@ public class PersistedDeviceActorMessageProcessorTest {
         assertEquals(2, packetIdAndSerialNumberDto.getPacketId());
         assertEquals(54, packetIdAndSerialNumberDto.getSerialNumber());
     }
+
+    private DevicePublishMsg newPublishMsg(int packetId, long serialNumber) {
+        return DevicePublishMsg
+                .builder()
+                .clientId(CLIENT)
+                .packetId(packetId)
+                .serialNumber(serialNumber)
+                .packetType(PersistedPacketType.PUBLISH)
+                .time(System.currentTimeMillis())
+                .qos(1)
+                .properties(new MqttProperties())
+                .build();
+    }
 }
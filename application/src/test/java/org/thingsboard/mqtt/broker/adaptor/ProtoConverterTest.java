@@ -16,6 +16,8 @@
 package org.thingsboard.mqtt.broker.adaptor;
 
 import com.google.protobuf.ByteString;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
 import io.netty.handler.codec.mqtt.MqttProperties;
 import org.junit.Assert;
 import org.junit.Test;
@@ -330,6 +332,24 @@ public class ProtoConverterTest {
         assertEquals(2, publishMsgProto.getUserPropertiesCount());
     }
 
+    @Test
+    public void givenPubMsgWithByteBuf_whenExecuteConvertToPublishMsgProtoWithWrappedPayload_thenPayloadIsNotCopied() {
+        SessionInfo sessionInfo = SessionInfo.builder().clientInfo(ClientInfo.builder().clientId("cli").build()).build();
+        ByteBuf byteBuf = Unpooled.copiedBuffer("payload", StandardCharsets.UTF_8);
+        PublishMsg publishMsg = PublishMsg.builder()
+                .topicName("topic")
+                .qosLevel(1)
+                .properties(MqttProperties.NO_PROPERTIES)
+                .byteBuf(byteBuf)
+                .build();
+        QueueProtos.PublishMsgProto publishMsgProto = ProtoConverter.convertToPublishMsgProto(sessionInfo, publishMsg, true);
+
+        assertEquals("payload", publishMsgProto.getPayload().toStringUtf8());
+        byteBuf.setByte(0, 'P');
+        assertEquals("Payload", publishMsgProto.getPayload().toStringUtf8());
+        byteBuf.release();
+    }
+
     @Test
     public void givenPubMsgProto_whenExecuteConvertToPublishMsg_thenGetExpectedPubMsg() {
         QueueProtos.PublishMsgProto proto = QueueProtos.PublishMsgProto.newBuilder()
@@ -0,0 +1,76 @@
+/**
+ * Copyright © 2016-2024 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.mqtt.broker.server;
+
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.epoll.Epoll;
+import io.netty.channel.epoll.EpollEventLoopGroup;
+import io.netty.channel.epoll.EpollServerSocketChannel;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class MqttServerTransportProviderTest {
+
+    MqttServerTransportProvider transportProvider;
+
+    @Before
+    public void setUp() {
+        transportProvider = new MqttServerTransportProvider();
+        transportProvider.setReusePort(true);
+        transportProvider.setAcceptorsCount(4);
+    }
+
+    @Test
+    public void givenNioTransportType_whenInit_thenNioIsUsedAndSingleAcceptor() {
+        transportProvider.setType(MqttServerTransportType.NIO);
+        transportProvider.init();
+
+        assertFalse(transportProvider.isEpoll());
+        assertEquals(NioServerSocketChannel.class, transportProvider.getServerChannelClass());
+        assertEquals(1, transportProvider.getAcceptorsCount());
+        EventLoopGroup group = transportProvider.createEventLoopGroup(1);
+        try {
+            assertTrue(group instanceof NioEventLoopGroup);
+        } finally {
+            group.shutdownGracefully();
+        }
+    }
+
+    @Test
+    public void givenAutoTransportTypeAndEpollAvailable_whenInit_thenEpollIsUsedWithSeveralAcceptors() {
+        Assume.assumeTrue(Epoll.isAvailable());
+        transportProvider.setType(MqttServerTransportType.AUTO);
+        transportProvider.init();
+
+        assertTrue(transportProvider.isEpoll());
+        assertEquals(EpollServerSocketChannel.class, transportProvider.getServerChannelClass());
+        assertEquals(4, transportProvider.getAcceptorsCount());
+        EventLoopGroup group = transportProvider.createEventLoopGroup(1);
+        try {
+            assertTrue(group instanceof EpollEventLoopGroup);
+        } finally {
+            group.shutdownGracefully();
+        }
+    }
+
+}
@@ -21,6 +21,7 @@ import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.junit.MockitoJUnitRunner;
+import org.springframework.test.util.ReflectionTestUtils;
 import org.thingsboard.mqtt.broker.common.data.client.credentials.BasicMqttCredentials;
 import org.thingsboard.mqtt.broker.common.data.client.credentials.PubSubAuthorizationRules;
 import org.thingsboard.mqtt.broker.common.data.client.credentials.SslMqttCredentials;
@@ -38,13 +39,14 @@ import java.util.stream.Collectors;
 @RunWith(MockitoJUnitRunner.class)
 public class AuthRulePatternsServiceSuiteTest {
 
-    private static final String CLIENT_ID = "clientId";
-
     private DefaultAuthorizationRuleService authorizationRuleService;
 
     @Before
     public void init() {
         this.authorizationRuleService = new DefaultAuthorizationRuleService();
+        ReflectionTestUtils.setField(authorizationRuleService, "compiledRulesCacheMaxSize", 100);
+        ReflectionTestUtils.setField(authorizationRuleService, "decisionCacheMaxSize", 2);
+        authorizationRuleService.init();
     }
 
     /*
@@ -146,12 +148,12 @@ public class AuthRulePatternsServiceSuiteTest {
                 AuthRulePatterns.newInstance(List.of(Pattern.compile("1/.*"))),
                 AuthRulePatterns.newInstance(List.of(Pattern.compile("2/.*")))
         );
-        Assert.assertTrue(authorizationRuleService.isPubAuthorized(CLIENT_ID, "1/", authRulePatterns));
+        Assert.assertTrue(authorizationRuleService.isPubAuthorized("1/", authRulePatterns));
         Assert.assertTrue(authorizationRuleService.isSubAuthorized("1/123", authRulePatterns));
-        Assert.assertTrue(authorizationRuleService.isPubAuthorized(CLIENT_ID, "2/", authRulePatterns));
+        Assert.assertTrue(authorizationRuleService.isPubAuthorized("2/", authRulePatterns));
         Assert.assertTrue(authorizationRuleService.isSubAuthorized("2/123", authRulePatterns));
 
-        Assert.assertFalse(authorizationRuleService.isPubAuthorized(CLIENT_ID, "3/123", authRulePatterns));
+        Assert.assertFalse(authorizationRuleService.isPubAuthorized("3/123", authRulePatterns));
     }
 
     @Test
@@ -160,12 +162,12 @@ public class AuthRulePatternsServiceSuiteTest {
                 AuthRulePatterns.newInstance(List.of(Pattern.compile("1/.*"))),
                 AuthRulePatterns.newInstance(Collections.emptyList())
         );
-        Assert.assertTrue(authorizationRuleService.isPubAuthorized(CLIENT_ID, "1/", authRulePatterns));
+        Assert.assertTrue(authorizationRuleService.isPubAuthorized("1/", authRulePatterns));
         Assert.assertTrue(authorizationRuleService.isSubAuthorized("1/123", authRulePatterns));
-        Assert.assertFalse(authorizationRuleService.isPubAuthorized(CLIENT_ID, "2/", authRulePatterns));
+        Assert.assertFalse(authorizationRuleService.isPubAuthorized("2/", authRulePatterns));
         Assert.assertFalse(authorizationRuleService.isSubAuthorized("2/123", authRulePatterns));
 
-        Assert.assertFalse(authorizationRuleService.isPubAuthorized(CLIENT_ID, "3/123", authRulePatterns));
+        Assert.assertFalse(authorizationRuleService.isPubAuthorized("3/123", authRulePatterns));
     }
 
     @Test
@@ -174,11 +176,11 @@ public class AuthRulePatternsServiceSuiteTest {
                 AuthRulePatterns.newInstance(Collections.emptyList()),
                 AuthRulePatterns.newInstance(Collections.emptyList())
         );
-        Assert.assertFalse(authorizationRuleService.isPubAuthorized(CLIENT_ID, "1/", authRulePatterns));
+        Assert.assertFalse(authorizationRuleService.isPubAuthorized("1/", authRulePatterns));
         Assert.assertFalse(authorizationRuleService.isSubAuthorized("1/123", authRulePatterns));
-        Assert.assertFalse(authorizationRuleService.isPubAuthorized(CLIENT_ID, "2/", authRulePatterns));
+        Assert.assertFalse(authorizationRuleService.isPubAuthorized("2/", authRulePatterns));
         Assert.assertFalse(authorizationRuleService.isSubAuthorized("2/123", authRulePatterns));
-        Assert.assertFalse(authorizationRuleService.isPubAuthorized(CLIENT_ID, "3/123", authRulePatterns));
+        Assert.assertFalse(authorizationRuleService.isPubAuthorized("3/123", authRulePatterns));
     }
 
     @Test
@@ -187,19 +189,19 @@ public class AuthRulePatternsServiceSuiteTest {
                 new AuthRulePatterns(List.of(Pattern.compile("2/.*")), List.of(Pattern.compile("1/.*"))),
                 AuthRulePatterns.newInstance(Collections.emptyList())
         );
-        Assert.assertFalse(authorizationRuleService.isPubAuthorized(CLIENT_ID, "1/", authRulePatterns));
+        Assert.assertFalse(authorizationRuleService.isPubAuthorized("1/", authRulePatterns));
         Assert.assertTrue(authorizationRuleService.isSubAuthorized("1/123", authRulePatterns));
-        Assert.assertTrue(authorizationRuleService.isPubAuthorized(CLIENT_ID, "2/", authRulePatterns));
+        Assert.assertTrue(authorizationRuleService.isPubAuthorized("2/", authRulePatterns));
         Assert.assertFalse(authorizationRuleService.isSubAuthorized("2/123", authRulePatterns));
 
-        Assert.assertFalse(authorizationRuleService.isPubAuthorized(CLIENT_ID, "3/123", authRulePatterns));
+        Assert.assertFalse(authorizationRuleService.isPubAuthorized("3/123", authRulePatterns));
     }
 
     @Test
     public void testSuccessfulRuleValidation5() {
-        boolean pubAuthorized = authorizationRuleService.isPubAuthorized("cl1", "tp1", null);
+        boolean pubAuthorized = authorizationRuleService.isPubAuthorized("tp1", null);
         Assert.assertTrue(pubAuthorized);
-        pubAuthorized = authorizationRuleService.isPubAuthorized("cl1", "tp1", List.of());
+        pubAuthorized = authorizationRuleService.isPubAuthorized("tp1", List.of());
         Assert.assertTrue(pubAuthorized);
     }
 
@@ -219,17 +221,42 @@ public class AuthRulePatternsServiceSuiteTest {
     }
 
     @Test
-    public void testPubAuthAndEvict() {
-        List<AuthRulePatterns> authRulePatterns = List.of(
-                AuthRulePatterns.newInstance(List.of(Pattern.compile(".*")))
-        );
-        Assert.assertTrue(authorizationRuleService.isPubAuthorized(CLIENT_ID, "1/", authRulePatterns));
+    public void testSameRulesShareCompiledPatterns() throws AuthenticationException {
+        AuthRulePatterns first = authorizationRuleService.parseBasicAuthorizationRule(
+                BasicMqttCredentials.newInstance("test1", "test1", null, List.of("test/.*")));
+        AuthRulePatterns second = authorizationRuleService.parseBasicAuthorizationRule(
+                BasicMqttCredentials.newInstance("test2", "test2", null, List.of("test/.*")));
+        AuthRulePatterns other = authorizationRuleService.parseBasicAuthorizationRule(
+                BasicMqttCredentials.newInstance("test3", "test3", null, List.of("other/.*")));
 
-        Assert.assertEquals(1, authorizationRuleService.getPublishAuthMap().size());
-        Assert.assertTrue(authorizationRuleService.getPublishAuthMap().get(CLIENT_ID).get("1/"));
+        Assert.assertSame(first, second);
+        Assert.assertNotSame(first, other);
+    }
 
-        authorizationRuleService.evict(CLIENT_ID);
+    @Test
+    public void testMergedPatternsMatchLikeSeparatePatterns() {
+        List<AuthRulePatterns> authRulePatterns = List.of(new AuthRulePatterns(
+                List.of(Pattern.compile("(?i)abc/.*"), Pattern.compile("1/(\\d)/\\1"), Pattern.compile("x|y")),
+                Collections.emptyList(), 2));
+
+        for (int i = 0; i < 2; i++) {
+            Assert.assertTrue(authorizationRuleService.isPubAuthorized("ABC/1", authRulePatterns));
+            Assert.assertTrue(authorizationRuleService.isPubAuthorized("1/2/2", authRulePatterns));
+            Assert.assertFalse(authorizationRuleService.isPubAuthorized("1/2/3", authRulePatterns));
+            Assert.assertTrue(authorizationRuleService.isPubAuthorized("y", authRulePatterns));
+            Assert.assertFalse(authorizationRuleService.isPubAuthorized("xy", authRulePatterns));
+            Assert.assertFalse(authorizationRuleService.isPubAuthorized("DEF/1", authRulePatterns));
+            Assert.assertFalse(authorizationRuleService.isSubAuthorized("ABC/1", authRulePatterns));
+        }
+    }
+
+    @Test
+    public void testMergedPatternsWithInlineFlags() {
+        List<AuthRulePatterns> authRulePatterns = List.of(AuthRulePatterns.newInstance(
+                List.of(Pattern.compile("(?i)abc/.*"), Pattern.compile("def/.*"))));
 
-        Assert.assertEquals(0, authorizationRuleService.getPublishAuthMap().size());
+        Assert.assertTrue(authorizationRuleService.isPubAuthorized("ABC/1", authRulePatterns));
+        Assert.assertTrue(authorizationRuleService.isSubAuthorized("def/1", authRulePatterns));
+        Assert.assertFalse(authorizationRuleService.isSubAuthorized("DEF/1", authRulePatterns));
     }
 }
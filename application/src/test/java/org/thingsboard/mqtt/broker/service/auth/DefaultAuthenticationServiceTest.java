@@ -15,6 +15,7 @@
  */
 package org.thingsboard.mqtt.broker.service.auth;
 
+import com.google.common.util.concurrent.Futures;
 import io.netty.handler.ssl.SslHandler;
 import lombok.extern.slf4j.Slf4j;
 import org.junit.Assert;
@@ -35,7 +36,9 @@ import java.util.Map;
 
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 @Slf4j
@@ -186,6 +189,37 @@ public class DefaultAuthenticationServiceTest {
         Assert.assertEquals(ClientType.DEVICE, authResponse.getClientType());
     }
 
+    @Test
+    public void givenBothAuthStrategy_whenAuthenticateAsync_thenSingleProviderCalledPerIndex() {
+        mqttClientAuthProviderManager = mock(MqttClientAuthProviderManager.class);
+        BasicMqttClientAuthProvider basicMqttClientAuthProvider = mock(BasicMqttClientAuthProvider.class);
+        SslMqttClientAuthProvider sslMqttClientAuthProvider = mock(SslMqttClientAuthProvider.class);
+        mockGetActiveAuthProviders(basicMqttClientAuthProvider, sslMqttClientAuthProvider);
+
+        authenticationService = spy(new DefaultAuthenticationService(mqttClientAuthProviderManager));
+        authenticationService.setAuthStrategy(AuthStrategy.BOTH);
+
+        when(basicMqttClientAuthProvider.authenticateAsync(any())).thenReturn(Futures.immediateFuture(new AuthResponse(false, null, null)));
+        when(sslMqttClientAuthProvider.authenticateAsync(any())).thenReturn(Futures.immediateFuture(new AuthResponse(true, ClientType.APPLICATION, null)));
+
+        AuthContext authContext = getAuthContext(mock(SslHandler.class));
+        Assert.assertFalse(Futures.getUnchecked(authenticationService.authenticateAsync(authContext, 0)).isSuccess());
+        verify(sslMqttClientAuthProvider, never()).authenticateAsync(any());
+
+        Assert.assertTrue(Futures.getUnchecked(authenticationService.authenticateAsync(authContext, 1)).isSuccess());
+        Assert.assertNull(authenticationService.authenticateAsync(authContext, 2));
+    }
+
+    @Test
+    public void givenNoProviders_whenAuthenticateAsync_thenSuccessOnlyForFirstIndex() {
+        mqttClientAuthProviderManager = mock(MqttClientAuthProviderManager.class);
+        authenticationService = spy(new DefaultAuthenticationService(mqttClientAuthProviderManager));
+
+        AuthContext authContext = getAuthContext(null);
+        Assert.assertTrue(Futures.getUnchecked(authenticationService.authenticateAsync(authContext, 0)).isSuccess());
+        Assert.assertNull(authenticationService.authenticateAsync(authContext, 1));
+    }
+
     private void mockGetActiveAuthProviders(BasicMqttClientAuthProvider basicMqttClientAuthProvider,
                                             SslMqttClientAuthProvider sslMqttClientAuthProvider) {
         when(mqttClientAuthProviderManager.getActiveAuthProviders()).thenReturn(Map.of(
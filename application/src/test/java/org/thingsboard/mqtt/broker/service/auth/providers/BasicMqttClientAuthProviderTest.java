@@ -0,0 +1,209 @@
+/**
+ * Copyright © 2016-2024 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.mqtt.broker.service.auth.providers;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.springframework.cache.concurrent.ConcurrentMapCache;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.thingsboard.mqtt.broker.cache.CacheConstants;
+import org.thingsboard.mqtt.broker.cache.CacheNameResolver;
+import org.thingsboard.mqtt.broker.common.data.ClientType;
+import org.thingsboard.mqtt.broker.common.data.client.credentials.BasicMqttCredentials;
+import org.thingsboard.mqtt.broker.common.data.security.MqttClientCredentials;
+import org.thingsboard.mqtt.broker.common.util.JacksonUtil;
+import org.thingsboard.mqtt.broker.dao.client.MqttClientCredentialsService;
+import org.thingsboard.mqtt.broker.exception.AuthenticationException;
+import org.thingsboard.mqtt.broker.service.auth.AuthorizationRuleService;
+import org.thingsboard.mqtt.broker.service.stats.BasicAuthStats;
+import org.thingsboard.mqtt.broker.service.stats.StatsManager;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class BasicMqttClientAuthProviderTest {
+
+    private static final String PASSWORD = "password";
+
+    @Mock
+    AuthorizationRuleService authorizationRuleService;
+    @Mock
+    MqttClientCredentialsService clientCredentialsService;
+    @Mock
+    CacheNameResolver cacheNameResolver;
+    @Mock
+    StatsManager statsManager;
+    @Mock
+    BasicAuthStats basicAuthStats;
+    @Mock
+    BCryptPasswordEncoder passwordEncoder;
+
+    BasicMqttClientAuthProvider authProvider;
+    ExecutorService testExecutor;
+
+    @Before
+    public void setUp() {
+        when(statsManager.createBasicAuthStats(any())).thenReturn(basicAuthStats);
+        when(clientCredentialsService.findMatchingCredentials(anyList())).thenReturn(List.of(newCredentials()));
+        authProvider = new BasicMqttClientAuthProvider(authorizationRuleService, clientCredentialsService, cacheNameResolver,
+                statsManager, passwordEncoder);
+        testExecutor = Executors.newCachedThreadPool();
+    }
+
+    @After
+    public void tearDown() {
+        authProvider.destroy();
+        testExecutor.shutdownNow();
+    }
+
+    @Test
+    public void givenVerifiedCredentials_whenReconnect_thenPasswordNotCheckedAgain() throws AuthenticationException {
+        init(2, 10, 60);
+        when(cacheNameResolver.getCache(CacheConstants.BASIC_CREDENTIALS_PASSWORD_CACHE)).thenReturn(new ConcurrentMapCache("test"));
+        when(passwordEncoder.matches(PASSWORD, "encoded")).thenReturn(true);
+
+        Assert.assertTrue(authProvider.authenticate(newAuthContext()).isSuccess());
+        Assert.assertTrue(authProvider.authenticate(newAuthContext()).isSuccess());
+
+        verify(passwordEncoder, times(1)).matches(PASSWORD, "encoded");
+        verify(basicAuthStats, times(1)).logVerifiedCacheHit();
+        verify(basicAuthStats, times(2)).logAuthTime(any(Long.class), any(TimeUnit.class));
+    }
+
+    @Test
+    public void givenPasswordCheckQueueIsFull_whenAuthenticate_thenRejected() throws Exception {
+        init(1, 1, 0);
+        when(cacheNameResolver.getCache(CacheConstants.BASIC_CREDENTIALS_PASSWORD_CACHE)).thenReturn(new ConcurrentMapCache("test"));
+        CountDownLatch checkStarted = new CountDownLatch(1);
+        CountDownLatch releaseCheck = new CountDownLatch(1);
+        when(passwordEncoder.matches(anyString(), anyString())).thenAnswer(invocation -> {
+            checkStarted.countDown();
+            releaseCheck.await();
+            return true;
+        });
+
+        var running = testExecutor.submit(() -> authProvider.authenticate(newAuthContext()));
+        Assert.assertTrue(checkStarted.await(5, TimeUnit.SECONDS));
+        var queued = testExecutor.submit(() -> authProvider.authenticate(newAuthContext()));
+        waitForQueuedPasswordCheck();
+
+        Assert.assertThrows(AuthenticationException.class, () -> authProvider.authenticate(newAuthContext()));
+        verify(basicAuthStats).logPasswordCheckRejected();
+
+        releaseCheck.countDown();
+        Assert.assertTrue(running.get(5, TimeUnit.SECONDS).isSuccess());
+        Assert.assertTrue(queued.get(5, TimeUnit.SECONDS).isSuccess());
+    }
+
+    @Test
+    public void givenQueuedPasswordCheck_whenTimeoutExpires_thenFailedWithoutBlockingCaller() throws Exception {
+        init(1, 10, 0);
+        ReflectionTestUtils.setField(authProvider, "passwordCheckTimeoutMs", 200L);
+        when(cacheNameResolver.getCache(CacheConstants.BASIC_CREDENTIALS_PASSWORD_CACHE)).thenReturn(new ConcurrentMapCache("test"));
+        CountDownLatch checkStarted = new CountDownLatch(1);
+        CountDownLatch releaseCheck = new CountDownLatch(1);
+        when(passwordEncoder.matches(anyString(), anyString())).thenAnswer(invocation -> {
+            checkStarted.countDown();
+            releaseCheck.await();
+            return true;
+        });
+
+        var running = authProvider.authenticateAsync(newAuthContext());
+        Assert.assertTrue(checkStarted.await(5, TimeUnit.SECONDS));
+        var queued = authProvider.authenticateAsync(newAuthContext());
+        Assert.assertFalse(queued.isDone());
+
+        ExecutionException e = Assert.assertThrows(ExecutionException.class, () -> queued.get(5, TimeUnit.SECONDS));
+        Assert.assertTrue(e.getCause() instanceof AuthenticationException);
+        Assert.assertTrue(running.isDone());
+        verify(basicAuthStats, times(2)).logPasswordCheckRejected();
+
+        releaseCheck.countDown();
+    }
+
+    @Test
+    public void givenCredentials_whenAuthenticateAsync_thenLookupNotDoneOnCallerThread() throws Exception {
+        init(1, 10, 0);
+        when(cacheNameResolver.getCache(CacheConstants.BASIC_CREDENTIALS_PASSWORD_CACHE)).thenReturn(new ConcurrentMapCache("test"));
+        when(passwordEncoder.matches(PASSWORD, "encoded")).thenReturn(true);
+        AtomicReference<Thread> lookupThread = new AtomicReference<>();
+        when(clientCredentialsService.findMatchingCredentials(anyList())).thenAnswer(invocation -> {
+            lookupThread.set(Thread.currentThread());
+            return List.of(newCredentials());
+        });
+
+        Assert.assertTrue(authProvider.authenticateAsync(newAuthContext()).get(5, TimeUnit.SECONDS).isSuccess());
+        Assert.assertNotNull(lookupThread.get());
+        Assert.assertNotSame(Thread.currentThread(), lookupThread.get());
+    }
+
+    private void init(int threads, int queueSize, int verifiedCacheTtlSec) {
+        ReflectionTestUtils.setField(authProvider, "passwordCheckThreads", threads);
+        ReflectionTestUtils.setField(authProvider, "passwordCheckQueueSize", queueSize);
+        ReflectionTestUtils.setField(authProvider, "passwordCheckTimeoutMs", 5000L);
+        ReflectionTestUtils.setField(authProvider, "verifiedCredentialsCacheTtlSec", verifiedCacheTtlSec);
+        ReflectionTestUtils.setField(authProvider, "verifiedCredentialsCacheMaxSize", 100);
+        authProvider.init();
+    }
+
+    private void waitForQueuedPasswordCheck() throws InterruptedException {
+        ThreadPoolExecutor executor = (ThreadPoolExecutor) ReflectionTestUtils.getField(authProvider, "passwordCheckExecutor");
+        long deadline = System.currentTimeMillis() + 5000;
+        while (executor.getQueue().isEmpty() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        Assert.assertEquals(1, executor.getQueue().size());
+    }
+
+    private MqttClientCredentials newCredentials() {
+        MqttClientCredentials credentials = new MqttClientCredentials();
+        credentials.setCredentialsId("credentialsId");
+        credentials.setClientType(ClientType.DEVICE);
+        credentials.setCredentialsValue(JacksonUtil.toString(
+                BasicMqttCredentials.newInstance("clientId", "username", "encoded", List.of(".*"))));
+        return credentials;
+    }
+
+    private AuthContext newAuthContext() {
+        return AuthContext.builder()
+                .clientId("clientId")
+                .username("username")
+                .passwordBytes(PASSWORD.getBytes(StandardCharsets.UTF_8))
+                .build();
+    }
+}
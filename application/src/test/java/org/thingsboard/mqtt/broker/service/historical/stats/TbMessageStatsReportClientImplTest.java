@@ -0,0 +1,124 @@
+/**
+ * Copyright © 2016-2024 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.mqtt.broker.service.historical.stats;
+
+import com.google.common.util.concurrent.Futures;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.thingsboard.mqtt.broker.cluster.ServiceInfoProvider;
+import org.thingsboard.mqtt.broker.common.data.kv.TsKvEntry;
+import org.thingsboard.mqtt.broker.dao.timeseries.TimeseriesService;
+import org.thingsboard.mqtt.broker.gen.queue.QueueProtos;
+import org.thingsboard.mqtt.broker.queue.TbQueueProducer;
+import org.thingsboard.mqtt.broker.queue.common.TbProtoQueueMsg;
+import org.thingsboard.mqtt.broker.queue.provider.HistoricalDataQueueFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.thingsboard.mqtt.broker.common.util.BrokerConstants.DROPPED_MSGS;
+import static org.thingsboard.mqtt.broker.common.util.BrokerConstants.INCOMING_MSGS;
+import static org.thingsboard.mqtt.broker.common.util.BrokerConstants.OUTGOING_MSGS;
+import static org.thingsboard.mqtt.broker.common.util.BrokerConstants.PROCESSED_BYTES;
+
+@RunWith(MockitoJUnitRunner.class)
+public class TbMessageStatsReportClientImplTest {
+
+    private TimeseriesService timeseriesService;
+    private TbMessageStatsReportClientImpl tbMessageStatsReportClient;
+
+    @Before
+    public void setUp() {
+        HistoricalDataQueueFactory historicalDataQueueFactory = mock(HistoricalDataQueueFactory.class);
+        ServiceInfoProvider serviceInfoProvider = mock(ServiceInfoProvider.class);
+        timeseriesService = mock(TimeseriesService.class);
+        @SuppressWarnings("unchecked")
+        TbQueueProducer<TbProtoQueueMsg<QueueProtos.ToUsageStatsMsgProto>> producer = mock(TbQueueProducer.class);
+
+        when(serviceInfoProvider.getServiceId()).thenReturn("serviceId");
+        when(historicalDataQueueFactory.createProducer(anyString())).thenReturn(producer);
+
+        tbMessageStatsReportClient = new TbMessageStatsReportClientImpl(historicalDataQueueFactory, serviceInfoProvider,
+                timeseriesService, mock(HistoricalStatsTotalHelper.class));
+        ReflectionTestUtils.setField(tbMessageStatsReportClient, "enabled", true);
+        ReflectionTestUtils.setField(tbMessageStatsReportClient, "interval", 1L);
+        ReflectionTestUtils.invokeMethod(tbMessageStatsReportClient, "init");
+    }
+
+    @Test
+    public void givenReportedStats_whenReportStats_thenValuesSavedAndReset() {
+        tbMessageStatsReportClient.reportIncomingMsg();
+        tbMessageStatsReportClient.reportIncomingMsg();
+        tbMessageStatsReportClient.reportOutgoingMsg();
+        tbMessageStatsReportClient.reportTraffic(100);
+
+        List<TsKvEntry> entries = reportStats();
+        Assert.assertEquals(List.of(INCOMING_MSGS, OUTGOING_MSGS, DROPPED_MSGS, PROCESSED_BYTES), entries.stream().map(TsKvEntry::getKey).toList());
+        Assert.assertEquals(List.of(2L, 1L, 0L, 100L), entries.stream().map(entry -> entry.getLongValue().orElseThrow()).toList());
+
+        Assert.assertEquals(List.of(0L, 0L, 0L, 0L), reportStats().stream().map(entry -> entry.getLongValue().orElseThrow()).toList());
+    }
+
+    @Test
+    public void givenConcurrentlyReportedStats_whenReportStats_thenNoIncrementLost() throws InterruptedException {
+        int threads = 4;
+        int msgsPerThread = 100_000;
+        CountDownLatch latch = new CountDownLatch(threads);
+        for (int i = 0; i < threads; i++) {
+            new Thread(() -> {
+                for (int j = 0; j < msgsPerThread; j++) {
+                    tbMessageStatsReportClient.reportIncomingMsg();
+                }
+                latch.countDown();
+            }).start();
+        }
+
+        AtomicLong reported = new AtomicLong();
+        while (latch.getCount() > 0) {
+            reported.addAndGet(getIncomingMsgs(reportStats()));
+        }
+        reported.addAndGet(getIncomingMsgs(reportStats()));
+
+        Assert.assertEquals((long) threads * msgsPerThread, reported.get());
+    }
+
+    private List<TsKvEntry> reportStats() {
+        List<TsKvEntry> entries = new ArrayList<>();
+        when(timeseriesService.save(anyString(), any(TsKvEntry.class))).thenAnswer(invocation -> {
+            entries.add(invocation.getArgument(1));
+            return Futures.immediateVoidFuture();
+        });
+        ReflectionTestUtils.invokeMethod(tbMessageStatsReportClient, "reportStats", System.currentTimeMillis());
+        return entries;
+    }
+
+    private long getIncomingMsgs(List<TsKvEntry> entries) {
+        return entries.stream()
+                .filter(entry -> INCOMING_MSGS.equals(entry.getKey()))
+                .mapToLong(entry -> entry.getLongValue().orElseThrow())
+                .sum();
+    }
+}
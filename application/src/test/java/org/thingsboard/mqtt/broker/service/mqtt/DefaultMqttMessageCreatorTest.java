@@ -15,10 +15,20 @@
  */
 package org.thingsboard.mqtt.broker.service.mqtt;
 
+import com.google.protobuf.ByteString;
+import io.netty.handler.codec.mqtt.MqttProperties;
+import io.netty.handler.codec.mqtt.MqttPublishMessage;
 import org.junit.After;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
+import org.thingsboard.mqtt.broker.gen.queue.QueueProtos.PublishMsgProto;
+import org.thingsboard.mqtt.broker.service.mqtt.retain.OffHeapRetainedMsg;
+import org.thingsboard.mqtt.broker.service.mqtt.retain.RetainedMsg;
+import org.thingsboard.mqtt.broker.service.mqtt.retain.RetainedMsgOffHeapArena;
+import org.thingsboard.mqtt.broker.util.MqttPropertiesUtil;
+
+import java.nio.charset.StandardCharsets;
 
 public class DefaultMqttMessageCreatorTest {
 
@@ -53,4 +63,42 @@ public class DefaultMqttMessageCreatorTest {
         Assert.assertEquals("test/", responseInfo);
     }
 
+    @Test
+    public void givenZeroCopyPayload_whenCreatePubMsgForSeveralSubscribers_thenPayloadIsSharedNotCopied() {
+        mqttMessageCreator.setZeroCopyPayload(true);
+        PublishMsgProto publishMsgProto = PublishMsgProto.newBuilder()
+                .setPayload(ByteString.copyFrom("payload", StandardCharsets.UTF_8))
+                .build();
+
+        MqttPublishMessage first = mqttMessageCreator.createPubMsg(publishMsgProto, 1, false, "topic", 1, MqttProperties.NO_PROPERTIES);
+        MqttPublishMessage second = mqttMessageCreator.createPubMsg(publishMsgProto, 0, false, "topic", 2, MqttProperties.NO_PROPERTIES);
+
+        Assert.assertEquals("payload", first.payload().toString(StandardCharsets.UTF_8));
+        Assert.assertEquals("payload", second.payload().toString(StandardCharsets.UTF_8));
+        Assert.assertTrue(first.payload().isReadOnly());
+        Assert.assertNotSame(first.payload(), second.payload());
+        first.release();
+        Assert.assertEquals("payload", second.payload().toString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void givenOffHeapRetainedMsg_whenCreatePubRetainMsg_thenPayloadIsReadFromArenaUntilReleased() {
+        MqttProperties properties = new MqttProperties();
+        MqttPropertiesUtil.addMsgExpiryIntervalToPublish(properties, 100);
+        OffHeapRetainedMsg retainedMsg = new RetainedMsgOffHeapArena()
+                .allocate(new RetainedMsg("topic", "payload".getBytes(StandardCharsets.UTF_8), 1, properties));
+
+        MqttPublishMessage pubRetainMsg = mqttMessageCreator.createPubRetainMsg(1, retainedMsg);
+
+        Assert.assertEquals("payload", pubRetainMsg.payload().toString(StandardCharsets.UTF_8));
+        Assert.assertTrue(pubRetainMsg.payload().isDirect());
+        Assert.assertTrue(pubRetainMsg.fixedHeader().isRetain());
+        Assert.assertEquals(100, MqttPropertiesUtil.getPubExpiryIntervalProperty(pubRetainMsg.variableHeader().properties()).value().intValue());
+
+        retainedMsg.release();
+        Assert.assertEquals("payload", pubRetainMsg.payload().toString(StandardCharsets.UTF_8));
+        pubRetainMsg.release();
+        Assert.assertNull(mqttMessageCreator.createPubRetainMsg(2, retainedMsg));
+    }
+
 }
@@ -0,0 +1,120 @@
+/**
+ * Copyright © 2016-2024 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.mqtt.broker.service.mqtt;
+
+import com.google.protobuf.InvalidProtocolBufferException;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.handler.codec.mqtt.MqttProperties;
+import io.netty.handler.codec.mqtt.MqttPublishMessage;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.thingsboard.mqtt.broker.adaptor.ProtoConverter;
+import org.thingsboard.mqtt.broker.common.data.ClientInfo;
+import org.thingsboard.mqtt.broker.common.data.SessionInfo;
+import org.thingsboard.mqtt.broker.gen.queue.QueueProtos.PublishMsgProto;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the payload copies made for a PUBLISH msg on its way from the inbound Netty buffer, through the queue record
+ * and back to the outbound MQTT messages of the local subscribers, with and without {@code mqtt.zero-copy-payload}.
+ * <p>
+ * The queue is simulated by serializing and parsing the proto. The GC profiler is enabled, so {@code gc.alloc.rate.norm}
+ * shows the bytes allocated per delivered msg, which is dominated by the payload copies.
+ * Not executed as a part of the test suite, run {@link #main(String[])} from the IDE.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PublishPayloadCopyBenchmark {
+
+    @Param({"4096", "65536"})
+    private int payloadSize;
+
+    @Param({"1", "10"})
+    private int subscribers;
+
+    @Param({"false", "true"})
+    private boolean zeroCopyPayload;
+
+    private final SessionInfo sessionInfo = SessionInfo.builder().clientInfo(ClientInfo.builder().clientId("publisher").build()).build();
+    private final DefaultMqttMessageCreator mqttMessageCreator = new DefaultMqttMessageCreator();
+    private ByteBuf inboundPayload;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        mqttMessageCreator.setZeroCopyPayload(zeroCopyPayload);
+        byte[] payload = new byte[payloadSize];
+        ThreadLocalRandom.current().nextBytes(payload);
+        inboundPayload = PooledByteBufAllocator.DEFAULT.directBuffer(payloadSize);
+        inboundPayload.writeBytes(payload);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        inboundPayload.release();
+    }
+
+    @Benchmark
+    public void deliverToLocalSubscribers(Blackhole bh) throws InvalidProtocolBufferException {
+        PublishMsg publishMsg = PublishMsg.builder()
+                .topicName("sensors/temperature")
+                .qosLevel(1)
+                .properties(MqttProperties.NO_PROPERTIES)
+                .byteBuf(inboundPayload)
+                .build();
+        PublishMsgProto producedProto = ProtoConverter.convertToPublishMsgProto(sessionInfo, publishMsg, zeroCopyPayload);
+        byte[] record = producedProto.toByteArray();
+
+        PublishMsgProto consumedProto = PublishMsgProto.parseFrom(record);
+        for (int i = 0; i < subscribers; i++) {
+            MqttPublishMessage mqttPublishMessage = mqttMessageCreator.createPubMsg(consumedProto, 1, false,
+                    consumedProto.getTopicName(), i + 1, MqttProperties.NO_PROPERTIES);
+            bh.consume(mqttPublishMessage);
+            mqttPublishMessage.release();
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(PublishPayloadCopyBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,78 @@
+/**
+ * Copyright © 2016-2024 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.mqtt.broker.service.mqtt.client.event;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.thingsboard.mqtt.broker.cluster.ServiceInfoProvider;
+import org.thingsboard.mqtt.broker.queue.TbQueueAdmin;
+import org.thingsboard.mqtt.broker.queue.provider.ClientSessionEventQueueFactory;
+
+import java.util.List;
+
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class DefaultClientSessionEventServiceTest {
+
+    @Mock
+    ClientSessionEventQueueFactory clientSessionEventQueueFactory;
+    @Mock
+    ServiceInfoProvider serviceInfoProvider;
+    @Mock
+    ClientSessionEventFactory eventFactory;
+    @Mock
+    ClientSessionCallbackMsgFactory callbackMsgFactory;
+    @Mock
+    ClientSessionEventActorManager clientSessionEventActorManager;
+    @Mock
+    TbQueueAdmin tbQueueAdmin;
+
+    @InjectMocks
+    DefaultClientSessionEventService clientSessionEventService;
+
+    @Before
+    public void setUp() {
+        when(serviceInfoProvider.getServiceId()).thenReturn("broker-1");
+    }
+
+    @Test
+    public void givenOnlyThisNode_whenValidateLocalFastPath_thenNoException() {
+        when(tbQueueAdmin.getBrokerServiceIds()).thenReturn(List.of("broker-1"));
+
+        clientSessionEventService.validateLocalFastPath();
+    }
+
+    @Test
+    public void givenOtherNode_whenValidateLocalFastPath_thenStartupIsRejected() {
+        when(tbQueueAdmin.getBrokerServiceIds()).thenReturn(List.of("broker-1", "broker-2"));
+
+        IllegalStateException e = Assert.assertThrows(IllegalStateException.class, () -> clientSessionEventService.validateLocalFastPath());
+        Assert.assertTrue(e.getMessage().contains("broker-2"));
+    }
+
+    @Test
+    public void givenBrokerServiceIdsFailure_whenValidateLocalFastPath_thenStartupIsRejected() {
+        when(tbQueueAdmin.getBrokerServiceIds()).thenThrow(new RuntimeException("timeout"));
+
+        Assert.assertThrows(RuntimeException.class, () -> clientSessionEventService.validateLocalFastPath());
+    }
+}
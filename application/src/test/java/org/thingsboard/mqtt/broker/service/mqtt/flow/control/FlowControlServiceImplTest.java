@@ -23,25 +23,31 @@ import org.mockito.Mockito;
 import org.mockito.junit.MockitoJUnitRunner;
 import org.thingsboard.mqtt.broker.actors.client.state.PublishedInFlightCtxImpl;
 import org.thingsboard.mqtt.broker.common.util.ThingsBoardExecutors;
+import org.thingsboard.mqtt.broker.service.stats.StatsManager;
 
 import java.util.concurrent.ConcurrentHashMap;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
 
 @RunWith(MockitoJUnitRunner.class)
 public class FlowControlServiceImplTest {
 
+    StatsManager statsManager;
     FlowControlServiceImpl flowControlService;
     PublishedInFlightCtxImpl publishedInFlightCtx;
 
     @Before
     public void setUp() throws Exception {
-        flowControlService = spy(new FlowControlServiceImpl());
+        statsManager = mock(StatsManager.class);
+        flowControlService = spy(new FlowControlServiceImpl(statsManager));
         flowControlService.setFlowControlEnabled(true);
-        flowControlService.setTimeout(1000);
+        flowControlService.setTtlMs(1000);
         flowControlService.setClientsWithDelayedMsgMap(new ConcurrentHashMap<>());
         flowControlService.setService(ThingsBoardExecutors.initExecutorService(1, "flow-control-executor"));
 
@@ -66,6 +72,32 @@ public class FlowControlServiceImplTest {
         flowControlService.addToMap("test", publishedInFlightCtx);
 
         assertEquals(1, flowControlService.getClientsWithDelayedMsgMap().size());
+        verify(statsManager).registerClientDelayedMsgStats("test", publishedInFlightCtx);
+    }
+
+    @Test
+    public void givenClientWithDelayedMsgs_whenRemoveFromMap_thenEntryAndStatsRemoved() {
+        flowControlService.addToMap("test", publishedInFlightCtx);
+        flowControlService.removeFromMap("test");
+
+        assertTrue(flowControlService.getClientsWithDelayedMsgMap().isEmpty());
+        verify(statsManager).clearClientDelayedMsgStats("test");
+    }
+
+    @Test
+    public void givenClientWithDelayedMsgs_whenScheduleDelayedMsgProcessing_thenDelayedMsgsProcessed() {
+        flowControlService.addToMap("test", publishedInFlightCtx);
+
+        flowControlService.scheduleDelayedMsgProcessing("test");
+
+        verify(publishedInFlightCtx, timeout(5000)).processMsg(1000);
+    }
+
+    @Test
+    public void givenClientWithoutDelayedMsgs_whenScheduleDelayedMsgProcessing_thenNothingProcessed() {
+        flowControlService.scheduleDelayedMsgProcessing("test");
+
+        verify(flowControlService, never()).processDelayedMsgs("test");
     }
 
     @Test
@@ -23,12 +23,14 @@ import org.thingsboard.mqtt.broker.exception.MqttException;
 import org.thingsboard.mqtt.broker.session.ClientMqttActorManager;
 
 import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.spy;
@@ -86,5 +88,29 @@ public class KeepAliveServiceImplTest {
         assertEquals(3, keepAliveService.getKeepAliveInfoSize());
     }
 
-}
+    @Test
+    public void givenInactiveAndActiveSessions_whenKeepAliveExpired_thenOnlyInactiveSessionDisconnected() throws Exception {
+        AtomicLong time = new AtomicLong(1_000_000L);
+        keepAliveService.setTimeSource(time::get);
+        keepAliveService.processKeepAlive();
+
+        UUID inactiveSessionId = UUID.randomUUID();
+        UUID activeSessionId = UUID.randomUUID();
+        keepAliveService.registerSession("inactive", inactiveSessionId, 1);
+        keepAliveService.registerSession("active", activeSessionId, 1);
+        keepAliveService.processKeepAlive();
+
+        time.addAndGet(1000);
+        keepAliveService.processKeepAlive();
+        keepAliveService.acknowledgeControlPacket(activeSessionId);
+
+        time.addAndGet(700);
+        keepAliveService.processKeepAlive();
 
+        verify(clientMqttActorManager, times(1)).disconnect(eq("inactive"), any());
+        verify(clientMqttActorManager, never()).disconnect(eq("active"), any());
+        assertEquals(1, keepAliveService.getKeepAliveInfoSize());
+        assertThrows(MqttException.class, () -> keepAliveService.acknowledgeControlPacket(inactiveSessionId));
+    }
+
+}
@@ -0,0 +1,164 @@
+/**
+ * Copyright © 2016-2024 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.mqtt.broker.service.mqtt.persistence.application;
+
+import com.google.common.collect.Sets;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.thingsboard.mqtt.broker.actors.client.state.ClientActorStateInfo;
+import org.thingsboard.mqtt.broker.gen.queue.QueueProtos.PublishMsgProto;
+import org.thingsboard.mqtt.broker.queue.TbQueueMultiplexedConsumer;
+import org.thingsboard.mqtt.broker.queue.common.DefaultTbQueueMsgHeaders;
+import org.thingsboard.mqtt.broker.queue.common.TbProtoQueueMsg;
+import org.thingsboard.mqtt.broker.service.mqtt.persistence.application.data.ApplicationMultiplexedClientCtx;
+import org.thingsboard.mqtt.broker.service.mqtt.persistence.application.processing.ApplicationPackProcessingCtx;
+import org.thingsboard.mqtt.broker.service.mqtt.persistence.application.processing.ApplicationPubRelMsgCtx;
+import org.thingsboard.mqtt.broker.session.ClientSessionCtx;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class ApplicationMultiplexedConsumerTest {
+
+    private static final String CLIENT_ID = "test-client";
+    private static final String TOPIC = "tbmq.msg.app.test-client";
+    private static final String CONSUMER_GROUP = "application-persisted-msg-test-client";
+
+    @Mock
+    TbQueueMultiplexedConsumer<TbProtoQueueMsg<PublishMsgProto>> consumer;
+    @Mock
+    ApplicationPersistenceProcessorImpl processor;
+    @Mock
+    ClientActorStateInfo clientState;
+    @Mock
+    ClientSessionCtx clientSessionCtx;
+    @Mock
+    ApplicationPackProcessingCtx packCtx;
+
+    ExecutorService executor;
+    ApplicationMultiplexedConsumer multiplexedConsumer;
+
+    @Before
+    public void setUp() {
+        when(clientState.getCurrentSessionCtx()).thenReturn(clientSessionCtx);
+        when(clientSessionCtx.getSessionId()).thenReturn(UUID.randomUUID());
+        when(clientSessionCtx.getClientId()).thenReturn(CLIENT_ID);
+
+        doAnswer(invocation -> {
+            ApplicationMultiplexedClientCtx clientCtx = invocation.getArgument(0);
+            clientCtx.setPubRelMsgCtx(new ApplicationPubRelMsgCtx(Sets.newConcurrentHashSet()));
+            return null;
+        }).when(processor).initMultiplexedClientCtx(any());
+
+        when(consumer.assign(TOPIC, CONSUMER_GROUP)).thenReturn(CompletableFuture.completedFuture(null));
+
+        executor = Executors.newSingleThreadExecutor();
+        multiplexedConsumer = new ApplicationMultiplexedConsumer(consumer, processor, 10);
+    }
+
+    @After
+    public void tearDown() throws InterruptedException {
+        multiplexedConsumer.stop();
+        executor.shutdownNow();
+        assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void givenPolledMessages_whenPackIsAcknowledged_thenOffsetIsCommittedAndTopicResumed() {
+        List<TbProtoQueueMsg<PublishMsgProto>> messages = List.of(newMsg(4), newMsg(5));
+        when(consumer.getAssignedTopicsCount()).thenReturn(1);
+        when(consumer.poll(anyLong()))
+                .thenReturn(Map.of(TOPIC, messages))
+                .thenAnswer(invocation -> {
+                    Thread.sleep(invocation.<Long>getArgument(0));
+                    return Collections.emptyMap();
+                });
+        when(processor.isClientConnected(any())).thenReturn(true);
+        doAnswer(invocation -> {
+            ApplicationMultiplexedClientCtx clientCtx = invocation.getArgument(0);
+            clientCtx.setPackCtx(packCtx);
+            clientCtx.setPackDeadlineNanos(System.nanoTime() + TimeUnit.MINUTES.toNanos(1));
+            return null;
+        }).when(processor).startPack(any(), eq(messages));
+        when(processor.completePack(any())).thenReturn(true);
+
+        ApplicationMultiplexedClientCtx clientCtx = new ApplicationMultiplexedClientCtx(clientState, TOPIC, CONSUMER_GROUP);
+        multiplexedConsumer.register(clientCtx);
+        executor.submit(multiplexedConsumer);
+
+        verify(consumer, timeout(5000)).assign(TOPIC, CONSUMER_GROUP);
+        verify(consumer, timeout(5000)).pause(TOPIC);
+        verify(processor, timeout(5000)).startPack(clientCtx, messages);
+        verify(consumer, never()).commit(any(), anyLong());
+
+        when(packCtx.isProcessed()).thenReturn(true);
+        clientCtx.getOnPackProcessed().run();
+
+        verify(consumer, timeout(5000)).commit(TOPIC, 6L);
+        verify(consumer, timeout(5000)).resume(TOPIC);
+    }
+
+    @Test
+    public void givenRegisteredClient_whenFutureIsCancelled_thenTopicIsUnassigned() {
+        ApplicationMultiplexedClientCtx clientCtx = new ApplicationMultiplexedClientCtx(clientState, TOPIC, CONSUMER_GROUP);
+        var future = multiplexedConsumer.register(clientCtx);
+        executor.submit(multiplexedConsumer);
+        verify(consumer, timeout(5000)).assign(TOPIC, CONSUMER_GROUP);
+
+        future.cancel(true);
+
+        verify(consumer, timeout(5000)).unassign(TOPIC);
+        verify(processor, never()).startPack(any(), any());
+    }
+
+    @Test
+    public void givenFailedAssignment_whenOffsetCannotBeResolved_thenClientIsDisconnected() {
+        when(consumer.assign(TOPIC, CONSUMER_GROUP)).thenReturn(CompletableFuture.failedFuture(new RuntimeException("timeout")));
+
+        ApplicationMultiplexedClientCtx clientCtx = new ApplicationMultiplexedClientCtx(clientState, TOPIC, CONSUMER_GROUP);
+        var future = multiplexedConsumer.register(clientCtx);
+        executor.submit(multiplexedConsumer);
+
+        verify(processor, timeout(5000)).disconnectClient(clientCtx);
+        assertTrue(future.isCompletedExceptionally());
+        verify(processor, never()).startPack(any(), any());
+    }
+
+    private TbProtoQueueMsg<PublishMsgProto> newMsg(long offset) {
+        return new TbProtoQueueMsg<>(CLIENT_ID, PublishMsgProto.getDefaultInstance(), new DefaultTbQueueMsgHeaders(), 0, offset);
+    }
+}
@@ -0,0 +1,59 @@
+/**
+ * Copyright © 2016-2024 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.mqtt.broker.service.mqtt.persistence.device;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.thingsboard.mqtt.broker.cluster.ServiceInfoProvider;
+import org.thingsboard.mqtt.broker.queue.TbQueueAdmin;
+
+import java.util.List;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class DeviceMsgLogSingleNodeValidatorTest {
+
+    TbQueueAdmin tbQueueAdmin;
+    ServiceInfoProvider serviceInfoProvider;
+    DeviceMsgLogSingleNodeValidator validator;
+
+    @Before
+    public void setUp() {
+        tbQueueAdmin = mock(TbQueueAdmin.class);
+        serviceInfoProvider = mock(ServiceInfoProvider.class);
+        validator = new DeviceMsgLogSingleNodeValidator(tbQueueAdmin, serviceInfoProvider);
+
+        when(serviceInfoProvider.getServiceId()).thenReturn("broker-1");
+    }
+
+    @Test
+    public void givenOnlyCurrentNode_whenValidate_thenStarted() {
+        when(tbQueueAdmin.getBrokerServiceIds()).thenReturn(List.of("broker-1"));
+
+        validator.validate();
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void givenOtherNodes_whenValidate_thenStartRefused() {
+        when(tbQueueAdmin.getBrokerServiceIds()).thenReturn(List.of("broker-1", "broker-2"));
+
+        validator.validate();
+    }
+}
@@ -0,0 +1,90 @@
+/**
+ * Copyright © 2016-2024 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.mqtt.broker.service.mqtt.retain;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.handler.codec.mqtt.MqttProperties;
+import org.junit.Assert;
+import org.junit.Test;
+import org.thingsboard.mqtt.broker.util.BytesUtil;
+import org.thingsboard.mqtt.broker.util.MqttPropertiesUtil;
+
+import java.nio.charset.StandardCharsets;
+
+public class RetainedMsgOffHeapArenaTest {
+
+    RetainedMsgOffHeapArena arena = new RetainedMsgOffHeapArena();
+
+    @Test
+    public void givenRetainedMsg_whenAllocate_thenOnlyExpiryIsKeptOnHeapAndMsgIsMaterializedBack() {
+        MqttProperties properties = new MqttProperties();
+        properties.add(new MqttProperties.UserProperty("key", "value"));
+        properties.add(new MqttProperties.StringProperty(MqttProperties.MqttPropertyType.CONTENT_TYPE.value(), "text/plain"));
+        MqttPropertiesUtil.addMsgExpiryIntervalToPublish(properties, 60);
+        RetainedMsg retainedMsg = new RetainedMsg("test/topic", "payload".getBytes(StandardCharsets.UTF_8), 1, properties, 1000L);
+
+        OffHeapRetainedMsg offHeapRetainedMsg = arena.allocate(retainedMsg);
+
+        Assert.assertEquals(1, offHeapRetainedMsg.getProperties().listAll().size());
+        Assert.assertEquals(60, MqttPropertiesUtil.getPubExpiryIntervalProperty(offHeapRetainedMsg).value().intValue());
+        Assert.assertEquals(7, offHeapRetainedMsg.getPayloadLength());
+        Assert.assertTrue(arena.getUsedMemory() > 0);
+
+        RetainedMsg materialized = offHeapRetainedMsg.materialize();
+        Assert.assertEquals("test/topic", materialized.getTopic());
+        Assert.assertEquals(1, materialized.getQosLevel());
+        Assert.assertEquals(1000L, materialized.getCreatedTime());
+        Assert.assertArrayEquals(retainedMsg.getPayload(), materialized.getPayload());
+        Assert.assertEquals("value", MqttPropertiesUtil.getUserProperties(materialized.getProperties()).value().get(0).value);
+        Assert.assertEquals("text/plain", materialized.getProperties().getProperty(MqttProperties.MqttPropertyType.CONTENT_TYPE.value()).value());
+        Assert.assertEquals(60, MqttPropertiesUtil.getPubExpiryIntervalProperty(materialized).value().intValue());
+
+        offHeapRetainedMsg.release();
+    }
+
+    @Test
+    public void givenCopyWithLowerQos_whenExpiryIsChanged_thenBufferIsSharedAndOriginalExpiryIsKept() {
+        MqttProperties properties = new MqttProperties();
+        MqttPropertiesUtil.addMsgExpiryIntervalToPublish(properties, 60);
+        OffHeapRetainedMsg offHeapRetainedMsg = arena.allocate(new RetainedMsg("topic", BytesUtil.integerToBytes(5), 2, properties));
+
+        OffHeapRetainedMsg copy = offHeapRetainedMsg.copy(0);
+        MqttPropertiesUtil.addMsgExpiryIntervalToPublish(copy.getProperties(), 10);
+
+        Assert.assertEquals(0, copy.getQosLevel());
+        Assert.assertEquals(60, MqttPropertiesUtil.getPubExpiryIntervalProperty(offHeapRetainedMsg).value().intValue());
+        Assert.assertEquals(10, MqttPropertiesUtil.getPubExpiryIntervalProperty(copy.materializeProperties()).value().intValue());
+        Assert.assertEquals(offHeapRetainedMsg.copy(0), copy);
+
+        offHeapRetainedMsg.release();
+        Assert.assertTrue(copy.isReleased());
+        Assert.assertNull(copy.retainedPayload());
+    }
+
+    @Test
+    public void givenRetainedPayload_whenMsgIsReleased_thenPayloadIsReadableUntilSliceIsReleased() {
+        OffHeapRetainedMsg offHeapRetainedMsg = arena.allocate(new RetainedMsg("topic", "payload".getBytes(StandardCharsets.UTF_8), 1));
+
+        ByteBuf payload = offHeapRetainedMsg.retainedPayload();
+        offHeapRetainedMsg.release();
+
+        Assert.assertTrue(offHeapRetainedMsg.isReleased());
+        Assert.assertNull(offHeapRetainedMsg.getPayload());
+        Assert.assertNull(offHeapRetainedMsg.materialize());
+        Assert.assertEquals("payload", payload.toString(StandardCharsets.UTF_8));
+        Assert.assertTrue(payload.release());
+    }
+}
@@ -0,0 +1,91 @@
+/**
+ * Copyright © 2016-2024 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.mqtt.broker.service.mqtt.retransmission;
+
+import io.netty.handler.codec.mqtt.MqttFixedHeader;
+import io.netty.handler.codec.mqtt.MqttMessage;
+import io.netty.handler.codec.mqtt.MqttMessageIdVariableHeader;
+import io.netty.handler.codec.mqtt.MqttMessageType;
+import io.netty.handler.codec.mqtt.MqttQoS;
+import io.netty.util.HashedWheelTimer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class RetransmissionHandlerTest {
+
+    HashedWheelTimer timer;
+
+    @Before
+    public void setUp() {
+        timer = new HashedWheelTimer(10, TimeUnit.MILLISECONDS);
+    }
+
+    @After
+    public void tearDown() {
+        timer.stop();
+    }
+
+    @Test
+    public void givenStartedHandler_whenDelayExpired_thenMsgRetransmittedUntilStopped() throws InterruptedException {
+        AtomicInteger retransmissions = new AtomicInteger();
+        CountDownLatch retransmitted = new CountDownLatch(1);
+        RetransmissionHandler<MqttMessage> handler = new RetransmissionHandler<>(() -> false, 1, 5);
+        handler.setOriginalMessage(newPubRelMsg());
+        handler.setHandler((fixedHeader, msg) -> {
+            retransmissions.incrementAndGet();
+            retransmitted.countDown();
+        });
+
+        handler.start(timer);
+        assertEquals(1, timer.pendingTimeouts());
+
+        assertTrue(retransmitted.await(5, TimeUnit.SECONDS));
+        handler.stop();
+
+        // cancelled timeouts are removed from the wheel on the next tick
+        Thread.sleep(100);
+        assertEquals(1, retransmissions.get());
+        assertEquals(0, timer.pendingTimeouts());
+    }
+
+    @Test
+    public void givenStartedHandler_whenStopped_thenTimeoutCancelled() throws InterruptedException {
+        AtomicInteger retransmissions = new AtomicInteger();
+        RetransmissionHandler<MqttMessage> handler = new RetransmissionHandler<>(() -> false, 1, 5);
+        handler.setOriginalMessage(newPubRelMsg());
+        handler.setHandler((fixedHeader, msg) -> retransmissions.incrementAndGet());
+
+        handler.start(timer);
+        handler.stop();
+
+        Thread.sleep(1500);
+        assertEquals(0, retransmissions.get());
+        assertEquals(0, timer.pendingTimeouts());
+    }
+
+    private MqttMessage newPubRelMsg() {
+        MqttFixedHeader fixedHeader = new MqttFixedHeader(MqttMessageType.PUBREL, false, MqttQoS.AT_LEAST_ONCE, false, 0);
+        return new MqttMessage(fixedHeader, MqttMessageIdVariableHeader.from(1));
+    }
+}
@@ -56,36 +56,36 @@ public class PublishMsgValidationServiceImplTest {
 
     @Test
     public void givenPubMsgWithClientId_whenValidatePubMsg_thenTopicAndAuthChecked() {
-        when(authorizationRuleService.isPubAuthorized(any(), any(), any())).thenReturn(true);
+        when(authorizationRuleService.isPubAuthorized(any(), any())).thenReturn(true);
 
         PublishMsg msg = PublishMsg.builder().topicName("testTopic").build();
         publishMsgValidationService.validatePubMsg(ctx, "clientId", msg);
 
         verify(topicValidationService, times(1)).validateTopic(eq("testTopic"));
-        verify(authorizationRuleService, times(1)).isPubAuthorized(eq("clientId"), eq("testTopic"), any());
+        verify(authorizationRuleService, times(1)).isPubAuthorized(eq("testTopic"), any());
     }
 
     @Test
     public void givenPubMsg_whenValidatePubMsg_thenTopicAndAuthChecked() {
-        when(authorizationRuleService.isPubAuthorized(any(), any(), any())).thenReturn(true);
+        when(authorizationRuleService.isPubAuthorized(any(), any())).thenReturn(true);
 
         PublishMsg msg = PublishMsg.builder().topicName("testTopic").build();
         publishMsgValidationService.validatePubMsg(ctx, msg);
 
         verify(topicValidationService, times(1)).validateTopic(eq("testTopic"));
-        verify(authorizationRuleService, times(1)).isPubAuthorized(any(), eq("testTopic"), any());
+        verify(authorizationRuleService, times(1)).isPubAuthorized(eq("testTopic"), any());
     }
 
     @Test
     public void givenClientContextAndAllowPublishToTopic_whenValidateClientAccess_thenSuccess() {
-        when(authorizationRuleService.isPubAuthorized(any(), any(), any())).thenReturn(true);
+        when(authorizationRuleService.isPubAuthorized(any(), any())).thenReturn(true);
         boolean result = publishMsgValidationService.validateClientAccess(ctx, "clientId", "topic/1");
         Assert.assertTrue(result);
     }
 
     @Test
     public void givenClientContextAndNotAllowPublishToTopic_whenValidateClientAccess_thenFailure() {
-        when(authorizationRuleService.isPubAuthorized(any(), any(), any())).thenReturn(false);
+        when(authorizationRuleService.isPubAuthorized(any(), any())).thenReturn(false);
         boolean result = publishMsgValidationService.validateClientAccess(ctx, "clientId", "topic/1");
         Assert.assertFalse(result);
     }
@@ -0,0 +1,96 @@
+/**
+ * Copyright © 2016-2024 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.mqtt.broker.service.processing;
+
+import org.junit.Test;
+import org.thingsboard.mqtt.broker.gen.queue.QueueProtos.PublishMsgProto;
+import org.thingsboard.mqtt.broker.queue.common.DefaultTbQueueMsgHeaders;
+import org.thingsboard.mqtt.broker.queue.common.TbProtoQueueMsg;
+
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class InFlightPackWindowTest {
+
+    @Test
+    public void givenPacksCompletedOutOfOrder_whenReleaseCompleted_thenWatermarkMovesOnlyOverContiguousPrefix() throws InterruptedException {
+        InFlightPackWindow window = new InFlightPackWindow(3, 1, TimeUnit.MINUTES);
+        UUID firstMsgId = UUID.randomUUID();
+        UUID secondMsgId = UUID.randomUUID();
+        PackProcessingContext first = newCtx(firstMsgId);
+        PackProcessingContext second = newCtx(secondMsgId);
+        window.add(first, 1, List.of(msg(0, 10), msg(1, 5)), System.nanoTime());
+        window.add(second, 1, List.of(msg(0, 11), msg(0, 12)), System.nanoTime());
+
+        second.onSuccess(secondMsgId);
+        assertTrue(window.releaseCompleted().isEmpty());
+        assertTrue(window.drainWatermark().isEmpty());
+        assertEquals(2, window.size());
+
+        first.onFailure(firstMsgId);
+        List<InFlightPackWindow.InFlightPack> released = window.releaseCompleted();
+        assertEquals(2, released.size());
+        assertEquals(first, released.get(0).getCtx());
+        assertEquals(second, released.get(1).getCtx());
+        assertEquals(Map.of(0, 13L, 1, 6L), window.drainWatermark());
+        assertTrue(window.drainWatermark().isEmpty());
+        assertTrue(window.isEmpty());
+    }
+
+    @Test
+    public void givenPackWithoutDispatchedMsgs_whenReleaseCompleted_thenReleasedImmediately() throws InterruptedException {
+        InFlightPackWindow window = new InFlightPackWindow(1, 1, TimeUnit.MINUTES);
+        window.add(null, 0, List.of(msg(2, 100)), System.nanoTime());
+        assertTrue(window.isFull());
+
+        assertEquals(1, window.releaseCompleted().size());
+        assertEquals(Map.of(2, 101L), window.drainWatermark());
+        assertFalse(window.isFull());
+    }
+
+    @Test
+    public void givenPackProcessingTimeout_whenAwaitHead_thenPackReleasedWithPendingMsgs() throws InterruptedException {
+        InFlightPackWindow window = new InFlightPackWindow(1, 50, TimeUnit.MILLISECONDS);
+        PackProcessingContext ctx = newCtx(UUID.randomUUID());
+        window.add(ctx, 1, List.of(msg(0, 0)), System.nanoTime());
+        assertTrue(window.releaseCompleted().isEmpty());
+
+        window.awaitHead();
+
+        List<InFlightPackWindow.InFlightPack> released = window.releaseCompleted();
+        assertEquals(1, released.size());
+        assertEquals(1, new PackProcessingResult(released.get(0).getCtx()).getPendingMap().size());
+        assertEquals(Map.of(0, 1L), window.drainWatermark());
+    }
+
+    private PackProcessingContext newCtx(UUID msgId) {
+        ConcurrentMap<UUID, PublishMsgWithId> pendingMap = new ConcurrentHashMap<>();
+        pendingMap.put(msgId, new PublishMsgWithId(msgId, PublishMsgProto.getDefaultInstance(), new DefaultTbQueueMsgHeaders()));
+        return new PackProcessingContext(pendingMap);
+    }
+
+    private TbProtoQueueMsg<PublishMsgProto> msg(int partition, long offset) {
+        return new TbProtoQueueMsg<>(null, PublishMsgProto.getDefaultInstance(), new DefaultTbQueueMsgHeaders(), partition, offset);
+    }
+}
@@ -22,6 +22,7 @@ import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.boot.test.mock.mockito.SpyBean;
 import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.util.ReflectionTestUtils;
 import org.thingsboard.mqtt.broker.actors.client.service.subscription.SubscriptionService;
 import org.thingsboard.mqtt.broker.cluster.ServiceInfoProvider;
 import org.thingsboard.mqtt.broker.common.data.ClientSessionInfo;
@@ -42,6 +43,9 @@ import org.thingsboard.mqtt.broker.service.subscription.Subscription;
 import org.thingsboard.mqtt.broker.service.subscription.ValueWithTopicFilter;
 import org.thingsboard.mqtt.broker.service.subscription.shared.SharedSubscription;
 import org.thingsboard.mqtt.broker.service.subscription.shared.SharedSubscriptionCacheService;
+import org.thingsboard.mqtt.broker.service.subscription.shared.SharedSubscriptionGroup;
+import org.thingsboard.mqtt.broker.service.subscription.shared.SharedSubscriptionGroupRegistry;
+import org.thingsboard.mqtt.broker.service.subscription.shared.SharedSubscriptionGroupStrategy;
 import org.thingsboard.mqtt.broker.service.subscription.shared.SharedSubscriptionProcessingStrategyFactory;
 import org.thingsboard.mqtt.broker.service.subscription.shared.SharedSubscriptions;
 import org.thingsboard.mqtt.broker.service.subscription.shared.TopicSharedSubscription;
@@ -55,8 +59,11 @@ import java.util.stream.Stream;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 @RunWith(SpringRunner.class)
@@ -84,6 +91,8 @@ public class MsgDispatcherServiceImplTest {
     @MockBean
     SharedSubscriptionCacheService sharedSubscriptionCacheService;
     @MockBean
+    SharedSubscriptionGroupRegistry sharedSubscriptionGroupRegistry;
+    @MockBean
     TbMessageStatsReportClient tbMessageStatsReportClient;
     @MockBean
     ServiceInfoProvider serviceInfoProvider;
@@ -437,6 +446,80 @@ public class MsgDispatcherServiceImplTest {
         assertTrue(appClientIds.containsAll(List.of("clientId1", "clientId2")));
     }
 
+    @Test
+    public void givenMulticastDownLinkEnabled_whenProcessBasicSubscriptions_thenSendThemToDownLinkAtOnce() {
+        ReflectionTestUtils.setField(msgDispatcherService, "multicastDownLinkEnabled", true);
+        try {
+            Subscription subscription1 = new Subscription("test/topic/1", 1, clientSessionInfo);
+            Subscription subscription2 = new Subscription("test/+/1", 0, clientSessionInfo);
+            Subscription subscription3 = new Subscription("#", 2, clientSessionInfo);
+            MsgSubscriptions msgSubscriptions = new MsgSubscriptions(
+                    List.of(subscription1, subscription2),
+                    null,
+                    List.of(subscription3)
+            );
+            QueueProtos.PublishMsgProto publishMsgProto = QueueProtos.PublishMsgProto
+                    .newBuilder()
+                    .setTopicName("test/topic/1")
+                    .setQos(0)
+                    .build();
+
+            msgDispatcherService.processBasicAndCollectPersistentSubscriptions(msgSubscriptions, publishMsgProto);
+
+            verify(downLinkProxy).sendBasicMsg(eq(List.of(subscription1, subscription2, subscription3)), eq(publishMsgProto));
+            verify(downLinkProxy, never()).sendBasicMsg(any(Subscription.class), any());
+        } finally {
+            ReflectionTestUtils.setField(msgDispatcherService, "multicastDownLinkEnabled", false);
+        }
+    }
+
+    @Test
+    public void givenGroupRegistryEnabled_whenGetAllSubscriptionsForPubMsg_thenSubscriptionsSelectedFromGroups() {
+        TopicSharedSubscription deviceGroupKey = new TopicSharedSubscription("topic/+", "g1");
+        TopicSharedSubscription offlineGroupKey = new TopicSharedSubscription("topic/#", "g2");
+        TopicSharedSubscription appGroupKey = new TopicSharedSubscription("#", "g3");
+        SharedSubscriptionGroup deviceGroup = mock(SharedSubscriptionGroup.class);
+        SharedSubscriptionGroup offlineGroup = mock(SharedSubscriptionGroup.class);
+        SharedSubscriptionGroup appGroup = mock(SharedSubscriptionGroup.class);
+        SharedSubscriptionGroupStrategy strategy = mock(SharedSubscriptionGroupStrategy.class);
+        Subscription deviceSubscription = new Subscription("topic/+", 1, ClientSessionInfo.builder().clientId("clientId1").connected(true).build(),
+                "g1", SubscriptionOptions.newInstance());
+        Subscription appSubscription = new Subscription("#", 1, ClientSessionInfo.builder().clientId("clientId3").type(ClientType.APPLICATION).build(),
+                "g3", SubscriptionOptions.newInstance());
+
+        when(sharedSubscriptionCacheService.sharedSubscriptionsInitialized()).thenReturn(true);
+        when(sharedSubscriptionGroupRegistry.isEnabled()).thenReturn(true);
+        when(sharedSubscriptionGroupRegistry.getGroup(deviceGroupKey)).thenReturn(deviceGroup);
+        when(sharedSubscriptionGroupRegistry.getGroup(offlineGroupKey)).thenReturn(offlineGroup);
+        when(sharedSubscriptionGroupRegistry.getGroup(appGroupKey)).thenReturn(appGroup);
+        when(deviceGroup.hasDeviceMembers()).thenReturn(true);
+        when(offlineGroup.hasDeviceMembers()).thenReturn(true);
+        when(appGroup.getAnyApplicationMember()).thenReturn(appSubscription);
+        when(sharedSubscriptionProcessingStrategyFactory.getGroupStrategy()).thenReturn(strategy);
+        when(strategy.select(deviceGroup, "publisher")).thenReturn(deviceSubscription);
+        when(serviceInfoProvider.getServiceId()).thenReturn("serviceId");
+
+        var topic = "topic/test";
+        when(subscriptionService.getSubscriptions(topic)).thenReturn(List.of(
+                newValueWithTopicFilter("clientId1", 1, "g1", "topic/+"),
+                newValueWithTopicFilter("clientId2", 1, "g2", "topic/#"),
+                newValueWithTopicFilter("clientId3", 1, "g3", "#")
+        ));
+        QueueProtos.PublishMsgProto publishMsgProto = QueueProtos.PublishMsgProto.newBuilder().setTopicName(topic).setQos(1).build();
+
+        MsgSubscriptions msgSubscriptions = msgDispatcherService.getAllSubscriptionsForPubMsg(publishMsgProto, "publisher");
+
+        assertNull(msgSubscriptions.getCommonSubscriptions());
+        assertEquals(Set.of(appSubscription), msgSubscriptions.getAllApplicationSharedSubscriptions());
+        List<Subscription> deviceSubscriptions = msgSubscriptions.getTargetDeviceSharedSubscriptions();
+        assertEquals(2, deviceSubscriptions.size());
+        assertTrue(deviceSubscriptions.contains(deviceSubscription));
+        Subscription dummySubscription = deviceSubscriptions.stream().filter(s -> s != deviceSubscription).findFirst().orElseThrow();
+        assertEquals("topic/#", dummySubscription.getTopicFilter());
+        assertEquals(offlineGroupKey.getKey(), dummySubscription.getClientId());
+        verify(sharedSubscriptionCacheService, never()).get(any());
+    }
+
     private List<String> getClientIds(Stream<Subscription> msgSubscriptions) {
         return msgSubscriptions
                 .map(subscription -> subscription.getClientSessionInfo().getClientId())
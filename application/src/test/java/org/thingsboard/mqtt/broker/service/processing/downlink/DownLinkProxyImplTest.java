@@ -31,8 +31,14 @@ import org.thingsboard.mqtt.broker.service.processing.downlink.basic.BasicDownLi
 import org.thingsboard.mqtt.broker.service.processing.downlink.persistent.PersistentDownLinkProcessor;
 import org.thingsboard.mqtt.broker.service.subscription.Subscription;
 
+import java.util.List;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.spy;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
@@ -160,6 +166,37 @@ public class DownLinkProxyImplTest {
         verify(queuePublisher, times(1)).publishBasicMsg(eq(serviceId), eq(clientId), eq(publishMsgProto));
     }
 
+    @Test
+    public void givenPubMsgWithSubscriptionsOnSeveralBrokers_whenSendBasicMsg_thenPublishOneMulticastMsgPerAnotherBroker() {
+        Subscription local = newSubscription("broker-0", "local");
+        Subscription remote1 = newSubscription("broker-1", "remote1");
+        Subscription remote2 = newSubscription("broker-1", "remote2");
+        Subscription remote3 = newSubscription("broker-2", "remote3");
+        QueueProtos.PublishMsgProto publishMsgProto = QueueProtos.PublishMsgProto.newBuilder().setQos(1).build();
+
+        when(serviceInfoProvider.getServiceId()).thenReturn("broker-0");
+        downLinkProxy.sendBasicMsg(List.of(local, remote1, remote2, remote3), publishMsgProto);
+
+        verify(basicDownLinkProcessor, times(1)).process(eq(local), eq(publishMsgProto));
+        verify(queuePublisher, times(1)).publishBasicMulticastMsg(eq("broker-1"), eq(List.of(remote1, remote2)), eq(publishMsgProto));
+        verify(queuePublisher, times(1)).publishBasicMsg(eq("broker-2"), eq("remote3"), eq(publishMsgProto));
+        verify(queuePublisher, never()).publishBasicMulticastMsg(eq("broker-2"), anyList(), any());
+    }
+
+    @Test
+    public void givenPubMsgWithSubscriptionsOnSameBroker_whenSendBasicMsg_thenNothingIsPublishedToQueue() {
+        Subscription local1 = newSubscription("broker-0", "local1");
+        Subscription local2 = newSubscription("broker-0", "local2");
+        QueueProtos.PublishMsgProto publishMsgProto = QueueProtos.PublishMsgProto.newBuilder().build();
+
+        when(serviceInfoProvider.getServiceId()).thenReturn("broker-0");
+        downLinkProxy.sendBasicMsg(List.of(local1, local2), publishMsgProto);
+
+        verify(basicDownLinkProcessor, times(2)).process(any(Subscription.class), eq(publishMsgProto));
+        verify(queuePublisher, never()).publishBasicMsg(anyString(), anyString(), any());
+        verify(queuePublisher, never()).publishBasicMulticastMsg(anyString(), anyList(), any());
+    }
+
     @Test
     public void givenPubMsgForSubscriberOnSameBroker_whenSendPersistentMsg_thenPublishMsgToSubscriber() {
         String serviceId = "broker-0";
@@ -184,4 +221,8 @@ public class DownLinkProxyImplTest {
         verify(queuePublisher, times(1)).publishPersistentMsg(eq(serviceId), eq(clientId), eq(devicePublishMsg));
     }
 
+    private Subscription newSubscription(String serviceId, String clientId) {
+        return new Subscription("#", 1, ClientSessionInfo.builder().serviceId(serviceId).clientId(clientId).build());
+    }
+
 }
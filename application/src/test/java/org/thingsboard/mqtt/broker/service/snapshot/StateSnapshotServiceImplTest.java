@@ -0,0 +1,126 @@
+/**
+ * Copyright © 2016-2024 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.mqtt.broker.service.snapshot;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.thingsboard.mqtt.broker.actors.client.service.session.ClientSessionService;
+import org.thingsboard.mqtt.broker.actors.client.service.subscription.ClientSubscriptionService;
+import org.thingsboard.mqtt.broker.common.data.ClientSessionInfo;
+import org.thingsboard.mqtt.broker.common.data.subscription.TopicSubscription;
+import org.thingsboard.mqtt.broker.service.mqtt.client.session.ClientSessionConsumer;
+import org.thingsboard.mqtt.broker.service.mqtt.retain.RetainedMsgConsumer;
+import org.thingsboard.mqtt.broker.service.mqtt.retain.RetainedMsgListenerService;
+import org.thingsboard.mqtt.broker.service.subscription.ClientSubscriptionConsumer;
+import org.thingsboard.mqtt.broker.util.ClientSessionInfoFactory;
+
+import java.util.Map;
+import java.util.Set;
+
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class StateSnapshotServiceImplTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Mock
+    private ClientSessionConsumer clientSessionConsumer;
+    @Mock
+    private ClientSubscriptionConsumer clientSubscriptionConsumer;
+    @Mock
+    private RetainedMsgConsumer retainedMsgConsumer;
+    @Mock
+    private ClientSessionService clientSessionService;
+    @Mock
+    private ClientSubscriptionService clientSubscriptionService;
+    @Mock
+    private RetainedMsgListenerService retainedMsgListenerService;
+
+    private StateSnapshotConfiguration config;
+
+    @Before
+    public void setUp() {
+        config = new StateSnapshotConfiguration();
+        config.setEnabled(true);
+        config.setDir(folder.getRoot().getAbsolutePath());
+        config.setInterval(60);
+        config.setMaxAge(3600);
+        config.setShards(2);
+        config.setLoadThreadsCount(2);
+    }
+
+    @Test
+    public void givenTwoSnapshotRuns_whenSnapshotsAreLoaded_thenOffsetsOfFirstRunAreStoredWithStateOfSecondRun() {
+        StateSnapshotServiceImpl snapshotService = newSnapshotService();
+        when(clientSessionConsumer.getProcessedOffsets()).thenReturn(Map.of(0, 10L), Map.of(0, 20L));
+        when(clientSubscriptionConsumer.getProcessedOffsets()).thenReturn(Map.of(0, 5L), Map.of(0, 6L));
+        when(retainedMsgConsumer.getProcessedOffsets()).thenReturn(Map.of(0, 1L), Map.of(0, 2L));
+
+        snapshotService.makeSnapshots();
+        verify(clientSessionService, never()).getAllClientSessions();
+
+        when(clientSessionService.getAllClientSessions())
+                .thenReturn(Map.of("client1", ClientSessionInfoFactory.getClientSessionInfo("client1", "serviceId1")));
+        when(clientSubscriptionService.getAllClientSubscriptions())
+                .thenReturn(Map.of("client1", Set.of(new TopicSubscription("test/topic", 1))));
+        when(retainedMsgListenerService.getStoredRetainedMessages()).thenReturn(Map.of());
+        snapshotService.makeSnapshots();
+        snapshotService.destroy();
+
+        StateSnapshotServiceImpl restartedSnapshotService = newSnapshotService();
+        restartedSnapshotService.loadSnapshots();
+
+        StateSnapshot<ClientSessionInfo> clientSessionsSnapshot = restartedSnapshotService.getClientSessionsSnapshot();
+        Assert.assertEquals(Map.of(0, 10L), clientSessionsSnapshot.getOffsets());
+        Assert.assertEquals("serviceId1", clientSessionsSnapshot.getEntries().get("client1").getServiceId());
+
+        StateSnapshot<Set<TopicSubscription>> subscriptionsSnapshot = restartedSnapshotService.getClientSubscriptionsSnapshot();
+        Assert.assertEquals(Map.of(0, 5L), subscriptionsSnapshot.getOffsets());
+        Assert.assertEquals(Set.of(new TopicSubscription("test/topic", 1)), subscriptionsSnapshot.getEntries().get("client1"));
+
+        Assert.assertTrue(restartedSnapshotService.getRetainedMsgSnapshot().getEntries().isEmpty());
+        restartedSnapshotService.destroy();
+    }
+
+    @Test
+    public void givenSnapshotsDisabled_whenSnapshotsAreLoaded_thenNoSnapshotIsReturned() {
+        config.setEnabled(false);
+        StateSnapshotServiceImpl snapshotService = newSnapshotService();
+
+        snapshotService.loadSnapshots();
+
+        Assert.assertNull(snapshotService.getClientSessionsSnapshot());
+        Assert.assertNull(snapshotService.getClientSubscriptionsSnapshot());
+        Assert.assertNull(snapshotService.getRetainedMsgSnapshot());
+    }
+
+    private StateSnapshotServiceImpl newSnapshotService() {
+        StateSnapshotServiceImpl snapshotService = new StateSnapshotServiceImpl(config, clientSessionConsumer, clientSubscriptionConsumer,
+                retainedMsgConsumer, clientSessionService, clientSubscriptionService, retainedMsgListenerService);
+        snapshotService.init();
+        return snapshotService;
+    }
+}
@@ -0,0 +1,160 @@
+/**
+ * Copyright © 2016-2024 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.mqtt.broker.service.snapshot;
+
+import io.netty.handler.codec.mqtt.MqttProperties;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.thingsboard.mqtt.broker.common.data.subscription.TopicSubscription;
+import org.thingsboard.mqtt.broker.service.mqtt.retain.OffHeapRetainedMsg;
+import org.thingsboard.mqtt.broker.service.mqtt.retain.RetainedMsg;
+import org.thingsboard.mqtt.broker.service.mqtt.retain.RetainedMsgOffHeapArena;
+import org.thingsboard.mqtt.broker.util.MqttPropertiesUtil;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.stream.Stream;
+
+import static org.thingsboard.mqtt.broker.service.snapshot.StateSnapshotServiceImpl.CLIENT_SUBSCRIPTIONS_SERIALIZER;
+import static org.thingsboard.mqtt.broker.service.snapshot.StateSnapshotServiceImpl.RETAINED_MSG_SERIALIZER;
+
+public class StateSnapshotStoreTest {
+
+    private static final String NAME = "test-state";
+    private static final Executor DIRECT_EXECUTOR = Runnable::run;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private StateSnapshotStore store;
+
+    @Before
+    public void setUp() {
+        store = new StateSnapshotStore(folder.getRoot().toPath(), 4);
+    }
+
+    @Test
+    public void givenWrittenSnapshot_whenReadLatest_thenEntriesAndOffsetsAreRestored() throws Exception {
+        Map<String, Set<TopicSubscription>> entries = new HashMap<>();
+        for (int i = 0; i < 100; i++) {
+            entries.put("client" + i, Set.of(new TopicSubscription("topic/" + i, i % 3), new TopicSubscription("shared/" + i, 1, "group")));
+        }
+        store.write(NAME, new StateSnapshot<>(1000, Map.of(0, 15L, 1, 7L), entries), CLIENT_SUBSCRIPTIONS_SERIALIZER);
+
+        StateSnapshot<Set<TopicSubscription>> snapshot = store.readLatest(NAME, CLIENT_SUBSCRIPTIONS_SERIALIZER, 0, DIRECT_EXECUTOR).join();
+
+        Assert.assertEquals(1000, snapshot.getCreatedTime());
+        Assert.assertEquals(Map.of(0, 15L, 1, 7L), snapshot.getOffsets());
+        Assert.assertEquals(entries, snapshot.getEntries());
+    }
+
+    @Test
+    public void givenRetainedMsgWithExpiryInterval_whenReadLatest_thenExpiryIntervalIsRestored() throws Exception {
+        MqttProperties properties = new MqttProperties();
+        MqttPropertiesUtil.addMsgExpiryIntervalToPublish(properties, 60);
+        RetainedMsg retainedMsg = new RetainedMsg("test/topic", "payload".getBytes(StandardCharsets.UTF_8), 1, properties, 500);
+        store.write(NAME, new StateSnapshot<>(1000, Map.of(0, 1L), Map.of("test/topic", retainedMsg)), RETAINED_MSG_SERIALIZER);
+
+        RetainedMsg restored = store.readLatest(NAME, RETAINED_MSG_SERIALIZER, 0, DIRECT_EXECUTOR).join().getEntries().get("test/topic");
+
+        Assert.assertArrayEquals(retainedMsg.getPayload(), restored.getPayload());
+        Assert.assertEquals(1, restored.getQosLevel());
+        Assert.assertEquals(500, restored.getCreatedTime());
+        Assert.assertEquals(Integer.valueOf(60), MqttPropertiesUtil.getPubExpiryIntervalProperty(restored).value());
+    }
+
+    @Test
+    public void givenOffHeapRetainedMsg_whenWrittenAndRead_thenMsgIsRestoredWithProperties() throws Exception {
+        MqttProperties properties = new MqttProperties();
+        properties.add(new MqttProperties.UserProperty("key", "value"));
+        properties.add(new MqttProperties.StringProperty(MqttProperties.MqttPropertyType.CONTENT_TYPE.value(), "text/plain"));
+        MqttPropertiesUtil.addMsgExpiryIntervalToPublish(properties, 60);
+        byte[] payload = new byte[100_000];
+        payload[payload.length - 1] = 7;
+        OffHeapRetainedMsg offHeapRetainedMsg = new RetainedMsgOffHeapArena().allocate(new RetainedMsg("test/topic", payload, 2, properties, 500));
+        store.write(NAME, new StateSnapshot<>(1000, Map.of(0, 1L), Map.of("test/topic", offHeapRetainedMsg)), RETAINED_MSG_SERIALIZER);
+        offHeapRetainedMsg.release();
+
+        RetainedMsg restored = store.readLatest(NAME, RETAINED_MSG_SERIALIZER, 0, DIRECT_EXECUTOR).join().getEntries().get("test/topic");
+
+        Assert.assertEquals("test/topic", restored.getTopic());
+        Assert.assertArrayEquals(payload, restored.getPayload());
+        Assert.assertEquals(2, restored.getQosLevel());
+        Assert.assertEquals(500, restored.getCreatedTime());
+        Assert.assertEquals("value", MqttPropertiesUtil.getUserProperties(restored.getProperties()).value().get(0).value);
+        Assert.assertEquals("text/plain", restored.getProperties().getProperty(MqttProperties.MqttPropertyType.CONTENT_TYPE.value()).value());
+        Assert.assertEquals(Integer.valueOf(60), MqttPropertiesUtil.getPubExpiryIntervalProperty(restored).value());
+    }
+
+    @Test
+    public void givenNewerSnapshot_whenWritten_thenOlderSnapshotIsDeletedAndIncompleteOneIsIgnored() throws Exception {
+        store.write(NAME, new StateSnapshot<>(1000, Map.of(0, 1L), subscriptions("old")), CLIENT_SUBSCRIPTIONS_SERIALIZER);
+        store.write(NAME, new StateSnapshot<>(2000, Map.of(0, 2L), subscriptions("new")), CLIENT_SUBSCRIPTIONS_SERIALIZER);
+        Files.createDirectories(folder.getRoot().toPath().resolve(NAME).resolve("3000"));
+
+        StateSnapshot<Set<TopicSubscription>> snapshot = store.readLatest(NAME, CLIENT_SUBSCRIPTIONS_SERIALIZER, 0, DIRECT_EXECUTOR).join();
+
+        Assert.assertEquals(2000, snapshot.getCreatedTime());
+        Assert.assertTrue(snapshot.getEntries().containsKey("new"));
+        Assert.assertFalse(Files.exists(folder.getRoot().toPath().resolve(NAME).resolve("1000")));
+    }
+
+    @Test
+    public void givenTooOldSnapshot_whenReadLatest_thenNothingIsReturned() throws Exception {
+        store.write(NAME, new StateSnapshot<>(1000, Map.of(0, 1L), subscriptions("client")), CLIENT_SUBSCRIPTIONS_SERIALIZER);
+
+        Assert.assertNull(store.readLatest(NAME, CLIENT_SUBSCRIPTIONS_SERIALIZER, 1001, DIRECT_EXECUTOR).join());
+    }
+
+    @Test(expected = CompletionException.class)
+    public void givenCorruptedShard_whenReadLatest_thenLoadFails() throws Exception {
+        store.write(NAME, new StateSnapshot<>(1000, Map.of(0, 1L), subscriptions("client")), CLIENT_SUBSCRIPTIONS_SERIALIZER);
+        Path shardFile = findNonEmptyShard(folder.getRoot().toPath().resolve(NAME).resolve("1000"));
+        try (RandomAccessFile file = new RandomAccessFile(shardFile.toFile(), "rw")) {
+            file.seek(file.length() - 1);
+            int lastByte = file.read();
+            file.seek(file.length() - 1);
+            file.write(lastByte ^ 0xFF);
+        }
+
+        store.readLatest(NAME, CLIENT_SUBSCRIPTIONS_SERIALIZER, 0, DIRECT_EXECUTOR).join();
+    }
+
+    private Map<String, Set<TopicSubscription>> subscriptions(String clientId) {
+        Map<String, Set<TopicSubscription>> entries = new HashMap<>();
+        entries.put(clientId, Set.of(new TopicSubscription("test/topic", 1)));
+        return entries;
+    }
+
+    private Path findNonEmptyShard(Path snapshotDir) throws IOException {
+        try (Stream<Path> files = Files.list(snapshotDir)) {
+            return files.filter(file -> !file.getFileName().toString().equals(StateSnapshotStore.MANIFEST_FILE))
+                    .filter(file -> file.toFile().length() > 0)
+                    .findFirst().orElseThrow();
+        }
+    }
+}
@@ -28,6 +28,7 @@ import org.thingsboard.mqtt.broker.service.stats.StatsManager;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
@@ -96,6 +97,22 @@ public class ConcurrentMapSubscriptionTrieTest {
         Assert.assertEquals(1, subscriptionTrie.get("1/2").size());
     }
 
+    @Test
+    public void givenTopicFilters_whenPutAll_thenValuesAreMatchedAndCountedAsWithSinglePuts() {
+        subscriptionTrie.put("home/livingroom/temperature", "sensor0");
+        subscriptionTrie.putAll(Map.of(
+                "home/livingroom/temperature", List.of("sensor0", "sensor1"),
+                "home/+/temperature", List.of("sensor2"),
+                "home/#", List.of("sensor3"),
+                "office/kitchen", List.of("sensor4")
+        ));
+        Assert.assertEquals(4, subscriptionTrie.get("home/livingroom/temperature").size());
+        Assert.assertEquals(2, subscriptionTrie.get("home/kitchen/temperature").size());
+        Assert.assertEquals(1, subscriptionTrie.get("office/kitchen").size());
+        Assert.assertEquals(5, subscriptionCounter.get());
+        Assert.assertEquals(8, nodesCounter.get());
+    }
+
     @Test
     public void testDelete() {
         subscriptionTrie.put("1/2", "test");
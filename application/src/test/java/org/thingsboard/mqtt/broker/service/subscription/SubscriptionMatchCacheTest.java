@@ -0,0 +1,101 @@
+/**
+ * Copyright © 2016-2024 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.mqtt.broker.service.subscription;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mockito;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.thingsboard.mqtt.broker.service.stats.StatsManager;
+import org.thingsboard.mqtt.broker.service.stats.StubSubscriptionMatchCacheStats;
+
+import java.util.List;
+
+@RunWith(MockitoJUnitRunner.class)
+public class SubscriptionMatchCacheTest {
+
+    private SubscriptionMatchCache subscriptionMatchCache;
+
+    @Before
+    public void before() {
+        StatsManager statsManagerMock = Mockito.mock(StatsManager.class);
+        Mockito.when(statsManagerMock.getSubscriptionMatchCacheStats())
+                .thenReturn(StubSubscriptionMatchCacheStats.STUB_SUBSCRIPTION_MATCH_CACHE_STATS);
+        subscriptionMatchCache = new SubscriptionMatchCache(statsManagerMock);
+        subscriptionMatchCache.setEnabled(true);
+        subscriptionMatchCache.setMaxWeight(1000);
+        subscriptionMatchCache.init();
+    }
+
+    @Test
+    public void givenCachedTopic_whenGet_thenReturnCachedSubscriptions() {
+        List<ValueWithTopicFilter<ClientSubscription>> subscriptions = cacheSubscription("home/livingroom/temperature", "home/+/temperature");
+
+        Assert.assertEquals(subscriptions, subscriptionMatchCache.get("home/livingroom/temperature"));
+        Assert.assertNull(subscriptionMatchCache.get("home/kitchen/temperature"));
+    }
+
+    @Test
+    public void givenCachedTopic_whenExactTopicFilterChanged_thenEntryInvalidated() {
+        cacheSubscription("home/livingroom/temperature", "home/livingroom/temperature");
+        cacheSubscription("home/kitchen/temperature", "home/kitchen/temperature");
+
+        subscriptionMatchCache.onTopicFilterChanged("home/livingroom/temperature");
+
+        Assert.assertNull(subscriptionMatchCache.get("home/livingroom/temperature"));
+        Assert.assertNotNull(subscriptionMatchCache.get("home/kitchen/temperature"));
+    }
+
+    @Test
+    public void givenCachedTopic_whenWildcardTopicFilterOfSameFirstLevelChanged_thenEntryInvalidated() {
+        cacheSubscription("home/livingroom/temperature", "home/livingroom/temperature");
+        cacheSubscription("office/room/temperature", "office/room/temperature");
+
+        subscriptionMatchCache.onTopicFilterChanged("home/+/temperature");
+
+        Assert.assertNull(subscriptionMatchCache.get("home/livingroom/temperature"));
+        Assert.assertNotNull(subscriptionMatchCache.get("office/room/temperature"));
+    }
+
+    @Test
+    public void givenCachedTopics_whenTopicFilterStartingWithWildcardChanged_thenAllEntriesInvalidated() {
+        cacheSubscription("home/livingroom/temperature", "home/livingroom/temperature");
+        cacheSubscription("office/room/temperature", "office/room/temperature");
+
+        subscriptionMatchCache.onTopicFilterChanged("+/room/temperature");
+
+        Assert.assertNull(subscriptionMatchCache.get("home/livingroom/temperature"));
+        Assert.assertNull(subscriptionMatchCache.get("office/room/temperature"));
+    }
+
+    @Test
+    public void givenLookupStartedBeforeTopicFilterChanged_whenGet_thenStaleEntryIgnored() {
+        String topic = "home/livingroom/temperature";
+        long stamp = subscriptionMatchCache.getStamp(topic);
+        subscriptionMatchCache.onTopicFilterChanged("home/#");
+        subscriptionMatchCache.put(topic, stamp, List.of());
+
+        Assert.assertNull(subscriptionMatchCache.get(topic));
+    }
+
+    private List<ValueWithTopicFilter<ClientSubscription>> cacheSubscription(String topic, String topicFilter) {
+        List<ValueWithTopicFilter<ClientSubscription>> subscriptions = List.of(
+                new ValueWithTopicFilter<>(new ClientSubscription("clientId", 1, null, null), topicFilter));
+        return subscriptionMatchCache.put(topic, subscriptionMatchCache.getStamp(topic), subscriptions);
+    }
+}
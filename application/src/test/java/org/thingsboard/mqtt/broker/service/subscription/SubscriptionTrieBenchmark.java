@@ -0,0 +1,143 @@
+/**
+ * Copyright © 2016-2024 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.mqtt.broker.service.subscription;
+
+import org.mockito.Mockito;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.thingsboard.mqtt.broker.service.stats.StatsManager;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Compares lookup throughput and allocation rate of the {@link SubscriptionTrie} implementations.
+ * Not executed as a part of the test suite, run {@link #main(String[])} from the IDE or
+ * with {@code exec:java} on the test classpath. Use {@code -prof gc} options to see allocations per operation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SubscriptionTrieBenchmark {
+
+    private static final int FIRST_LEVEL_SEGMENTS = 50;
+    private static final int SECOND_LEVEL_SEGMENTS = 100;
+    private static final int MAX_LEVELS = 6;
+    private static final int NUMBER_OF_TOPIC_FILTERS = 10_000;
+    private static final int NUMBER_OF_SUBSCRIBERS = 100_000;
+
+    @Param({"concurrent-map", "segment-interned"})
+    private String trieType;
+
+    private SubscriptionTrie<String> subscriptionTrie;
+    private String[] topics;
+    private int topicIdx;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        StatsManager statsManager = Mockito.mock(StatsManager.class);
+        Mockito.when(statsManager.createSubscriptionSizeCounter()).thenReturn(new AtomicInteger());
+        Mockito.when(statsManager.createSubscriptionTrieNodesCounter()).thenReturn(new AtomicLong());
+        subscriptionTrie = "segment-interned".equals(trieType) ?
+                new SegmentInternedSubscriptionTrie<>(statsManager) : new ConcurrentMapSubscriptionTrie<>(statsManager);
+
+        Random r = new Random(42);
+        List<String> firstLevel = randomSegments(r, FIRST_LEVEL_SEGMENTS);
+        List<String> secondLevel = randomSegments(r, SECOND_LEVEL_SEGMENTS);
+        List<String> topicFilters = new ArrayList<>(NUMBER_OF_TOPIC_FILTERS);
+        for (int i = 0; i < NUMBER_OF_TOPIC_FILTERS; i++) {
+            int levels = r.nextInt(MAX_LEVELS) + 2;
+            StringBuilder sb = new StringBuilder();
+            sb.append(firstLevel.get(r.nextInt(firstLevel.size())));
+            sb.append('/').append(secondLevel.get(r.nextInt(secondLevel.size())));
+            for (int j = 2; j < levels; j++) {
+                sb.append('/');
+                int dice = r.nextInt(100);
+                if (j == levels - 1 && dice < 5) {
+                    sb.append('#');
+                } else if (dice < 10) {
+                    sb.append('+');
+                } else {
+                    sb.append(UUID.randomUUID().toString(), 0, 8);
+                }
+            }
+            topicFilters.add(sb.toString());
+        }
+        for (int i = 0; i < NUMBER_OF_SUBSCRIBERS; i++) {
+            subscriptionTrie.put(topicFilters.get(r.nextInt(topicFilters.size())), "client-" + i);
+        }
+        topics = topicFilters.stream().map(s -> s.replaceAll("[+#]", "test")).toArray(String[]::new);
+    }
+
+    @Benchmark
+    public void getList(Blackhole bh) {
+        bh.consume(subscriptionTrie.get(nextTopic()));
+    }
+
+    @Benchmark
+    public void getWithSink(Blackhole bh) {
+        subscriptionTrie.get(nextTopic(), (value, topicFilter) -> bh.consume(value));
+    }
+
+    @Benchmark
+    public void getEntries(Blackhole bh) {
+        subscriptionTrie.getEntries(nextTopic(), bh::consume);
+    }
+
+    private String nextTopic() {
+        String topic = topics[topicIdx];
+        topicIdx = topicIdx + 1 == topics.length ? 0 : topicIdx + 1;
+        return topic;
+    }
+
+    private static List<String> randomSegments(Random r, int count) {
+        List<String> segments = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            segments.add(Long.toHexString(r.nextLong()));
+        }
+        return segments;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(SubscriptionTrieBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -54,7 +54,7 @@ public class SharedSubscriptionCacheServiceImplTest {
     @Before
     public void setUp() {
         clientSessionCache = mock(ClientSessionCache.class);
-        sharedSubscriptionCache = spy(new SharedSubscriptionCacheServiceImpl(clientSessionCache));
+        sharedSubscriptionCache = spy(new SharedSubscriptionCacheServiceImpl(clientSessionCache, mock(SharedSubscriptionGroupRegistry.class)));
 
         clientSessionInfo1 = mock(ClientSessionInfo.class);
         clientSessionInfo2 = mock(ClientSessionInfo.class);
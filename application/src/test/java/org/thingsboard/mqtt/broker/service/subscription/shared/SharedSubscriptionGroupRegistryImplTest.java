@@ -0,0 +1,164 @@
+/**
+ * Copyright © 2016-2024 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.mqtt.broker.service.subscription.shared;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.thingsboard.mqtt.broker.common.data.ClientSessionInfo;
+import org.thingsboard.mqtt.broker.common.data.ClientType;
+import org.thingsboard.mqtt.broker.common.data.subscription.SubscriptionOptions;
+import org.thingsboard.mqtt.broker.service.subscription.Subscription;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class SharedSubscriptionGroupRegistryImplTest {
+
+    private static final TopicSharedSubscription KEY = new TopicSharedSubscription("test/+", "g1");
+
+    SharedSubscriptionGroupRegistryImpl registry;
+
+    @Before
+    public void setUp() {
+        registry = new SharedSubscriptionGroupRegistryImpl();
+        ReflectionTestUtils.setField(registry, "registryEnabled", true);
+        ReflectionTestUtils.setField(registry, "processingType", SharedSubscriptionProcessingType.ROUND_ROBIN);
+        registry.init();
+    }
+
+    @Test
+    public void givenRegistryDisabled_whenAddMember_thenNothingStored() {
+        registry = new SharedSubscriptionGroupRegistryImpl();
+        ReflectionTestUtils.setField(registry, "processingType", SharedSubscriptionProcessingType.ROUND_ROBIN);
+        registry.init();
+
+        registry.addMember(KEY, subscription("c1", ClientType.DEVICE, true));
+
+        assertFalse(registry.isEnabled());
+        assertNull(registry.getGroup(KEY));
+    }
+
+    @Test
+    public void givenNotRoundRobinProcessingType_whenInit_thenRegistryEnabled() {
+        registry = new SharedSubscriptionGroupRegistryImpl();
+        ReflectionTestUtils.setField(registry, "processingType", SharedSubscriptionProcessingType.CONSISTENT_HASHING);
+        registry.init();
+
+        assertTrue(registry.isEnabled());
+    }
+
+    @Test
+    public void givenMembers_whenSessionsChange_thenConnectedMembersUpdated() {
+        registry.addMember(KEY, subscription("c2", ClientType.DEVICE, true));
+        registry.addMember(KEY, subscription("c1", ClientType.DEVICE, true));
+        registry.addMember(KEY, subscription("app", ClientType.APPLICATION, true));
+
+        SharedSubscriptionGroup group = registry.getGroup(KEY);
+        assertEquals(2, group.getConnectedDeviceMembers().length);
+        assertEquals("c1", group.getConnectedDeviceMembers()[0].getClientId());
+        assertEquals("app", group.getAnyApplicationMember().getClientId());
+
+        registry.onClientSessionChanged("c1", sessionInfo("c1", ClientType.DEVICE, false));
+        assertEquals(1, group.getConnectedDeviceMembers().length);
+        assertEquals("c2", group.getConnectedDeviceMembers()[0].getClientId());
+        assertTrue(group.hasDeviceMembers());
+
+        registry.onClientSessionChanged("c2", null);
+        assertEquals(0, group.getConnectedDeviceMembers().length);
+        assertTrue(group.hasDeviceMembers());
+
+        registry.onClientSessionChanged("c2", sessionInfo("c2", ClientType.DEVICE, true));
+        assertEquals(1, group.getConnectedDeviceMembers().length);
+
+        registry.onClientSessionChanged("app", null);
+        assertNull(group.getAnyApplicationMember());
+    }
+
+    @Test
+    public void givenMembers_whenAllRemoved_thenGroupRemoved() {
+        registry.addMember(KEY, subscription("c1", ClientType.DEVICE, true));
+        registry.addMember(KEY, subscription("c2", ClientType.DEVICE, false));
+
+        registry.removeMember(KEY, "c1");
+        SharedSubscriptionGroup group = registry.getGroup(KEY);
+        assertEquals(0, group.getConnectedDeviceMembers().length);
+        assertTrue(group.hasDeviceMembers());
+
+        registry.removeMember(KEY, "c2");
+        assertNull(registry.getGroup(KEY));
+
+        registry.onClientSessionChanged("c1", sessionInfo("c1", ClientType.DEVICE, true));
+        assertNull(registry.getGroup(KEY));
+    }
+
+    @Test
+    public void givenConnectedMembers_whenRoundRobin_thenMembersSelectedInTurn() {
+        registry.addMember(KEY, subscription("c1", ClientType.DEVICE, true));
+        registry.addMember(KEY, subscription("c2", ClientType.DEVICE, true));
+        registry.addMember(KEY, subscription("c3", ClientType.DEVICE, false));
+        SharedSubscriptionGroupStrategy strategy = new RoundRobinGroupStrategy();
+        SharedSubscriptionGroup group = registry.getGroup(KEY);
+
+        assertEquals("c1", strategy.select(group, "pub").getClientId());
+        assertEquals("c2", strategy.select(group, "pub").getClientId());
+        assertEquals("c1", strategy.select(group, "pub").getClientId());
+    }
+
+    @Test
+    public void givenConnectedMembers_whenConsistentHashing_thenSamePublisherGoesToSameMember() {
+        for (int i = 0; i < 10; i++) {
+            registry.addMember(KEY, subscription("c" + i, ClientType.DEVICE, true));
+        }
+        SharedSubscriptionGroupStrategy strategy = new ConsistentHashingGroupStrategy();
+        SharedSubscriptionGroup group = registry.getGroup(KEY);
+
+        int moved = 0;
+        String[] selected = new String[100];
+        for (int i = 0; i < selected.length; i++) {
+            selected[i] = strategy.select(group, "pub" + i).getClientId();
+            assertEquals(selected[i], strategy.select(group, "pub" + i).getClientId());
+        }
+        registry.onClientSessionChanged("c0", sessionInfo("c0", ClientType.DEVICE, false));
+        for (int i = 0; i < selected.length; i++) {
+            String clientId = strategy.select(group, "pub" + i).getClientId();
+            if (!clientId.equals(selected[i])) {
+                assertEquals("c0", selected[i]);
+                moved++;
+            }
+        }
+        assertTrue(moved < selected.length / 2);
+    }
+
+    @Test
+    public void givenNoConnectedMembers_whenSelect_thenNull() {
+        registry.addMember(KEY, subscription("c1", ClientType.DEVICE, false));
+        SharedSubscriptionGroup group = registry.getGroup(KEY);
+
+        assertNull(new RoundRobinGroupStrategy().select(group, "pub"));
+        assertNull(new ConsistentHashingGroupStrategy().select(group, "pub"));
+    }
+
+    private Subscription subscription(String clientId, ClientType type, boolean connected) {
+        return new Subscription(KEY.getTopicFilter(), 1, sessionInfo(clientId, type, connected), KEY.getShareName(), SubscriptionOptions.newInstance());
+    }
+
+    private ClientSessionInfo sessionInfo(String clientId, ClientType type, boolean connected) {
+        return ClientSessionInfo.builder().clientId(clientId).type(type).connected(connected).build();
+    }
+}
@@ -33,6 +33,10 @@ public enum MsgType {
 
     INCOMING_PUBLISH_MSG,
 
+    PERSISTED_MSGS_PAGE_LOADED_EVENT_MSG,
+
+    RESUME_PERSISTED_MSGS_REPLAY_COMMAND_MSG,
+
     STOP_DEVICE_ACTOR_COMMAND_MSG,
 
     // Client Session MQTT Msg Types
@@ -51,6 +55,7 @@ public enum MsgType {
 
     // Client Session Inter-Node Management Msg Types
     SESSION_INIT_MSG,
+    SESSION_AUTH_RESULT_MSG,
     DISCONNECT_MSG,
     CONNECTION_ACCEPTED_MSG,
 
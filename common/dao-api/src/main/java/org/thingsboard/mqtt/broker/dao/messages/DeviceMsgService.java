@@ -28,6 +28,13 @@ public interface DeviceMsgService {
 
     List<DevicePublishMsg> findPersistedMessages(String clientId, long fromSerialNumber, long toSerialNumber);
 
+    /**
+     * Finds the next page of the messages returned by {@link #findPersistedMessages(String)}.
+     *
+     * @return up to pageSize messages with serial number not less than fromSerialNumber, in the serial number order
+     */
+    List<DevicePublishMsg> findPersistedMessagesPage(String clientId, long fromSerialNumber, int pageSize);
+
     void removePersistedMessages(String clientId);
 
     ListenableFuture<Void> tryRemovePersistedMessage(String clientId, int packetId);
@@ -22,6 +22,13 @@ public interface TbQueueControlledOffsetConsumer<T extends TbQueueMsg> extends T
 
     void commit(int partition, long offset);
 
+    void commitSync(int partition, long offset);
+
+    /**
+     * Subscribes to the topic as {@link #subscribe()} does and notifies the listener about the partitions taken away by a rebalance.
+     */
+    void subscribe(TbQueuePartitionsRevokedListener partitionsRevokedListener);
+
     void assignPartition(int partition);
 
     void assignAllPartitions();
@@ -30,8 +37,15 @@ public interface TbQueueControlledOffsetConsumer<T extends TbQueueMsg> extends T
 
     void seekToTheBeginning();
 
+    void seek(int partition, long offset);
+
     long getEndOffset(String topic, int partition);
 
+    /**
+     * @return the offset of the next record to be polled from the assigned partition, it also moves past the offsets that hold no records
+     */
+    long getPosition(String topic, int partition);
+
     Optional<Long> getCommittedOffset(String topic, int partition);
 
     Map<String, String> getTopicConfigs();
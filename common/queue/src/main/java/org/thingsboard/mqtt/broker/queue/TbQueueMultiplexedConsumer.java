@@ -0,0 +1,64 @@
+/**
+ * Copyright © 2016-2024 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.mqtt.broker.queue;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Reads many single-partition topics through one underlying consumer. Every topic is bound to its own consumer group
+ * whose committed offset is used as the starting position on assignment, the consumer itself never joins the groups.
+ * <p>
+ * Not thread-safe, except for {@link #wakeup()}
+ */
+public interface TbQueueMultiplexedConsumer<T extends TbQueueMsg> {
+
+    /**
+     * Starts reading the topic from the committed offset of the consumer group.
+     * If the group has no committed offset yet, the end offset is committed and used as the starting position.
+     * The starting position may be resolved in the background, the topic is then picked up by one of the next polls.
+     *
+     * @return the future that is completed by the polling thread once the topic is read, or failed if its starting position could not be resolved
+     */
+    CompletableFuture<Void> assign(String topic, String consumerGroupId);
+
+    void unassign(String topic);
+
+    void pause(String topic);
+
+    void resume(String topic);
+
+    /**
+     * @return the polled messages grouped by topic
+     */
+    Map<String, List<T>> poll(long durationInMillis);
+
+    /**
+     * Commits the offset of the next message to read for the consumer group of the topic.
+     */
+    void commit(String topic, long offset);
+
+    /**
+     * Makes the ongoing or the next poll return immediately. Can be called from any thread.
+     */
+    void wakeup();
+
+    int getAssignedTopicsCount();
+
+    void close();
+
+}
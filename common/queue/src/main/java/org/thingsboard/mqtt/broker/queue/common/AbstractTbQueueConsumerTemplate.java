@@ -19,6 +19,7 @@ import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
 import org.thingsboard.mqtt.broker.queue.TbQueueControlledOffsetConsumer;
 import org.thingsboard.mqtt.broker.queue.TbQueueMsg;
+import org.thingsboard.mqtt.broker.queue.TbQueuePartitionsRevokedListener;
 import org.thingsboard.mqtt.broker.queue.constants.QueueConstants;
 
 import java.io.IOException;
@@ -34,6 +35,7 @@ import java.util.concurrent.locks.ReentrantLock;
 public abstract class AbstractTbQueueConsumerTemplate<R, T extends TbQueueMsg> implements TbQueueControlledOffsetConsumer<T> {
 
     private volatile boolean subscribed;
+    protected volatile TbQueuePartitionsRevokedListener partitionsRevokedListener;
     protected volatile boolean stopped = false;
     protected final Lock consumerLock = new ReentrantLock();
 
@@ -46,8 +48,14 @@ public abstract class AbstractTbQueueConsumerTemplate<R, T extends TbQueueMsg> i
 
     @Override
     public void subscribe() {
+        subscribe(null);
+    }
+
+    @Override
+    public void subscribe(TbQueuePartitionsRevokedListener partitionsRevokedListener) {
         consumerLock.lock();
         try {
+            this.partitionsRevokedListener = partitionsRevokedListener;
             doSubscribe(topic);
             subscribed = true;
         } finally {
@@ -180,6 +188,16 @@ public abstract class AbstractTbQueueConsumerTemplate<R, T extends TbQueueMsg> i
         }
     }
 
+    @Override
+    public void commitSync(int partition, long offset) {
+        consumerLock.lock();
+        try {
+            doCommitSync(topic, partition, offset);
+        } finally {
+            consumerLock.unlock();
+        }
+    }
+
     @Override
     public void seekToTheBeginning() {
         consumerLock.lock();
@@ -190,6 +208,16 @@ public abstract class AbstractTbQueueConsumerTemplate<R, T extends TbQueueMsg> i
         }
     }
 
+    @Override
+    public void seek(int partition, long offset) {
+        consumerLock.lock();
+        try {
+            doSeek(topic, partition, offset);
+        } finally {
+            consumerLock.unlock();
+        }
+    }
+
     @Override
     public long getEndOffset(String topic, int partition) {
         consumerLock.lock();
@@ -200,6 +228,16 @@ public abstract class AbstractTbQueueConsumerTemplate<R, T extends TbQueueMsg> i
         }
     }
 
+    @Override
+    public long getPosition(String topic, int partition) {
+        consumerLock.lock();
+        try {
+            return doGetPosition(topic, partition);
+        } finally {
+            consumerLock.unlock();
+        }
+    }
+
     @Override
     public Optional<Long> getCommittedOffset(String topic, int partition) {
         consumerLock.lock();
@@ -224,12 +262,18 @@ public abstract class AbstractTbQueueConsumerTemplate<R, T extends TbQueueMsg> i
 
     abstract protected void doCommit(String topic, int partition, long offset);
 
+    abstract protected void doCommitSync(String topic, int partition, long offset);
+
     abstract protected void doUnsubscribeAndClose();
 
     abstract protected void doSeekToTheBeginning();
 
+    abstract protected void doSeek(String topic, int partition, long offset);
+
     abstract protected long doGetEndOffset(String topic, int partition);
 
+    abstract protected long doGetPosition(String topic, int partition);
+
     abstract protected Optional<Long> doGetCommittedOffset(String topic, int partition);
 
 }
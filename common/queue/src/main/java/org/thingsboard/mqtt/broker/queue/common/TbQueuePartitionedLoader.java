@@ -0,0 +1,104 @@
+/**
+ * Copyright © 2016-2024 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.mqtt.broker.queue.common;
+
+import lombok.Builder;
+import lombok.extern.slf4j.Slf4j;
+import org.thingsboard.mqtt.broker.common.util.ThingsBoardExecutors;
+import org.thingsboard.mqtt.broker.queue.TbQueueAdmin;
+import org.thingsboard.mqtt.broker.queue.TbQueueControlledOffsetConsumer;
+import org.thingsboard.mqtt.broker.queue.TbQueueMsg;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+import java.util.function.IntFunction;
+
+/**
+ * Reads the whole topic with one consumer per partition, each running on its own thread, and leaves the main consumer
+ * positioned right after the loaded records.
+ * Every partition is read up to its end offset taken before the first poll, so no sentinel record is needed to detect the end.
+ * The progress is tracked by the consumer position rather than by the offsets of the read records,
+ * since the last offsets may hold no records, e.g. transaction markers or compacted ones.
+ */
+@Slf4j
+@Builder
+public class TbQueuePartitionedLoader<T extends TbQueueMsg> {
+
+    private final TbQueueControlledOffsetConsumer<T> consumer;
+    private final IntFunction<TbQueueControlledOffsetConsumer<T>> partitionConsumerFactory;
+    private final TbQueueAdmin admin;
+    private final long pollDuration;
+    private final BooleanSupplier stopped;
+    private final String threadNamePrefix;
+
+    /**
+     * @param startOffsets  partition offsets to start reading from, the partitions that are absent are read from the beginning
+     * @param recordHandler invoked concurrently by the partition readers, the records of one partition are passed in order
+     * @return the offsets of the records following the loaded ones per partition
+     */
+    public Map<Integer, Long> load(Map<Integer, Long> startOffsets, Consumer<T> recordHandler) {
+        String topic = consumer.getTopic();
+        consumer.assignAllPartitions();
+        int partitionsCount = admin.getNumberOfPartitions(topic);
+        log.debug("[{}] Loading {} partitions in parallel", topic, partitionsCount);
+
+        ExecutorService executor = ThingsBoardExecutors.initExecutorService(partitionsCount, threadNamePrefix);
+        try {
+            List<CompletableFuture<Long>> futures = new ArrayList<>(partitionsCount);
+            for (int i = 0; i < partitionsCount; i++) {
+                int partition = i;
+                futures.add(CompletableFuture.supplyAsync(() -> loadPartition(topic, partition, startOffsets.get(partition), recordHandler), executor));
+            }
+            Map<Integer, Long> offsets = new HashMap<>(partitionsCount);
+            for (int i = 0; i < partitionsCount; i++) {
+                offsets.put(i, futures.get(i).join());
+            }
+            offsets.forEach(consumer::seek);
+            return offsets;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private long loadPartition(String topic, int partition, Long startOffset, Consumer<T> recordHandler) {
+        TbQueueControlledOffsetConsumer<T> partitionConsumer = partitionConsumerFactory.apply(partition);
+        try {
+            partitionConsumer.assignPartition(partition);
+            if (startOffset != null) {
+                partitionConsumer.seek(partition, startOffset);
+            }
+            long endOffset = partitionConsumer.getEndOffset(topic, partition);
+            long nextOffset = partitionConsumer.getPosition(topic, partition);
+            long messageCount = 0L;
+            while (nextOffset < endOffset && !stopped.getAsBoolean()) {
+                List<T> messages = partitionConsumer.poll(pollDuration);
+                messages.forEach(recordHandler);
+                messageCount += messages.size();
+                nextOffset = partitionConsumer.getPosition(topic, partition);
+            }
+            log.debug("[{}][{}] Loaded {} messages", topic, partition, messageCount);
+            return nextOffset;
+        } finally {
+            partitionConsumer.unsubscribeAndClose();
+        }
+    }
+}
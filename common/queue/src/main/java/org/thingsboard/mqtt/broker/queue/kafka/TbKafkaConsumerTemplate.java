@@ -19,6 +19,7 @@ import lombok.Builder;
 import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerRebalanceListener;
 import org.apache.kafka.clients.consumer.ConsumerRecord;
 import org.apache.kafka.clients.consumer.ConsumerRecords;
 import org.apache.kafka.clients.consumer.KafkaConsumer;
@@ -28,6 +29,7 @@ import org.apache.kafka.common.serialization.ByteArrayDeserializer;
 import org.apache.kafka.common.serialization.StringDeserializer;
 import org.thingsboard.mqtt.broker.queue.TbQueueAdmin;
 import org.thingsboard.mqtt.broker.queue.TbQueueMsg;
+import org.thingsboard.mqtt.broker.queue.TbQueuePartitionsRevokedListener;
 import org.thingsboard.mqtt.broker.queue.common.AbstractTbQueueConsumerTemplate;
 import org.thingsboard.mqtt.broker.queue.kafka.stats.TbKafkaConsumerStatsService;
 import org.thingsboard.mqtt.broker.queue.stats.ConsumerStatsManager;
@@ -36,12 +38,14 @@ import org.thingsboard.mqtt.broker.queue.stats.Timer;
 import java.io.IOException;
 import java.time.Duration;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Properties;
 import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 
 @Slf4j
 public class TbKafkaConsumerTemplate<T extends TbQueueMsg> extends AbstractTbQueueConsumerTemplate<ConsumerRecord<String, byte[]>, T> {
@@ -107,7 +111,23 @@ public class TbKafkaConsumerTemplate<T extends TbQueueMsg> extends AbstractTbQue
         if (createTopicIfNotExists) {
             admin.createTopicIfNotExists(topic, topicConfigs);
         }
-        consumer.subscribe(Collections.singletonList(topic));
+        TbQueuePartitionsRevokedListener listener = partitionsRevokedListener;
+        if (listener == null) {
+            consumer.subscribe(Collections.singletonList(topic));
+            return;
+        }
+        consumer.subscribe(Collections.singletonList(topic), new ConsumerRebalanceListener() {
+            @Override
+            public void onPartitionsRevoked(Collection<TopicPartition> partitions) {
+                if (!partitions.isEmpty()) {
+                    listener.onPartitionsRevoked(partitions.stream().map(TopicPartition::partition).collect(Collectors.toSet()));
+                }
+            }
+
+            @Override
+            public void onPartitionsAssigned(Collection<TopicPartition> partitions) {
+            }
+        });
     }
 
     @Override
@@ -171,6 +191,13 @@ public class TbKafkaConsumerTemplate<T extends TbQueueMsg> extends AbstractTbQue
         });
     }
 
+    @Override
+    protected void doCommitSync(String topic, int partition, long offset) {
+        long startTime = System.nanoTime();
+        consumer.commitSync(Map.of(newTopicPartition(topic, partition), new OffsetAndMetadata(offset)));
+        commitTimer.logTime(System.nanoTime() - startTime, TimeUnit.NANOSECONDS);
+    }
+
     @Override
     protected void doUnsubscribeAndClose() {
         if (consumer != null) {
@@ -188,6 +215,11 @@ public class TbKafkaConsumerTemplate<T extends TbQueueMsg> extends AbstractTbQue
         return consumer.endOffsets(Collections.singletonList(topicPartition)).getOrDefault(topicPartition, 0L);
     }
 
+    @Override
+    protected long doGetPosition(String topic, int partition) {
+        return consumer.position(newTopicPartition(topic, partition));
+    }
+
     @Override
     public Optional<Long> doGetCommittedOffset(String topic, int partition) {
         TopicPartition topicPartition = newTopicPartition(topic, partition);
@@ -210,4 +242,9 @@ public class TbKafkaConsumerTemplate<T extends TbQueueMsg> extends AbstractTbQue
     public void doSeekToTheBeginning() {
         consumer.seekToBeginning(Collections.emptyList());
     }
+
+    @Override
+    protected void doSeek(String topic, int partition, long offset) {
+        consumer.seek(newTopicPartition(topic, partition), offset);
+    }
 }
@@ -0,0 +1,339 @@
+/**
+ * Copyright © 2016-2024 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.mqtt.broker.queue.kafka;
+
+import lombok.Builder;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.admin.AdminClient;
+import org.apache.kafka.clients.admin.ListOffsetsResult;
+import org.apache.kafka.clients.admin.OffsetSpec;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.common.KafkaFuture;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.errors.WakeupException;
+import org.apache.kafka.common.serialization.ByteArrayDeserializer;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.thingsboard.mqtt.broker.queue.TbQueueMsg;
+import org.thingsboard.mqtt.broker.queue.TbQueueMultiplexedConsumer;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Reads the partition 0 of many topics with a single groupless Kafka consumer.
+ * The committed offsets of the per-topic consumer groups are read and written with the admin client,
+ * so the groups stay empty and the offsets are compatible with the regular {@link TbKafkaConsumerTemplate}.
+ * The starting offsets are resolved by the admin client in the background and handed over to the polling thread,
+ * which applies all the ready assignment changes with a single reassignment at the start of the next poll.
+ * <p>
+ * Not thread-safe, except for {@link #wakeup()}
+ */
+@Slf4j
+public class TbKafkaMultiplexedConsumerTemplate<T extends TbQueueMsg> implements TbQueueMultiplexedConsumer<T> {
+
+    private static final long DEFAULT_CLOSE_TIMEOUT = 3000;
+    private static final long DEFAULT_REQUEST_TIMEOUT = 10000;
+    private static final int PARTITION = 0;
+    private static final TopicAssignment WAKEUP = new TopicAssignment(null, null);
+
+    private final KafkaConsumer<String, byte[]> consumer;
+    private final AdminClient adminClient;
+    private final TbKafkaDecoder<T> decoder;
+    private final long closeTimeoutMs;
+    private final long requestTimeoutMs;
+
+    private final Map<String, String> consumerGroups = new HashMap<>();
+    private final Map<String, KafkaFuture<Void>> pendingCommits = new HashMap<>();
+    private final Map<String, TopicAssignment> pendingAssignments = new HashMap<>();
+    private final BlockingQueue<TopicAssignment> resolvedAssignments = new LinkedBlockingQueue<>();
+    private final List<TopicAssignment> readyAssignments = new ArrayList<>();
+    private final Set<String> assignedTopics = new HashSet<>();
+    private final Set<String> pausedTopics = new HashSet<>();
+    private boolean assignmentChanged;
+
+    @Builder
+    private TbKafkaMultiplexedConsumerTemplate(Properties properties, Properties adminProperties,
+                                               TbKafkaDecoder<T> decoder, String clientId,
+                                               long closeTimeoutMs, long requestTimeoutMs) {
+        properties.put(ConsumerConfig.CLIENT_ID_CONFIG, clientId);
+        properties.remove(ConsumerConfig.GROUP_ID_CONFIG);
+        properties.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, false);
+        properties.put(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class);
+        properties.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, ByteArrayDeserializer.class);
+
+        this.closeTimeoutMs = closeTimeoutMs > 0 ? closeTimeoutMs : DEFAULT_CLOSE_TIMEOUT;
+        this.requestTimeoutMs = requestTimeoutMs > 0 ? requestTimeoutMs : DEFAULT_REQUEST_TIMEOUT;
+
+        Thread.currentThread().setContextClassLoader(this.getClass().getClassLoader());
+        this.consumer = new KafkaConsumer<>(properties);
+        this.adminClient = AdminClient.create(adminProperties);
+        this.decoder = decoder;
+    }
+
+    @Override
+    public CompletableFuture<Void> assign(String topic, String consumerGroupId) {
+        unassign(topic);
+        TopicAssignment assignment = new TopicAssignment(topic, consumerGroupId);
+        consumerGroups.put(topic, consumerGroupId);
+        pendingAssignments.put(topic, assignment);
+        resolvePosition(assignment, pendingCommits.remove(topic)).whenComplete((position, throwable) -> {
+            assignment.position = position != null ? position : 0L;
+            assignment.failure = throwable;
+            resolvedAssignments.add(assignment);
+            consumer.wakeup();
+        });
+        return assignment.future;
+    }
+
+    @Override
+    public void unassign(String topic) {
+        if (consumerGroups.remove(topic) == null) {
+            return;
+        }
+        pausedTopics.remove(topic);
+        TopicAssignment pendingAssignment = pendingAssignments.remove(topic);
+        if (pendingAssignment != null) {
+            pendingAssignment.future.cancel(false);
+        }
+        if (assignedTopics.remove(topic)) {
+            assignmentChanged = true;
+        }
+        pendingCommits.values().removeIf(KafkaFuture::isDone);
+    }
+
+    @Override
+    public void pause(String topic) {
+        if (consumerGroups.containsKey(topic) && pausedTopics.add(topic) && assignedTopics.contains(topic)) {
+            consumer.pause(Collections.singleton(newTopicPartition(topic)));
+        }
+    }
+
+    @Override
+    public void resume(String topic) {
+        if (pausedTopics.remove(topic) && assignedTopics.contains(topic)) {
+            consumer.resume(Collections.singleton(newTopicPartition(topic)));
+        }
+    }
+
+    @Override
+    public Map<String, List<T>> poll(long durationInMillis) {
+        applyAssignmentChanges();
+        if (assignedTopics.isEmpty()) {
+            if (!pendingAssignments.isEmpty()) {
+                awaitResolvedAssignment(durationInMillis);
+            }
+            return Collections.emptyMap();
+        }
+        ConsumerRecords<String, byte[]> records;
+        try {
+            records = consumer.poll(Duration.ofMillis(durationInMillis));
+        } catch (WakeupException e) {
+            return Collections.emptyMap();
+        }
+        if (records.isEmpty()) {
+            return Collections.emptyMap();
+        }
+        Map<String, List<T>> result = new HashMap<>();
+        for (TopicPartition topicPartition : records.partitions()) {
+            List<ConsumerRecord<String, byte[]>> partitionRecords = records.records(topicPartition);
+            List<T> messages = new ArrayList<>(partitionRecords.size());
+            for (ConsumerRecord<String, byte[]> record : partitionRecords) {
+                messages.add(decode(record));
+            }
+            result.put(topicPartition.topic(), messages);
+        }
+        return result;
+    }
+
+    @Override
+    public void commit(String topic, long offset) {
+        String consumerGroupId = consumerGroups.get(topic);
+        if (consumerGroupId == null) {
+            return;
+        }
+        KafkaFuture<Void> future = adminClient.alterConsumerGroupOffsets(consumerGroupId,
+                Map.of(newTopicPartition(topic), new OffsetAndMetadata(offset))).all();
+        future.whenComplete((unused, throwable) -> {
+            if (throwable != null) {
+                log.warn("[{}][{}] Failed to commit offset {}.", topic, consumerGroupId, offset);
+                if (log.isTraceEnabled()) {
+                    log.trace("Detailed error stack trace:", throwable);
+                }
+            }
+        });
+        pendingCommits.put(topic, future);
+    }
+
+    @Override
+    public void wakeup() {
+        consumer.wakeup();
+        resolvedAssignments.add(WAKEUP);
+    }
+
+    @Override
+    public int getAssignedTopicsCount() {
+        return consumerGroups.size();
+    }
+
+    @Override
+    public void close() {
+        pendingAssignments.values().forEach(assignment -> assignment.future.cancel(false));
+        pendingAssignments.clear();
+        consumerGroups.clear();
+        pendingCommits.clear();
+        assignedTopics.clear();
+        pausedTopics.clear();
+        consumer.close(Duration.ofMillis(closeTimeoutMs));
+        adminClient.close(Duration.ofMillis(closeTimeoutMs));
+    }
+
+    /**
+     * Applies the assignments whose starting offsets got resolved and the unassignments done since the previous poll
+     * with a single reassignment of the consumer.
+     */
+    private void applyAssignmentChanges() {
+        TopicAssignment assignment;
+        while ((assignment = resolvedAssignments.poll()) != null) {
+            if (assignment == WAKEUP || pendingAssignments.get(assignment.topic) != assignment) {
+                continue;
+            }
+            pendingAssignments.remove(assignment.topic);
+            if (assignment.failure != null) {
+                consumerGroups.remove(assignment.topic);
+                pausedTopics.remove(assignment.topic);
+                log.warn("[{}][{}] Failed to resolve the starting offset of the topic.", assignment.topic, assignment.consumerGroupId);
+                assignment.future.completeExceptionally(assignment.failure);
+                continue;
+            }
+            assignedTopics.add(assignment.topic);
+            readyAssignments.add(assignment);
+            assignmentChanged = true;
+        }
+        if (!assignmentChanged) {
+            return;
+        }
+        assignmentChanged = false;
+        Set<TopicPartition> topicPartitions = assignedTopics.stream()
+                .map(this::newTopicPartition)
+                .collect(Collectors.toSet());
+        consumer.assign(topicPartitions);
+        for (TopicAssignment readyAssignment : readyAssignments) {
+            TopicPartition topicPartition = newTopicPartition(readyAssignment.topic);
+            consumer.seek(topicPartition, readyAssignment.position);
+            // the partition keeps its paused state if it was unassigned and assigned again between the polls
+            if (pausedTopics.contains(readyAssignment.topic)) {
+                consumer.pause(Collections.singleton(topicPartition));
+            } else {
+                consumer.resume(Collections.singleton(topicPartition));
+            }
+            if (log.isDebugEnabled()) {
+                log.debug("[{}][{}] Assigned topic starting from offset {}", readyAssignment.topic, readyAssignment.consumerGroupId, readyAssignment.position);
+            }
+        }
+        readyAssignments.forEach(readyAssignment -> readyAssignment.future.complete(null));
+        readyAssignments.clear();
+    }
+
+    private void awaitResolvedAssignment(long durationInMillis) {
+        try {
+            TopicAssignment assignment = resolvedAssignments.poll(durationInMillis, TimeUnit.MILLISECONDS);
+            if (assignment != null && assignment != WAKEUP) {
+                resolvedAssignments.add(assignment);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * The offset committed before the client reconnected must be visible when the topic is assigned again,
+     * so the committed offset is read only after the pending commit of the topic is done.
+     */
+    private CompletableFuture<Long> resolvePosition(TopicAssignment assignment, KafkaFuture<Void> pendingCommit) {
+        TopicPartition topicPartition = newTopicPartition(assignment.topic);
+        CompletableFuture<Void> commitFuture = pendingCommit == null ? CompletableFuture.completedFuture(null) :
+                toCompletableFuture(pendingCommit).exceptionally(throwable -> {
+                    log.warn("[{}] Previous offset commit did not succeed.", assignment.topic);
+                    return null;
+                });
+        return commitFuture
+                .thenCompose(unused -> toCompletableFuture(adminClient.listConsumerGroupOffsets(assignment.consumerGroupId).partitionsToOffsetAndMetadata()))
+                .thenCompose(offsets -> {
+                    OffsetAndMetadata committedOffset = offsets.get(topicPartition);
+                    if (committedOffset != null) {
+                        return CompletableFuture.completedFuture(committedOffset.offset());
+                    }
+                    return toCompletableFuture(adminClient.listOffsets(Map.of(topicPartition, OffsetSpec.latest())).partitionResult(topicPartition))
+                            .thenApply(ListOffsetsResult.ListOffsetsResultInfo::offset)
+                            .thenCompose(endOffset -> toCompletableFuture(adminClient.alterConsumerGroupOffsets(assignment.consumerGroupId,
+                                    Map.of(topicPartition, new OffsetAndMetadata(endOffset))).all())
+                                    .thenApply(unused -> endOffset));
+                })
+                .orTimeout(requestTimeoutMs, TimeUnit.MILLISECONDS);
+    }
+
+    private static <V> CompletableFuture<V> toCompletableFuture(KafkaFuture<V> kafkaFuture) {
+        CompletableFuture<V> future = new CompletableFuture<>();
+        kafkaFuture.whenComplete((value, throwable) -> {
+            if (throwable != null) {
+                future.completeExceptionally(throwable);
+            } else {
+                future.complete(value);
+            }
+        });
+        return future;
+    }
+
+    private T decode(ConsumerRecord<String, byte[]> record) {
+        try {
+            return decoder.decode(new KafkaTbQueueMsg(record));
+        } catch (IOException e) {
+            log.error("Failed decode record: [{}]", record);
+            throw new RuntimeException("Failed to decode record: ", e);
+        }
+    }
+
+    private TopicPartition newTopicPartition(String topic) {
+        return new TopicPartition(topic, PARTITION);
+    }
+
+    @RequiredArgsConstructor
+    private static class TopicAssignment {
+        private final String topic;
+        private final String consumerGroupId;
+        private final CompletableFuture<Void> future = new CompletableFuture<>();
+        private long position;
+        private Throwable failure;
+    }
+}
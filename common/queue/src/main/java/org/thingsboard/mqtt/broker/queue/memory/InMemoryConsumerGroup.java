@@ -0,0 +1,109 @@
+/**
+ * Copyright © 2016-2024 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.mqtt.broker.queue.memory;
+
+import lombok.Getter;
+import org.apache.kafka.common.TopicPartition;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.ObjIntConsumer;
+
+/**
+ * Committed offsets, registered topics and members of a consumer group. Partitions of the subscribed topic are distributed
+ * among the members in the join order, every join or leave bumps the generation so the members pick up the new assignment.
+ * A registered topic keeps its records for the group until they are committed, even if the group has not committed any offset yet.
+ */
+class InMemoryConsumerGroup {
+
+    @Getter
+    private final String groupId;
+    private final Map<TopicPartition, Long> committedOffsets = new ConcurrentHashMap<>();
+    private final Set<String> topics = ConcurrentHashMap.newKeySet();
+    private final Set<String> members = new LinkedHashSet<>();
+    private final ObjIntConsumer<String> commitListener;
+
+    @Getter
+    private volatile int generation;
+
+    InMemoryConsumerGroup(String groupId, ObjIntConsumer<String> commitListener) {
+        this.groupId = groupId;
+        this.commitListener = commitListener;
+    }
+
+    void register(String topic) {
+        topics.add(topic);
+    }
+
+    boolean isRegistered(String topic) {
+        return topics.contains(topic);
+    }
+
+    synchronized void join(String memberId) {
+        if (members.add(memberId)) {
+            generation++;
+        }
+    }
+
+    synchronized void leave(String memberId) {
+        if (members.remove(memberId)) {
+            generation++;
+        }
+    }
+
+    synchronized int getMembersCount() {
+        return members.size();
+    }
+
+    synchronized List<Integer> getAssignment(String memberId, int partitionsCount) {
+        List<Integer> assignment = new ArrayList<>();
+        int memberIdx = 0;
+        for (String member : members) {
+            if (member.equals(memberId)) {
+                for (int partition = memberIdx; partition < partitionsCount; partition += members.size()) {
+                    assignment.add(partition);
+                }
+                break;
+            }
+            memberIdx++;
+        }
+        return assignment;
+    }
+
+    void commit(String topic, int partition, long offset) {
+        committedOffsets.put(new TopicPartition(topic, partition), offset);
+        commitListener.accept(topic, partition);
+    }
+
+    Optional<Long> getCommittedOffset(String topic, int partition) {
+        return Optional.ofNullable(committedOffsets.get(new TopicPartition(topic, partition)));
+    }
+
+    Map<TopicPartition, Long> getCommittedOffsets() {
+        return committedOffsets;
+    }
+
+    void removeTopic(String topic) {
+        topics.remove(topic);
+        committedOffsets.keySet().removeIf(topicPartition -> topicPartition.topic().equals(topic));
+    }
+
+}
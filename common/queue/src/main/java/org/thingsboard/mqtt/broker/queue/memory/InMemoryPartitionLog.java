@@ -0,0 +1,200 @@
+/**
+ * Copyright © 2016-2024 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.mqtt.broker.queue.memory;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.producer.BufferExhaustedException;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Ring buffer holding the records of a single topic partition.
+ * <p>
+ * Offsets grow monotonically, so they stay valid across evictions and compactions. When the buffer is full,
+ * a regular partition drops its oldest record only if every consumer group registered for the topic has committed it.
+ * Otherwise, the append waits up to the max block time for the groups to commit and then fails with {@link BufferExhaustedException}
+ * like a Kafka producer with a full buffer, so the records acknowledged to the producer are never dropped unprocessed.
+ * A compacted partition first removes the records superseded by a later record with the same key and grows if that did not free enough space.
+ */
+@Slf4j
+class InMemoryPartitionLog {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final String topic;
+    private final int partition;
+    private final int capacity;
+    private final long maxBlockMs;
+    private final boolean compacted;
+    private final LongSupplier lowestCommittedOffsetSupplier;
+
+    private InMemoryQueueRecord[] buffer;
+    private int head;
+    private int size;
+    private long nextOffset;
+    private long sizeInBytes;
+    private volatile int blockedProducers;
+
+    InMemoryPartitionLog(String topic, int partition, int capacity, long maxBlockMs, boolean compacted,
+                         LongSupplier lowestCommittedOffsetSupplier) {
+        this.topic = topic;
+        this.partition = partition;
+        this.capacity = capacity;
+        this.maxBlockMs = maxBlockMs;
+        this.compacted = compacted;
+        this.lowestCommittedOffsetSupplier = lowestCommittedOffsetSupplier;
+        this.buffer = new InMemoryQueueRecord[Math.min(INITIAL_CAPACITY, capacity)];
+    }
+
+    synchronized InMemoryQueueRecord append(String key, byte[] data, Map<String, byte[]> headers) {
+        if (size == buffer.length) {
+            makeRoom();
+        }
+        InMemoryQueueRecord record = new InMemoryQueueRecord(key, data, headers, partition, nextOffset++, System.currentTimeMillis());
+        buffer[index(size)] = record;
+        size++;
+        sizeInBytes += record.getSizeInBytes();
+        return record;
+    }
+
+    /**
+     * Adds to the result up to maxRecords records starting from the first one with the offset not less than the position.
+     *
+     * @return the number of added records
+     */
+    synchronized int read(long position, int maxRecords, List<InMemoryQueueRecord> result) {
+        int count = 0;
+        for (int i = search(position); i < size && count < maxRecords; i++) {
+            result.add(buffer[index(i)]);
+            count++;
+        }
+        return count;
+    }
+
+    synchronized long getStartOffset() {
+        return size == 0 ? nextOffset : buffer[head].getOffset();
+    }
+
+    synchronized long getEndOffset() {
+        return nextOffset;
+    }
+
+    synchronized long getSizeInBytes() {
+        return sizeInBytes;
+    }
+
+    /**
+     * Wakes up the producers waiting for the oldest record of the full partition to be committed.
+     */
+    void notifyCommitted() {
+        if (blockedProducers > 0) {
+            synchronized (this) {
+                notifyAll();
+            }
+        }
+    }
+
+    private void makeRoom() {
+        if (buffer.length < capacity) {
+            resize(Math.min(capacity, buffer.length * 2));
+        } else if (compacted) {
+            compact();
+            if (size > buffer.length / 2) {
+                log.debug("[{}][{}] Growing compacted partition beyond configured capacity, {} records left after compaction",
+                        topic, partition, size);
+                resize(buffer.length * 2);
+            }
+        } else {
+            awaitOldestRecordCommitted();
+            sizeInBytes -= buffer[head].getSizeInBytes();
+            buffer[head] = null;
+            head = index(1);
+            size--;
+        }
+    }
+
+    private void awaitOldestRecordCommitted() {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(maxBlockMs);
+        while (buffer[head].getOffset() >= lowestCommittedOffsetSupplier.getAsLong()) {
+            long remainingMs = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+            if (remainingMs <= 0) {
+                throw new BufferExhaustedException("Partition " + partition + " of in-memory topic " + topic + " is full ("
+                        + capacity + " records) and its oldest record was not committed by all consumer groups in " + maxBlockMs + " ms");
+            }
+            blockedProducers++;
+            try {
+                wait(remainingMs);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new BufferExhaustedException("Interrupted while waiting for free space in partition " + partition + " of in-memory topic " + topic);
+            } finally {
+                blockedProducers--;
+            }
+        }
+    }
+
+    private void compact() {
+        Set<String> latestKeys = new HashSet<>();
+        InMemoryQueueRecord[] compactedRecords = new InMemoryQueueRecord[buffer.length];
+        int newHead = buffer.length;
+        long newSizeInBytes = 0;
+        for (int i = size - 1; i >= 0; i--) {
+            InMemoryQueueRecord record = buffer[index(i)];
+            if (record.getKey() == null || latestKeys.add(record.getKey())) {
+                compactedRecords[--newHead] = record;
+                newSizeInBytes += record.getSizeInBytes();
+            }
+        }
+        this.buffer = compactedRecords;
+        this.size = buffer.length - newHead;
+        this.head = newHead % buffer.length;
+        this.sizeInBytes = newSizeInBytes;
+    }
+
+    private void resize(int newCapacity) {
+        InMemoryQueueRecord[] newBuffer = new InMemoryQueueRecord[newCapacity];
+        for (int i = 0; i < size; i++) {
+            newBuffer[i] = buffer[index(i)];
+        }
+        this.buffer = newBuffer;
+        this.head = 0;
+    }
+
+    private int search(long offset) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (buffer[index(mid)].getOffset() < offset) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private int index(int i) {
+        int idx = head + i;
+        return idx < buffer.length ? idx : idx - buffer.length;
+    }
+
+}
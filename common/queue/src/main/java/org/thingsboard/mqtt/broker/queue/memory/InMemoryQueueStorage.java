@@ -0,0 +1,141 @@
+/**
+ * Copyright © 2016-2024 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.mqtt.broker.queue.memory;
+
+import jakarta.annotation.PostConstruct;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.thingsboard.mqtt.broker.queue.constants.QueueConstants;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Holds the topics and consumer groups of the in-memory queue. Nothing survives the restart of the broker,
+ * so this queue is meant for single-node deployments that do not need the state of the compacted topics
+ * (client sessions, subscriptions, retained messages) to be persisted, and for tests.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(prefix = "queue", value = "type", havingValue = "in-memory")
+public class InMemoryQueueStorage {
+
+    private final Map<String, InMemoryTopic> topics = new ConcurrentHashMap<>();
+    private final Map<String, InMemoryConsumerGroup> consumerGroups = new ConcurrentHashMap<>();
+
+    @Value("${queue.in-memory.partition-capacity:10000}")
+    private int partitionCapacity;
+    @Value("${queue.in-memory.max-block-ms:100}")
+    private long maxBlockMs;
+    @Getter
+    @Value("${queue.in-memory.max-poll-records:500}")
+    private int maxPollRecords;
+
+    @PostConstruct
+    public void init() {
+        if (partitionCapacity < 1 || maxPollRecords < 1) {
+            throw new IllegalArgumentException("In-memory queue partition capacity and max poll records should be positive");
+        }
+        if (maxBlockMs < 0) {
+            throw new IllegalArgumentException("In-memory queue max block time should not be negative");
+        }
+        log.info("Using in-memory queue with partition capacity {}", partitionCapacity);
+    }
+
+    InMemoryTopic getOrCreateTopic(String topic, Map<String, String> topicConfigs) {
+        return topics.computeIfAbsent(topic, name -> newTopic(name, topicConfigs));
+    }
+
+    InMemoryTopic getTopic(String topic) {
+        return topics.get(topic);
+    }
+
+    Collection<InMemoryTopic> getTopics() {
+        return topics.values();
+    }
+
+    boolean deleteTopic(String topic) {
+        InMemoryTopic removed = topics.remove(topic);
+        if (removed == null) {
+            return false;
+        }
+        removed.markDeleted();
+        consumerGroups.values().forEach(group -> group.removeTopic(topic));
+        return true;
+    }
+
+    InMemoryConsumerGroup getOrCreateConsumerGroup(String groupId) {
+        return consumerGroups.computeIfAbsent(groupId, id -> new InMemoryConsumerGroup(id, this::notifyCommitted));
+    }
+
+    InMemoryConsumerGroup getConsumerGroup(String groupId) {
+        return consumerGroups.get(groupId);
+    }
+
+    Collection<InMemoryConsumerGroup> getConsumerGroups() {
+        return consumerGroups.values();
+    }
+
+    void deleteConsumerGroup(String groupId) {
+        consumerGroups.remove(groupId);
+    }
+
+    /**
+     * Returns the lowest offset committed for the partition by the consumer groups registered for the topic. A registered group
+     * that has not committed the partition yet counts as offset 0, and so does a topic without registered groups, since nobody
+     * has processed its records. The records below this offset were processed by every group and may be evicted.
+     * A group that keeps its committed offset but has no consumers anymore must be deleted, otherwise it blocks the partition.
+     */
+    long getLowestCommittedOffset(String topic, int partition) {
+        long lowestCommittedOffset = Long.MAX_VALUE;
+        boolean registered = false;
+        for (InMemoryConsumerGroup consumerGroup : consumerGroups.values()) {
+            if (consumerGroup.isRegistered(topic)) {
+                registered = true;
+                lowestCommittedOffset = Math.min(lowestCommittedOffset, consumerGroup.getCommittedOffset(topic, partition).orElse(0L));
+            }
+        }
+        return registered ? lowestCommittedOffset : 0L;
+    }
+
+    private void notifyCommitted(String topic, int partition) {
+        InMemoryTopic inMemoryTopic = topics.get(topic);
+        if (inMemoryTopic != null && partition < inMemoryTopic.getPartitionsCount()) {
+            inMemoryTopic.notifyCommitted(partition);
+        }
+    }
+
+    private InMemoryTopic newTopic(String name, Map<String, String> topicConfigs) {
+        int partitions = 1;
+        boolean compacted = false;
+        if (topicConfigs != null) {
+            String configuredPartitions = topicConfigs.get(QueueConstants.PARTITIONS);
+            if (configuredPartitions != null) {
+                partitions = Integer.parseInt(configuredPartitions);
+            }
+            compacted = QueueConstants.COMPACT_POLICY.equals(topicConfigs.get(QueueConstants.CLEANUP_POLICY_PROPERTY));
+        }
+        if (log.isDebugEnabled()) {
+            log.debug("[{}] Creating in-memory topic with {} partitions, compacted: {}", name, partitions, compacted);
+        }
+        return new InMemoryTopic(name, partitions, partitionCapacity, maxBlockMs, compacted, this::getLowestCommittedOffset);
+    }
+
+}
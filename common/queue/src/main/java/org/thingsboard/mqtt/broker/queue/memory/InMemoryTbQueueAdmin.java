@@ -0,0 +1,173 @@
+/**
+ * Copyright © 2016-2024 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.mqtt.broker.queue.memory;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.common.TopicPartition;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.thingsboard.mqtt.broker.common.data.BasicCallback;
+import org.thingsboard.mqtt.broker.common.data.page.PageData;
+import org.thingsboard.mqtt.broker.common.data.page.PageLink;
+import org.thingsboard.mqtt.broker.common.data.queue.KafkaBroker;
+import org.thingsboard.mqtt.broker.common.data.queue.KafkaConsumerGroup;
+import org.thingsboard.mqtt.broker.common.data.queue.KafkaConsumerGroupState;
+import org.thingsboard.mqtt.broker.common.data.queue.KafkaTopic;
+import org.thingsboard.mqtt.broker.queue.TbQueueAdmin;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+@Slf4j
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(prefix = "queue", value = "type", havingValue = "in-memory")
+public class InMemoryTbQueueAdmin implements TbQueueAdmin {
+
+    private static final int IN_MEMORY_BROKER_ID = 0;
+    private static final String IN_MEMORY_BROKER_ADDRESS = "in-memory";
+
+    private final InMemoryQueueStorage storage;
+
+    @Value("${queue.kafka.kafka-prefix:}")
+    private String kafkaPrefix;
+    @Value("${queue.kafka.client-session-event-response.topic-prefix}")
+    private String clientSessionEventRespTopicPrefix;
+
+    @Override
+    public void createTopicIfNotExists(String topic, Map<String, String> topicConfigs) {
+        storage.getOrCreateTopic(topic, topicConfigs);
+    }
+
+    @Override
+    public void createTopic(String topic, Map<String, String> topicConfigs) {
+        storage.getOrCreateTopic(topic, topicConfigs);
+    }
+
+    @Override
+    public void deleteTopic(String topic, BasicCallback callback) {
+        if (log.isDebugEnabled()) {
+            log.debug("[{}] Deleting topic", topic);
+        }
+        storage.deleteTopic(topic);
+        callback.onSuccess();
+    }
+
+    @Override
+    public void deleteConsumerGroups(Collection<String> consumerGroups) {
+        if (log.isDebugEnabled()) {
+            log.debug("Deleting Consumer Groups - {}", consumerGroups);
+        }
+        consumerGroups.forEach(storage::deleteConsumerGroup);
+    }
+
+    @Override
+    public void deleteConsumerGroup(String groupId) {
+        storage.deleteConsumerGroup(groupId);
+    }
+
+    @Override
+    public int getNumberOfPartitions(String topic) {
+        InMemoryTopic inMemoryTopic = storage.getTopic(topic);
+        if (inMemoryTopic == null) {
+            throw new RuntimeException("Topic " + topic + " does not exist");
+        }
+        return inMemoryTopic.getPartitionsCount();
+    }
+
+    @Override
+    public PageData<KafkaBroker> getClusterInfo() {
+        long totalSize = 0L;
+        for (InMemoryTopic topic : storage.getTopics()) {
+            totalSize += topic.getSizeInBytes();
+        }
+        return new PageData<>(List.of(new KafkaBroker(IN_MEMORY_BROKER_ID, IN_MEMORY_BROKER_ADDRESS, totalSize)), 1, 1, false);
+    }
+
+    @Override
+    public PageData<KafkaTopic> getTopics(PageLink pageLink) {
+        List<KafkaTopic> topics = storage.getTopics()
+                .stream()
+                .filter(topic -> topic.getName().startsWith(kafkaPrefix))
+                .map(this::toKafkaTopic)
+                .filter(topic -> pageLink.getTextSearch() == null
+                        || topic.getName().toLowerCase().contains(pageLink.getTextSearch().toLowerCase()))
+                .collect(Collectors.toList());
+        return toPageData(topics.stream().sorted(KafkaTopic.sorted(pageLink)).collect(Collectors.toList()), pageLink);
+    }
+
+    @Override
+    public List<String> getBrokerServiceIds() {
+        return storage.getTopics()
+                .stream()
+                .map(InMemoryTopic::getName)
+                .filter(topic -> topic.startsWith(kafkaPrefix + clientSessionEventRespTopicPrefix))
+                .map(topic -> topic.replace(kafkaPrefix + clientSessionEventRespTopicPrefix + ".", ""))
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public PageData<KafkaConsumerGroup> getConsumerGroups(PageLink pageLink) {
+        List<KafkaConsumerGroup> consumerGroups = storage.getConsumerGroups()
+                .stream()
+                .filter(group -> group.getGroupId().startsWith(kafkaPrefix))
+                .map(this::toKafkaConsumerGroup)
+                .filter(group -> pageLink.getTextSearch() == null
+                        || group.getGroupId().toLowerCase().contains(pageLink.getTextSearch().toLowerCase()))
+                .collect(Collectors.toList());
+        return toPageData(consumerGroups.stream().sorted(KafkaConsumerGroup.sorted(pageLink)).collect(Collectors.toList()), pageLink);
+    }
+
+    private KafkaTopic toKafkaTopic(InMemoryTopic topic) {
+        KafkaTopic kafkaTopic = new KafkaTopic();
+        kafkaTopic.setName(topic.getName());
+        kafkaTopic.setPartitions(topic.getPartitionsCount());
+        kafkaTopic.setReplicationFactor(1);
+        kafkaTopic.setSize(topic.getSizeInBytes());
+        return kafkaTopic;
+    }
+
+    private KafkaConsumerGroup toKafkaConsumerGroup(InMemoryConsumerGroup group) {
+        KafkaConsumerGroup kafkaConsumerGroup = new KafkaConsumerGroup();
+        kafkaConsumerGroup.setGroupId(group.getGroupId());
+        int members = group.getMembersCount();
+        kafkaConsumerGroup.setMembers(members);
+        kafkaConsumerGroup.setState(members > 0 ? KafkaConsumerGroupState.STABLE : KafkaConsumerGroupState.EMPTY);
+        long lag = 0L;
+        for (Map.Entry<TopicPartition, Long> committedOffset : group.getCommittedOffsets().entrySet()) {
+            InMemoryTopic topic = storage.getTopic(committedOffset.getKey().topic());
+            if (topic != null) {
+                lag += topic.getEndOffset(committedOffset.getKey().partition()) - committedOffset.getValue();
+            }
+        }
+        kafkaConsumerGroup.setLag(lag);
+        return kafkaConsumerGroup;
+    }
+
+    private <T> PageData<T> toPageData(List<T> items, PageLink pageLink) {
+        List<T> data = items.stream()
+                .skip((long) pageLink.getPage() * pageLink.getPageSize())
+                .limit(pageLink.getPageSize())
+                .collect(Collectors.toList());
+        int totalPages = (int) Math.ceil((double) items.size() / pageLink.getPageSize());
+        return new PageData<>(data, totalPages, items.size(), pageLink.getPage() < totalPages - 1);
+    }
+
+}
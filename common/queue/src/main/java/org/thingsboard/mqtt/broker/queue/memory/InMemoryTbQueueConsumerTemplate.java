@@ -0,0 +1,293 @@
+/**
+ * Copyright © 2016-2024 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.mqtt.broker.queue.memory;
+
+import lombok.Builder;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.thingsboard.mqtt.broker.queue.TbQueueMsg;
+import org.thingsboard.mqtt.broker.queue.TbQueuePartitionsRevokedListener;
+import org.thingsboard.mqtt.broker.queue.common.AbstractTbQueueConsumerTemplate;
+import org.thingsboard.mqtt.broker.queue.kafka.TbKafkaDecoder;
+import org.thingsboard.mqtt.broker.queue.stats.ConsumerStatsManager;
+import org.thingsboard.mqtt.broker.queue.stats.Timer;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reads the records of the in-memory topics with the same offset semantics as the Kafka consumer:
+ * the position of a newly assigned partition starts from the committed offset of the consumer group or,
+ * if there is none or it is out of range, from the earliest or the latest record depending on the configured reset policy.
+ * <p>
+ * Not thread-safe
+ */
+@Slf4j
+public class InMemoryTbQueueConsumerTemplate<T extends TbQueueMsg> extends AbstractTbQueueConsumerTemplate<InMemoryQueueRecord, T> {
+
+    private final InMemoryQueueStorage storage;
+    private final TbKafkaDecoder<T> decoder;
+    @Getter
+    private final Map<String, String> topicConfigs;
+    private final String groupId;
+    private final String memberId;
+    private final boolean resetToEarliest;
+    private final Timer commitTimer;
+
+    private final Map<Integer, Long> positions = new HashMap<>();
+    private List<Integer> assignedPartitions = Collections.emptyList();
+    private InMemoryTopic inMemoryTopic;
+    private InMemoryConsumerGroup consumerGroup;
+    private boolean groupMember;
+    private int assignmentGeneration = -1;
+    private int nextPartitionIdx;
+
+    @Builder
+    private InMemoryTbQueueConsumerTemplate(InMemoryQueueStorage storage, TbKafkaDecoder<T> decoder,
+                                            String clientId, String groupId, String topic,
+                                            Map<String, String> topicConfigs, boolean resetToEarliest,
+                                            ConsumerStatsManager statsManager) {
+        super(topic);
+        this.storage = storage;
+        this.decoder = decoder;
+        this.topicConfigs = topicConfigs != null ? topicConfigs : Collections.emptyMap();
+        this.groupId = groupId;
+        this.memberId = clientId + "-" + UUID.randomUUID();
+        this.resetToEarliest = resetToEarliest;
+        this.commitTimer = statsManager != null ? statsManager.createCommitTimer(clientId) : (amount, unit) -> {
+        };
+    }
+
+    @Override
+    protected void doSubscribe(String topic) {
+        if (groupId == null) {
+            throw new IllegalStateException("Consumer group id is required to subscribe to the topic " + topic);
+        }
+        this.inMemoryTopic = storage.getOrCreateTopic(topic, topicConfigs);
+        this.consumerGroup = registerConsumerGroup(topic);
+        consumerGroup.join(memberId);
+        this.groupMember = true;
+        this.assignmentGeneration = -1;
+    }
+
+    @Override
+    protected void doAssignPartition(String topic, int partition) {
+        this.inMemoryTopic = storage.getOrCreateTopic(topic, topicConfigs);
+        this.consumerGroup = registerConsumerGroup(topic);
+        assign(Collections.singletonList(partition));
+    }
+
+    @Override
+    protected void doAssignAllPartitions(String topic) {
+        this.inMemoryTopic = storage.getOrCreateTopic(topic, topicConfigs);
+        this.consumerGroup = registerConsumerGroup(topic);
+        List<Integer> allPartitions = new ArrayList<>();
+        for (int i = 0; i < inMemoryTopic.getPartitionsCount(); i++) {
+            allPartitions.add(i);
+        }
+        assign(allPartitions);
+    }
+
+    private InMemoryConsumerGroup registerConsumerGroup(String topic) {
+        if (groupId == null) {
+            return null;
+        }
+        InMemoryConsumerGroup group = storage.getOrCreateConsumerGroup(groupId);
+        group.register(topic);
+        return group;
+    }
+
+    @Override
+    protected List<InMemoryQueueRecord> doPoll(long durationInMillis) {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(durationInMillis);
+        while (!stopped) {
+            refreshTopicAndAssignment();
+            long version = inMemoryTopic.getVersion();
+            List<InMemoryQueueRecord> records = readRecords();
+            if (!records.isEmpty()) {
+                return records;
+            }
+            long remainingNanos = deadline - System.nanoTime();
+            if (remainingNanos <= 0) {
+                break;
+            }
+            try {
+                inMemoryTopic.awaitAppend(version, remainingNanos);
+            } catch (InterruptedException e) {
+                if (!stopped) {
+                    log.error("Failed to wait for new records");
+                }
+                break;
+            }
+        }
+        return Collections.emptyList();
+    }
+
+    @Override
+    protected T decode(InMemoryQueueRecord record) throws IOException {
+        return decoder.decode(new InMemoryTbQueueMsg(record));
+    }
+
+    @Override
+    protected void doCommitSync() {
+        if (consumerGroup == null) {
+            return;
+        }
+        long startTime = System.nanoTime();
+        for (Map.Entry<Integer, Long> position : positions.entrySet()) {
+            consumerGroup.commit(getTopic(), position.getKey(), position.getValue());
+        }
+        commitTimer.logTime(System.nanoTime() - startTime, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    protected void doCommit(String topic, int partition, long offset) {
+        if (consumerGroup != null) {
+            consumerGroup.commit(topic, partition, offset);
+        }
+    }
+
+    @Override
+    protected void doCommitSync(String topic, int partition, long offset) {
+        doCommit(topic, partition, offset);
+    }
+
+    @Override
+    protected void doUnsubscribeAndClose() {
+        if (groupMember) {
+            consumerGroup.leave(memberId);
+            groupMember = false;
+        }
+        positions.clear();
+        assignedPartitions = Collections.emptyList();
+    }
+
+    @Override
+    protected void doSeekToTheBeginning() {
+        if (inMemoryTopic == null) {
+            return;
+        }
+        refreshTopicAndAssignment();
+        for (Integer partition : assignedPartitions) {
+            positions.put(partition, inMemoryTopic.getStartOffset(partition));
+        }
+    }
+
+    @Override
+    protected void doSeek(String topic, int partition, long offset) {
+        positions.put(partition, offset);
+    }
+
+    @Override
+    protected long doGetEndOffset(String topic, int partition) {
+        InMemoryTopic inMemoryTopic = storage.getTopic(topic);
+        return inMemoryTopic != null && partition < inMemoryTopic.getPartitionsCount() ? inMemoryTopic.getEndOffset(partition) : 0L;
+    }
+
+    @Override
+    protected long doGetPosition(String topic, int partition) {
+        return getPosition(partition);
+    }
+
+    @Override
+    protected Optional<Long> doGetCommittedOffset(String topic, int partition) {
+        return consumerGroup != null ? consumerGroup.getCommittedOffset(topic, partition) : Optional.empty();
+    }
+
+    @Override
+    public String getConsumerGroupId() {
+        return groupId;
+    }
+
+    private void assign(List<Integer> partitions) {
+        if (groupMember) {
+            consumerGroup.leave(memberId);
+            groupMember = false;
+        }
+        positions.clear();
+        assignedPartitions = partitions;
+    }
+
+    private void refreshTopicAndAssignment() {
+        if (inMemoryTopic.isDeleted()) {
+            inMemoryTopic = storage.getOrCreateTopic(getTopic(), topicConfigs);
+            positions.clear();
+            assignmentGeneration = -1;
+        }
+        if (groupMember && assignmentGeneration != consumerGroup.getGeneration()) {
+            assignmentGeneration = consumerGroup.getGeneration();
+            List<Integer> newAssignment = consumerGroup.getAssignment(memberId, inMemoryTopic.getPartitionsCount());
+            notifyRevokedPartitions(newAssignment);
+            assignedPartitions = newAssignment;
+            positions.keySet().retainAll(assignedPartitions);
+            if (log.isDebugEnabled()) {
+                log.debug("[{}][{}] Assigned partitions {}", getTopic(), memberId, assignedPartitions);
+            }
+        }
+    }
+
+    private void notifyRevokedPartitions(List<Integer> newAssignment) {
+        TbQueuePartitionsRevokedListener listener = partitionsRevokedListener;
+        if (listener == null) {
+            return;
+        }
+        Set<Integer> revokedPartitions = new HashSet<>(assignedPartitions);
+        newAssignment.forEach(revokedPartitions::remove);
+        if (!revokedPartitions.isEmpty()) {
+            listener.onPartitionsRevoked(revokedPartitions);
+        }
+    }
+
+    private List<InMemoryQueueRecord> readRecords() {
+        int partitionsCount = assignedPartitions.size();
+        if (partitionsCount == 0) {
+            return Collections.emptyList();
+        }
+        int maxRecords = storage.getMaxPollRecords();
+        List<InMemoryQueueRecord> records = new ArrayList<>(Math.min(maxRecords, 512));
+        for (int i = 0; i < partitionsCount && records.size() < maxRecords; i++) {
+            int partition = assignedPartitions.get((nextPartitionIdx + i) % partitionsCount);
+            long position = getPosition(partition);
+            if (inMemoryTopic.read(partition, position, maxRecords - records.size(), records) > 0) {
+                positions.put(partition, records.get(records.size() - 1).getOffset() + 1);
+            }
+        }
+        nextPartitionIdx = (nextPartitionIdx + 1) % partitionsCount;
+        return records;
+    }
+
+    private long getPosition(int partition) {
+        Long position = positions.get(partition);
+        if (position == null) {
+            position = consumerGroup != null ? consumerGroup.getCommittedOffset(getTopic(), partition).orElse(null) : null;
+        }
+        if (position == null || position < inMemoryTopic.getStartOffset(partition) || position > inMemoryTopic.getEndOffset(partition)) {
+            position = resetToEarliest ? inMemoryTopic.getStartOffset(partition) : inMemoryTopic.getEndOffset(partition);
+        }
+        positions.put(partition, position);
+        return position;
+    }
+
+}
@@ -0,0 +1,65 @@
+/**
+ * Copyright © 2016-2024 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.mqtt.broker.queue.memory;
+
+import org.thingsboard.mqtt.broker.queue.TbQueueMsg;
+import org.thingsboard.mqtt.broker.queue.TbQueueMsgHeaders;
+import org.thingsboard.mqtt.broker.queue.common.DefaultTbQueueMsgHeaders;
+
+import java.util.HashMap;
+
+public class InMemoryTbQueueMsg implements TbQueueMsg {
+
+    private final String key;
+    private final TbQueueMsgHeaders headers;
+    private final byte[] data;
+    private final int partition;
+    private final long offset;
+
+    public InMemoryTbQueueMsg(InMemoryQueueRecord record) {
+        this.key = record.getKey();
+        this.headers = new DefaultTbQueueMsgHeaders(new HashMap<>(record.getHeaders()));
+        this.data = record.getData();
+        this.partition = record.getPartition();
+        this.offset = record.getOffset();
+    }
+
+    @Override
+    public String getKey() {
+        return key;
+    }
+
+    @Override
+    public TbQueueMsgHeaders getHeaders() {
+        return headers;
+    }
+
+    @Override
+    public byte[] getData() {
+        return data;
+    }
+
+    @Override
+    public int getPartition() {
+        return partition;
+    }
+
+    @Override
+    public long getOffset() {
+        return offset;
+    }
+
+}
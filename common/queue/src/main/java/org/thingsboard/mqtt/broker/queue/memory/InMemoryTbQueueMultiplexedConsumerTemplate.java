@@ -0,0 +1,221 @@
+/**
+ * Copyright © 2016-2024 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.mqtt.broker.queue.memory;
+
+import lombok.Builder;
+import lombok.extern.slf4j.Slf4j;
+import org.thingsboard.mqtt.broker.queue.TbQueueMsg;
+import org.thingsboard.mqtt.broker.queue.TbQueueMultiplexedConsumer;
+import org.thingsboard.mqtt.broker.queue.kafka.TbKafkaDecoder;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Reads the partition 0 of many in-memory topics. While there is nothing to read, the assigned topics are re-checked
+ * every few milliseconds instead of waiting for the appends of each topic separately.
+ * <p>
+ * Not thread-safe, except for {@link #wakeup()}
+ */
+@Slf4j
+public class InMemoryTbQueueMultiplexedConsumerTemplate<T extends TbQueueMsg> implements TbQueueMultiplexedConsumer<T> {
+
+    private static final long MAX_WAIT_NANOS = TimeUnit.MILLISECONDS.toNanos(5);
+    private static final int PARTITION = 0;
+
+    private final InMemoryQueueStorage storage;
+    private final TbKafkaDecoder<T> decoder;
+    private final Map<String, String> topicConfigs;
+
+    private final Map<String, TopicAssignment> assignments = new HashMap<>();
+    private final List<TopicAssignment> assignmentList = new ArrayList<>();
+    private int nextAssignmentIdx;
+
+    private volatile Thread pollingThread;
+    private volatile boolean wakeupRequested;
+
+    @Builder
+    private InMemoryTbQueueMultiplexedConsumerTemplate(InMemoryQueueStorage storage, TbKafkaDecoder<T> decoder,
+                                                       Map<String, String> topicConfigs) {
+        this.storage = storage;
+        this.decoder = decoder;
+        this.topicConfigs = topicConfigs != null ? topicConfigs : Collections.emptyMap();
+    }
+
+    @Override
+    public CompletableFuture<Void> assign(String topic, String consumerGroupId) {
+        InMemoryTopic inMemoryTopic = storage.getOrCreateTopic(topic, topicConfigs);
+        InMemoryConsumerGroup consumerGroup = storage.getOrCreateConsumerGroup(consumerGroupId);
+        consumerGroup.register(topic);
+        TopicAssignment assignment = new TopicAssignment(topic, inMemoryTopic, consumerGroup);
+        Long committedOffset = consumerGroup.getCommittedOffset(topic, PARTITION).orElse(null);
+        if (committedOffset == null) {
+            committedOffset = inMemoryTopic.getEndOffset(PARTITION);
+            consumerGroup.commit(topic, PARTITION, committedOffset);
+        }
+        assignment.position = committedOffset;
+        unassign(topic);
+        assignments.put(topic, assignment);
+        assignmentList.add(assignment);
+        return CompletableFuture.completedFuture(null);
+    }
+
+    @Override
+    public void unassign(String topic) {
+        TopicAssignment assignment = assignments.remove(topic);
+        if (assignment != null) {
+            assignmentList.remove(assignment);
+        }
+    }
+
+    @Override
+    public void pause(String topic) {
+        TopicAssignment assignment = assignments.get(topic);
+        if (assignment != null) {
+            assignment.paused = true;
+        }
+    }
+
+    @Override
+    public void resume(String topic) {
+        TopicAssignment assignment = assignments.get(topic);
+        if (assignment != null) {
+            assignment.paused = false;
+        }
+    }
+
+    @Override
+    public Map<String, List<T>> poll(long durationInMillis) {
+        pollingThread = Thread.currentThread();
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(durationInMillis);
+        while (!wakeupRequested && !Thread.currentThread().isInterrupted()) {
+            Map<String, List<T>> records = readRecords();
+            if (!records.isEmpty()) {
+                return records;
+            }
+            long remainingNanos = deadline - System.nanoTime();
+            if (remainingNanos <= 0) {
+                break;
+            }
+            LockSupport.parkNanos(Math.min(remainingNanos, MAX_WAIT_NANOS));
+        }
+        wakeupRequested = false;
+        return Collections.emptyMap();
+    }
+
+    @Override
+    public void commit(String topic, long offset) {
+        TopicAssignment assignment = assignments.get(topic);
+        if (assignment != null) {
+            assignment.consumerGroup.commit(topic, PARTITION, offset);
+        }
+    }
+
+    @Override
+    public void wakeup() {
+        wakeupRequested = true;
+        Thread thread = pollingThread;
+        if (thread != null) {
+            LockSupport.unpark(thread);
+        }
+    }
+
+    @Override
+    public int getAssignedTopicsCount() {
+        return assignments.size();
+    }
+
+    @Override
+    public void close() {
+        assignments.clear();
+        assignmentList.clear();
+    }
+
+    private Map<String, List<T>> readRecords() {
+        int assignmentsCount = assignmentList.size();
+        if (assignmentsCount == 0) {
+            return Collections.emptyMap();
+        }
+        int maxRecords = storage.getMaxPollRecords();
+        int totalRecords = 0;
+        Map<String, List<T>> result = new HashMap<>();
+        List<InMemoryQueueRecord> records = new ArrayList<>();
+        for (int i = 0; i < assignmentsCount && totalRecords < maxRecords; i++) {
+            TopicAssignment assignment = assignmentList.get((nextAssignmentIdx + i) % assignmentsCount);
+            if (assignment.paused) {
+                continue;
+            }
+            records.clear();
+            if (assignment.read(maxRecords - totalRecords, records) > 0) {
+                totalRecords += records.size();
+                result.put(assignment.topic, decode(records));
+            }
+        }
+        nextAssignmentIdx = (nextAssignmentIdx + 1) % assignmentsCount;
+        return result;
+    }
+
+    private List<T> decode(List<InMemoryQueueRecord> records) {
+        List<T> result = new ArrayList<>(records.size());
+        for (InMemoryQueueRecord record : records) {
+            try {
+                result.add(decoder.decode(new InMemoryTbQueueMsg(record)));
+            } catch (IOException e) {
+                log.error("Failed decode record: [{}]", record);
+                throw new RuntimeException("Failed to decode record: ", e);
+            }
+        }
+        return result;
+    }
+
+    private class TopicAssignment {
+
+        private final String topic;
+        private final InMemoryConsumerGroup consumerGroup;
+        private InMemoryTopic inMemoryTopic;
+        private long position;
+        private boolean paused;
+
+        private TopicAssignment(String topic, InMemoryTopic inMemoryTopic, InMemoryConsumerGroup consumerGroup) {
+            this.topic = topic;
+            this.inMemoryTopic = inMemoryTopic;
+            this.consumerGroup = consumerGroup;
+        }
+
+        private int read(int maxRecords, List<InMemoryQueueRecord> records) {
+            if (inMemoryTopic.isDeleted()) {
+                inMemoryTopic = storage.getOrCreateTopic(topic, topicConfigs);
+                position = inMemoryTopic.getEndOffset(PARTITION);
+            }
+            if (position < inMemoryTopic.getStartOffset(PARTITION) || position > inMemoryTopic.getEndOffset(PARTITION)) {
+                position = inMemoryTopic.getEndOffset(PARTITION);
+            }
+            int count = inMemoryTopic.read(PARTITION, position, maxRecords, records);
+            if (count > 0) {
+                position = records.get(records.size() - 1).getOffset() + 1;
+            }
+            return count;
+        }
+    }
+
+}
@@ -0,0 +1,151 @@
+/**
+ * Copyright © 2016-2024 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.mqtt.broker.queue.memory;
+
+import lombok.Getter;
+import org.apache.kafka.common.utils.Utils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.ToLongBiFunction;
+
+class InMemoryTopic {
+
+    @Getter
+    private final String name;
+    @Getter
+    private final boolean compacted;
+    private final InMemoryPartitionLog[] partitions;
+
+    private final AtomicInteger roundRobinCounter = new AtomicInteger();
+    private final AtomicLong version = new AtomicLong();
+    private final AtomicInteger waiters = new AtomicInteger();
+    private final Lock lock = new ReentrantLock();
+    private final Condition appended = lock.newCondition();
+
+    @Getter
+    private volatile boolean deleted;
+
+    InMemoryTopic(String name, int partitionsCount, int partitionCapacity, long maxBlockMs, boolean compacted,
+                  ToLongBiFunction<String, Integer> lowestCommittedOffsetFunction) {
+        this.name = name;
+        this.compacted = compacted;
+        this.partitions = new InMemoryPartitionLog[partitionsCount];
+        for (int i = 0; i < partitionsCount; i++) {
+            int partition = i;
+            partitions[i] = new InMemoryPartitionLog(name, partition, partitionCapacity, maxBlockMs, compacted,
+                    () -> lowestCommittedOffsetFunction.applyAsLong(name, partition));
+        }
+    }
+
+    int getPartitionsCount() {
+        return partitions.length;
+    }
+
+    InMemoryQueueRecord append(Integer partition, String key, byte[] data, Map<String, byte[]> headers) {
+        int targetPartition = partition != null ? partition : selectPartition(key);
+        if (targetPartition < 0 || targetPartition >= partitions.length) {
+            throw new IllegalArgumentException("Partition " + targetPartition + " of topic " + name + " does not exist");
+        }
+        InMemoryQueueRecord record = partitions[targetPartition].append(key, data, headers);
+        version.incrementAndGet();
+        if (waiters.get() > 0) {
+            lock.lock();
+            try {
+                appended.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+        return record;
+    }
+
+    int read(int partition, long position, int maxRecords, List<InMemoryQueueRecord> result) {
+        return partitions[partition].read(position, maxRecords, result);
+    }
+
+    long getStartOffset(int partition) {
+        return partitions[partition].getStartOffset();
+    }
+
+    long getEndOffset(int partition) {
+        return partitions[partition].getEndOffset();
+    }
+
+    void notifyCommitted(int partition) {
+        partitions[partition].notifyCommitted();
+    }
+
+    long getSizeInBytes() {
+        long sizeInBytes = 0;
+        for (InMemoryPartitionLog partitionLog : partitions) {
+            sizeInBytes += partitionLog.getSizeInBytes();
+        }
+        return sizeInBytes;
+    }
+
+    /**
+     * Must be read before checking the partitions for new records, see {@link #awaitAppend(long, long)}.
+     */
+    long getVersion() {
+        return version.get();
+    }
+
+    /**
+     * Waits until a record is appended to any partition after the version was read or the timeout elapses.
+     */
+    void awaitAppend(long lastVersion, long timeoutNanos) throws InterruptedException {
+        lock.lock();
+        waiters.incrementAndGet();
+        try {
+            long remainingNanos = timeoutNanos;
+            while (version.get() == lastVersion && !deleted && remainingNanos > 0) {
+                remainingNanos = appended.awaitNanos(remainingNanos);
+            }
+        } finally {
+            waiters.decrementAndGet();
+            lock.unlock();
+        }
+    }
+
+    void markDeleted() {
+        lock.lock();
+        try {
+            deleted = true;
+            appended.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private int selectPartition(String key) {
+        if (partitions.length == 1) {
+            return 0;
+        }
+        if (key == null) {
+            return Utils.toPositive(roundRobinCounter.getAndIncrement()) % partitions.length;
+        }
+        return Utils.toPositive(Utils.murmur2(key.getBytes(StandardCharsets.UTF_8))) % partitions.length;
+    }
+
+}
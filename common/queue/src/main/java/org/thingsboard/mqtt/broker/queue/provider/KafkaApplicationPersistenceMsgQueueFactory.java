@@ -19,16 +19,20 @@ import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Component;
 import org.thingsboard.mqtt.broker.gen.queue.QueueProtos;
 import org.thingsboard.mqtt.broker.queue.TbQueueControlledOffsetConsumer;
+import org.thingsboard.mqtt.broker.queue.TbQueueMultiplexedConsumer;
 import org.thingsboard.mqtt.broker.queue.TbQueueProducer;
 import org.thingsboard.mqtt.broker.queue.common.TbProtoQueueMsg;
 import org.thingsboard.mqtt.broker.queue.constants.QueueConstants;
 import org.thingsboard.mqtt.broker.queue.kafka.TbKafkaConsumerTemplate;
+import org.thingsboard.mqtt.broker.queue.kafka.TbKafkaMultiplexedConsumerTemplate;
 import org.thingsboard.mqtt.broker.queue.kafka.TbKafkaProducerTemplate;
 import org.thingsboard.mqtt.broker.queue.kafka.settings.ApplicationPersistenceMsgKafkaSettings;
 import org.thingsboard.mqtt.broker.queue.kafka.settings.ApplicationSharedTopicMsgKafkaSettings;
+import org.thingsboard.mqtt.broker.queue.kafka.settings.TbKafkaAdminSettings;
 import org.thingsboard.mqtt.broker.queue.kafka.settings.TbKafkaConsumerSettings;
 import org.thingsboard.mqtt.broker.queue.kafka.settings.TbKafkaProducerSettings;
 import org.thingsboard.mqtt.broker.queue.kafka.stats.TbKafkaConsumerStatsService;
@@ -41,12 +45,14 @@ import java.util.Properties;
 @Slf4j
 @Component
 @RequiredArgsConstructor
+@ConditionalOnProperty(prefix = "queue", value = "type", havingValue = "kafka", matchIfMissing = true)
 public class KafkaApplicationPersistenceMsgQueueFactory extends AbstractQueueFactory implements ApplicationPersistenceMsgQueueFactory {
 
     private final Map<String, String> requiredConsumerProperties = Map.of("auto.offset.reset", "latest");
 
     private final TbKafkaConsumerSettings consumerSettings;
     private final TbKafkaProducerSettings producerSettings;
+    private final TbKafkaAdminSettings adminSettings;
     private final ApplicationPersistenceMsgKafkaSettings applicationPersistenceMsgSettings;
     private final ApplicationSharedTopicMsgKafkaSettings applicationSharedTopicMsgSettings;
     private final TbKafkaConsumerStatsService consumerStatsService;
@@ -110,6 +116,22 @@ public class KafkaApplicationPersistenceMsgQueueFactory extends AbstractQueueFac
         return createConsumer(topic, consumerGroupId, clientId, props);
     }
 
+    @Override
+    public TbQueueMultiplexedConsumer<TbProtoQueueMsg<QueueProtos.PublishMsgProto>> createMultiplexedConsumer(String consumerId) {
+        String clientId = "application-persisted-msg-multiplexed-consumer-" + consumerId;
+
+        Properties props = consumerSettings.toProps(null, applicationPersistenceMsgSettings.getAdditionalConsumerConfig());
+        QueueUtil.overrideProperties("ApplicationMsgQueue-" + consumerId, props, requiredConsumerProperties);
+
+        TbKafkaMultiplexedConsumerTemplate.TbKafkaMultiplexedConsumerTemplateBuilder<TbProtoQueueMsg<QueueProtos.PublishMsgProto>> consumerBuilder = TbKafkaMultiplexedConsumerTemplate.builder();
+        consumerBuilder.properties(props);
+        consumerBuilder.adminProperties(adminSettings.toProps());
+        consumerBuilder.clientId(kafkaPrefix + clientId);
+        consumerBuilder.decoder(msg -> new TbProtoQueueMsg<>(msg.getKey(), QueueProtos.PublishMsgProto.parseFrom(msg.getData()), msg.getHeaders(),
+                msg.getPartition(), msg.getOffset()));
+        return consumerBuilder.build();
+    }
+
     private TbQueueControlledOffsetConsumer<TbProtoQueueMsg<QueueProtos.PublishMsgProto>> createConsumer(
             String topic, String consumerGroupId, String clientId, Properties props) {
 
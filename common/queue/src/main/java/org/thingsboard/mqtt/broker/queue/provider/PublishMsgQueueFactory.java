@@ -17,7 +17,7 @@ package org.thingsboard.mqtt.broker.queue.provider;
 
 
 import org.thingsboard.mqtt.broker.gen.queue.QueueProtos;
-import org.thingsboard.mqtt.broker.queue.TbQueueConsumer;
+import org.thingsboard.mqtt.broker.queue.TbQueueControlledOffsetConsumer;
 import org.thingsboard.mqtt.broker.queue.TbQueueProducer;
 import org.thingsboard.mqtt.broker.queue.common.TbProtoQueueMsg;
 
@@ -25,6 +25,6 @@ public interface PublishMsgQueueFactory {
 
     TbQueueProducer<TbProtoQueueMsg<QueueProtos.PublishMsgProto>> createProducer();
 
-    TbQueueConsumer<TbProtoQueueMsg<QueueProtos.PublishMsgProto>> createConsumer(String id);
+    TbQueueControlledOffsetConsumer<TbProtoQueueMsg<QueueProtos.PublishMsgProto>> createConsumer(String id);
 
 }
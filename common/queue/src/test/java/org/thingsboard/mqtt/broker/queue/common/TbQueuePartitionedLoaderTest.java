@@ -0,0 +1,70 @@
+/**
+ * Copyright © 2016-2024 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.mqtt.broker.queue.common;
+
+import com.google.protobuf.StringValue;
+import org.junit.jupiter.api.Test;
+import org.thingsboard.mqtt.broker.queue.TbQueueAdmin;
+import org.thingsboard.mqtt.broker.queue.TbQueueControlledOffsetConsumer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class TbQueuePartitionedLoaderTest {
+
+    private static final String TOPIC = "test-topic";
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void givenLastOffsetsWithoutRecords_whenLoaded_thenLoadingStopsAtConsumerPosition() throws Exception {
+        TbQueueControlledOffsetConsumer<TbProtoQueueMsg<StringValue>> consumer = mock(TbQueueControlledOffsetConsumer.class);
+        TbQueueControlledOffsetConsumer<TbProtoQueueMsg<StringValue>> partitionConsumer = mock(TbQueueControlledOffsetConsumer.class);
+        TbQueueAdmin admin = mock(TbQueueAdmin.class);
+        when(consumer.getTopic()).thenReturn(TOPIC);
+        when(admin.getNumberOfPartitions(TOPIC)).thenReturn(1);
+        // offset 3 is a transaction marker, so the last record has offset 2 while the end offset is 4
+        when(partitionConsumer.getEndOffset(TOPIC, 0)).thenReturn(4L);
+        when(partitionConsumer.getPosition(TOPIC, 0)).thenReturn(0L, 4L);
+        when(partitionConsumer.poll(anyLong())).thenReturn(List.of(newMsg(0), newMsg(1), newMsg(2)), List.of());
+
+        List<TbProtoQueueMsg<StringValue>> loaded = new ArrayList<>();
+        Map<Integer, Long> offsets = CompletableFuture.supplyAsync(() -> TbQueuePartitionedLoader.<TbProtoQueueMsg<StringValue>>builder()
+                        .consumer(consumer)
+                        .partitionConsumerFactory(partition -> partitionConsumer)
+                        .admin(admin)
+                        .pollDuration(10)
+                        .stopped(() -> false)
+                        .threadNamePrefix("test-loader")
+                        .build()
+                        .load(Map.of(), loaded::add))
+                .get(5, TimeUnit.SECONDS);
+
+        assertThat(loaded).hasSize(3);
+        assertThat(offsets).containsExactly(Map.entry(0, 4L));
+    }
+
+    private TbProtoQueueMsg<StringValue> newMsg(long offset) {
+        return new TbProtoQueueMsg<>("key", StringValue.of("v" + offset), new DefaultTbQueueMsgHeaders(), 0, offset);
+    }
+}
@@ -0,0 +1,377 @@
+/**
+ * Copyright © 2016-2024 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.mqtt.broker.queue.memory;
+
+import com.google.protobuf.StringValue;
+import org.apache.kafka.clients.producer.BufferExhaustedException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.thingsboard.mqtt.broker.queue.TbQueueCallback;
+import org.thingsboard.mqtt.broker.queue.TbQueueMsgMetadata;
+import org.thingsboard.mqtt.broker.queue.common.TbProtoQueueMsg;
+import org.thingsboard.mqtt.broker.queue.common.TbQueuePartitionedLoader;
+import org.thingsboard.mqtt.broker.queue.constants.QueueConstants;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class InMemoryTbQueueTest {
+
+    private static final String TOPIC = "test-topic";
+    private static final String GROUP_ID = "test-group";
+
+    private InMemoryQueueStorage storage;
+    private InMemoryTbQueueProducerTemplate<TbProtoQueueMsg<StringValue>> producer;
+
+    @BeforeEach
+    public void setUp() {
+        storage = new InMemoryQueueStorage();
+        ReflectionTestUtils.setField(storage, "partitionCapacity", 4);
+        ReflectionTestUtils.setField(storage, "maxPollRecords", 100);
+        storage.init();
+        producer = InMemoryTbQueueProducerTemplate.<TbProtoQueueMsg<StringValue>>builder()
+                .storage(storage)
+                .defaultTopic(TOPIC)
+                .topicConfigs(Map.of(QueueConstants.PARTITIONS, "3"))
+                .build();
+    }
+
+    @Test
+    public void givenCommittedOffset_whenNewConsumerOfSameGroupPolls_thenContinuesFromCommittedOffset() {
+        send("key", "1");
+        send("key", "2");
+
+        var consumer = createConsumer(GROUP_ID, true);
+        consumer.assignAllPartitions();
+        assertThat(values(consumer.poll(10))).containsExactly("1", "2");
+        consumer.commitSync();
+        consumer.unsubscribeAndClose();
+
+        send("key", "3");
+
+        var newConsumer = createConsumer(GROUP_ID, true);
+        newConsumer.assignAllPartitions();
+        assertThat(values(newConsumer.poll(10))).containsExactly("3");
+    }
+
+    @Test
+    public void givenMessagesWithSameKey_whenSent_thenAllGoToSamePartition() {
+        List<TbQueueMsgMetadata> metadata = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            producer.send(new TbProtoQueueMsg<>("same-key", StringValue.of("v" + i)), callback(metadata));
+        }
+        assertThat(metadata).hasSize(3);
+        assertThat(metadata.stream().map(m -> m.getMetadata().partition()).distinct()).hasSize(1);
+        assertThat(metadata.stream().map(m -> m.getMetadata().offset())).containsExactly(0L, 1L, 2L);
+    }
+
+    @Test
+    public void givenTwoSubscribedConsumers_whenPolling_thenPartitionsAreSplitBetweenThem() {
+        for (int i = 0; i < 12; i++) {
+            send(null, String.valueOf(i));
+        }
+        var first = createConsumer(GROUP_ID, true);
+        var second = createConsumer(GROUP_ID, true);
+        first.subscribe();
+        second.subscribe();
+
+        List<TbProtoQueueMsg<StringValue>> firstMsgs = first.poll(10);
+        List<TbProtoQueueMsg<StringValue>> secondMsgs = second.poll(10);
+
+        Set<Integer> firstPartitions = firstMsgs.stream().map(TbProtoQueueMsg::getPartition).collect(Collectors.toSet());
+        Set<Integer> secondPartitions = secondMsgs.stream().map(TbProtoQueueMsg::getPartition).collect(Collectors.toSet());
+        assertThat(firstPartitions).doesNotContainAnyElementsOf(secondPartitions);
+        Set<String> allValues = new HashSet<>(values(firstMsgs));
+        allValues.addAll(values(secondMsgs));
+        assertThat(allValues).hasSize(12);
+    }
+
+    @Test
+    public void givenFullPartitionWithoutConsumerGroups_whenSent_thenSendFailsInsteadOfDroppingRecords() {
+        List<TbQueueMsgMetadata> metadata = new ArrayList<>();
+        List<Throwable> failures = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            producer.send(new TbProtoQueueMsg<>("key", StringValue.of(String.valueOf(i))), callback(metadata, failures));
+        }
+        assertThat(metadata).hasSize(4);
+        assertThat(failures).hasSize(1).allMatch(t -> t instanceof BufferExhaustedException);
+
+        var consumer = createConsumer(GROUP_ID, true);
+        consumer.assignAllPartitions();
+        assertThat(values(consumer.poll(10))).containsExactly("0", "1", "2", "3");
+    }
+
+    @Test
+    public void givenRegisteredGroupWithoutCommits_whenPartitionIsFull_thenSendWaitsForCommit() throws Exception {
+        ReflectionTestUtils.setField(storage, "maxBlockMs", 5_000L);
+        var consumer = createConsumer(GROUP_ID, true);
+        consumer.assignAllPartitions();
+        for (int i = 0; i < 4; i++) {
+            send("key", String.valueOf(i));
+        }
+
+        List<TbQueueMsgMetadata> metadata = new ArrayList<>();
+        List<Throwable> failures = new ArrayList<>();
+        CompletableFuture<Void> blockedSend = CompletableFuture.runAsync(() ->
+                producer.send(new TbProtoQueueMsg<>("key", StringValue.of("4")), callback(metadata, failures)));
+        Thread.sleep(100);
+        assertThat(blockedSend).isNotDone();
+
+        assertThat(values(consumer.poll(10))).containsExactly("0", "1", "2", "3");
+        consumer.commitSync();
+
+        blockedSend.get(5, TimeUnit.SECONDS);
+        assertThat(failures).isEmpty();
+        assertThat(metadata).hasSize(1);
+        assertThat(values(consumer.poll(10))).containsExactly("4");
+    }
+
+    @Test
+    public void givenFullPartitionWithUncommittedRecords_whenSent_thenSendFailsUntilOffsetsAreCommitted() {
+        var consumer = createConsumer(GROUP_ID, true);
+        consumer.assignAllPartitions();
+        send("key", "0");
+        assertThat(values(consumer.poll(10))).containsExactly("0");
+        consumer.commitSync();
+
+        List<TbQueueMsgMetadata> metadata = new ArrayList<>();
+        List<Throwable> failures = new ArrayList<>();
+        for (int i = 1; i < 6; i++) {
+            producer.send(new TbProtoQueueMsg<>("key", StringValue.of(String.valueOf(i))), callback(metadata, failures));
+        }
+        assertThat(metadata).hasSize(4);
+        assertThat(failures).hasSize(1).allMatch(t -> t instanceof BufferExhaustedException);
+
+        assertThat(values(consumer.poll(10))).containsExactly("1", "2", "3", "4");
+        consumer.commitSync();
+        producer.send(new TbProtoQueueMsg<>("key", StringValue.of("5")), callback(metadata, failures));
+        assertThat(metadata).hasSize(5);
+        assertThat(values(consumer.poll(10))).containsExactly("5");
+    }
+
+    @Test
+    public void givenFullCompactedPartition_whenSent_thenLatestRecordPerKeyIsKept() {
+        var compactedProducer = InMemoryTbQueueProducerTemplate.<TbProtoQueueMsg<StringValue>>builder()
+                .storage(storage)
+                .defaultTopic(TOPIC)
+                .topicConfigs(Map.of(QueueConstants.CLEANUP_POLICY_PROPERTY, QueueConstants.COMPACT_POLICY))
+                .build();
+        for (int i = 0; i < 6; i++) {
+            compactedProducer.send(new TbProtoQueueMsg<>("key-" + i, StringValue.of("old-" + i)), null);
+        }
+        for (int i = 0; i < 6; i++) {
+            compactedProducer.send(new TbProtoQueueMsg<>("key-" + i, StringValue.of("new-" + i)), null);
+        }
+        var consumer = createConsumer(GROUP_ID, true);
+        consumer.assignPartition(0);
+        List<String> values = values(consumer.poll(10));
+        assertThat(values).contains("new-0", "new-1", "new-2", "new-3", "new-4", "new-5");
+        assertThat(values.indexOf("new-5")).isEqualTo(values.size() - 1);
+    }
+
+    @Test
+    public void givenLatestOffsetReset_whenNoCommittedOffset_thenPreviousMessagesAreSkipped() {
+        send("key", "old");
+        var consumer = createConsumer(GROUP_ID, false);
+        consumer.assignAllPartitions();
+        assertThat(consumer.poll(10)).isEmpty();
+
+        send("key", "new");
+        assertThat(values(consumer.poll(10))).containsExactly("new");
+    }
+
+    @Test
+    public void givenSeekToOffset_whenPolling_thenOnlyTailIsReturned() {
+        List<TbQueueMsgMetadata> metadata = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            producer.send(new TbProtoQueueMsg<>("key", StringValue.of(String.valueOf(i))), callback(metadata));
+        }
+        int partition = metadata.get(0).getMetadata().partition();
+
+        var consumer = createConsumer(GROUP_ID, true);
+        consumer.assignPartition(partition);
+        consumer.seek(partition, 2);
+        assertThat(values(consumer.poll(10))).containsExactly("2");
+    }
+
+    @Test
+    public void givenSubscribedConsumer_whenAnotherMemberJoins_thenRevokedPartitionsAreReportedBeforeHandover() {
+        Set<Integer> revoked = new HashSet<>();
+        var consumer = createConsumer(GROUP_ID, true);
+        consumer.subscribe(revoked::addAll);
+        consumer.poll(1);
+        assertThat(revoked).isEmpty();
+
+        var newConsumer = createConsumer(GROUP_ID, true);
+        newConsumer.subscribe();
+        consumer.poll(1);
+
+        assertThat(revoked).isNotEmpty().allMatch(partition -> partition >= 0 && partition < 3);
+    }
+
+    @Test
+    public void givenMessagesInSeveralPartitions_whenLoadedInParallel_thenAllLatestValuesAreLoadedAndConsumerContinuesAfterThem() {
+        List<TbQueueMsgMetadata> metadata = new ArrayList<>();
+        for (int i = 0; i < 9; i++) {
+            producer.send(new TbProtoQueueMsg<>("key-" + i, StringValue.of("v" + i)), callback(metadata));
+        }
+        send("key-0", "v0-new");
+        int key1Partition = metadata.get(1).getMetadata().partition();
+        long key1Offset = metadata.get(1).getMetadata().offset();
+
+        var consumer = createConsumer(GROUP_ID, true);
+        Map<String, String> loaded = new ConcurrentHashMap<>();
+        Map<Integer, Long> offsets = TbQueuePartitionedLoader.<TbProtoQueueMsg<StringValue>>builder()
+                .consumer(consumer)
+                .partitionConsumerFactory(partition -> createConsumer(GROUP_ID, true))
+                .admin(new InMemoryTbQueueAdmin(storage))
+                .pollDuration(10)
+                .stopped(() -> false)
+                .threadNamePrefix("test-loader")
+                .build()
+                .load(Map.of(key1Partition, key1Offset + 1), msg -> loaded.put(msg.getKey(), msg.getValue().getValue()));
+
+        assertThat(loaded).doesNotContainKey("key-1");
+        assertThat(loaded).hasSize(8).containsEntry("key-0", "v0-new").containsEntry("key-8", "v8");
+        assertThat(offsets).hasSize(3);
+        assertThat(offsets.values().stream().mapToLong(Long::longValue).sum()).isEqualTo(10);
+
+        consumer.commitSync();
+        send("key-0", "after-load");
+        assertThat(values(consumer.poll(10))).containsExactly("after-load");
+    }
+
+    @Test
+    public void givenWaitingConsumer_whenMessageIsSent_thenPollReturnsBeforeTimeout() throws Exception {
+        var consumer = createConsumer(GROUP_ID, false);
+        consumer.assignAllPartitions();
+        consumer.poll(1);
+
+        long startTime = System.nanoTime();
+        CompletableFuture<List<TbProtoQueueMsg<StringValue>>> result = CompletableFuture.supplyAsync(() -> consumer.poll(10_000));
+        Thread.sleep(100);
+        send("key", "value");
+
+        assertThat(values(result.get(5, TimeUnit.SECONDS))).containsExactly("value");
+        assertThat(System.nanoTime() - startTime).isLessThan(TimeUnit.SECONDS.toNanos(5));
+    }
+
+    @Test
+    public void givenMultiplexedConsumer_whenTopicIsPaused_thenOtherTopicsAreStillPolled() {
+        var consumer = createMultiplexedConsumer();
+        consumer.assign("app-1", "app-group-1");
+        consumer.assign("app-2", "app-group-2");
+        sendToTopic("app-1", "1-1");
+        sendToTopic("app-2", "2-1");
+
+        Map<String, List<TbProtoQueueMsg<StringValue>>> msgs = consumer.poll(10);
+        assertThat(values(msgs.get("app-1"))).containsExactly("1-1");
+        assertThat(values(msgs.get("app-2"))).containsExactly("2-1");
+
+        consumer.pause("app-1");
+        sendToTopic("app-1", "1-2");
+        sendToTopic("app-2", "2-2");
+        msgs = consumer.poll(10);
+        assertThat(msgs).containsOnlyKeys("app-2");
+        assertThat(values(msgs.get("app-2"))).containsExactly("2-2");
+
+        consumer.resume("app-1");
+        assertThat(values(consumer.poll(10).get("app-1"))).containsExactly("1-2");
+    }
+
+    @Test
+    public void givenMultiplexedConsumer_whenTopicIsAssignedAgain_thenContinuesFromCommittedOffset() {
+        sendToTopic("app-1", "old");
+        var consumer = createMultiplexedConsumer();
+        consumer.assign("app-1", "app-group-1");
+        assertThat(consumer.poll(10)).isEmpty();
+
+        sendToTopic("app-1", "1");
+        sendToTopic("app-1", "2");
+        List<TbProtoQueueMsg<StringValue>> msgs = consumer.poll(10).get("app-1");
+        assertThat(values(msgs)).containsExactly("1", "2");
+        consumer.commit("app-1", msgs.get(0).getOffset() + 1);
+        consumer.unassign("app-1");
+        assertThat(consumer.getAssignedTopicsCount()).isZero();
+
+        var newConsumer = createMultiplexedConsumer();
+        newConsumer.assign("app-1", "app-group-1");
+        assertThat(values(newConsumer.poll(10).get("app-1"))).containsExactly("2");
+    }
+
+    private void sendToTopic(String topic, String value) {
+        producer.send(topic, 0, new TbProtoQueueMsg<>(null, StringValue.of(value)), null);
+    }
+
+    private void send(String key, String value) {
+        producer.send(new TbProtoQueueMsg<>(key, StringValue.of(value)), null);
+    }
+
+    private InMemoryTbQueueConsumerTemplate<TbProtoQueueMsg<StringValue>> createConsumer(String groupId, boolean resetToEarliest) {
+        return InMemoryTbQueueConsumerTemplate.<TbProtoQueueMsg<StringValue>>builder()
+                .storage(storage)
+                .topic(TOPIC)
+                .topicConfigs(Map.of(QueueConstants.PARTITIONS, "3"))
+                .clientId("test-consumer")
+                .groupId(groupId)
+                .resetToEarliest(resetToEarliest)
+                .decoder(msg -> new TbProtoQueueMsg<>(msg.getKey(), StringValue.parseFrom(msg.getData()), msg.getHeaders(),
+                        msg.getPartition(), msg.getOffset()))
+                .build();
+    }
+
+    private InMemoryTbQueueMultiplexedConsumerTemplate<TbProtoQueueMsg<StringValue>> createMultiplexedConsumer() {
+        return InMemoryTbQueueMultiplexedConsumerTemplate.<TbProtoQueueMsg<StringValue>>builder()
+                .storage(storage)
+                .topicConfigs(Map.of(QueueConstants.PARTITIONS, "1"))
+                .decoder(msg -> new TbProtoQueueMsg<>(msg.getKey(), StringValue.parseFrom(msg.getData()), msg.getHeaders(),
+                        msg.getPartition(), msg.getOffset()))
+                .build();
+    }
+
+    private List<String> values(List<TbProtoQueueMsg<StringValue>> msgs) {
+        return msgs.stream().map(msg -> msg.getValue().getValue()).collect(Collectors.toList());
+    }
+
+    private TbQueueCallback callback(List<TbQueueMsgMetadata> metadata) {
+        return callback(metadata, new ArrayList<>());
+    }
+
+    private TbQueueCallback callback(List<TbQueueMsgMetadata> metadata, List<Throwable> failures) {
+        return new TbQueueCallback() {
+            @Override
+            public void onSuccess(TbQueueMsgMetadata msgMetadata) {
+                metadata.add(msgMetadata);
+            }
+
+            @Override
+            public void onFailure(Throwable t) {
+                failures.add(t);
+            }
+        };
+    }
+
+}
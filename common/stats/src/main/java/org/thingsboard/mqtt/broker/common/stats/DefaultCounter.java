@@ -17,32 +17,30 @@ package org.thingsboard.mqtt.broker.common.stats;
 
 import io.micrometer.core.instrument.Counter;
 
-import java.util.concurrent.atomic.AtomicInteger;
-
 public class DefaultCounter {
-    private final AtomicInteger aiCounter;
+    private final StripedCounter counter;
     private final Counter micrometerCounter;
 
-    public DefaultCounter(AtomicInteger aiCounter, Counter micrometerCounter) {
-        this.aiCounter = aiCounter;
+    public DefaultCounter(StripedCounter counter, Counter micrometerCounter) {
+        this.counter = counter;
         this.micrometerCounter = micrometerCounter;
     }
 
     public void increment() {
-        aiCounter.incrementAndGet();
+        counter.increment();
         micrometerCounter.increment();
     }
 
     public void clear() {
-        aiCounter.set(0);
+        counter.reset();
     }
 
     public int get() {
-        return aiCounter.get();
+        return (int) counter.sum();
     }
 
     public void add(int delta){
-        aiCounter.addAndGet(delta);
+        counter.add(delta);
         micrometerCounter.increment(delta);
     }
 }
@@ -15,6 +15,8 @@
  */
 package org.thingsboard.mqtt.broker.common.stats;
 
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
 import io.micrometer.core.instrument.MeterRegistry;
 import io.micrometer.core.instrument.Tags;
 import io.micrometer.core.instrument.Timer;
@@ -24,7 +26,6 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.thingsboard.mqtt.broker.common.data.StringUtils;
 
-import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.ToDoubleFunction;
 
 import static org.thingsboard.mqtt.broker.common.stats.StatsConstantNames.FAILED_MSGS;
@@ -62,7 +63,7 @@ public class DefaultStatsFactory implements StatsFactory {
         updatedTags[tags.length] = STATS_NAME_TAG;
         updatedTags[tags.length + 1] = statsName;
         return new StatsCounter(
-                new AtomicInteger(0),
+                new StripedCounter(),
                 meterRegistry.counter(key, updatedTags),
                 statsName
         );
@@ -71,7 +72,7 @@ public class DefaultStatsFactory implements StatsFactory {
     @Override
     public DefaultCounter createDefaultCounter(String key, String... tags) {
         return new DefaultCounter(
-                new AtomicInteger(0),
+                new StripedCounter(),
                 meterRegistry.counter(key, tags)
         );
     }
@@ -86,6 +87,14 @@ public class DefaultStatsFactory implements StatsFactory {
         return meterRegistry.gauge(key, Tags.of(tags), stateObject, valueFunction);
     }
 
+    @Override
+    public void removeGauge(String key, String... tags) {
+        Gauge gauge = meterRegistry.find(key).tags(tags).gauge();
+        if (gauge != null) {
+            meterRegistry.remove(gauge);
+        }
+    }
+
     @Override
     public MessagesStats createMessagesStats(String key, String... tags) {
         StatsCounter totalCounter = createStatsCounter(key, TOTAL_MSGS, tags);
@@ -106,4 +115,14 @@ public class DefaultStatsFactory implements StatsFactory {
         }
         return timerBuilder.register(meterRegistry);
     }
+
+    @Override
+    public DistributionSummary createDistributionSummary(String key, String... tags) {
+        DistributionSummary.Builder summaryBuilder = DistributionSummary.builder(key)
+                .tags(tags);
+        if (timerPercentiles != null && timerPercentiles.length > 0) {
+            summaryBuilder.publishPercentiles(timerPercentiles);
+        }
+        return summaryBuilder.register(meterRegistry);
+    }
 }
@@ -19,13 +19,12 @@ import io.micrometer.core.instrument.Timer;
 import lombok.Getter;
 
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 
 public class ResettableTimer {
 
-    private final AtomicInteger logCount = new AtomicInteger(0);
-    private final AtomicLong passedNanoseconds = new AtomicLong(0);
+    private final StripedCounter logCount = new StripedCounter();
+    private final StripedCounter passedNanoseconds = new StripedCounter();
     private final AtomicLong currentMaxValue = new AtomicLong(0);
 
     @Getter
@@ -43,16 +42,17 @@ public class ResettableTimer {
 
     public void logTime(long amount, TimeUnit unit) {
         timer.record(amount, unit);
-        passedNanoseconds.addAndGet(TimeUnit.NANOSECONDS.convert(amount, unit));
-        logCount.incrementAndGet();
-        if (storeMaxValue && currentMaxValue.get() < unit.toNanos(amount)) {
-            currentMaxValue.getAndSet(amount);
+        long nanos = unit.toNanos(amount);
+        passedNanoseconds.add(nanos);
+        logCount.increment();
+        if (storeMaxValue && currentMaxValue.get() < nanos) {
+            currentMaxValue.accumulateAndGet(nanos, Math::max);
         }
     }
 
     public double getAvg() {
-        double currentLogCount = logCount.get();
-        double currentPassedNanos = passedNanoseconds.get();
+        double currentLogCount = logCount.sum();
+        double currentPassedNanos = passedNanoseconds.sum();
         double avgNanoTime = currentLogCount > 0 ? currentPassedNanos / currentLogCount : 0;
         return avgNanoTime / 1_000_000;
     }
@@ -62,13 +62,13 @@ public class ResettableTimer {
     }
 
     public int getCount() {
-        return logCount.get();
+        return (int) logCount.sum();
     }
 
     public void reset() {
-        logCount.getAndSet(0);
-        passedNanoseconds.getAndSet(0);
-        currentMaxValue.getAndSet(0);
+        logCount.reset();
+        passedNanoseconds.reset();
+        currentMaxValue.set(0);
     }
 
 }
@@ -47,5 +47,9 @@ public class StatsConstantNames {
     public static final String NEW_RETAINED_MSGS = "newRetainedMsgs";
     public static final String CLEARED_RETAINED_MSGS = "clearedRetainedMsgs";
 
+    public static final String CACHE_HITS = "cacheHits";
+    public static final String CACHE_MISSES = "cacheMisses";
+    public static final String CACHE_EVICTIONS = "cacheEvictions";
+
     public static final String STATS_NAME_TAG = "statsName";
 }
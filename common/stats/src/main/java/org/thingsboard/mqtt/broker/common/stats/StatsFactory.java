@@ -15,6 +15,7 @@
  */
 package org.thingsboard.mqtt.broker.common.stats;
 
+import io.micrometer.core.instrument.DistributionSummary;
 import io.micrometer.core.instrument.Timer;
 
 import java.util.function.ToDoubleFunction;
@@ -29,7 +30,11 @@ public interface StatsFactory {
 
     <T> T createGauge(String key, T stateObject, ToDoubleFunction<T> valueFunction, String... tags);
 
+    void removeGauge(String key, String... tags);
+
     MessagesStats createMessagesStats(String key, String... tags);
 
     Timer createTimer(String key, String... tags);
+
+    DistributionSummary createDistributionSummary(String key, String... tags);
 }
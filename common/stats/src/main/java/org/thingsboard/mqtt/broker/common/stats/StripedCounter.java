@@ -0,0 +1,106 @@
+/**
+ * Copyright © 2016-2024 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.mqtt.broker.common.stats;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counter for the hot paths updated by many threads at once.
+ * <p>
+ * Like {@link java.util.concurrent.atomic.LongAdder} the counter is updated in a single base value until the first contention,
+ * after that every thread updates the cell picked by its id, each cell on its own cache line, so threads do not contend
+ * on the same cache line. Unlike {@link java.util.concurrent.atomic.LongAdder#sumThenReset()}, {@link #sumThenReset()}
+ * swaps the base and every cell atomically, so an update made concurrently with the reset is counted
+ * either in the returned sum or in the next one, never lost.
+ */
+public class StripedCounter {
+
+    private static final int MAX_STRIPES = 64;
+    // 16 longs = 128 bytes, keeps cells apart even with adjacent cache line prefetch
+    private static final int CELL_PADDING = 16;
+
+    private final AtomicLong base = new AtomicLong();
+    private final int stripes;
+    private volatile AtomicLongArray cells;
+
+    public StripedCounter() {
+        this(Runtime.getRuntime().availableProcessors() * 2);
+    }
+
+    public StripedCounter(int stripes) {
+        this.stripes = stripes <= 1 ? 1 : Math.min(MAX_STRIPES, Integer.highestOneBit(stripes - 1) << 1);
+    }
+
+    public void increment() {
+        add(1L);
+    }
+
+    public void add(long delta) {
+        AtomicLongArray cs = cells;
+        if (cs == null) {
+            long value = base.get();
+            if (base.compareAndSet(value, value + delta)) {
+                return;
+            }
+            cs = initCells();
+        }
+        cs.getAndAdd(cellIndex(), delta);
+    }
+
+    public long sum() {
+        long sum = base.get();
+        AtomicLongArray cs = cells;
+        if (cs != null) {
+            for (int i = 0; i < stripes; i++) {
+                sum += cs.get(i * CELL_PADDING);
+            }
+        }
+        return sum;
+    }
+
+    public long sumThenReset() {
+        long sum = base.getAndSet(0);
+        AtomicLongArray cs = cells;
+        if (cs != null) {
+            for (int i = 0; i < stripes; i++) {
+                int idx = i * CELL_PADDING;
+                if (cs.get(idx) != 0) {
+                    sum += cs.getAndSet(idx, 0);
+                }
+            }
+        }
+        return sum;
+    }
+
+    public void reset() {
+        sumThenReset();
+    }
+
+    private synchronized AtomicLongArray initCells() {
+        if (cells == null) {
+            cells = new AtomicLongArray(stripes * CELL_PADDING);
+        }
+        return cells;
+    }
+
+    private int cellIndex() {
+        long threadId = Thread.currentThread().getId();
+        int hash = (int) (threadId ^ (threadId >>> 32)) * 0x9E3779B9;
+        return ((hash ^ (hash >>> 16)) & (stripes - 1)) * CELL_PADDING;
+    }
+
+}
@@ -15,13 +15,45 @@
  */
 package org.thingsboard.mqtt.broker.common.util;
 
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
 
 public class ThingsBoardExecutors {
 
+    /*
+     * The broker is built for Java 17, so the virtual threads API (Java 21+) is looked up reflectively
+     * and used only when the broker runs on a newer runtime.
+     */
+    private static final Method OF_VIRTUAL_METHOD;
+    private static final Method BUILDER_NAME_METHOD;
+    private static final Method BUILDER_FACTORY_METHOD;
+    private static final Method NEW_THREAD_PER_TASK_EXECUTOR_METHOD;
+
+    static {
+        Method ofVirtual = null;
+        Method builderName = null;
+        Method builderFactory = null;
+        Method newThreadPerTaskExecutor = null;
+        try {
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            ofVirtual = Thread.class.getMethod("ofVirtual");
+            builderName = builderClass.getMethod("name", String.class, long.class);
+            builderFactory = builderClass.getMethod("factory");
+            newThreadPerTaskExecutor = Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class);
+        } catch (ReflectiveOperationException e) {
+            ofVirtual = null;
+        }
+        OF_VIRTUAL_METHOD = ofVirtual;
+        BUILDER_NAME_METHOD = builderName;
+        BUILDER_FACTORY_METHOD = builderFactory;
+        NEW_THREAD_PER_TASK_EXECUTOR_METHOD = newThreadPerTaskExecutor;
+    }
+
     /**
      * Method forked from ExecutorService to provide thread poll name
      *
@@ -65,6 +97,33 @@ public class ThingsBoardExecutors {
         return Executors.newCachedThreadPool(ThingsBoardThreadFactory.forName(serviceName));
     }
 
+    /**
+     * Creates the executor that starts a new virtual thread for every task if virtual threads are requested and supported
+     * by the runtime, otherwise the cached thread pool. Fits the tasks that spend most of the time blocked in poll or await,
+     * since a parked virtual thread does not occupy an OS thread unless it is pinned (e.g. parked inside a synchronized block).
+     */
+    public static ExecutorService initCachedExecutorService(String serviceName, boolean virtualThreads) {
+        if (virtualThreads && isVirtualThreadsSupported()) {
+            return newVirtualThreadPerTaskExecutor(serviceName);
+        }
+        return initCachedExecutorService(serviceName);
+    }
+
+    public static boolean isVirtualThreadsSupported() {
+        return OF_VIRTUAL_METHOD != null;
+    }
+
+    private static ExecutorService newVirtualThreadPerTaskExecutor(String serviceName) {
+        try {
+            Object builder = OF_VIRTUAL_METHOD.invoke(null);
+            builder = BUILDER_NAME_METHOD.invoke(builder, serviceName + "-virtual-", 0L);
+            ThreadFactory threadFactory = (ThreadFactory) BUILDER_FACTORY_METHOD.invoke(builder);
+            return (ExecutorService) NEW_THREAD_PER_TASK_EXECUTOR_METHOD.invoke(null, threadFactory);
+        } catch (IllegalAccessException | InvocationTargetException e) {
+            throw new IllegalStateException("Failed to create virtual thread executor " + serviceName, e);
+        }
+    }
+
     public static ScheduledExecutorService initScheduledExecutorService(int threadsCount, String serviceName) {
         if (threadsCount <= 1) {
             return Executors.newSingleThreadScheduledExecutor(ThingsBoardThreadFactory.forName(serviceName));
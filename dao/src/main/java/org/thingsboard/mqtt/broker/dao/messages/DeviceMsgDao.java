@@ -28,6 +28,8 @@ public interface DeviceMsgDao {
 
     List<DevicePublishMsg> findPersistedMessagesBySerialNumber(String clientId, long fromSerialNumber, long toSerialNumber);
 
+    List<DevicePublishMsg> findPersistedMessagesPage(String clientId, long fromSerialNumber, int pageSize, int messageLimit);
+
     void removePersistedMessages(String clientId);
 
     ListenableFuture<Void> removePersistedMessage(String clientId, int packetId);
@@ -68,6 +68,14 @@ public class DeviceMsgServiceImpl implements DeviceMsgService {
         return deviceMsgDao.findPersistedMessagesBySerialNumber(clientId, fromSerialNumber, toSerialNumber);
     }
 
+    @Override
+    public List<DevicePublishMsg> findPersistedMessagesPage(String clientId, long fromSerialNumber, int pageSize) {
+        if (log.isTraceEnabled()) {
+            log.trace("[{}] Loading persisted messages page, fromSerialNumber - {}, pageSize - {}.", clientId, fromSerialNumber, pageSize);
+        }
+        return deviceMsgDao.findPersistedMessagesPage(clientId, fromSerialNumber, pageSize, messagesLimit);
+    }
+
     @Override
     public void removePersistedMessages(String clientId) {
         if (log.isTraceEnabled()) {
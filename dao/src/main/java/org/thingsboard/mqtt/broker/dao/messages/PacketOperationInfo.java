@@ -0,0 +1,41 @@
+/**
+ * Copyright © 2016-2024 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.mqtt.broker.dao.messages;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.thingsboard.mqtt.broker.common.data.PersistedPacketType;
+
+/**
+ * Update of the packet type or removal of a persisted DEVICE message, queued together so that the operations on the same packet can be coalesced.
+ */
+@Getter
+@AllArgsConstructor(access = AccessLevel.PRIVATE)
+public class PacketOperationInfo {
+    private final String clientId;
+    private final int packetId;
+    private final boolean remove;
+    private final PersistedPacketType packetType;
+
+    public static PacketOperationInfo remove(String clientId, int packetId) {
+        return new PacketOperationInfo(clientId, packetId, true, null);
+    }
+
+    public static PacketOperationInfo updatePacketType(String clientId, int packetId, PersistedPacketType packetType) {
+        return new PacketOperationInfo(clientId, packetId, false, packetType);
+    }
+}
@@ -0,0 +1,228 @@
+/**
+ * Copyright © 2016-2024 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.mqtt.broker.dao.messages.log;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.stream.Stream;
+
+/**
+ * Append-only log of the persisted DEVICE messages and of the operations on them, split into memory-mapped segments.
+ * <p>
+ * A record is addressed by its position: the segment id in the high 32 bits and the offset inside the segment in the low ones.
+ * Appends, rolls and segment deletions must be done by one thread at a time, {@link #read(long, int, RecordConsumer)}
+ * may run concurrently with them as long as the segments it reads are not deleted.
+ */
+@Slf4j
+public class DeviceMsgLog {
+
+    private static final String CHECKPOINT_FILE = "mirror.checkpoint";
+    private static final String CHECKPOINT_TMP_FILE = "mirror.checkpoint.tmp";
+
+    private final Path dir;
+    private final int segmentSize;
+    private final ConcurrentNavigableMap<Long, DeviceMsgLogSegment> segments = new ConcurrentSkipListMap<>();
+
+    private volatile DeviceMsgLogSegment activeSegment;
+
+    public DeviceMsgLog(Path dir, int segmentSize) throws IOException {
+        this.dir = dir;
+        this.segmentSize = segmentSize;
+        Files.createDirectories(dir);
+        try (Stream<Path> files = Files.list(dir)) {
+            List<Path> segmentFiles = files
+                    .filter(file -> file.getFileName().toString().endsWith(DeviceMsgLogSegment.FILE_SUFFIX))
+                    .sorted()
+                    .toList();
+            for (Path segmentFile : segmentFiles) {
+                DeviceMsgLogSegment segment = DeviceMsgLogSegment.open(segmentFile);
+                segments.put(segment.getId(), segment);
+            }
+        }
+        if (segments.isEmpty()) {
+            roll(0, segmentSize);
+        } else {
+            activeSegment = segments.lastEntry().getValue();
+        }
+        log.info("Opened device msg log {} with {} segment(s)", dir, segments.size());
+    }
+
+    public static long position(long segmentId, int offset) {
+        return (segmentId << 32) | offset;
+    }
+
+    public static long segmentId(long position) {
+        return position >>> 32;
+    }
+
+    public static int offset(long position) {
+        return (int) position;
+    }
+
+    public long append(DeviceMsgLogRecord record) throws IOException {
+        byte[] body = DeviceMsgLogCodec.encode(record);
+        int offset = activeSegment.append(record.getType(), body);
+        if (offset < 0) {
+            roll(activeSegment.getId() + 1, Math.max(segmentSize, DeviceMsgLogSegment.RECORD_HEADER_SIZE + body.length));
+            offset = activeSegment.append(record.getType(), body);
+        }
+        return position(activeSegment.getId(), offset);
+    }
+
+    public DeviceMsgLogRecord read(long position) {
+        return getSegment(segmentId(position)).read(offset(position));
+    }
+
+    public int recordSize(long position) {
+        return getSegment(segmentId(position)).recordSize(offset(position));
+    }
+
+    /**
+     * Reads up to {@code maxRecords} records starting from the given position.
+     *
+     * @return the position right after the last read record.
+     */
+    public long read(long fromPosition, int maxRecords, RecordConsumer consumer) {
+        long position = fromPosition;
+        int readRecords = 0;
+        while (readRecords < maxRecords) {
+            Map.Entry<Long, DeviceMsgLogSegment> segmentEntry = segments.ceilingEntry(segmentId(position));
+            if (segmentEntry == null) {
+                break;
+            }
+            DeviceMsgLogSegment segment = segmentEntry.getValue();
+            if (segment.getId() != segmentId(position)) {
+                position = position(segment.getId(), 0);
+            }
+            int offset = offset(position);
+            if (offset >= segment.getSize()) {
+                Map.Entry<Long, DeviceMsgLogSegment> nextSegmentEntry = segments.higherEntry(segment.getId());
+                if (nextSegmentEntry == null) {
+                    break;
+                }
+                // the segment might have got its last record right before the roll
+                if (offset >= segment.getSize()) {
+                    position = position(nextSegmentEntry.getKey(), 0);
+                }
+                continue;
+            }
+            consumer.accept(position, segment.read(offset));
+            position = position(segment.getId(), offset + segment.recordSize(offset));
+            readRecords++;
+        }
+        return position;
+    }
+
+    /**
+     * Reads all the records of the given segment, it must not be deleted concurrently.
+     */
+    public void readSegment(long segmentId, RecordConsumer consumer) {
+        DeviceMsgLogSegment segment = segments.get(segmentId);
+        if (segment == null) {
+            return;
+        }
+        int size = segment.getSize();
+        int offset = 0;
+        while (offset < size) {
+            consumer.accept(position(segmentId, offset), segment.read(offset));
+            offset += segment.recordSize(offset);
+        }
+    }
+
+    public long getStartPosition() {
+        return position(segments.firstKey(), 0);
+    }
+
+    public long getEndPosition() {
+        DeviceMsgLogSegment segment = activeSegment;
+        return position(segment.getId(), segment.getSize());
+    }
+
+    public DeviceMsgLogSegment getActiveSegment() {
+        return activeSegment;
+    }
+
+    public DeviceMsgLogSegment getSegment(long segmentId) {
+        return segments.get(segmentId);
+    }
+
+    public DeviceMsgLogSegment getFirstSegment() {
+        return segments.firstEntry().getValue();
+    }
+
+    public int getSegmentsCount() {
+        return segments.size();
+    }
+
+    public void deleteSegment(long segmentId) {
+        if (segmentId == activeSegment.getId()) {
+            throw new IllegalArgumentException("Active device msg log segment can not be deleted");
+        }
+        DeviceMsgLogSegment segment = segments.remove(segmentId);
+        if (segment != null) {
+            segment.delete();
+            log.debug("Deleted device msg log segment {}", segmentId);
+        }
+    }
+
+    public void flush() {
+        activeSegment.flush();
+    }
+
+    public long readCheckpoint() throws IOException {
+        Path checkpointFile = dir.resolve(CHECKPOINT_FILE);
+        if (!Files.exists(checkpointFile)) {
+            return getStartPosition();
+        }
+        return ByteBuffer.wrap(Files.readAllBytes(checkpointFile)).getLong();
+    }
+
+    public void writeCheckpoint(long position) throws IOException {
+        Path tmpFile = dir.resolve(CHECKPOINT_TMP_FILE);
+        Files.write(tmpFile, ByteBuffer.allocate(8).putLong(position).array());
+        Files.move(tmpFile, dir.resolve(CHECKPOINT_FILE), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    public void close() {
+        for (DeviceMsgLogSegment segment : segments.values()) {
+            segment.flush();
+            segment.close();
+        }
+    }
+
+    private void roll(long segmentId, int capacity) throws IOException {
+        DeviceMsgLogSegment previousSegment = activeSegment;
+        if (previousSegment != null) {
+            previousSegment.flush();
+        }
+        DeviceMsgLogSegment segment = DeviceMsgLogSegment.create(dir, segmentId, capacity);
+        segments.put(segmentId, segment);
+        activeSegment = segment;
+    }
+
+    public interface RecordConsumer {
+        void accept(long position, DeviceMsgLogRecord record);
+    }
+}
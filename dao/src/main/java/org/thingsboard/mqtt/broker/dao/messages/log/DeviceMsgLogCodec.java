@@ -0,0 +1,166 @@
+/**
+ * Copyright © 2016-2024 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.mqtt.broker.dao.messages.log;
+
+import org.thingsboard.mqtt.broker.common.data.PersistedPacketType;
+import org.thingsboard.mqtt.broker.dao.model.sql.DevicePublishMsgEntity;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Binary layout of the {@link DeviceMsgLogRecord} bodies. The record type is kept in the segment record header.
+ */
+final class DeviceMsgLogCodec {
+
+    private static final PersistedPacketType[] PACKET_TYPES = PersistedPacketType.values();
+
+    private DeviceMsgLogCodec() {
+    }
+
+    static byte[] encode(DeviceMsgLogRecord record) {
+        byte[] clientId = toBytes(record.getClientId());
+        switch (record.getType()) {
+            case MSG:
+                return encodeMsg(clientId, record.getMsg());
+            case UPDATE_PACKET_TYPE:
+                return ByteBuffer.allocate(sizeOf(clientId) + 5)
+                        .put(withLength(clientId)).putInt(record.getPacketId()).put((byte) record.getPacketType().ordinal())
+                        .array();
+            case REMOVE_PACKET:
+                return ByteBuffer.allocate(sizeOf(clientId) + 4)
+                        .put(withLength(clientId)).putInt(record.getPacketId())
+                        .array();
+            case REMOVE_CLIENT:
+                return withLength(clientId);
+            default:
+                throw new IllegalArgumentException("Unsupported device msg log record type " + record.getType());
+        }
+    }
+
+    static DeviceMsgLogRecord decode(DeviceMsgLogRecordType type, ByteBuffer buffer) {
+        String clientId = getString(buffer);
+        switch (type) {
+            case MSG:
+                return DeviceMsgLogRecord.msg(decodeMsg(clientId, buffer));
+            case UPDATE_PACKET_TYPE:
+                return DeviceMsgLogRecord.updatePacketType(clientId, buffer.getInt(), PACKET_TYPES[buffer.get()]);
+            case REMOVE_PACKET:
+                return DeviceMsgLogRecord.removePacket(clientId, buffer.getInt());
+            case REMOVE_CLIENT:
+                return DeviceMsgLogRecord.removeClient(clientId);
+            default:
+                throw new IllegalArgumentException("Unsupported device msg log record type " + type);
+        }
+    }
+
+    private static byte[] encodeMsg(byte[] clientId, DevicePublishMsgEntity msg) {
+        byte[] topic = toBytes(msg.getTopic());
+        byte[] userProperties = toBytes(msg.getUserProperties());
+        byte[] contentType = toBytes(msg.getContentType());
+        byte[] responseTopic = toBytes(msg.getResponseTopic());
+        int size = sizeOf(clientId) + sizeOf(topic) + sizeOf(msg.getPayload()) + sizeOf(userProperties)
+                + sizeOf(contentType) + sizeOf(responseTopic) + sizeOf(msg.getCorrelationData())
+                // serial number, time, packet id, packet type, qos, retain, msg expiry interval, payload format indicator
+                + 8 + 8 + 4 + 1 + 1 + 1 + 5 + 5;
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        putBytes(buffer, clientId);
+        buffer.putLong(msg.getSerialNumber());
+        buffer.putLong(msg.getTime());
+        buffer.putInt(msg.getPacketId());
+        buffer.put((byte) msg.getPacketType().ordinal());
+        buffer.put(msg.getQos().byteValue());
+        buffer.put((byte) (msg.isRetain() ? 1 : 0));
+        putNullableInt(buffer, msg.getMsgExpiryInterval());
+        putNullableInt(buffer, msg.getPayloadFormatIndicator());
+        putBytes(buffer, topic);
+        putBytes(buffer, msg.getPayload());
+        putBytes(buffer, userProperties);
+        putBytes(buffer, contentType);
+        putBytes(buffer, responseTopic);
+        putBytes(buffer, msg.getCorrelationData());
+        return buffer.array();
+    }
+
+    private static DevicePublishMsgEntity decodeMsg(String clientId, ByteBuffer buffer) {
+        DevicePublishMsgEntity msg = new DevicePublishMsgEntity();
+        msg.setClientId(clientId);
+        msg.setSerialNumber(buffer.getLong());
+        msg.setTime(buffer.getLong());
+        msg.setPacketId(buffer.getInt());
+        msg.setPacketType(PACKET_TYPES[buffer.get()]);
+        msg.setQos((int) buffer.get());
+        msg.setRetain(buffer.get() == 1);
+        msg.setMsgExpiryInterval(getNullableInt(buffer));
+        msg.setPayloadFormatIndicator(getNullableInt(buffer));
+        msg.setTopic(getString(buffer));
+        msg.setPayload(getBytes(buffer));
+        msg.setUserProperties(getString(buffer));
+        msg.setContentType(getString(buffer));
+        msg.setResponseTopic(getString(buffer));
+        msg.setCorrelationData(getBytes(buffer));
+        return msg;
+    }
+
+    private static byte[] toBytes(String value) {
+        return value == null ? null : value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static int sizeOf(byte[] bytes) {
+        return bytes == null ? 4 : 4 + bytes.length;
+    }
+
+    private static byte[] withLength(byte[] bytes) {
+        ByteBuffer buffer = ByteBuffer.allocate(sizeOf(bytes));
+        putBytes(buffer, bytes);
+        return buffer.array();
+    }
+
+    private static void putBytes(ByteBuffer buffer, byte[] bytes) {
+        if (bytes == null) {
+            buffer.putInt(-1);
+        } else {
+            buffer.putInt(bytes.length);
+            buffer.put(bytes);
+        }
+    }
+
+    private static byte[] getBytes(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return bytes;
+    }
+
+    private static String getString(ByteBuffer buffer) {
+        byte[] bytes = getBytes(buffer);
+        return bytes == null ? null : new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void putNullableInt(ByteBuffer buffer, Integer value) {
+        buffer.put((byte) (value == null ? 0 : 1));
+        buffer.putInt(value == null ? 0 : value);
+    }
+
+    private static Integer getNullableInt(ByteBuffer buffer) {
+        boolean present = buffer.get() == 1;
+        int value = buffer.getInt();
+        return present ? value : null;
+    }
+}
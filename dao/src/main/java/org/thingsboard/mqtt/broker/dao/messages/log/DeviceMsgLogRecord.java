@@ -0,0 +1,49 @@
+/**
+ * Copyright © 2016-2024 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.mqtt.broker.dao.messages.log;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.thingsboard.mqtt.broker.common.data.PersistedPacketType;
+import org.thingsboard.mqtt.broker.dao.model.sql.DevicePublishMsgEntity;
+
+@Getter
+@AllArgsConstructor(access = AccessLevel.PRIVATE)
+public class DeviceMsgLogRecord {
+
+    private final DeviceMsgLogRecordType type;
+    private final String clientId;
+    private final DevicePublishMsgEntity msg;
+    private final int packetId;
+    private final PersistedPacketType packetType;
+
+    public static DeviceMsgLogRecord msg(DevicePublishMsgEntity msg) {
+        return new DeviceMsgLogRecord(DeviceMsgLogRecordType.MSG, msg.getClientId(), msg, 0, null);
+    }
+
+    public static DeviceMsgLogRecord updatePacketType(String clientId, int packetId, PersistedPacketType packetType) {
+        return new DeviceMsgLogRecord(DeviceMsgLogRecordType.UPDATE_PACKET_TYPE, clientId, null, packetId, packetType);
+    }
+
+    public static DeviceMsgLogRecord removePacket(String clientId, int packetId) {
+        return new DeviceMsgLogRecord(DeviceMsgLogRecordType.REMOVE_PACKET, clientId, null, packetId, null);
+    }
+
+    public static DeviceMsgLogRecord removeClient(String clientId) {
+        return new DeviceMsgLogRecord(DeviceMsgLogRecordType.REMOVE_CLIENT, clientId, null, 0, null);
+    }
+}
@@ -0,0 +1,50 @@
+/**
+ * Copyright © 2016-2024 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.mqtt.broker.dao.messages.log;
+
+public enum DeviceMsgLogRecordType {
+
+    MSG((byte) 1),
+    UPDATE_PACKET_TYPE((byte) 2),
+    REMOVE_PACKET((byte) 3),
+    REMOVE_CLIENT((byte) 4);
+
+    private static final DeviceMsgLogRecordType[] BY_CODE = new DeviceMsgLogRecordType[5];
+
+    static {
+        for (DeviceMsgLogRecordType type : values()) {
+            BY_CODE[type.code] = type;
+        }
+    }
+
+    private final byte code;
+
+    DeviceMsgLogRecordType(byte code) {
+        this.code = code;
+    }
+
+    public byte getCode() {
+        return code;
+    }
+
+    public static DeviceMsgLogRecordType fromCode(byte code) {
+        DeviceMsgLogRecordType type = code > 0 && code < BY_CODE.length ? BY_CODE[code] : null;
+        if (type == null) {
+            throw new IllegalArgumentException("Unknown device msg log record type " + code);
+        }
+        return type;
+    }
+}
@@ -0,0 +1,223 @@
+/**
+ * Copyright © 2016-2024 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.mqtt.broker.dao.messages.log;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import sun.misc.Unsafe;
+
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+
+/**
+ * Memory-mapped file of a fixed capacity holding the {@link DeviceMsgLog} records one after another.
+ * <p>
+ * Record layout: body length (4 bytes), CRC32 of type and body (4 bytes), type (1 byte), body.
+ * The length is written last, so a record torn by a crash is detected either by a zero length or by the checksum.
+ * The segment is appended by a single writer at a time, readers only see the records below {@link #getSize()}.
+ * The live message counters are updated from any thread, so the owner can tell whether the segment is still needed without walking its index.
+ */
+@Slf4j
+class DeviceMsgLogSegment {
+
+    static final int RECORD_HEADER_SIZE = 9;
+    static final String FILE_SUFFIX = ".log";
+
+    private static final Unsafe UNSAFE = loadUnsafe();
+
+    @Getter
+    private final long id;
+    private final Path path;
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private final int capacity;
+
+    private volatile int size;
+
+    private final AtomicInteger liveEntries = new AtomicInteger();
+    private final AtomicLong liveBytes = new AtomicLong();
+    private final AtomicLong maxEntryTime = new AtomicLong(Long.MIN_VALUE);
+
+    private DeviceMsgLogSegment(long id, Path path, FileChannel channel, int capacity) throws IOException {
+        this.id = id;
+        this.path = path;
+        this.channel = channel;
+        this.capacity = capacity;
+        this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+    }
+
+    static DeviceMsgLogSegment create(Path dir, long id, int capacity) throws IOException {
+        Path path = dir.resolve(fileName(id));
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        return new DeviceMsgLogSegment(id, path, channel, capacity);
+    }
+
+    static DeviceMsgLogSegment open(Path path) throws IOException {
+        String fileName = path.getFileName().toString();
+        long id = Long.parseLong(fileName.substring(0, fileName.length() - FILE_SUFFIX.length()));
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        DeviceMsgLogSegment segment = new DeviceMsgLogSegment(id, path, channel, (int) Files.size(path));
+        segment.size = segment.recoverSize();
+        return segment;
+    }
+
+    static String fileName(long id) {
+        return String.format("%020d", id) + FILE_SUFFIX;
+    }
+
+    /**
+     * @return offset of the appended record or -1 if the segment has no room left for it.
+     */
+    int append(DeviceMsgLogRecordType type, byte[] body) {
+        int offset = size;
+        if (offset + RECORD_HEADER_SIZE + body.length > capacity) {
+            return -1;
+        }
+        buffer.put(offset + 8, type.getCode());
+        buffer.put(offset + RECORD_HEADER_SIZE, body);
+        buffer.putInt(offset + 4, checksum(offset, body.length));
+        buffer.putInt(offset, body.length);
+        size = offset + RECORD_HEADER_SIZE + body.length;
+        return offset;
+    }
+
+    DeviceMsgLogRecord read(int offset) {
+        int length = buffer.getInt(offset);
+        DeviceMsgLogRecordType type = DeviceMsgLogRecordType.fromCode(buffer.get(offset + 8));
+        return DeviceMsgLogCodec.decode(type, buffer.slice(offset + RECORD_HEADER_SIZE, length));
+    }
+
+    int recordSize(int offset) {
+        return RECORD_HEADER_SIZE + buffer.getInt(offset);
+    }
+
+    int getSize() {
+        return size;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    void onEntryAdded(int recordSize, long entryTime) {
+        liveEntries.incrementAndGet();
+        liveBytes.addAndGet(recordSize);
+        maxEntryTime.accumulateAndGet(entryTime, Math::max);
+    }
+
+    void onEntryRemoved(int recordSize) {
+        liveEntries.decrementAndGet();
+        liveBytes.addAndGet(-recordSize);
+    }
+
+    int getLiveEntries() {
+        return liveEntries.get();
+    }
+
+    long getLiveBytes() {
+        return liveBytes.get();
+    }
+
+    /**
+     * @return the latest time of the messages ever added to the segment, so all of them are expired once it is older than the TTL.
+     */
+    long getMaxEntryTime() {
+        return maxEntryTime.get();
+    }
+
+    int getCapacity() {
+        return capacity;
+    }
+
+    void flush() {
+        buffer.force();
+    }
+
+    void close() {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            log.warn("[{}] Failed to close device msg log segment", path, e);
+        }
+    }
+
+    /**
+     * Closes the file and unmaps the buffer right away instead of waiting for GC, so the segment must not be read afterwards.
+     */
+    void delete() {
+        close();
+        unmap();
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            log.warn("[{}] Failed to delete device msg log segment", path, e);
+        }
+    }
+
+    private void unmap() {
+        if (UNSAFE == null) {
+            return;
+        }
+        try {
+            UNSAFE.invokeCleaner(buffer);
+        } catch (Exception e) {
+            log.warn("[{}] Failed to unmap device msg log segment", path, e);
+        }
+    }
+
+    private static Unsafe loadUnsafe() {
+        try {
+            Field field = Unsafe.class.getDeclaredField("theUnsafe");
+            field.setAccessible(true);
+            return (Unsafe) field.get(null);
+        } catch (Exception e) {
+            log.warn("Unsafe is not available, device msg log segments will be unmapped by GC", e);
+            return null;
+        }
+    }
+
+    private int recoverSize() {
+        int offset = 0;
+        while (offset + RECORD_HEADER_SIZE <= capacity) {
+            int length = buffer.getInt(offset);
+            if (length <= 0 || offset + RECORD_HEADER_SIZE + length > capacity || buffer.getInt(offset + 4) != checksum(offset, length)) {
+                break;
+            }
+            offset += RECORD_HEADER_SIZE + length;
+        }
+        if (offset + RECORD_HEADER_SIZE <= capacity && buffer.getInt(offset) != 0) {
+            log.warn("[{}] Truncating torn device msg log record at offset {}", path, offset);
+            buffer.put(offset, new byte[Math.min(capacity - offset, RECORD_HEADER_SIZE)]);
+        }
+        return offset;
+    }
+
+    private int checksum(int offset, int length) {
+        CRC32 crc = new CRC32();
+        ByteBuffer slice = buffer.slice(offset + 8, length + 1);
+        crc.update(slice);
+        return (int) crc.getValue();
+    }
+}
@@ -0,0 +1,593 @@
+/**
+ * Copyright © 2016-2024 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.mqtt.broker.dao.messages.log;
+
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.AllArgsConstructor;
+import lombok.RequiredArgsConstructor;
+import lombok.Setter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Primary;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.stereotype.Component;
+import org.thingsboard.mqtt.broker.common.data.DevicePublishMsg;
+import org.thingsboard.mqtt.broker.common.data.PersistedPacketType;
+import org.thingsboard.mqtt.broker.common.util.ThingsBoardThreadFactory;
+import org.thingsboard.mqtt.broker.dao.messages.DeletePacketInfo;
+import org.thingsboard.mqtt.broker.dao.messages.DeviceMsgDao;
+import org.thingsboard.mqtt.broker.dao.messages.LowLevelDeviceMsgRepository;
+import org.thingsboard.mqtt.broker.dao.messages.UpdatePacketTypeInfo;
+import org.thingsboard.mqtt.broker.dao.messages.sql.DeviceMsgRepository;
+import org.thingsboard.mqtt.broker.dao.model.sql.DevicePublishMsgEntity;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Write-behind {@link DeviceMsgDao} keeping the persisted DEVICE messages in a local {@link DeviceMsgLog}.
+ * <p>
+ * Every change is appended to the log and applied to the in-memory index of the live messages (serial number to log position per client),
+ * so saves and reads never wait for the database. A background thread mirrors the log into the device_publish_msg table in the log order
+ * and persists the mirrored position, so after a restart the index is rebuilt from the remaining segments and mirroring resumes where it stopped.
+ * A segment is deleted once it is mirrored and holds no live messages, a sparse or expired oldest segment is compacted by moving its live messages to the log end.
+ * Clients not present in the log (e.g. persisted before the log was enabled) are loaded from the database on the first access.
+ * <p>
+ * Each client index has its own lock, the log lock is only held to append a record and apply it, and is always taken after the client lock.
+ * <p>
+ * The log is local to the broker node, so this DAO is only valid for a single-node deployment: the application refuses to start it
+ * when other broker nodes are present in the cluster.
+ */
+@Slf4j
+@Primary
+@Component
+@ConditionalOnProperty(prefix = "mqtt.persistent-session.device.persisted-messages.log", value = "enabled", havingValue = "true")
+@RequiredArgsConstructor
+public class LogDeviceMsgDao implements DeviceMsgDao {
+
+    private final DeviceMsgLogConfiguration configuration;
+    private final LowLevelDeviceMsgRepository lowLevelDeviceMsgRepository;
+    private final DeviceMsgRepository deviceMsgRepository;
+
+    private final Lock logLock = new ReentrantLock();
+    private final ConcurrentMap<String, ClientIndex> clientIndexes = new ConcurrentHashMap<>();
+
+    @Setter
+    @Value("${mqtt.persistent-session.device.persisted-messages.limit:1000}")
+    private int messagesLimit;
+    @Setter
+    @Value("${mqtt.persistent-session.device.persisted-messages.ttl:604800}")
+    private long messagesTtl;
+
+    private DeviceMsgLog deviceMsgLog;
+    private ExecutorService mirrorExecutor;
+    private volatile boolean stopped;
+    private volatile long mirroredPosition;
+
+    @PostConstruct
+    public void init() throws IOException {
+        deviceMsgLog = new DeviceMsgLog(Path.of(configuration.getDir()), configuration.getSegmentSize());
+        mirroredPosition = deviceMsgLog.readCheckpoint();
+        deviceMsgLog.read(deviceMsgLog.getStartPosition(), Integer.MAX_VALUE, this::replay);
+        log.info("Loaded {} clients from device msg log, mirrored position {}", clientIndexes.size(), mirroredPosition);
+        mirrorExecutor = Executors.newSingleThreadExecutor(ThingsBoardThreadFactory.forName("device-msg-log-mirror"));
+        mirrorExecutor.execute(this::mirrorLoop);
+    }
+
+    @Override
+    public void save(List<DevicePublishMsg> devicePublishMessages, boolean failOnConflict) {
+        if (log.isTraceEnabled()) {
+            log.trace("Saving device publish messages: failOnConflict - {}, msgs - {}", failOnConflict, devicePublishMessages);
+        }
+        // sorted by client id, so the locks of several clients are always taken in the same order
+        Map<String, ClientIndex> indexes = new TreeMap<>();
+        for (DevicePublishMsg msg : devicePublishMessages) {
+            indexes.computeIfAbsent(msg.getClientId(), this::getClientIndex);
+        }
+        indexes.values().forEach(clientIndex -> clientIndex.lock.lock());
+        try {
+            if (failOnConflict) {
+                for (DevicePublishMsg msg : devicePublishMessages) {
+                    if (indexes.get(msg.getClientId()).entries.containsKey(msg.getSerialNumber())) {
+                        throw new DuplicateKeyException("Device publish message for client " + msg.getClientId()
+                                + " with serial number " + msg.getSerialNumber() + " already exists");
+                    }
+                }
+            }
+            for (DevicePublishMsg msg : devicePublishMessages) {
+                append(indexes.get(msg.getClientId()), DeviceMsgLogRecord.msg(new DevicePublishMsgEntity(msg)));
+            }
+        } finally {
+            indexes.values().forEach(clientIndex -> clientIndex.lock.unlock());
+        }
+    }
+
+    @Override
+    public List<DevicePublishMsg> findPersistedMessages(String clientId, int messageLimit) {
+        if (log.isTraceEnabled()) {
+            log.trace("Finding device publish messages, clientId - {}, limit - {}", clientId, messageLimit);
+        }
+        ClientIndex clientIndex = getClientIndex(clientId);
+        clientIndex.lock.lock();
+        try {
+            List<DevicePublishMsg> msgs = readMessages(clientIndex.entries.descendingMap(), messageLimit);
+            Collections.reverse(msgs);
+            return msgs;
+        } finally {
+            clientIndex.lock.unlock();
+        }
+    }
+
+    @Override
+    public List<DevicePublishMsg> findPersistedMessagesBySerialNumber(String clientId, long fromSerialNumber, long toSerialNumber) {
+        if (log.isTraceEnabled()) {
+            log.trace("Finding device publish messages, clientId - {}, fromSerialNumber - {}, toSerialNumber - {}", clientId, fromSerialNumber, toSerialNumber);
+        }
+        ClientIndex clientIndex = getClientIndex(clientId);
+        clientIndex.lock.lock();
+        try {
+            return readMessages(clientIndex.entries.subMap(fromSerialNumber, true, toSerialNumber, false), Integer.MAX_VALUE);
+        } finally {
+            clientIndex.lock.unlock();
+        }
+    }
+
+    @Override
+    public List<DevicePublishMsg> findPersistedMessagesPage(String clientId, long fromSerialNumber, int pageSize, int messageLimit) {
+        if (log.isTraceEnabled()) {
+            log.trace("Finding device publish messages page, clientId - {}, fromSerialNumber - {}, pageSize - {}, limit - {}",
+                    clientId, fromSerialNumber, pageSize, messageLimit);
+        }
+        ClientIndex clientIndex = getClientIndex(clientId);
+        clientIndex.lock.lock();
+        try {
+            NavigableMap<Long, IndexEntry> entries = clientIndex.entries;
+            long firstSerialNumber = fromSerialNumber;
+            if (entries.size() > messageLimit) {
+                Iterator<Long> serialNumbers = entries.descendingKeySet().iterator();
+                for (int i = 1; i < messageLimit; i++) {
+                    serialNumbers.next();
+                }
+                firstSerialNumber = Math.max(firstSerialNumber, serialNumbers.next());
+            }
+            return readMessages(entries.tailMap(firstSerialNumber, true), pageSize);
+        } finally {
+            clientIndex.lock.unlock();
+        }
+    }
+
+    @Override
+    public void removePersistedMessages(String clientId) {
+        if (log.isTraceEnabled()) {
+            log.trace("Removing device publish messages, clientId - {}", clientId);
+        }
+        // no need to load the client from the database just to remove all its messages
+        ClientIndex clientIndex = clientIndexes.computeIfAbsent(clientId, id -> new ClientIndex());
+        clientIndex.lock.lock();
+        try {
+            append(clientIndex, DeviceMsgLogRecord.removeClient(clientId));
+        } finally {
+            clientIndex.lock.unlock();
+        }
+    }
+
+    @Override
+    public ListenableFuture<Void> removePersistedMessage(String clientId, int packetId) {
+        if (log.isTraceEnabled()) {
+            log.trace("Removing device publish message, clientId - {}, packetId - {}", clientId, packetId);
+        }
+        return appendPacketRecord(clientId, DeviceMsgLogRecord.removePacket(clientId, packetId));
+    }
+
+    @Override
+    public ListenableFuture<Void> updatePacketType(String clientId, int packetId, PersistedPacketType packetType) {
+        if (log.isTraceEnabled()) {
+            log.trace("Updating packet type for device publish message, clientId - {}, packetId - {}, packetType - {}.", clientId, packetId, packetType);
+        }
+        return appendPacketRecord(clientId, DeviceMsgLogRecord.updatePacketType(clientId, packetId, packetType));
+    }
+
+    private ListenableFuture<Void> appendPacketRecord(String clientId, DeviceMsgLogRecord record) {
+        try {
+            ClientIndex clientIndex = getClientIndex(clientId);
+            clientIndex.lock.lock();
+            try {
+                append(clientIndex, record);
+            } finally {
+                clientIndex.lock.unlock();
+            }
+            return Futures.immediateFuture(null);
+        } catch (Exception e) {
+            return Futures.immediateFailedFuture(e);
+        }
+    }
+
+    private List<DevicePublishMsg> readMessages(NavigableMap<Long, IndexEntry> entries, int limit) {
+        long earliestAcceptableTime = getEarliestAcceptableTime();
+        List<DevicePublishMsg> msgs = new ArrayList<>(Math.min(entries.size(), limit));
+        for (IndexEntry entry : entries.values()) {
+            if (msgs.size() >= limit) {
+                break;
+            }
+            if (entry.time < earliestAcceptableTime) {
+                continue;
+            }
+            DevicePublishMsgEntity msg = deviceMsgLog.read(entry.position).getMsg();
+            msg.setPacketType(entry.packetType);
+            msgs.add(msg.toData());
+        }
+        return msgs;
+    }
+
+    private long getEarliestAcceptableTime() {
+        return messagesTtl > 0 ? System.currentTimeMillis() - TimeUnit.SECONDS.toMillis(messagesTtl) : 0;
+    }
+
+    /**
+     * Returns the index of the client, loading its messages from the database without holding any lock if the client is not in the log yet.
+     */
+    private ClientIndex getClientIndex(String clientId) {
+        ClientIndex clientIndex = clientIndexes.get(clientId);
+        if (clientIndex != null) {
+            return clientIndex;
+        }
+        List<DevicePublishMsgEntity> persistedMsgs = deviceMsgRepository.findByClientIdReversed(clientId, messagesLimit);
+        ClientIndex loadedIndex = new ClientIndex();
+        // locked before being published, so other threads wait for the loaded messages to be appended
+        loadedIndex.lock.lock();
+        try {
+            clientIndex = clientIndexes.putIfAbsent(clientId, loadedIndex);
+            if (clientIndex != null) {
+                return clientIndex;
+            }
+            for (int i = persistedMsgs.size() - 1; i >= 0; i--) {
+                append(loadedIndex, DeviceMsgLogRecord.msg(persistedMsgs.get(i)));
+            }
+        } finally {
+            loadedIndex.lock.unlock();
+        }
+        if (log.isDebugEnabled()) {
+            log.debug("[{}] Loaded {} persisted messages from the database to device msg log", clientId, persistedMsgs.size());
+        }
+        return loadedIndex;
+    }
+
+    /**
+     * Appends the record and applies it to the index of its client, the caller must hold the client lock.
+     */
+    private void append(ClientIndex clientIndex, DeviceMsgLogRecord record) {
+        logLock.lock();
+        try {
+            apply(clientIndex, appendToLog(record), record);
+        } finally {
+            logLock.unlock();
+        }
+    }
+
+    private long appendToLog(DeviceMsgLogRecord record) {
+        try {
+            return deviceMsgLog.append(record);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to append record to device msg log", e);
+        }
+    }
+
+    private void replay(long position, DeviceMsgLogRecord record) {
+        DeviceMsgLogRecordType type = record.getType();
+        ClientIndex clientIndex = type == DeviceMsgLogRecordType.MSG || type == DeviceMsgLogRecordType.REMOVE_CLIENT ?
+                clientIndexes.computeIfAbsent(record.getClientId(), id -> new ClientIndex()) : clientIndexes.get(record.getClientId());
+        if (clientIndex != null) {
+            apply(clientIndex, position, record);
+        }
+    }
+
+    private void apply(ClientIndex clientIndex, long position, DeviceMsgLogRecord record) {
+        switch (record.getType()) {
+            case MSG:
+                DevicePublishMsgEntity msg = record.getMsg();
+                IndexEntry entry = new IndexEntry(msg.getSerialNumber(), position, deviceMsgLog.recordSize(position),
+                        msg.getPacketId(), msg.getPacketType(), msg.getTime(), null);
+                segmentOf(entry).onEntryAdded(entry.size, entry.time);
+                release(clientIndex.put(entry));
+                while (clientIndex.entries.size() > messagesLimit) {
+                    release(clientIndex.remove(clientIndex.entries.firstEntry().getValue()));
+                }
+                break;
+            case UPDATE_PACKET_TYPE:
+                for (IndexEntry indexEntry = clientIndex.entriesByPacketId.get(record.getPacketId()); indexEntry != null;
+                     indexEntry = indexEntry.nextWithSamePacketId) {
+                    indexEntry.packetType = record.getPacketType();
+                }
+                break;
+            case REMOVE_PACKET:
+                IndexEntry removedEntry = clientIndex.entriesByPacketId.remove(record.getPacketId());
+                while (removedEntry != null) {
+                    clientIndex.entries.remove(removedEntry.serialNumber);
+                    release(removedEntry);
+                    removedEntry = removedEntry.nextWithSamePacketId;
+                }
+                break;
+            case REMOVE_CLIENT:
+                clientIndex.entries.values().forEach(this::release);
+                clientIndex.clear();
+                break;
+        }
+    }
+
+    private void release(IndexEntry entry) {
+        if (entry != null) {
+            segmentOf(entry).onEntryRemoved(entry.size);
+        }
+    }
+
+    private DeviceMsgLogSegment segmentOf(IndexEntry entry) {
+        return deviceMsgLog.getSegment(DeviceMsgLog.segmentId(entry.position));
+    }
+
+    /**
+     * Deletes the oldest segments that are mirrored and hold no live messages, compacting the oldest one first when it is sparse or expired.
+     * Only the mirror thread deletes segments, so it may read the mirrored ones without locking.
+     */
+    private void deleteMirroredSegments() {
+        while (deviceMsgLog.getSegmentsCount() > 1) {
+            DeviceMsgLogSegment segment = deviceMsgLog.getFirstSegment();
+            if (segment == deviceMsgLog.getActiveSegment() || !isMirrored(segment)) {
+                break;
+            }
+            if (segment.getLiveEntries() > 0) {
+                boolean sparse = segment.getLiveBytes() <= segment.getCapacity() * configuration.getCompactionThreshold();
+                boolean expired = messagesTtl > 0 && segment.getMaxEntryTime() < getEarliestAcceptableTime();
+                if (!sparse && !expired) {
+                    break;
+                }
+                compact(segment);
+            }
+            logLock.lock();
+            try {
+                if (segment.getLiveEntries() > 0) {
+                    break;
+                }
+                deviceMsgLog.deleteSegment(segment.getId());
+            } finally {
+                logLock.unlock();
+            }
+        }
+    }
+
+    private boolean isMirrored(DeviceMsgLogSegment segment) {
+        long mirroredSegmentId = DeviceMsgLog.segmentId(mirroredPosition);
+        return mirroredSegmentId > segment.getId()
+                || (mirroredSegmentId == segment.getId() && DeviceMsgLog.offset(mirroredPosition) >= segment.getSize());
+    }
+
+    /**
+     * Moves the live messages of the oldest segment to the log end and drops the expired ones,
+     * so that a few unacknowledged messages do not keep the whole segment (and all the segments after it) on disk.
+     * Only the records of this segment are scanned: a message is live while its client index still points to the scanned position.
+     */
+    private void compact(DeviceMsgLogSegment segment) {
+        List<SegmentMsg> segmentMsgs = new ArrayList<>();
+        deviceMsgLog.readSegment(segment.getId(), (position, record) -> {
+            if (record.getType() == DeviceMsgLogRecordType.MSG) {
+                segmentMsgs.add(new SegmentMsg(position, record.getClientId(), record.getMsg().getSerialNumber()));
+            }
+        });
+        long earliestAcceptableTime = getEarliestAcceptableTime();
+        int relocated = 0;
+        int expired = 0;
+        for (SegmentMsg segmentMsg : segmentMsgs) {
+            ClientIndex clientIndex = clientIndexes.get(segmentMsg.clientId);
+            if (clientIndex == null) {
+                continue;
+            }
+            clientIndex.lock.lock();
+            try {
+                IndexEntry entry = clientIndex.entries.get(segmentMsg.serialNumber);
+                if (entry == null || entry.position != segmentMsg.position) {
+                    continue;
+                }
+                if (entry.time < earliestAcceptableTime) {
+                    release(clientIndex.remove(entry));
+                    expired++;
+                    continue;
+                }
+                DevicePublishMsgEntity msg = deviceMsgLog.read(entry.position).getMsg();
+                msg.setPacketType(entry.packetType);
+                logLock.lock();
+                try {
+                    long position = appendToLog(DeviceMsgLogRecord.msg(msg));
+                    release(entry);
+                    entry.position = position;
+                    entry.size = deviceMsgLog.recordSize(position);
+                    segmentOf(entry).onEntryAdded(entry.size, entry.time);
+                } finally {
+                    logLock.unlock();
+                }
+                relocated++;
+            } finally {
+                clientIndex.lock.unlock();
+            }
+        }
+        log.debug("Moved {} live and dropped {} expired messages out of device msg log segment {}", relocated, expired, segment.getId());
+    }
+
+    private void mirrorLoop() {
+        long lastFlushTime = System.currentTimeMillis();
+        while (!stopped) {
+            try {
+                if (System.currentTimeMillis() - lastFlushTime >= configuration.getFlushInterval()) {
+                    deviceMsgLog.flush();
+                    lastFlushTime = System.currentTimeMillis();
+                }
+                List<DeviceMsgLogRecord> records = new ArrayList<>();
+                long nextPosition = deviceMsgLog.read(mirroredPosition, configuration.getMirrorBatchSize(), (position, record) -> records.add(record));
+                if (!records.isEmpty()) {
+                    mirror(records);
+                }
+                if (nextPosition != mirroredPosition) {
+                    deviceMsgLog.writeCheckpoint(nextPosition);
+                    mirroredPosition = nextPosition;
+                    deleteMirroredSegments();
+                }
+                if (records.size() < configuration.getMirrorBatchSize()) {
+                    Thread.sleep(configuration.getMirrorMaxDelay());
+                }
+            } catch (InterruptedException e) {
+                break;
+            } catch (Throwable t) {
+                log.warn("Failed to mirror device msg log to the database, position {}", mirroredPosition, t);
+                try {
+                    Thread.sleep(configuration.getMirrorMaxDelay());
+                } catch (InterruptedException e) {
+                    break;
+                }
+            }
+        }
+    }
+
+    private void mirror(List<DeviceMsgLogRecord> records) {
+        int from = 0;
+        while (from < records.size()) {
+            DeviceMsgLogRecordType type = records.get(from).getType();
+            int to = from + 1;
+            while (to < records.size() && records.get(to).getType() == type) {
+                to++;
+            }
+            List<DeviceMsgLogRecord> sameTypeRecords = records.subList(from, to);
+            switch (type) {
+                case MSG:
+                    lowLevelDeviceMsgRepository.insertOrUpdate(sameTypeRecords.stream().map(DeviceMsgLogRecord::getMsg).toList());
+                    break;
+                case UPDATE_PACKET_TYPE:
+                    lowLevelDeviceMsgRepository.updatePacketTypes(sameTypeRecords.stream()
+                            .map(record -> new UpdatePacketTypeInfo(record.getClientId(), record.getPacketType(), record.getPacketId())).toList());
+                    break;
+                case REMOVE_PACKET:
+                    lowLevelDeviceMsgRepository.removePackets(sameTypeRecords.stream()
+                            .map(record -> new DeletePacketInfo(record.getClientId(), record.getPacketId())).toList());
+                    break;
+                case REMOVE_CLIENT:
+                    sameTypeRecords.forEach(record -> lowLevelDeviceMsgRepository.removePacketsByClientId(record.getClientId()));
+                    break;
+            }
+            from = to;
+        }
+    }
+
+    @PreDestroy
+    public void destroy() {
+        stopped = true;
+        if (mirrorExecutor != null) {
+            mirrorExecutor.shutdownNow();
+            try {
+                mirrorExecutor.awaitTermination(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (deviceMsgLog != null) {
+            deviceMsgLog.close();
+        }
+    }
+
+    private static class ClientIndex {
+
+        private final Lock lock = new ReentrantLock();
+        private final NavigableMap<Long, IndexEntry> entries = new TreeMap<>();
+        // heads of the chains of the entries sharing a packet id
+        private final Map<Integer, IndexEntry> entriesByPacketId = new HashMap<>();
+
+        /**
+         * @return the replaced entry with the same serial number, if any.
+         */
+        private IndexEntry put(IndexEntry entry) {
+            IndexEntry replacedEntry = entries.put(entry.serialNumber, entry);
+            if (replacedEntry != null) {
+                unlinkPacketId(replacedEntry);
+            }
+            entry.nextWithSamePacketId = entriesByPacketId.put(entry.packetId, entry);
+            return replacedEntry;
+        }
+
+        private IndexEntry remove(IndexEntry entry) {
+            entries.remove(entry.serialNumber);
+            unlinkPacketId(entry);
+            return entry;
+        }
+
+        private void clear() {
+            entries.clear();
+            entriesByPacketId.clear();
+        }
+
+        private void unlinkPacketId(IndexEntry entry) {
+            IndexEntry head = entriesByPacketId.get(entry.packetId);
+            if (head == entry) {
+                if (entry.nextWithSamePacketId == null) {
+                    entriesByPacketId.remove(entry.packetId);
+                } else {
+                    entriesByPacketId.put(entry.packetId, entry.nextWithSamePacketId);
+                }
+            } else {
+                IndexEntry previous = head;
+                while (previous != null && previous.nextWithSamePacketId != entry) {
+                    previous = previous.nextWithSamePacketId;
+                }
+                if (previous != null) {
+                    previous.nextWithSamePacketId = entry.nextWithSamePacketId;
+                }
+            }
+            entry.nextWithSamePacketId = null;
+        }
+    }
+
+    @AllArgsConstructor
+    private static class IndexEntry {
+        private final long serialNumber;
+        private long position;
+        private int size;
+        private final int packetId;
+        private PersistedPacketType packetType;
+        private final long time;
+        private IndexEntry nextWithSamePacketId;
+    }
+
+    @AllArgsConstructor
+    private static class SegmentMsg {
+        private final long position;
+        private final String clientId;
+        private final long serialNumber;
+    }
+}
@@ -52,6 +52,19 @@ public interface DeviceMsgRepository extends JpaRepository<DevicePublishMsgEntit
                                                                       @Param("fromSerialNumber") long fromSerialNumber,
                                                                       @Param("toSerialNumber") long toSerialNumber);
 
+    @Query(value = "SELECT * FROM (SELECT * FROM " + DEVICE_PUBLISH_MSG + " pubMsg " +
+            "WHERE pubMsg." + CLIENT_ID + " = :clientId " +
+            "ORDER BY pubMsg." + SERIAL_NUMBER + " DESC " +
+            "LIMIT :limit) latestMsg " +
+            "WHERE latestMsg." + SERIAL_NUMBER + " >= :fromSerialNumber " +
+            "ORDER BY latestMsg." + SERIAL_NUMBER + " ASC " +
+            "LIMIT :pageSize",
+            nativeQuery = true)
+    List<DevicePublishMsgEntity> findPageByClientId(@Param("clientId") String clientId,
+                                                    @Param("fromSerialNumber") long fromSerialNumber,
+                                                    @Param("pageSize") int pageSize,
+                                                    @Param("limit") int limit);
+
     @Query(value = "SELECT * FROM " + DEVICE_PUBLISH_MSG + " pubMsg " +
             "WHERE pubMsg." + CLIENT_ID + " = :clientId " +
             "ORDER BY pubMsg." + SERIAL_NUMBER + " DESC " +
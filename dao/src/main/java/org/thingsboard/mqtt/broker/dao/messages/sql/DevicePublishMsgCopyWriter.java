@@ -0,0 +1,125 @@
+/**
+ * Copyright © 2016-2024 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.mqtt.broker.dao.messages.sql;
+
+import org.postgresql.copy.CopyIn;
+import org.thingsboard.mqtt.broker.dao.model.sql.DevicePublishMsgEntity;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.util.List;
+
+/**
+ * Streams {@link DevicePublishMsgEntity} rows to a PostgreSQL {@code COPY ... FROM STDIN WITH (FORMAT binary)} operation.
+ * Column order matches {@link SqlLowLevelDeviceMsgRepository#COPY_COLUMNS}.
+ */
+final class DevicePublishMsgCopyWriter {
+
+    private static final byte[] SIGNATURE = {'P', 'G', 'C', 'O', 'P', 'Y', '\n', (byte) 0xFF, '\r', '\n', 0};
+    private static final short COLUMNS_COUNT = 15;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final CopyIn copyIn;
+    private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+
+    DevicePublishMsgCopyWriter(CopyIn copyIn) {
+        this.copyIn = copyIn;
+    }
+
+    long write(List<DevicePublishMsgEntity> entities) throws SQLException {
+        buffer.put(SIGNATURE).putInt(0).putInt(0);
+        for (DevicePublishMsgEntity entity : entities) {
+            ensureCapacity(2);
+            buffer.putShort(COLUMNS_COUNT);
+            writeString(entity.getClientId());
+            writeString(entity.getTopic());
+            writeLong(entity.getSerialNumber());
+            writeInt(entity.getPacketId());
+            writeString(entity.getPacketType() == null ? null : entity.getPacketType().toString());
+            writeLong(entity.getTime());
+            writeInt(entity.getQos());
+            writeBytes(entity.getPayload());
+            writeString(entity.getUserProperties());
+            ensureCapacity(5);
+            buffer.putInt(1).put((byte) (entity.isRetain() ? 1 : 0));
+            writeInt(entity.getMsgExpiryInterval());
+            writeInt(entity.getPayloadFormatIndicator());
+            writeString(entity.getContentType());
+            writeString(entity.getResponseTopic());
+            writeBytes(entity.getCorrelationData());
+        }
+        ensureCapacity(2);
+        buffer.putShort((short) -1);
+        flush();
+        return copyIn.endCopy();
+    }
+
+    private void writeString(String value) throws SQLException {
+        writeBytes(value == null ? null : value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private void writeLong(Long value) throws SQLException {
+        if (value == null) {
+            writeNull();
+        } else {
+            ensureCapacity(12);
+            buffer.putInt(8).putLong(value);
+        }
+    }
+
+    private void writeInt(Integer value) throws SQLException {
+        if (value == null) {
+            writeNull();
+        } else {
+            ensureCapacity(8);
+            buffer.putInt(4).putInt(value);
+        }
+    }
+
+    private void writeBytes(byte[] value) throws SQLException {
+        if (value == null) {
+            writeNull();
+            return;
+        }
+        ensureCapacity(4);
+        buffer.putInt(value.length);
+        if (value.length <= buffer.remaining()) {
+            buffer.put(value);
+        } else {
+            flush();
+            copyIn.writeToCopy(value, 0, value.length);
+        }
+    }
+
+    private void writeNull() throws SQLException {
+        ensureCapacity(4);
+        buffer.putInt(-1);
+    }
+
+    private void ensureCapacity(int bytes) throws SQLException {
+        if (buffer.remaining() < bytes) {
+            flush();
+        }
+    }
+
+    private void flush() throws SQLException {
+        if (buffer.position() > 0) {
+            copyIn.writeToCopy(buffer.array(), 0, buffer.position());
+            buffer.clear();
+        }
+    }
+}
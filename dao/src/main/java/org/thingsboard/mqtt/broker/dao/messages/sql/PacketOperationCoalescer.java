@@ -0,0 +1,39 @@
+/**
+ * Copyright © 2016-2024 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.mqtt.broker.dao.messages.sql;
+
+import org.thingsboard.mqtt.broker.dao.messages.PacketOperationInfo;
+import org.thingsboard.mqtt.broker.dao.sql.TbSqlQueueCoalescer;
+
+/**
+ * A removal supersedes any earlier operation on the same packet and a packet type update supersedes an earlier update.
+ * An update following a removal is kept, since it targets the message that reused the packet id.
+ */
+class PacketOperationCoalescer implements TbSqlQueueCoalescer<PacketOperationInfo> {
+
+    @Override
+    public Object getKey(PacketOperationInfo operation) {
+        return operation.getClientId() + "|" + operation.getPacketId();
+    }
+
+    @Override
+    public PacketOperationInfo merge(PacketOperationInfo previous, PacketOperationInfo next) {
+        if (next.isRemove() || !previous.isRemove()) {
+            return next;
+        }
+        return null;
+    }
+}
@@ -28,13 +28,16 @@ import org.thingsboard.mqtt.broker.dao.DaoUtil;
 import org.thingsboard.mqtt.broker.dao.messages.DeletePacketInfo;
 import org.thingsboard.mqtt.broker.dao.messages.DeviceMsgDao;
 import org.thingsboard.mqtt.broker.dao.messages.LowLevelDeviceMsgRepository;
+import org.thingsboard.mqtt.broker.dao.messages.PacketOperationInfo;
 import org.thingsboard.mqtt.broker.dao.messages.UpdatePacketTypeInfo;
 import org.thingsboard.mqtt.broker.dao.model.sql.DevicePublishMsgEntity;
 import org.thingsboard.mqtt.broker.dao.sql.SqlQueueStatsManager;
 import org.thingsboard.mqtt.broker.dao.sql.TbSqlBlockingQueuePool;
 import org.thingsboard.mqtt.broker.dao.sql.TbSqlQueue;
 import org.thingsboard.mqtt.broker.dao.sql.TbSqlQueueParams;
+import org.thingsboard.mqtt.broker.dao.sql.TbSqlQueueType;
 
+import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.List;
 import java.util.function.Function;
@@ -49,17 +52,23 @@ public class SqlDeviceMsgDao implements DeviceMsgDao {
     private final DeviceMsgRepository deviceMsgRepository;
     private final DeletePacketQueueConfiguration deletePacketQueueConfiguration;
     private final UpdatePacketQueueConfiguration updatePacketQueueConfiguration;
+    private final PacketQueueConfiguration packetQueueConfiguration;
 
     @Autowired(required = false)
     private SqlQueueStatsManager sqlQueueStatsManager;
 
     private TbSqlQueue<UpdatePacketTypeInfo> updatePacketTypeQueue;
     private TbSqlQueue<DeletePacketInfo> deletePacketQueue;
+    private TbSqlQueue<PacketOperationInfo> packetQueue;
 
     @PostConstruct
     public void init() {
-        initUpdatePacketTypeQueue();
-        initDeletePacketQueue();
+        if (packetQueueConfiguration.isEnabled()) {
+            initPacketQueue();
+        } else {
+            initUpdatePacketTypeQueue();
+            initDeletePacketQueue();
+        }
     }
 
     @Override
@@ -95,6 +104,16 @@ public class SqlDeviceMsgDao implements DeviceMsgDao {
         return DaoUtil.convertDataList(devicePublishMsgs);
     }
 
+    @Override
+    public List<DevicePublishMsg> findPersistedMessagesPage(String clientId, long fromSerialNumber, int pageSize, int messageLimit) {
+        if (log.isTraceEnabled()) {
+            log.trace("Finding device publish messages page, clientId - {}, fromSerialNumber - {}, pageSize - {}, limit - {}",
+                    clientId, fromSerialNumber, pageSize, messageLimit);
+        }
+        List<DevicePublishMsgEntity> devicePublishMsgs = deviceMsgRepository.findPageByClientId(clientId, fromSerialNumber, pageSize, messageLimit);
+        return DaoUtil.convertDataList(devicePublishMsgs);
+    }
+
     @Override
     public void removePersistedMessages(String clientId) {
         if (log.isTraceEnabled()) {
@@ -108,6 +127,9 @@ public class SqlDeviceMsgDao implements DeviceMsgDao {
         if (log.isTraceEnabled()) {
             log.trace("Removing device publish message, clientId - {}, packetId - {}", clientId, packetId);
         }
+        if (packetQueue != null) {
+            return packetQueue.add(PacketOperationInfo.remove(clientId, packetId));
+        }
         return deletePacketQueue.add(new DeletePacketInfo(clientId, packetId));
     }
 
@@ -116,9 +138,54 @@ public class SqlDeviceMsgDao implements DeviceMsgDao {
         if (log.isTraceEnabled()) {
             log.trace("Updating packet type for device publish message, clientId - {}, packetId - {}, packetType - {}.", clientId, packetId, packetType);
         }
+        if (packetQueue != null) {
+            return packetQueue.add(PacketOperationInfo.updatePacketType(clientId, packetId, packetType));
+        }
         return updatePacketTypeQueue.add(new UpdatePacketTypeInfo(clientId, packetType, packetId));
     }
 
+    private void initPacketQueue() {
+        Function<PacketOperationInfo, Integer> packetQueueIndexHashFunction = packetOperationInfo -> packetOperationInfo.getClientId().hashCode();
+        TbSqlQueueParams packetQueueParams = TbSqlQueueParams.builder()
+                .queueName("PacketQueue")
+                .batchSize(packetQueueConfiguration.getBatchSize())
+                .maxDelay(packetQueueConfiguration.getMaxDelay())
+                .queueType(TbSqlQueueType.RING_BUFFER)
+                .capacity(packetQueueConfiguration.getCapacity())
+                .build();
+        this.packetQueue = TbSqlBlockingQueuePool.<PacketOperationInfo>builder()
+                .queueIndexHashFunction(packetQueueIndexHashFunction)
+                .maxThreads(packetQueueConfiguration.getBatchThreads())
+                .params(packetQueueParams)
+                .statsManager(sqlQueueStatsManager)
+                .coalescer(new PacketOperationCoalescer())
+                .processingFunction(this::processPacketOperations)
+                .build();
+        packetQueue.init();
+    }
+
+    /**
+     * Removals go first: after coalescing the only operations left on the same packet are a removal followed by an update,
+     * and the update may only target the message that reused the packet id.
+     */
+    private void processPacketOperations(List<PacketOperationInfo> operations) {
+        List<DeletePacketInfo> deletedPackets = new ArrayList<>();
+        List<UpdatePacketTypeInfo> updatedPackets = new ArrayList<>();
+        for (PacketOperationInfo operation : operations) {
+            if (operation.isRemove()) {
+                deletedPackets.add(new DeletePacketInfo(operation.getClientId(), operation.getPacketId()));
+            } else {
+                updatedPackets.add(new UpdatePacketTypeInfo(operation.getClientId(), operation.getPacketType(), operation.getPacketId()));
+            }
+        }
+        if (!deletedPackets.isEmpty()) {
+            lowLevelDeviceMsgRepository.removePackets(deletedPackets);
+        }
+        if (!updatedPackets.isEmpty()) {
+            lowLevelDeviceMsgRepository.updatePacketTypes(updatedPackets);
+        }
+    }
+
     private void initDeletePacketQueue() {
         Function<DeletePacketInfo, Integer> deleteQueueIndexHashFunction = deletePacketInfo -> deletePacketInfo.getClientId().hashCode();
         TbSqlQueueParams deletePacketQueueParams = TbSqlQueueParams.builder()
@@ -161,5 +228,8 @@ public class SqlDeviceMsgDao implements DeviceMsgDao {
         if (deletePacketQueue != null) {
             deletePacketQueue.destroy();
         }
+        if (packetQueue != null) {
+            packetQueue.destroy();
+        }
     }
 }
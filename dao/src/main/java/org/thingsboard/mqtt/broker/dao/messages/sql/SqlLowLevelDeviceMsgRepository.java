@@ -16,8 +16,13 @@
 package org.thingsboard.mqtt.broker.dao.messages.sql;
 
 import lombok.RequiredArgsConstructor;
+import lombok.Setter;
 import lombok.extern.slf4j.Slf4j;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.ConnectionCallback;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Repository;
 import org.springframework.transaction.annotation.Transactional;
@@ -26,8 +31,11 @@ import org.thingsboard.mqtt.broker.dao.messages.LowLevelDeviceMsgRepository;
 import org.thingsboard.mqtt.broker.dao.messages.UpdatePacketTypeInfo;
 import org.thingsboard.mqtt.broker.dao.model.sql.DevicePublishMsgEntity;
 
+import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.sql.Statement;
 import java.sql.Types;
 import java.util.List;
 import java.util.stream.IntStream;
@@ -58,10 +66,41 @@ public class SqlLowLevelDeviceMsgRepository implements LowLevelDeviceMsgReposito
     private static final String DELETE_PACKETS_BY_CLIENT_ID = "DELETE FROM device_publish_msg " +
             "WHERE client_id = ?;";
 
+    static final String COPY_COLUMNS = "client_id, topic, serial_number, packet_id, packet_type, time, qos, payload, user_properties, retain, " +
+            "msg_expiry_interval, payload_format_indicator, content_type, response_topic, correlation_data";
+
+    private static final String CREATE_STAGING_TABLE = "CREATE TEMP TABLE IF NOT EXISTS device_publish_msg_staging " +
+            "(LIKE device_publish_msg INCLUDING DEFAULTS);";
+
+    private static final String TRUNCATE_STAGING_TABLE = "TRUNCATE device_publish_msg_staging;";
+
+    private static final String COPY_TO_STAGING_TABLE = "COPY device_publish_msg_staging (" + COPY_COLUMNS + ") FROM STDIN WITH (FORMAT binary)";
+
+    private static final String MERGE_INSERT = "INSERT INTO device_publish_msg (" + COPY_COLUMNS + ") " +
+            "SELECT " + COPY_COLUMNS + " FROM device_publish_msg_staging;";
+
+    private static final String MERGE_INSERT_OR_UPDATE = "INSERT INTO device_publish_msg (" + COPY_COLUMNS + ") " +
+            "SELECT " + COPY_COLUMNS + " FROM device_publish_msg_staging " +
+            "ON CONFLICT (client_id, serial_number) DO UPDATE SET " +
+            "topic = EXCLUDED.topic, packet_id = EXCLUDED.packet_id, packet_type = EXCLUDED.packet_type, time = EXCLUDED.time, qos = EXCLUDED.qos, " +
+            "payload = EXCLUDED.payload, user_properties = EXCLUDED.user_properties, retain = EXCLUDED.retain, " +
+            "msg_expiry_interval = EXCLUDED.msg_expiry_interval, payload_format_indicator = EXCLUDED.payload_format_indicator, " +
+            "content_type = EXCLUDED.content_type, response_topic = EXCLUDED.response_topic, correlation_data = EXCLUDED.correlation_data;";
+
     private final JdbcTemplate jdbcTemplate;
 
+    @Setter
+    @Value("${mqtt.persistent-session.device.persisted-messages.sql.copy.enabled:false}")
+    private boolean copyEnabled;
+    @Setter
+    @Value("${mqtt.persistent-session.device.persisted-messages.sql.copy.min-batch-size:100}")
+    private int copyMinBatchSize;
+
     @Override
     public void insert(List<DevicePublishMsgEntity> entities) {
+        if (shouldCopy(entities) && copyAndMerge(entities, MERGE_INSERT)) {
+            return;
+        }
         jdbcTemplate.batchUpdate(INSERT, new BatchPreparedStatementSetter() {
             @Override
             public void setValues(PreparedStatement ps, int i) throws SQLException {
@@ -92,6 +131,9 @@ public class SqlLowLevelDeviceMsgRepository implements LowLevelDeviceMsgReposito
 
     @Override
     public void insertOrUpdate(List<DevicePublishMsgEntity> entities) {
+        if (shouldCopy(entities) && copyAndMerge(entities, MERGE_INSERT_OR_UPDATE)) {
+            return;
+        }
         jdbcTemplate.batchUpdate(INSERT_OR_UPDATE, new BatchPreparedStatementSetter() {
             @Override
             public void setValues(PreparedStatement ps, int i) throws SQLException {
@@ -191,4 +233,63 @@ public class SqlLowLevelDeviceMsgRepository implements LowLevelDeviceMsgReposito
             log.trace("Removed {} packets for client {}", removedPackets, clientId);
         }
     }
+
+    private boolean shouldCopy(List<DevicePublishMsgEntity> entities) {
+        return copyEnabled && entities.size() >= copyMinBatchSize;
+    }
+
+    /**
+     * Streams the rows into a session-local staging table with the binary COPY protocol and merges them with one statement.
+     * Any failure (e.g. a conflicting or duplicated key) is rolled back to a savepoint, so the caller can fall back to the batch statements
+     * that report conflicts the same way as before.
+     *
+     * @return true if the rows were merged.
+     */
+    private boolean copyAndMerge(List<DevicePublishMsgEntity> entities, String mergeQuery) {
+        Boolean merged = jdbcTemplate.execute((ConnectionCallback<Boolean>) connection -> {
+            if (!connection.isWrapperFor(PGConnection.class)) {
+                log.warn("COPY ingestion of device publish messages requires PostgreSQL connection, falling back to batch statements");
+                copyEnabled = false;
+                return false;
+            }
+            Savepoint savepoint = connection.getAutoCommit() ? null : connection.setSavepoint();
+            try {
+                copyToStagingTable(connection, entities);
+                try (Statement statement = connection.createStatement()) {
+                    statement.executeUpdate(mergeQuery);
+                }
+                if (savepoint != null) {
+                    connection.releaseSavepoint(savepoint);
+                }
+                return true;
+            } catch (SQLException e) {
+                if (savepoint != null) {
+                    connection.rollback(savepoint);
+                }
+                if (log.isDebugEnabled()) {
+                    log.debug("Failed to merge {} device publish messages copied to staging table, falling back to batch statements", entities.size(), e);
+                }
+                return false;
+            }
+        });
+        return Boolean.TRUE.equals(merged);
+    }
+
+    private void copyToStagingTable(Connection connection, List<DevicePublishMsgEntity> entities) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute(CREATE_STAGING_TABLE);
+            statement.execute(TRUNCATE_STAGING_TABLE);
+        }
+        CopyIn copyIn = connection.unwrap(PGConnection.class).getCopyAPI().copyIn(COPY_TO_STAGING_TABLE);
+        try {
+            long copiedRows = new DevicePublishMsgCopyWriter(copyIn).write(entities);
+            if (log.isTraceEnabled()) {
+                log.trace("Copied {} device publish messages to staging table", copiedRows);
+            }
+        } finally {
+            if (copyIn.isActive()) {
+                copyIn.cancelCopy();
+            }
+        }
+    }
 }
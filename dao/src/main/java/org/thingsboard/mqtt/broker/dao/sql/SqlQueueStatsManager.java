@@ -15,9 +15,14 @@
  */
 package org.thingsboard.mqtt.broker.dao.sql;
 
-
+import io.micrometer.core.instrument.DistributionSummary;
 import org.thingsboard.mqtt.broker.common.stats.MessagesStats;
+import org.thingsboard.mqtt.broker.common.stats.ResettableTimer;
 
 public interface SqlQueueStatsManager {
     MessagesStats createSqlQueueStats(String queueName, int queueIndex);
+
+    ResettableTimer createSqlQueueFlushTimer(String queueName, int queueIndex);
+
+    DistributionSummary createSqlQueueDepthSummary(String queueName, int queueIndex);
 }
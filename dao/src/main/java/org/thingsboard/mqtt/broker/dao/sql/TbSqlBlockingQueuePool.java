@@ -34,7 +34,7 @@ import static org.thingsboard.mqtt.broker.common.stats.StubMessagesStats.STUB_ME
 @Builder
 public class TbSqlBlockingQueuePool<E> implements TbSqlQueue<E> {
 
-    private final CopyOnWriteArrayList<TbSqlBlockingQueue<E>> queues = new CopyOnWriteArrayList<>();
+    private final CopyOnWriteArrayList<TbSqlQueue<E>> queues = new CopyOnWriteArrayList<>();
 
     private final TbSqlQueueParams params;
     private final int maxThreads;
@@ -42,11 +42,19 @@ public class TbSqlBlockingQueuePool<E> implements TbSqlQueue<E> {
     private final Consumer<List<E>> processingFunction;
     private final SqlQueueStatsManager statsManager;
     private final Comparator<E> batchUpdateComparator;
+    private final TbSqlQueueCoalescer<E> coalescer;
 
     public void init() {
         for (int i = 0; i < maxThreads; i++) {
             MessagesStats queueStats = statsManager != null ? statsManager.createSqlQueueStats(params.getQueueName(), i) : STUB_MESSAGE_STATS;
-            TbSqlBlockingQueue<E> queue = new TbSqlBlockingQueue<>(i, params, processingFunction, queueStats, batchUpdateComparator);
+            TbSqlQueue<E> queue;
+            if (params.getQueueType() == TbSqlQueueType.RING_BUFFER) {
+                queue = new TbSqlRingBufferQueue<>(i, params, processingFunction, queueStats, batchUpdateComparator, coalescer,
+                        statsManager != null ? statsManager.createSqlQueueFlushTimer(params.getQueueName(), i) : null,
+                        statsManager != null ? statsManager.createSqlQueueDepthSummary(params.getQueueName(), i) : null);
+            } else {
+                queue = new TbSqlBlockingQueue<>(i, params, processingFunction, queueStats, batchUpdateComparator);
+            }
             queues.add(queue);
             queue.init();
         }
@@ -60,6 +68,6 @@ public class TbSqlBlockingQueuePool<E> implements TbSqlQueue<E> {
 
     @Override
     public void destroy() {
-        queues.forEach(TbSqlBlockingQueue::destroy);
+        queues.forEach(TbSqlQueue::destroy);
     }
 }
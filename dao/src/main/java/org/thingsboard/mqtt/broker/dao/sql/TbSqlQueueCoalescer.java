@@ -0,0 +1,29 @@
+/**
+ * Copyright © 2016-2024 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.mqtt.broker.dao.sql;
+
+/**
+ * Merges the elements of one pack that target the same row, so that the superseded operations are not sent to the database.
+ */
+public interface TbSqlQueueCoalescer<E> {
+
+    Object getKey(E element);
+
+    /**
+     * @return the element replacing both elements or null if both of them have to be processed in their order.
+     */
+    E merge(E previous, E next);
+}
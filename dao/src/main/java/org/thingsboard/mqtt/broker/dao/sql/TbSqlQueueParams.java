@@ -25,4 +25,6 @@ public class TbSqlQueueParams {
     private final int batchSize;
     private final long maxDelay;
     private final boolean batchSortEnabled;
+    private final TbSqlQueueType queueType;
+    private final int capacity;
 }
@@ -0,0 +1,231 @@
+/**
+ * Copyright © 2016-2024 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.mqtt.broker.dao.sql;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+import io.micrometer.core.instrument.DistributionSummary;
+import lombok.extern.slf4j.Slf4j;
+import org.thingsboard.mqtt.broker.common.stats.MessagesStats;
+import org.thingsboard.mqtt.broker.common.stats.ResettableTimer;
+import org.thingsboard.mqtt.broker.common.util.ThingsBoardThreadFactory;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+/**
+ * {@link TbSqlQueue} backed by a bounded multi-producer single-consumer ring buffer.
+ * <p>
+ * Producers claim a slot by advancing the tail and publish the element into it, the consumer thread drains the slots from the head.
+ * A pack is processed as soon as it reaches batch size or its oldest element waited for max delay, the consumer parks only while
+ * there is nothing to process and is unparked by the producers. When the buffer is full the producers back off until the consumer frees slots.
+ */
+@Slf4j
+class TbSqlRingBufferQueue<E> implements TbSqlQueue<E> {
+
+    private static final long PRODUCER_BACKOFF_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+
+    private final int id;
+    private final TbSqlQueueParams params;
+    private final Consumer<List<E>> processingFunction;
+    private final MessagesStats stats;
+    private final Comparator<E> batchUpdateComparator;
+    private final TbSqlQueueCoalescer<E> coalescer;
+    private final ResettableTimer flushTimer;
+    private final DistributionSummary depthSummary;
+
+    private final AtomicReferenceArray<TbSqlQueueElement<E>> buffer;
+    private final long[] enqueueTimes;
+    private final int mask;
+    private final AtomicLong tail = new AtomicLong();
+
+    private volatile long head;
+    private volatile boolean consumerWaiting;
+    private volatile Thread consumerThread;
+
+    private ExecutorService executor;
+
+    TbSqlRingBufferQueue(int id, TbSqlQueueParams params, Consumer<List<E>> processingFunction, MessagesStats stats,
+                         Comparator<E> batchUpdateComparator, TbSqlQueueCoalescer<E> coalescer,
+                         ResettableTimer flushTimer, DistributionSummary depthSummary) {
+        this.id = id;
+        this.params = params;
+        this.processingFunction = processingFunction;
+        this.stats = stats;
+        this.batchUpdateComparator = batchUpdateComparator;
+        this.coalescer = coalescer;
+        this.flushTimer = flushTimer;
+        this.depthSummary = depthSummary;
+        int requestedCapacity = Math.max(2, Math.max(params.getCapacity(), params.getBatchSize()));
+        int capacity = Integer.highestOneBit(requestedCapacity - 1) << 1;
+        this.buffer = new AtomicReferenceArray<>(capacity);
+        this.enqueueTimes = new long[capacity];
+        this.mask = capacity - 1;
+    }
+
+    @Override
+    public void init() {
+        String queueName = params.getQueueName();
+        this.executor = Executors.newSingleThreadExecutor(ThingsBoardThreadFactory.forName("sql-queue-" + id + "-" + queueName.toLowerCase()));
+        executor.execute(() -> processElementsQueue(queueName));
+    }
+
+    @Override
+    public void destroy() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    @Override
+    public ListenableFuture<Void> add(E element) {
+        SettableFuture<Void> future = SettableFuture.create();
+        int index = (int) claimSlot() & mask;
+        enqueueTimes[index] = System.nanoTime();
+        buffer.set(index, new TbSqlQueueElement<>(future, element));
+        stats.incrementTotal();
+        if (consumerWaiting) {
+            LockSupport.unpark(consumerThread);
+        }
+        return future;
+    }
+
+    int size() {
+        return (int) (tail.get() - head);
+    }
+
+    private long claimSlot() {
+        while (true) {
+            long sequence = tail.get();
+            if (sequence - head >= buffer.length()) {
+                LockSupport.parkNanos(PRODUCER_BACKOFF_NANOS);
+            } else if (tail.compareAndSet(sequence, sequence + 1)) {
+                return sequence;
+            }
+        }
+    }
+
+    private void processElementsQueue(String queueName) {
+        consumerThread = Thread.currentThread();
+        int batchSize = params.getBatchSize();
+        long maxDelayNanos = TimeUnit.MILLISECONDS.toNanos(params.getMaxDelay());
+        List<TbSqlQueueElement<E>> elements = new ArrayList<>(batchSize);
+        long oldestElementTime = 0;
+        while (!Thread.interrupted()) {
+            while (elements.size() < batchSize) {
+                long currentHead = head;
+                int index = (int) currentHead & mask;
+                TbSqlQueueElement<E> element = buffer.get(index);
+                if (element == null) {
+                    break;
+                }
+                if (elements.isEmpty()) {
+                    oldestElementTime = enqueueTimes[index];
+                }
+                buffer.lazySet(index, null);
+                head = currentHead + 1;
+                elements.add(element);
+            }
+            if (elements.isEmpty()) {
+                awaitElements(maxDelayNanos);
+                continue;
+            }
+            long remainingDelay = oldestElementTime + maxDelayNanos - System.nanoTime();
+            if (elements.size() < batchSize && remainingDelay > 0) {
+                awaitElements(remainingDelay);
+                continue;
+            }
+            processElements(queueName, elements);
+        }
+        log.info("[{}] Queue polling was interrupted.", queueName);
+    }
+
+    private void awaitElements(long nanos) {
+        consumerWaiting = true;
+        if (buffer.get((int) head & mask) == null) {
+            LockSupport.parkNanos(this, nanos);
+        }
+        consumerWaiting = false;
+    }
+
+    private void processElements(String queueName, List<TbSqlQueueElement<E>> elements) {
+        if (depthSummary != null) {
+            depthSummary.record(elements.size() + size());
+        }
+        long startTime = System.nanoTime();
+        try {
+            List<E> batch = toBatch(elements);
+            if (log.isDebugEnabled()) {
+                log.debug("[{}] Going to process {} elements, {} after coalescing.", queueName, elements.size(), batch.size());
+            }
+            processingFunction.accept(batch);
+            elements.forEach(element -> element.getFuture().set(null));
+            stats.incrementSuccessful(elements.size());
+        } catch (Exception e) {
+            stats.incrementFailed(elements.size());
+            elements.forEach(element -> element.getFuture().setException(e));
+            log.error("[{}] Failed to process {} elements.", queueName, elements.size(), e);
+        } finally {
+            if (flushTimer != null) {
+                flushTimer.logTime(System.nanoTime() - startTime, TimeUnit.NANOSECONDS);
+            }
+            elements.clear();
+        }
+    }
+
+    private List<E> toBatch(List<TbSqlQueueElement<E>> elements) {
+        List<E> batch = new ArrayList<>(elements.size());
+        if (coalescer == null) {
+            elements.forEach(element -> batch.add(element.getElement()));
+        } else {
+            Map<Object, Integer> lastIndexByKey = new HashMap<>();
+            boolean coalesced = false;
+            for (TbSqlQueueElement<E> queueElement : elements) {
+                E element = queueElement.getElement();
+                Object key = coalescer.getKey(element);
+                Integer previousIndex = lastIndexByKey.get(key);
+                if (previousIndex != null) {
+                    E merged = coalescer.merge(batch.get(previousIndex), element);
+                    if (merged != null) {
+                        batch.set(previousIndex, null);
+                        element = merged;
+                        coalesced = true;
+                    }
+                }
+                lastIndexByKey.put(key, batch.size());
+                batch.add(element);
+            }
+            if (coalesced) {
+                batch.removeIf(Objects::isNull);
+            }
+        }
+        if (params.isBatchSortEnabled()) {
+            batch.sort(batchUpdateComparator);
+        }
+        return batch;
+    }
+}
@@ -0,0 +1,310 @@
+/**
+ * Copyright © 2016-2024 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.mqtt.broker.dao.messages.log;
+
+import io.netty.handler.codec.mqtt.MqttProperties;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import org.springframework.dao.DuplicateKeyException;
+import org.thingsboard.mqtt.broker.common.data.DevicePublishMsg;
+import org.thingsboard.mqtt.broker.common.data.PersistedPacketType;
+import org.thingsboard.mqtt.broker.common.util.BrokerConstants;
+import org.thingsboard.mqtt.broker.dao.messages.LowLevelDeviceMsgRepository;
+import org.thingsboard.mqtt.broker.dao.messages.sql.DeviceMsgRepository;
+import org.thingsboard.mqtt.broker.dao.model.sql.DevicePublishMsgEntity;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class LogDeviceMsgDaoTest {
+
+    private static final String CLIENT_ID = "testClientId";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private LowLevelDeviceMsgRepository lowLevelDeviceMsgRepository;
+    private DeviceMsgRepository deviceMsgRepository;
+    private DeviceMsgLogConfiguration configuration;
+    private LogDeviceMsgDao deviceMsgDao;
+
+    @Before
+    public void setUp() throws IOException {
+        lowLevelDeviceMsgRepository = Mockito.mock(LowLevelDeviceMsgRepository.class);
+        deviceMsgRepository = Mockito.mock(DeviceMsgRepository.class);
+        configuration = new DeviceMsgLogConfiguration();
+        configuration.setDir(folder.getRoot().getAbsolutePath());
+        configuration.setSegmentSize(4096);
+        configuration.setFlushInterval(100);
+        configuration.setMirrorBatchSize(100);
+        configuration.setMirrorMaxDelay(10);
+        configuration.setCompactionThreshold(0.25);
+        deviceMsgDao = newDao();
+    }
+
+    @After
+    public void tearDown() {
+        deviceMsgDao.destroy();
+    }
+
+    @Test
+    public void givenSavedMessages_whenFindPersistedMessages_thenLatestMessagesReturnedInSerialNumberOrder() {
+        deviceMsgDao.save(newMsgs(CLIENT_ID, 0, 10), true);
+
+        List<DevicePublishMsg> msgs = deviceMsgDao.findPersistedMessages(CLIENT_ID, 5);
+
+        Assert.assertEquals(List.of(5L, 6L, 7L, 8L, 9L), serialNumbers(msgs));
+        DevicePublishMsg msg = msgs.get(0);
+        Assert.assertEquals("test/topic/5", msg.getTopic());
+        Assert.assertArrayEquals("payload5".getBytes(StandardCharsets.UTF_8), msg.getPayload());
+        Assert.assertEquals("text/plain", ((MqttProperties.StringProperty) msg.getProperties().getProperty(BrokerConstants.CONTENT_TYPE_PROP_ID)).value());
+        Assert.assertEquals(List.of(3L, 4L), serialNumbers(deviceMsgDao.findPersistedMessagesBySerialNumber(CLIENT_ID, 3, 5)));
+    }
+
+    @Test
+    public void givenSavedMessages_whenFindPersistedMessagesPage_thenPageOfLatestMessagesReturned() {
+        deviceMsgDao.save(newMsgs(CLIENT_ID, 0, 10), true);
+
+        Assert.assertEquals(List.of(4L, 5L, 6L), serialNumbers(deviceMsgDao.findPersistedMessagesPage(CLIENT_ID, 0, 3, 6)));
+        Assert.assertEquals(List.of(7L, 8L, 9L), serialNumbers(deviceMsgDao.findPersistedMessagesPage(CLIENT_ID, 7, 3, 6)));
+        Assert.assertEquals(List.of(9L), serialNumbers(deviceMsgDao.findPersistedMessagesPage(CLIENT_ID, 9, 3, 6)));
+        Assert.assertEquals(List.of(), serialNumbers(deviceMsgDao.findPersistedMessagesPage(CLIENT_ID, 10, 3, 6)));
+        Assert.assertEquals(List.of(0L, 1L), serialNumbers(deviceMsgDao.findPersistedMessagesPage(CLIENT_ID, 0, 2, 100)));
+    }
+
+    @Test(expected = DuplicateKeyException.class)
+    public void givenSavedMessage_whenSaveSameSerialNumberWithConflictDetection_thenDuplicateKeyException() {
+        deviceMsgDao.save(newMsgs(CLIENT_ID, 0, 1), true);
+        deviceMsgDao.save(newMsgs(CLIENT_ID, 0, 1), true);
+    }
+
+    @Test
+    public void givenPacketOperations_whenFindPersistedMessages_thenOperationsApplied() throws Exception {
+        deviceMsgDao.save(newMsgs(CLIENT_ID, 0, 3), true);
+
+        deviceMsgDao.removePersistedMessage(CLIENT_ID, 1).get();
+        deviceMsgDao.updatePacketType(CLIENT_ID, 2, PersistedPacketType.PUBREL).get();
+
+        List<DevicePublishMsg> msgs = deviceMsgDao.findPersistedMessages(CLIENT_ID, 10);
+        Assert.assertEquals(List.of(1L, 2L), serialNumbers(msgs));
+        Assert.assertEquals(PersistedPacketType.PUBREL, msgs.get(0).getPacketType());
+        Assert.assertEquals(PersistedPacketType.PUBLISH, msgs.get(1).getPacketType());
+
+        deviceMsgDao.removePersistedMessages(CLIENT_ID);
+        Assert.assertTrue(deviceMsgDao.findPersistedMessages(CLIENT_ID, 10).isEmpty());
+    }
+
+    @Test
+    public void givenMessagesWithSamePacketId_whenPacketOperationsApplied_thenOnlyTheseMessagesChanged() throws Exception {
+        deviceMsgDao.save(newMsgs(CLIENT_ID, 0, 3), true);
+        deviceMsgDao.save(List.of(newMsgs(CLIENT_ID, 3, 4).get(0).toBuilder().packetId(1).build()), true);
+
+        deviceMsgDao.updatePacketType(CLIENT_ID, 1, PersistedPacketType.PUBREL).get();
+        List<DevicePublishMsg> msgs = deviceMsgDao.findPersistedMessages(CLIENT_ID, 10);
+        Assert.assertEquals(List.of(PersistedPacketType.PUBREL, PersistedPacketType.PUBLISH, PersistedPacketType.PUBLISH, PersistedPacketType.PUBREL),
+                msgs.stream().map(DevicePublishMsg::getPacketType).collect(Collectors.toList()));
+
+        deviceMsgDao.removePersistedMessage(CLIENT_ID, 1).get();
+        Assert.assertEquals(List.of(1L, 2L), serialNumbers(deviceMsgDao.findPersistedMessages(CLIENT_ID, 10)));
+    }
+
+    @Test
+    public void givenConcurrentClients_whenSavedAndRemoved_thenEachClientIndexConsistent() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> futures = IntStream.range(0, 4).<Future<?>>mapToObj(client -> executor.submit(() -> {
+                String clientId = CLIENT_ID + client;
+                for (int i = 0; i < 100; i++) {
+                    deviceMsgDao.save(newMsgs(clientId, i, i + 1), true);
+                    if (i % 2 == 0) {
+                        deviceMsgDao.removePersistedMessage(clientId, i + 1).get();
+                    }
+                }
+                return null;
+            })).collect(Collectors.toList());
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        List<Long> expected = IntStream.range(0, 100).filter(i -> i % 2 == 1).mapToObj(i -> (long) i).collect(Collectors.toList());
+        for (int client = 0; client < 4; client++) {
+            Assert.assertEquals(expected, serialNumbers(deviceMsgDao.findPersistedMessages(CLIENT_ID + client, 100)));
+        }
+    }
+
+    @Test
+    public void givenLoggedOperations_whenMirrored_thenOperationsAppliedToDatabaseInOrder() {
+        deviceMsgDao.save(newMsgs(CLIENT_ID, 0, 3), true);
+        deviceMsgDao.removePersistedMessage(CLIENT_ID, 1);
+        deviceMsgDao.removePersistedMessages(CLIENT_ID);
+
+        var inOrder = Mockito.inOrder(lowLevelDeviceMsgRepository);
+        inOrder.verify(lowLevelDeviceMsgRepository, timeout(5000)).insertOrUpdate(anyList());
+        inOrder.verify(lowLevelDeviceMsgRepository, timeout(5000)).removePackets(anyList());
+        inOrder.verify(lowLevelDeviceMsgRepository, timeout(5000)).removePacketsByClientId(CLIENT_ID);
+    }
+
+    @Test
+    public void givenMirroringFails_whenDatabaseRecovers_thenMirroringResumed() {
+        Mockito.doThrow(new RuntimeException("DB is down")).doNothing().when(lowLevelDeviceMsgRepository).insertOrUpdate(anyList());
+
+        deviceMsgDao.save(newMsgs(CLIENT_ID, 0, 3), true);
+
+        ArgumentCaptor<List<DevicePublishMsgEntity>> captor = ArgumentCaptor.forClass(List.class);
+        verify(lowLevelDeviceMsgRepository, timeout(5000).times(2)).insertOrUpdate(captor.capture());
+        Assert.assertEquals(3, captor.getValue().size());
+        Assert.assertEquals(3, deviceMsgDao.findPersistedMessages(CLIENT_ID, 10).size());
+    }
+
+    @Test
+    public void givenRestart_whenFindPersistedMessages_thenIndexRebuiltFromLog() {
+        deviceMsgDao.save(newMsgs(CLIENT_ID, 0, 100), true);
+        deviceMsgDao.removePersistedMessage(CLIENT_ID, 1);
+        deviceMsgDao.updatePacketType(CLIENT_ID, 2, PersistedPacketType.PUBREL);
+        deviceMsgDao.destroy();
+        Mockito.clearInvocations(deviceMsgRepository);
+
+        deviceMsgDao = newDao();
+
+        List<DevicePublishMsg> msgs = deviceMsgDao.findPersistedMessages(CLIENT_ID, 1000);
+        Assert.assertEquals(99, msgs.size());
+        Assert.assertEquals(1L, msgs.get(0).getSerialNumber().longValue());
+        Assert.assertEquals(PersistedPacketType.PUBREL, msgs.get(0).getPacketType());
+        Mockito.verify(deviceMsgRepository, Mockito.never()).findByClientIdReversed(anyString(), anyInt());
+    }
+
+    @Test
+    public void givenClientNotInLog_whenFindPersistedMessages_thenLoadedFromDatabase() {
+        List<DevicePublishMsgEntity> persisted = newMsgs("otherClient", 0, 3).stream().map(DevicePublishMsgEntity::new).collect(Collectors.toList());
+        when(deviceMsgRepository.findByClientIdReversed("otherClient", 1000)).thenReturn(List.of(persisted.get(2), persisted.get(1), persisted.get(0)));
+
+        Assert.assertEquals(List.of(0L, 1L, 2L), serialNumbers(deviceMsgDao.findPersistedMessages("otherClient", 10)));
+        Assert.assertEquals(List.of(0L, 1L, 2L), serialNumbers(deviceMsgDao.findPersistedMessages("otherClient", 10)));
+        verify(deviceMsgRepository).findByClientIdReversed("otherClient", 1000);
+    }
+
+    @Test
+    public void givenAcknowledgedAndMirroredMessages_whenLogRolled_thenObsoleteSegmentsDeleted() throws Exception {
+        for (int i = 0; i < 200; i++) {
+            deviceMsgDao.save(newMsgs(CLIENT_ID, i, i + 1), true);
+            deviceMsgDao.removePersistedMessage(CLIENT_ID, i + 1).get();
+        }
+        verify(lowLevelDeviceMsgRepository, timeout(5000).atLeastOnce()).removePackets(anyList());
+
+        long deadline = System.currentTimeMillis() + 5000;
+        while (folder.getRoot().list((dir, name) -> name.endsWith(DeviceMsgLogSegment.FILE_SUFFIX)).length > 1 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        Assert.assertEquals(1, folder.getRoot().list((dir, name) -> name.endsWith(DeviceMsgLogSegment.FILE_SUFFIX)).length);
+    }
+
+    @Test
+    public void givenOldUnacknowledgedMessage_whenLogRolled_thenMessageMovedAndSegmentsDeleted() throws Exception {
+        deviceMsgDao.save(newMsgs(CLIENT_ID, 0, 1), true);
+        for (int i = 1; i < 200; i++) {
+            deviceMsgDao.save(newMsgs(CLIENT_ID, i, i + 1), true);
+            deviceMsgDao.removePersistedMessage(CLIENT_ID, i + 1).get();
+        }
+        verify(lowLevelDeviceMsgRepository, timeout(5000).atLeastOnce()).removePackets(anyList());
+
+        long deadline = System.currentTimeMillis() + 5000;
+        while (folder.getRoot().list((dir, name) -> name.endsWith(DeviceMsgLogSegment.FILE_SUFFIX)).length > 2 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        Assert.assertTrue(folder.getRoot().list((dir, name) -> name.endsWith(DeviceMsgLogSegment.FILE_SUFFIX)).length <= 2);
+        Assert.assertEquals(List.of(0L), serialNumbers(deviceMsgDao.findPersistedMessages(CLIENT_ID, 10)));
+    }
+
+    @Test
+    public void givenTornRecord_whenLogReopened_thenRecordsBeforeItRecovered() throws IOException {
+        deviceMsgDao.save(newMsgs(CLIENT_ID, 0, 2), true);
+        deviceMsgDao.destroy();
+
+        Path segmentFile = folder.getRoot().toPath().resolve(DeviceMsgLogSegment.fileName(0));
+        DeviceMsgLog deviceMsgLog = new DeviceMsgLog(folder.getRoot().toPath(), configuration.getSegmentSize());
+        long secondRecordPosition = deviceMsgLog.recordSize(0);
+        deviceMsgLog.close();
+        try (RandomAccessFile file = new RandomAccessFile(segmentFile.toFile(), "rw")) {
+            file.seek(secondRecordPosition + DeviceMsgLogSegment.RECORD_HEADER_SIZE + 10);
+            file.write(0x7F);
+        }
+
+        deviceMsgDao = newDao();
+        Assert.assertEquals(List.of(0L), serialNumbers(deviceMsgDao.findPersistedMessages(CLIENT_ID, 10)));
+        deviceMsgDao.save(newMsgs(CLIENT_ID, 1, 2), true);
+        Assert.assertEquals(List.of(0L, 1L), serialNumbers(deviceMsgDao.findPersistedMessages(CLIENT_ID, 10)));
+    }
+
+    private LogDeviceMsgDao newDao() {
+        LogDeviceMsgDao dao = new LogDeviceMsgDao(configuration, lowLevelDeviceMsgRepository, deviceMsgRepository);
+        dao.setMessagesLimit(1000);
+        dao.setMessagesTtl(0);
+        try {
+            dao.init();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        return dao;
+    }
+
+    private List<DevicePublishMsg> newMsgs(String clientId, int fromSerialNumber, int toSerialNumber) {
+        return IntStream.range(fromSerialNumber, toSerialNumber)
+                .mapToObj(i -> {
+                    MqttProperties properties = new MqttProperties();
+                    properties.add(new MqttProperties.StringProperty(BrokerConstants.CONTENT_TYPE_PROP_ID, "text/plain"));
+                    return DevicePublishMsg.builder()
+                            .clientId(clientId)
+                            .topic("test/topic/" + i)
+                            .serialNumber((long) i)
+                            .time(System.currentTimeMillis())
+                            .qos(1)
+                            .packetId(i + 1)
+                            .packetType(PersistedPacketType.PUBLISH)
+                            .payload(("payload" + i).getBytes(StandardCharsets.UTF_8))
+                            .properties(properties)
+                            .build();
+                })
+                .collect(Collectors.toList());
+    }
+
+    private List<Long> serialNumbers(List<DevicePublishMsg> msgs) {
+        return msgs.stream().map(DevicePublishMsg::getSerialNumber).collect(Collectors.toList());
+    }
+}
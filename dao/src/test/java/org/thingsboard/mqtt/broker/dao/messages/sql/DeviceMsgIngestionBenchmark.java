@@ -0,0 +1,85 @@
+/**
+ * Copyright © 2016-2024 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.mqtt.broker.dao.messages.sql;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.After;
+import org.junit.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.util.AopTestUtils;
+import org.thingsboard.mqtt.broker.dao.DaoSqlTest;
+import org.thingsboard.mqtt.broker.dao.messages.LowLevelDeviceMsgRepository;
+import org.thingsboard.mqtt.broker.dao.model.sql.DevicePublishMsgEntity;
+import org.thingsboard.mqtt.broker.dao.service.AbstractServiceTest;
+
+import java.util.List;
+
+/**
+ * Compares rows/s of saving DEVICE persisted messages with the batch statements and with COPY into the staging table.
+ * Not executed as a part of the test suite (requires Docker for the PostgreSQL container), run it from the IDE
+ * or with {@code mvn test -Dtest=DeviceMsgIngestionBenchmark -Dsurefire.failIfNoSpecifiedTests=false}.
+ */
+@Slf4j
+@DaoSqlTest
+public class DeviceMsgIngestionBenchmark extends AbstractServiceTest {
+
+    private static final int[] PACK_SIZES = {100, 1_000, 10_000};
+    private static final int ROWS_PER_MEASUREMENT = 100_000;
+    private static final int WARMUP_ROWS = 20_000;
+
+    @Autowired
+    private LowLevelDeviceMsgRepository lowLevelDeviceMsgRepository;
+    @Autowired
+    private DeviceMsgRepository deviceMsgRepository;
+
+    @After
+    public void tearDown() {
+        deviceMsgRepository.deleteAllInBatch();
+        AopTestUtils.<SqlLowLevelDeviceMsgRepository>getTargetObject(lowLevelDeviceMsgRepository).setCopyEnabled(false);
+    }
+
+    @Test
+    public void benchmark() {
+        for (int packSize : PACK_SIZES) {
+            for (boolean copy : new boolean[]{false, true}) {
+                for (boolean upsert : new boolean[]{false, true}) {
+                    measure(packSize, WARMUP_ROWS, copy, upsert);
+                    double rowsPerSecond = measure(packSize, ROWS_PER_MEASUREMENT, copy, upsert);
+                    log.info("pack size {}, {} {}: {} rows/s", packSize, copy ? "copy" : "batch", upsert ? "insertOrUpdate" : "insert", (long) rowsPerSecond);
+                }
+            }
+        }
+    }
+
+    private double measure(int packSize, int rows, boolean copy, boolean upsert) {
+        deviceMsgRepository.deleteAllInBatch();
+        SqlLowLevelDeviceMsgRepository repository = AopTestUtils.getTargetObject(lowLevelDeviceMsgRepository);
+        repository.setCopyEnabled(copy);
+        repository.setCopyMinBatchSize(1);
+        long totalNanos = 0;
+        for (int from = 0; from < rows; from += packSize) {
+            List<DevicePublishMsgEntity> pack = SqlLowLevelDeviceMsgRepositoryTest.newEntities(from, from + packSize, "payload-of-a-typical-telemetry-message-");
+            long start = System.nanoTime();
+            if (upsert) {
+                lowLevelDeviceMsgRepository.insertOrUpdate(pack);
+            } else {
+                lowLevelDeviceMsgRepository.insert(pack);
+            }
+            totalNanos += System.nanoTime() - start;
+        }
+        return rows * 1_000_000_000.0 / totalNanos;
+    }
+}
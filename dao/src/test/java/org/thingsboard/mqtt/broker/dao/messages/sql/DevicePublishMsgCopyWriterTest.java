@@ -0,0 +1,113 @@
+/**
+ * Copyright © 2016-2024 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.mqtt.broker.dao.messages.sql;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.postgresql.copy.CopyIn;
+import org.thingsboard.mqtt.broker.common.data.PersistedPacketType;
+import org.thingsboard.mqtt.broker.dao.model.sql.DevicePublishMsgEntity;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+
+public class DevicePublishMsgCopyWriterTest {
+
+    @Test
+    public void givenEntities_whenWrite_thenPostgresBinaryCopyFormatStreamed() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        CopyIn copyIn = Mockito.mock(CopyIn.class);
+        Mockito.doAnswer(invocation -> {
+            out.write(invocation.getArgument(0), invocation.getArgument(1), invocation.getArgument(2));
+            return null;
+        }).when(copyIn).writeToCopy(any(byte[].class), anyInt(), anyInt());
+        Mockito.when(copyIn.endCopy()).thenReturn(2L);
+
+        byte[] largePayload = new byte[100 * 1024];
+        largePayload[largePayload.length - 1] = 7;
+        long copied = new DevicePublishMsgCopyWriter(copyIn).write(List.of(newEntity(1, "small".getBytes(StandardCharsets.UTF_8)), newEntity(2, largePayload)));
+
+        Assert.assertEquals(2L, copied);
+        ByteBuffer buffer = ByteBuffer.wrap(out.toByteArray());
+        byte[] signature = new byte[11];
+        buffer.get(signature);
+        Assert.assertArrayEquals(new byte[]{'P', 'G', 'C', 'O', 'P', 'Y', '\n', (byte) 0xFF, '\r', '\n', 0}, signature);
+        Assert.assertEquals(0, buffer.getInt());
+        Assert.assertEquals(0, buffer.getInt());
+
+        assertRow(buffer, 1, "small".getBytes(StandardCharsets.UTF_8));
+        assertRow(buffer, 2, largePayload);
+        Assert.assertEquals(-1, buffer.getShort());
+        Assert.assertFalse(buffer.hasRemaining());
+    }
+
+    private void assertRow(ByteBuffer buffer, long serialNumber, byte[] payload) {
+        Assert.assertEquals(15, buffer.getShort());
+        Assert.assertEquals("client", readString(buffer));
+        Assert.assertEquals("test/topic", readString(buffer));
+        Assert.assertEquals(8, buffer.getInt());
+        Assert.assertEquals(serialNumber, buffer.getLong());
+        Assert.assertEquals(4, buffer.getInt());
+        Assert.assertEquals((int) serialNumber, buffer.getInt());
+        Assert.assertEquals("PUBLISH", readString(buffer));
+        Assert.assertEquals(8, buffer.getInt());
+        Assert.assertEquals(1000L, buffer.getLong());
+        Assert.assertEquals(4, buffer.getInt());
+        Assert.assertEquals(1, buffer.getInt());
+        Assert.assertArrayEquals(payload, readBytes(buffer));
+        Assert.assertEquals("{}", readString(buffer));
+        Assert.assertEquals(1, buffer.getInt());
+        Assert.assertEquals(1, buffer.get());
+        Assert.assertEquals(4, buffer.getInt());
+        Assert.assertEquals(60, buffer.getInt());
+        // payload format indicator, content type, response topic, correlation data are null
+        for (int i = 0; i < 4; i++) {
+            Assert.assertEquals(-1, buffer.getInt());
+        }
+    }
+
+    private String readString(ByteBuffer buffer) {
+        return new String(readBytes(buffer), StandardCharsets.UTF_8);
+    }
+
+    private byte[] readBytes(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        return bytes;
+    }
+
+    private DevicePublishMsgEntity newEntity(long serialNumber, byte[] payload) {
+        DevicePublishMsgEntity entity = new DevicePublishMsgEntity();
+        entity.setClientId("client");
+        entity.setTopic("test/topic");
+        entity.setSerialNumber(serialNumber);
+        entity.setPacketId((int) serialNumber);
+        entity.setPacketType(PersistedPacketType.PUBLISH);
+        entity.setTime(1000L);
+        entity.setQos(1);
+        entity.setPayload(payload);
+        entity.setUserProperties("{}");
+        entity.setRetain(true);
+        entity.setMsgExpiryInterval(60);
+        return entity;
+    }
+}
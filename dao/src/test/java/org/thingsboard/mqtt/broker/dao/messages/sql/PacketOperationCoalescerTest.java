@@ -0,0 +1,53 @@
+/**
+ * Copyright © 2016-2024 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.mqtt.broker.dao.messages.sql;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.thingsboard.mqtt.broker.common.data.PersistedPacketType;
+import org.thingsboard.mqtt.broker.dao.messages.PacketOperationInfo;
+
+public class PacketOperationCoalescerTest {
+
+    private final PacketOperationCoalescer coalescer = new PacketOperationCoalescer();
+
+    @Test
+    public void givenSamePacket_whenGetKey_thenSameKey() {
+        Assert.assertEquals(coalescer.getKey(PacketOperationInfo.remove("client", 1)),
+                coalescer.getKey(PacketOperationInfo.updatePacketType("client", 1, PersistedPacketType.PUBREL)));
+        Assert.assertNotEquals(coalescer.getKey(PacketOperationInfo.remove("client", 1)), coalescer.getKey(PacketOperationInfo.remove("client", 2)));
+    }
+
+    @Test
+    public void givenUpdateFollowedByRemove_whenMerge_thenRemoveKept() {
+        PacketOperationInfo remove = PacketOperationInfo.remove("client", 1);
+        Assert.assertSame(remove, coalescer.merge(PacketOperationInfo.updatePacketType("client", 1, PersistedPacketType.PUBREL), remove));
+    }
+
+    @Test
+    public void givenRepeatedOperations_whenMerge_thenLastKept() {
+        PacketOperationInfo update = PacketOperationInfo.updatePacketType("client", 1, PersistedPacketType.PUBREL);
+        Assert.assertSame(update, coalescer.merge(PacketOperationInfo.updatePacketType("client", 1, PersistedPacketType.PUBLISH), update));
+        PacketOperationInfo remove = PacketOperationInfo.remove("client", 1);
+        Assert.assertSame(remove, coalescer.merge(PacketOperationInfo.remove("client", 1), remove));
+    }
+
+    @Test
+    public void givenRemoveFollowedByUpdate_whenMerge_thenBothKept() {
+        Assert.assertNull(coalescer.merge(PacketOperationInfo.remove("client", 1),
+                PacketOperationInfo.updatePacketType("client", 1, PersistedPacketType.PUBREL)));
+    }
+}
@@ -0,0 +1,133 @@
+/**
+ * Copyright © 2016-2024 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.mqtt.broker.dao.messages.sql;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.test.util.AopTestUtils;
+import org.thingsboard.mqtt.broker.common.data.PersistedPacketType;
+import org.thingsboard.mqtt.broker.dao.DaoSqlTest;
+import org.thingsboard.mqtt.broker.dao.messages.LowLevelDeviceMsgRepository;
+import org.thingsboard.mqtt.broker.dao.model.sql.DevicePublishMsgEntity;
+import org.thingsboard.mqtt.broker.dao.service.AbstractServiceTest;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+@DaoSqlTest
+public class SqlLowLevelDeviceMsgRepositoryTest extends AbstractServiceTest {
+
+    @Autowired
+    private LowLevelDeviceMsgRepository lowLevelDeviceMsgRepository;
+    @Autowired
+    private DeviceMsgRepository deviceMsgRepository;
+
+    @Before
+    public void setUp() {
+        deviceMsgRepository.deleteAll();
+        SqlLowLevelDeviceMsgRepository repository = AopTestUtils.getTargetObject(lowLevelDeviceMsgRepository);
+        repository.setCopyEnabled(true);
+        repository.setCopyMinBatchSize(1);
+    }
+
+    @After
+    public void tearDown() {
+        deviceMsgRepository.deleteAll();
+        SqlLowLevelDeviceMsgRepository repository = AopTestUtils.getTargetObject(lowLevelDeviceMsgRepository);
+        repository.setCopyEnabled(false);
+    }
+
+    @Test
+    public void givenCopyEnabled_whenInsert_thenAllRowsSaved() {
+        lowLevelDeviceMsgRepository.insert(newEntities(0, 50, "payload"));
+
+        List<DevicePublishMsgEntity> saved = findAllSorted();
+        Assert.assertEquals(50, saved.size());
+        DevicePublishMsgEntity entity = saved.get(7);
+        Assert.assertEquals(7L, entity.getSerialNumber().longValue());
+        Assert.assertEquals("test/topic/7", entity.getTopic());
+        Assert.assertEquals(PersistedPacketType.PUBLISH, entity.getPacketType());
+        Assert.assertArrayEquals("payload7".getBytes(StandardCharsets.UTF_8), entity.getPayload());
+        Assert.assertEquals(60, entity.getMsgExpiryInterval().intValue());
+        Assert.assertNull(entity.getPayloadFormatIndicator());
+        Assert.assertEquals("application/json", entity.getContentType());
+        Assert.assertNull(entity.getCorrelationData());
+    }
+
+    @Test
+    public void givenCopyEnabled_whenInsertOrUpdate_thenExistingRowsUpdated() {
+        lowLevelDeviceMsgRepository.insert(newEntities(0, 10, "old"));
+
+        lowLevelDeviceMsgRepository.insertOrUpdate(newEntities(5, 15, "new"));
+
+        List<DevicePublishMsgEntity> saved = findAllSorted();
+        Assert.assertEquals(15, saved.size());
+        Assert.assertArrayEquals("old4".getBytes(StandardCharsets.UTF_8), saved.get(4).getPayload());
+        Assert.assertArrayEquals("new5".getBytes(StandardCharsets.UTF_8), saved.get(5).getPayload());
+    }
+
+    @Test(expected = DuplicateKeyException.class)
+    public void givenCopyEnabled_whenInsertExistingKey_thenDuplicateKeyException() {
+        lowLevelDeviceMsgRepository.insert(newEntities(0, 10, "payload"));
+        lowLevelDeviceMsgRepository.insert(newEntities(9, 20, "payload"));
+    }
+
+    @Test
+    public void givenDuplicatedKeysInPack_whenInsertOrUpdate_thenFallbackToBatchStatements() {
+        List<DevicePublishMsgEntity> entities = new ArrayList<>(newEntities(0, 10, "first"));
+        entities.addAll(newEntities(5, 10, "second"));
+
+        lowLevelDeviceMsgRepository.insertOrUpdate(entities);
+
+        List<DevicePublishMsgEntity> saved = findAllSorted();
+        Assert.assertEquals(10, saved.size());
+        Assert.assertArrayEquals("second9".getBytes(StandardCharsets.UTF_8), saved.get(9).getPayload());
+    }
+
+    private List<DevicePublishMsgEntity> findAllSorted() {
+        return deviceMsgRepository.findAll().stream()
+                .sorted(Comparator.comparingLong(DevicePublishMsgEntity::getSerialNumber))
+                .collect(Collectors.toList());
+    }
+
+    static List<DevicePublishMsgEntity> newEntities(int fromSerialNumber, int toSerialNumber, String payloadPrefix) {
+        return IntStream.range(fromSerialNumber, toSerialNumber)
+                .mapToObj(i -> {
+                    DevicePublishMsgEntity entity = new DevicePublishMsgEntity();
+                    entity.setClientId("testClientId");
+                    entity.setSerialNumber((long) i);
+                    entity.setTopic("test/topic/" + i);
+                    entity.setTime(System.currentTimeMillis());
+                    entity.setPacketId(i % 65535 + 1);
+                    entity.setPacketType(PersistedPacketType.PUBLISH);
+                    entity.setQos(1);
+                    entity.setPayload((payloadPrefix + i).getBytes(StandardCharsets.UTF_8));
+                    entity.setUserProperties("{\"props\":[]}");
+                    entity.setMsgExpiryInterval(60);
+                    entity.setContentType("application/json");
+                    return entity;
+                })
+                .collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,163 @@
+/**
+ * Copyright © 2016-2024 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.mqtt.broker.dao.sql;
+
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import static org.thingsboard.mqtt.broker.common.stats.StubMessagesStats.STUB_MESSAGE_STATS;
+
+public class TbSqlRingBufferQueueTest {
+
+    private final List<List<String>> processedBatches = new CopyOnWriteArrayList<>();
+
+    private TbSqlRingBufferQueue<String> queue;
+
+    @After
+    public void tearDown() {
+        if (queue != null) {
+            queue.destroy();
+        }
+    }
+
+    @Test
+    public void givenFullBatch_whenAdded_thenProcessedWithoutWaitingForMaxDelay() throws Exception {
+        queue = newQueue(10, TimeUnit.MINUTES.toMillis(1), 64, null, processedBatches::add);
+
+        List<ListenableFuture<Void>> futures = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            futures.add(queue.add("element-" + i));
+        }
+
+        Futures.allAsList(futures).get(5, TimeUnit.SECONDS);
+        Assert.assertEquals(1, processedBatches.size());
+        Assert.assertEquals(10, processedBatches.get(0).size());
+    }
+
+    @Test
+    public void givenPartialBatch_whenMaxDelayPassed_thenProcessed() throws Exception {
+        queue = newQueue(100, 200, 64, null, processedBatches::add);
+
+        long startTime = System.nanoTime();
+        Futures.allAsList(queue.add("a"), queue.add("b")).get(5, TimeUnit.SECONDS);
+
+        Assert.assertTrue(System.nanoTime() - startTime >= TimeUnit.MILLISECONDS.toNanos(150));
+        Assert.assertEquals(List.of(List.of("a", "b")), processedBatches);
+    }
+
+    @Test
+    public void givenSameKeyElements_whenProcessed_thenCoalesced() throws Exception {
+        TbSqlQueueCoalescer<String> lastWins = new TbSqlQueueCoalescer<>() {
+            @Override
+            public Object getKey(String element) {
+                return element.substring(0, element.indexOf(':'));
+            }
+
+            @Override
+            public String merge(String previous, String next) {
+                return next.endsWith("keep") ? null : next;
+            }
+        };
+        queue = newQueue(6, TimeUnit.MINUTES.toMillis(1), 64, lastWins, processedBatches::add);
+
+        List<ListenableFuture<Void>> futures = new ArrayList<>();
+        for (String element : List.of("a:1", "b:1", "a:2", "c:1", "b:keep", "a:3")) {
+            futures.add(queue.add(element));
+        }
+
+        Futures.allAsList(futures).get(5, TimeUnit.SECONDS);
+        Assert.assertEquals(List.of(List.of("b:1", "c:1", "b:keep", "a:3")), processedBatches);
+    }
+
+    @Test
+    public void givenManyProducersAndSmallCapacity_whenAdded_thenAllProcessedInProducerOrder() throws Exception {
+        int producers = 4;
+        int elementsPerProducer = 10_000;
+        List<String> processed = Collections.synchronizedList(new ArrayList<>());
+        queue = newQueue(50, 5, 64, null, processed::addAll);
+
+        CountDownLatch latch = new CountDownLatch(producers);
+        List<ListenableFuture<Void>> futures = new CopyOnWriteArrayList<>();
+        for (int p = 0; p < producers; p++) {
+            int producer = p;
+            new Thread(() -> {
+                for (int i = 0; i < elementsPerProducer; i++) {
+                    futures.add(queue.add(producer + ":" + i));
+                }
+                latch.countDown();
+            }).start();
+        }
+
+        Assert.assertTrue(latch.await(30, TimeUnit.SECONDS));
+        Futures.allAsList(futures).get(30, TimeUnit.SECONDS);
+        Assert.assertEquals(producers * elementsPerProducer, processed.size());
+        int[] lastIndexes = new int[producers];
+        Arrays.fill(lastIndexes, -1);
+        for (String element : processed) {
+            int producer = Integer.parseInt(element.substring(0, element.indexOf(':')));
+            int index = Integer.parseInt(element.substring(element.indexOf(':') + 1));
+            Assert.assertEquals(lastIndexes[producer] + 1, index);
+            lastIndexes[producer] = index;
+        }
+        Assert.assertEquals(0, queue.size());
+    }
+
+    @Test
+    public void givenProcessingFailure_whenProcessed_thenFuturesFailed() throws Exception {
+        queue = newQueue(2, TimeUnit.MINUTES.toMillis(1), 64, null, batch -> {
+            throw new IllegalStateException("DB is down");
+        });
+
+        ListenableFuture<Void> first = queue.add("a");
+        ListenableFuture<Void> second = queue.add("b");
+
+        for (ListenableFuture<Void> future : List.of(first, second)) {
+            try {
+                future.get(5, TimeUnit.SECONDS);
+                Assert.fail("Future must fail");
+            } catch (ExecutionException e) {
+                Assert.assertTrue(e.getCause() instanceof IllegalStateException);
+            }
+        }
+    }
+
+    private TbSqlRingBufferQueue<String> newQueue(int batchSize, long maxDelay, int capacity,
+                                                  TbSqlQueueCoalescer<String> coalescer, Consumer<List<String>> processingFunction) {
+        TbSqlQueueParams params = TbSqlQueueParams.builder()
+                .queueName("TestQueue")
+                .batchSize(batchSize)
+                .maxDelay(maxDelay)
+                .queueType(TbSqlQueueType.RING_BUFFER)
+                .capacity(capacity)
+                .build();
+        TbSqlRingBufferQueue<String> queue = new TbSqlRingBufferQueue<>(0, params, processingFunction, STUB_MESSAGE_STATS, null, coalescer, null, null);
+        queue.init();
+        return queue;
+    }
+}